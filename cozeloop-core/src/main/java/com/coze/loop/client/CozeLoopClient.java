@@ -5,12 +5,17 @@ import com.coze.loop.entity.ExecuteResult;
 import com.coze.loop.entity.Message;
 import com.coze.loop.entity.Prompt;
 import com.coze.loop.prompt.GetPromptParam;
+import com.coze.loop.stream.PushStream;
+import com.coze.loop.stream.StreamListener;
 import com.coze.loop.stream.StreamReader;
+import com.coze.loop.stream.StreamSubscription;
 import com.coze.loop.trace.CozeLoopSpan;
 import io.opentelemetry.api.trace.Tracer;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Main interface for CozeLoop SDK client.
@@ -54,6 +59,42 @@ public interface CozeLoopClient extends AutoCloseable {
      */
     Prompt getPrompt(GetPromptParam param);
     
+    /**
+     * Get a prompt from the platform without blocking the calling thread.
+     * The default implementation calls {@link #getPrompt(GetPromptParam)} on the calling thread.
+     *
+     * @param param the parameters for getting prompt
+     * @return future of the prompt
+     */
+    default CompletableFuture<Prompt> getPromptAsync(GetPromptParam param) {
+        return CompletableFuture.supplyAsync(() -> getPrompt(param), Runnable::run);
+    }
+    
+    /**
+     * Get several prompts from the platform.
+     * Prompts not cached yet are fetched together in batched requests.
+     *
+     * @param params the parameters for getting each prompt
+     * @return prompts in the order of {@code params}
+     */
+    default List<Prompt> getPrompts(List<GetPromptParam> params) {
+        List<Prompt> prompts = new ArrayList<>(params.size());
+        for (GetPromptParam param : params) {
+            prompts.add(getPrompt(param));
+        }
+        return prompts;
+    }
+    
+    /**
+     * Readiness of the prompts preloaded when the client was built.
+     *
+     * @return a future completed once every preloaded prompt is cached, or exceptionally if one
+     *         could not be fetched; already complete when nothing was preloaded
+     */
+    default CompletableFuture<Void> promptsReady() {
+        return CompletableFuture.completedFuture(null);
+    }
+    
     /**
      * Format a prompt with variables.
      *
@@ -72,6 +113,20 @@ public interface CozeLoopClient extends AutoCloseable {
      */
     List<Message> getAndFormatPrompt(GetPromptParam param, Map<String, Object> variables);
     
+    /**
+     * Get and format a prompt in one call without blocking the calling thread.
+     * The default implementation calls {@link #getAndFormatPrompt(GetPromptParam, Map)} on the
+     * calling thread.
+     *
+     * @param param the parameters for getting prompt
+     * @param variables the variables to substitute
+     * @return future of the formatted messages
+     */
+    default CompletableFuture<List<Message>> getAndFormatPromptAsync(GetPromptParam param,
+                                                                     Map<String, Object> variables) {
+        return CompletableFuture.supplyAsync(() -> getAndFormatPrompt(param, variables), Runnable::run);
+    }
+    
     /**
      * Invalidate cached prompt.
      *
@@ -87,6 +142,17 @@ public interface CozeLoopClient extends AutoCloseable {
      */
     ExecuteResult execute(ExecuteParam param);
     
+    /**
+     * Execute a prompt without blocking the calling thread.
+     * The default implementation calls {@link #execute(ExecuteParam)} on the calling thread.
+     *
+     * @param param the execution parameters
+     * @return future of the execution result
+     */
+    default CompletableFuture<ExecuteResult> executeAsync(ExecuteParam param) {
+        return CompletableFuture.supplyAsync(() -> execute(param), Runnable::run);
+    }
+    
     /**
      * Execute a prompt with streaming response.
      *
@@ -95,6 +161,32 @@ public interface CozeLoopClient extends AutoCloseable {
      */
     StreamReader<ExecuteResult> executeStreaming(ExecuteParam param);
     
+    /**
+     * Execute a prompt with a streaming response pushed to a listener. The listener controls
+     * the flow with {@link StreamSubscription#request(long)}: the response is read only while
+     * the listener has outstanding demand, one chunk at a time on a pool of
+     * {@code HttpConfig.streamThreads} threads shared by all streams, so a stream waiting for
+     * its response or for demand holds no thread.
+     * The default implementation reads {@link #executeStreaming(ExecuteParam)} on the threads
+     * that request chunks.
+     *
+     * @param param the execution parameters
+     * @param listener receives the results
+     * @return the subscription also passed to {@link StreamListener#onSubscribe}
+     */
+    default StreamSubscription executeStreaming(ExecuteParam param, StreamListener<? super ExecuteResult> listener) {
+        PushStream<ExecuteResult> stream = new PushStream<>(listener, Runnable::run);
+        listener.onSubscribe(stream);
+        if (!stream.isCancelled()) {
+            try {
+                stream.open(executeStreaming(param));
+            } catch (RuntimeException e) {
+                stream.fail(e);
+            }
+        }
+        return stream;
+    }
+    
     // ========== Client Management ==========
     
     /**
@@ -8,13 +8,23 @@ import com.coze.loop.exception.CozeLoopException;
 import com.coze.loop.exception.ErrorCode;
 import com.coze.loop.http.HttpClient;
 import com.coze.loop.internal.ValidationUtils;
+import com.coze.loop.prompt.GetPromptParam;
 import com.coze.loop.prompt.PromptProvider;
 import com.coze.loop.trace.CozeLoopTracerProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Builder for creating CozeLoopClient instances.
  */
 public class CozeLoopClientBuilder {
+    private static final Logger logger = LoggerFactory.getLogger(CozeLoopClientBuilder.class);
+    
     private CozeLoopConfig config;
     private Auth auth;
     
@@ -66,6 +76,41 @@ public class CozeLoopClientBuilder {
         return this;
     }
     
+    /**
+     * Fetch prompts into the cache while the client is built (optional).
+     * By default {@link #build()} waits for them; see {@link #preloadAsync(boolean)}.
+     *
+     * @param prompts the prompts to preload
+     * @return this builder
+     */
+    public CozeLoopClientBuilder preloadPrompts(List<GetPromptParam> prompts) {
+        config.setPreloadPrompts(new ArrayList<>(prompts));
+        return this;
+    }
+    
+    /**
+     * Fetch a prompt into the cache while the client is built (optional).
+     *
+     * @param prompt the prompt to preload
+     * @return this builder
+     */
+    public CozeLoopClientBuilder preloadPrompt(GetPromptParam prompt) {
+        config.getPreloadPrompts().add(prompt);
+        return this;
+    }
+    
+    /**
+     * Return from {@link #build()} without waiting for the preload (optional, default: false).
+     * {@link CozeLoopClient#promptsReady()} completes when the preload does.
+     *
+     * @param async whether to preload in the background
+     * @return this builder
+     */
+    public CozeLoopClientBuilder preloadAsync(boolean async) {
+        config.setPreloadAsync(async);
+        return this;
+    }
+    
     /**
      * Use token authentication.
      *
@@ -132,20 +177,40 @@ public class CozeLoopClientBuilder {
                 config.getExecutePromptEndpoint(),
                 config.getExecuteStreamingPromptEndpoint(),
                 config.getWorkspaceId(),
-                config.getPromptCacheConfig()
+                config.getPromptCacheConfig(),
+                config.getHttpConfig().getStreamThreads()
             );
             
+            // Warm up the prompt cache
+            CompletableFuture<Void> promptsReady = promptProvider.preload(config.getPreloadPrompts());
+            if (!config.isPreloadAsync()) {
+                awaitPreload(promptsReady);
+            }
+            
             // Create client implementation
             return new CozeLoopClientImpl(
                 config.getWorkspaceId(),
                 tracerProvider,
                 promptProvider,
-                httpClient
+                httpClient,
+                promptsReady
             );
         } catch (Exception e) {
             throw new CozeLoopException(ErrorCode.INTERNAL_ERROR,
                 "Failed to create CozeLoopClient", e);
         }
     }
+    
+    /**
+     * Wait for a synchronous preload. A failed preload does not fail the build: the prompts it
+     * could not fetch are loaded on first use instead.
+     */
+    private static void awaitPreload(CompletableFuture<Void> promptsReady) {
+        try {
+            promptsReady.join();
+        } catch (CompletionException e) {
+            logger.warn("Prompt preload incomplete, remaining prompts load on first use", e.getCause());
+        }
+    }
 }
 
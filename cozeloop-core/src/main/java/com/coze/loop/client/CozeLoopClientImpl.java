@@ -7,9 +7,12 @@ import com.coze.loop.entity.Prompt;
 import com.coze.loop.exception.CozeLoopException;
 import com.coze.loop.exception.ErrorCode;
 import com.coze.loop.http.HttpClient;
+import com.coze.loop.internal.ValidationUtils;
 import com.coze.loop.prompt.GetPromptParam;
 import com.coze.loop.prompt.PromptProvider;
+import com.coze.loop.stream.StreamListener;
 import com.coze.loop.stream.StreamReader;
+import com.coze.loop.stream.StreamSubscription;
 import com.coze.loop.trace.CozeLoopSpan;
 import com.coze.loop.trace.CozeLoopTracerProvider;
 import io.opentelemetry.api.common.AttributeKey;
@@ -22,6 +25,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -36,6 +41,7 @@ public class CozeLoopClientImpl implements CozeLoopClient {
     private final PromptProvider promptProvider;
     private final HttpClient httpClient;
     private final Tracer tracer;
+    private final CompletableFuture<Void> promptsReady;
     
     private final AtomicBoolean closed = new AtomicBoolean(false);
     
@@ -43,11 +49,20 @@ public class CozeLoopClientImpl implements CozeLoopClient {
                               CozeLoopTracerProvider tracerProvider,
                               PromptProvider promptProvider,
                               HttpClient httpClient) {
+        this(workspaceId, tracerProvider, promptProvider, httpClient, CompletableFuture.completedFuture(null));
+    }
+    
+    public CozeLoopClientImpl(String workspaceId,
+                              CozeLoopTracerProvider tracerProvider,
+                              PromptProvider promptProvider,
+                              HttpClient httpClient,
+                              CompletableFuture<Void> promptsReady) {
         this.workspaceId = workspaceId;
         this.tracerProvider = tracerProvider;
         this.promptProvider = promptProvider;
         this.httpClient = httpClient;
         this.tracer = tracerProvider.getTracer(INSTRUMENTATION_NAME);
+        this.promptsReady = promptsReady;
         
         logger.info("CozeLoop client initialized for workspace: {}", workspaceId);
     }
@@ -72,7 +87,8 @@ public class CozeLoopClientImpl implements CozeLoopClient {
         Span span = spanBuilder.startSpan();
         Scope scope = span.makeCurrent();
         
-        return new CozeLoopSpan(span, scope);
+        return new CozeLoopSpan(span, scope, tracerProvider.getTraceConfig(),
+            tracerProvider.getDeferredPayloads());
     }
     
     @Override
@@ -89,6 +105,23 @@ public class CozeLoopClientImpl implements CozeLoopClient {
         return promptProvider.getPrompt(param);
     }
     
+    @Override
+    public CompletableFuture<Prompt> getPromptAsync(GetPromptParam param) {
+        checkNotClosed();
+        return promptProvider.getPromptAsync(param);
+    }
+    
+    @Override
+    public List<Prompt> getPrompts(List<GetPromptParam> params) {
+        checkNotClosed();
+        return promptProvider.getPrompts(params);
+    }
+    
+    @Override
+    public CompletableFuture<Void> promptsReady() {
+        return promptsReady;
+    }
+    
     @Override
     public List<Message> formatPrompt(Prompt prompt, Map<String, Object> variables) {
         checkNotClosed();
@@ -101,6 +134,13 @@ public class CozeLoopClientImpl implements CozeLoopClient {
         return promptProvider.getAndFormat(param, variables);
     }
     
+    @Override
+    public CompletableFuture<List<Message>> getAndFormatPromptAsync(GetPromptParam param,
+                                                                    Map<String, Object> variables) {
+        checkNotClosed();
+        return promptProvider.getAndFormatAsync(param, variables);
+    }
+    
     @Override
     public void invalidatePromptCache(GetPromptParam param) {
         checkNotClosed();
@@ -110,13 +150,62 @@ public class CozeLoopClientImpl implements CozeLoopClient {
     @Override
     public ExecuteResult execute(ExecuteParam param) {
         checkNotClosed();
-        return promptProvider.execute(param);
+        ValidationUtils.requireNonNull(param, "param");
+        ExecuteSpan span = ExecuteSpan.start(tracer, tracerProvider, param, false);
+        try {
+            ExecuteResult result = promptProvider.execute(param);
+            span.end(result, null);
+            return result;
+        } catch (RuntimeException e) {
+            span.end(null, e);
+            throw e;
+        }
+    }
+    
+    @Override
+    public CompletableFuture<ExecuteResult> executeAsync(ExecuteParam param) {
+        checkNotClosed();
+        ValidationUtils.requireNonNull(param, "param");
+        ExecuteSpan span = ExecuteSpan.start(tracer, tracerProvider, param, false);
+        CompletableFuture<ExecuteResult> future;
+        try {
+            future = promptProvider.executeAsync(param);
+        } catch (RuntimeException e) {
+            span.end(null, e);
+            throw e;
+        }
+        // Ended on the thread completing the call
+        return future.whenComplete((result, error) ->
+            span.end(result, error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error));
     }
     
     @Override
     public StreamReader<ExecuteResult> executeStreaming(ExecuteParam param) {
         checkNotClosed();
-        return promptProvider.executeStreaming(param);
+        ValidationUtils.requireNonNull(param, "param");
+        ExecuteSpan span = ExecuteSpan.start(tracer, tracerProvider, param, true);
+        try {
+            return new TracedStreamReader(promptProvider.executeStreaming(param), span);
+        } catch (RuntimeException e) {
+            span.endStream(e, false);
+            throw e;
+        }
+    }
+    
+    @Override
+    public StreamSubscription executeStreaming(ExecuteParam param, StreamListener<? super ExecuteResult> listener) {
+        checkNotClosed();
+        ValidationUtils.requireNonNull(param, "param");
+        ExecuteSpan span = ExecuteSpan.start(tracer, tracerProvider, param, true);
+        ExecuteSpan.TracedListener traced = span.traceListener(listener);
+        try {
+            promptProvider.executeStreaming(param, traced);
+        } catch (RuntimeException e) {
+            span.endStream(e, false);
+            throw e;
+        }
+        return traced;
     }
     
     // ========== Client Management ==========
@@ -139,6 +228,13 @@ public class CozeLoopClientImpl implements CozeLoopClient {
                 logger.error("Error shutting down tracer provider", e);
             }
             
+            try {
+                // Stop batching prompt fetches
+                promptProvider.close();
+            } catch (Exception e) {
+                logger.error("Error closing prompt provider", e);
+            }
+            
             try {
                 // Close HTTP client
                 httpClient.close();
@@ -0,0 +1,240 @@
+package com.coze.loop.client;
+
+import com.coze.loop.entity.ExecuteParam;
+import com.coze.loop.entity.ExecuteResult;
+import com.coze.loop.entity.TokenUsage;
+import com.coze.loop.stream.StreamAccumulator;
+import com.coze.loop.stream.StreamListener;
+import com.coze.loop.stream.StreamSubscription;
+import com.coze.loop.trace.CozeLoopSpan;
+import com.coze.loop.trace.CozeLoopTracerProvider;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@code model} span of one prompt execution.
+ *
+ * <p>The span is started as a child of the caller's current context but is not made current
+ * itself, because a streamed execution ends on whichever thread finishes or closes the stream.
+ * It is ended exactly once, by the first of completion, failure or close, on that thread;
+ * ending only hands the span to the span processor, so the reader is not blocked.
+ *
+ * <p>Streamed chunks are merged by a {@link StreamAccumulator} when the span is recording, and
+ * the span records:
+ * <ul>
+ *   <li>{@code llm.time_to_first_token_ms}: from the start of the call to the first token</li>
+ *   <li>{@code llm.chunk_count}: the number of chunks received</li>
+ *   <li>{@code llm.inter_chunk_latency.mean_ms}/{@code .max_ms}: latency between token chunks</li>
+ *   <li>{@code llm.inter_chunk_latency.le_<n>ms}/{@code .gt_<n>ms}: the latency histogram, one
+ *       tag per bucket of {@link StreamAccumulator#LATENCY_BUCKET_BOUNDS_MILLIS}</li>
+ *   <li>{@code llm.output_tokens_per_second}: output tokens over the time from the first token</li>
+ *   <li>the {@link TokenUsage} tokens, the finish reason and the assembled output message</li>
+ * </ul>
+ * A span that is not recording, e.g. sampled out, costs only its creation.
+ */
+final class ExecuteSpan {
+    static final String SPAN_NAME = "PromptExecute";
+    static final String SPAN_TYPE = "model";
+    
+    private final CozeLoopSpan span;
+    // Null when the span is not recording
+    private final StreamAccumulator accumulator;
+    private final AtomicBoolean ended = new AtomicBoolean();
+    
+    private ExecuteSpan(CozeLoopSpan span, StreamAccumulator accumulator) {
+        this.span = span;
+        this.accumulator = accumulator;
+    }
+    
+    /**
+     * Start the span of an execution.
+     */
+    static ExecuteSpan start(Tracer tracer, CozeLoopTracerProvider tracerProvider, ExecuteParam param,
+                             boolean streaming) {
+        Span otelSpan = tracer.spanBuilder(SPAN_NAME)
+            .setAttribute(AttributeKey.stringKey("span.type"), SPAN_TYPE)
+            .startSpan();
+        CozeLoopSpan span = new CozeLoopSpan(otelSpan, Scope.noop(), tracerProvider.getTraceConfig(),
+            tracerProvider.getDeferredPayloads());
+        if (!otelSpan.isRecording()) {
+            return new ExecuteSpan(span, null);
+        }
+        
+        span.setAttribute("prompt.key", param.getPromptKey());
+        span.setAttribute("prompt.version", param.getVersion());
+        span.setAttribute("prompt.label", param.getLabel());
+        span.setAttribute("llm.streaming", streaming);
+        Map<String, Object> input = new LinkedHashMap<>();
+        if (param.getVariableVals() != null) {
+            input.put("variable_vals", new LinkedHashMap<>(param.getVariableVals()));
+        }
+        if (param.getMessages() != null) {
+            input.put("messages", param.getMessages());
+        }
+        span.setInput(input);
+        return new ExecuteSpan(span, new StreamAccumulator());
+    }
+    
+    /**
+     * Record a streamed chunk.
+     */
+    void onChunk(ExecuteResult chunk) {
+        if (accumulator != null && !ended.get()) {
+            accumulator.add(chunk);
+        }
+    }
+    
+    /**
+     * End the span of a streamed execution with the accumulated result.
+     *
+     * @param error the failure, or null
+     * @param closedEarly whether the stream was closed or cancelled before its end
+     */
+    void endStream(Throwable error, boolean closedEarly) {
+        if (!ended.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (accumulator != null) {
+                ExecuteResult result = accumulator.complete();
+                recordStreamMetrics();
+                recordResult(result);
+                if (closedEarly) {
+                    span.setAttribute("llm.stream.closed_early", true);
+                }
+            }
+            span.setError(error);
+        } finally {
+            span.close();
+        }
+    }
+    
+    /**
+     * End the span of a non-streamed execution.
+     *
+     * @param result the result, or null
+     * @param error the failure, or null
+     */
+    void end(ExecuteResult result, Throwable error) {
+        if (!ended.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (accumulator != null && result != null) {
+                recordResult(result);
+            }
+            span.setError(error);
+        } finally {
+            span.close();
+        }
+    }
+    
+    private void recordStreamMetrics() {
+        span.setAttribute("llm.chunk_count", (long) accumulator.getChunkCount());
+        long ttft = accumulator.getTimeToFirstTokenNanos();
+        if (ttft < 0) {
+            return;
+        }
+        span.setAttribute("llm.time_to_first_token_ms", toMillis(ttft));
+        if (accumulator.getMeanInterTokenLatencyNanos() >= 0) {
+            span.setAttribute("llm.inter_chunk_latency.mean_ms", toMillis(accumulator.getMeanInterTokenLatencyNanos()));
+            span.setAttribute("llm.inter_chunk_latency.max_ms", toMillis(accumulator.getMaxInterTokenLatencyNanos()));
+            long[] histogram = accumulator.getInterTokenLatencyHistogram();
+            long[] bounds = StreamAccumulator.LATENCY_BUCKET_BOUNDS_MILLIS;
+            for (int i = 0; i < histogram.length; i++) {
+                String bucket = i < bounds.length ? "le_" + bounds[i] : "gt_" + bounds[bounds.length - 1];
+                span.setAttribute("llm.inter_chunk_latency." + bucket + "ms", histogram[i]);
+            }
+        }
+        TokenUsage usage = accumulator.getUsage();
+        long generationNanos = accumulator.getDurationNanos() - ttft;
+        if (usage != null && generationNanos > 0) {
+            span.setAttribute("llm.output_tokens_per_second",
+                usage.getOutputTokens() * (double) TimeUnit.SECONDS.toNanos(1) / generationNanos);
+        }
+    }
+    
+    private void recordResult(ExecuteResult result) {
+        TokenUsage usage = result.getUsage();
+        if (usage != null) {
+            span.setInputTokens(usage.getInputTokens());
+            span.setOutputTokens(usage.getOutputTokens());
+            span.setTotalTokens((long) usage.getInputTokens() + usage.getOutputTokens());
+        }
+        span.setAttribute("llm.finish_reason", result.getFinishReason());
+        if (result.getMessage() != null) {
+            span.setOutput(result.getMessage());
+        }
+    }
+    
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+    
+    /**
+     * Wrap a stream listener so that its chunks are recorded and the stream's end, failure or
+     * cancellation ends this span.
+     */
+    TracedListener traceListener(StreamListener<? super ExecuteResult> listener) {
+        return new TracedListener(listener);
+    }
+    
+    /**
+     * A listener recording into this span, and the subscription handed to the wrapped listener.
+     */
+    final class TracedListener implements StreamListener<ExecuteResult>, StreamSubscription {
+        private final StreamListener<? super ExecuteResult> listener;
+        private volatile StreamSubscription subscription;
+        
+        private TracedListener(StreamListener<? super ExecuteResult> listener) {
+            this.listener = listener;
+        }
+        
+        @Override
+        public void onSubscribe(StreamSubscription subscription) {
+            this.subscription = subscription;
+            listener.onSubscribe(this);
+        }
+        
+        @Override
+        public void onChunk(ExecuteResult chunk) {
+            ExecuteSpan.this.onChunk(chunk);
+            listener.onChunk(chunk);
+        }
+        
+        @Override
+        public void onComplete() {
+            endStream(null, false);
+            listener.onComplete();
+        }
+        
+        @Override
+        public void onError(Throwable error) {
+            endStream(error, false);
+            listener.onError(error);
+        }
+        
+        @Override
+        public void request(long n) {
+            subscription.request(n);
+        }
+        
+        @Override
+        public void cancel() {
+            subscription.cancel();
+            endStream(null, true);
+        }
+        
+        @Override
+        public boolean isCancelled() {
+            return subscription.isCancelled();
+        }
+    }
+}
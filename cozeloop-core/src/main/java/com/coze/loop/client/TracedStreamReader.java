@@ -0,0 +1,52 @@
+package com.coze.loop.client;
+
+import com.coze.loop.entity.ExecuteResult;
+import com.coze.loop.stream.StreamReader;
+
+import java.io.IOException;
+
+/**
+ * A stream reader recording its chunks into an {@link ExecuteSpan}, which is ended when the
+ * stream reaches its end, fails or is closed.
+ */
+final class TracedStreamReader extends StreamReader<ExecuteResult> {
+    private final StreamReader<ExecuteResult> delegate;
+    private final ExecuteSpan span;
+    
+    TracedStreamReader(StreamReader<ExecuteResult> delegate, ExecuteSpan span) {
+        super(null, null);
+        this.delegate = delegate;
+        this.span = span;
+    }
+    
+    @Override
+    public ExecuteResult recv() throws Exception {
+        ExecuteResult chunk;
+        try {
+            chunk = delegate.recv();
+        } catch (Exception e) {
+            span.endStream(e, false);
+            throw e;
+        }
+        if (chunk == null) {
+            span.endStream(null, false);
+        } else {
+            span.onChunk(chunk);
+        }
+        return chunk;
+    }
+    
+    @Override
+    public boolean isClosed() {
+        return delegate.isClosed();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            span.endStream(null, true);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.coze.loop.config;
 
 import com.coze.loop.http.HttpConfig;
+import com.coze.loop.prompt.GetPromptParam;
 import com.coze.loop.prompt.PromptCache;
 import com.coze.loop.trace.CozeLoopTracerProvider;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Main configuration for CozeLoop Client.
  */
@@ -16,6 +20,11 @@ public class CozeLoopConfig {
     private CozeLoopTracerProvider.TraceConfig traceConfig;
     private PromptCache.PromptCacheConfig promptCacheConfig;
     
+    // Prompts fetched into the cache when the client is built
+    private List<GetPromptParam> preloadPrompts = new ArrayList<>();
+    // Whether build() returns before the preload completes
+    private boolean preloadAsync = false;
+    
     public CozeLoopConfig() {
         this.httpConfig = HttpConfig.builder().build();
         this.traceConfig = CozeLoopTracerProvider.TraceConfig.builder().build();
@@ -71,6 +80,22 @@ public class CozeLoopConfig {
         this.promptCacheConfig = promptCacheConfig;
     }
     
+    public List<GetPromptParam> getPreloadPrompts() {
+        return preloadPrompts;
+    }
+    
+    public void setPreloadPrompts(List<GetPromptParam> preloadPrompts) {
+        this.preloadPrompts = preloadPrompts;
+    }
+    
+    public boolean isPreloadAsync() {
+        return preloadAsync;
+    }
+    
+    public void setPreloadAsync(boolean preloadAsync) {
+        this.preloadAsync = preloadAsync;
+    }
+    
     /**
      * Get span endpoint URL.
      */
@@ -143,6 +168,31 @@ public class CozeLoopConfig {
             return this;
         }
         
+        /**
+         * Prompts to fetch into the cache when the client is built.
+         */
+        public Builder preloadPrompts(List<GetPromptParam> prompts) {
+            config.preloadPrompts = new ArrayList<>(prompts);
+            return this;
+        }
+        
+        /**
+         * Add a prompt to fetch into the cache when the client is built.
+         */
+        public Builder preloadPrompt(GetPromptParam prompt) {
+            config.preloadPrompts.add(prompt);
+            return this;
+        }
+        
+        /**
+         * Return from client build() without waiting for the preload; wait on
+         * {@code CozeLoopClient.promptsReady()} instead.
+         */
+        public Builder preloadAsync(boolean async) {
+            config.preloadAsync = async;
+            return this;
+        }
+        
         public CozeLoopConfig build() {
             return config;
         }
@@ -1,5 +1,6 @@
 package com.coze.loop.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.Map;
@@ -71,6 +72,14 @@ public class UploadSpan {
     @JsonProperty("tags_bool")
     private Map<String, Boolean> tagsBool;
     
+    /** Full input when the stored one was truncated and diverted; uploaded as a file, never serialized */
+    @JsonIgnore
+    private String inputOverflow;
+    
+    /** Full output when the stored one was truncated and diverted; uploaded as a file, never serialized */
+    @JsonIgnore
+    private String outputOverflow;
+    
     public UploadSpan() {
     }
     
@@ -242,5 +251,20 @@ public class UploadSpan {
     public void setTagsBool(Map<String, Boolean> tagsBool) {
         this.tagsBool = tagsBool;
     }
+    
+    public String getInputOverflow() {
+        return inputOverflow;
+    }
+    
+    public void setInputOverflow(String inputOverflow) {
+        this.inputOverflow = inputOverflow;
+    }
+    
+    public String getOutputOverflow() {
+        return outputOverflow;
+    }
+    
+    public void setOutputOverflow(String outputOverflow) {
+        this.outputOverflow = outputOverflow;
+    }
 }
-
@@ -0,0 +1,28 @@
+package com.coze.loop.exception;
+
+/**
+ * Exception for HTTP responses with a non-successful status code.
+ */
+public class HttpStatusException extends CozeLoopException {
+    private static final long serialVersionUID = 1L;
+    
+    private final int statusCode;
+    
+    public HttpStatusException(int statusCode, String message) {
+        super(ErrorCode.NETWORK_ERROR, message);
+        this.statusCode = statusCode;
+    }
+    
+    public int getStatusCode() {
+        return statusCode;
+    }
+    
+    /**
+     * Whether the request may succeed if sent again (server errors, 408 and 429).
+     *
+     * @return true if the failure is transient
+     */
+    public boolean isRetryable() {
+        return statusCode >= 500 || statusCode == 408 || statusCode == 429;
+    }
+}
@@ -0,0 +1,33 @@
+package com.coze.loop.http;
+
+import okio.Sink;
+
+import java.io.IOException;
+
+/**
+ * Codec used to compress HTTP request bodies.
+ * 
+ * <p>The SDK ships with gzip ({@link GzipCompressionCodec}). Other algorithms can be
+ * plugged in by implementing this interface and either registering the codec with
+ * {@link CompressionCodecs#register(CompressionCodec)} or listing it in
+ * {@code META-INF/services/com.coze.loop.http.CompressionCodec} for {@link java.util.ServiceLoader}
+ * discovery. Codecs are selected by their {@code Content-Encoding} token.
+ */
+public interface CompressionCodec {
+    /**
+     * Get the {@code Content-Encoding} token for this codec (e.g., "gzip", "zstd").
+     *
+     * @return the content encoding
+     */
+    String getEncoding();
+    
+    /**
+     * Wrap a sink so that bytes written to the returned sink are compressed into {@code sink}.
+     * Closing the returned sink must finish the compressed stream and close {@code sink}.
+     *
+     * @param sink the destination sink
+     * @return a compressing sink
+     * @throws IOException if the compressor cannot be created
+     */
+    Sink compress(Sink sink) throws IOException;
+}
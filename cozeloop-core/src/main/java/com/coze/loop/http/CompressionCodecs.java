@@ -0,0 +1,62 @@
+package com.coze.loop.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of request body compression codecs, keyed by content encoding.
+ * 
+ * <p>Gzip is always available. Additional codecs are discovered once via
+ * {@link ServiceLoader} and can also be registered programmatically.
+ */
+public final class CompressionCodecs {
+    private static final Logger logger = LoggerFactory.getLogger(CompressionCodecs.class);
+    private static final Map<String, CompressionCodec> CODECS = new ConcurrentHashMap<>();
+    
+    static {
+        register(new GzipCompressionCodec());
+        try {
+            for (CompressionCodec codec : ServiceLoader.load(CompressionCodec.class)) {
+                register(codec);
+            }
+        } catch (ServiceConfigurationError e) {
+            logger.warn("Failed to load compression codecs: {}", e.getMessage());
+        }
+    }
+    
+    private CompressionCodecs() {
+        // Utility class
+    }
+    
+    /**
+     * Register a codec, replacing any codec with the same encoding.
+     *
+     * @param codec the codec to register
+     */
+    public static void register(CompressionCodec codec) {
+        CODECS.put(normalize(codec.getEncoding()), codec);
+    }
+    
+    /**
+     * Find the codec for a content encoding.
+     *
+     * @param encoding the content encoding (case-insensitive)
+     * @return the codec, or null if none is registered
+     */
+    public static CompressionCodec forEncoding(String encoding) {
+        if (encoding == null) {
+            return null;
+        }
+        return CODECS.get(normalize(encoding));
+    }
+    
+    private static String normalize(String encoding) {
+        return encoding.trim().toLowerCase(Locale.ROOT);
+    }
+}
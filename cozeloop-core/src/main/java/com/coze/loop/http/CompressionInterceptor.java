@@ -0,0 +1,115 @@
+package com.coze.loop.http;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+
+import java.io.IOException;
+
+/**
+ * Interceptor to compress request bodies.
+ * 
+ * <p>Only requests tagged with {@link Compressible} are compressed; the {@link HttpClient}
+ * tags span and file uploads, so small prompt calls and streaming requests are sent as-is.
+ * Bodies whose length is known and smaller than the minimum size are sent as-is, since
+ * compressing them costs more than it saves. Bodies of unknown length (streamed JSON) are
+ * always compressed: the {@code Content-Encoding} header must be chosen before the body is
+ * written, so their size cannot be checked without buffering the whole body. Requests that
+ * already carry a {@code Content-Encoding} are left untouched.
+ */
+public class CompressionInterceptor implements Interceptor {
+    /**
+     * Request tag marking a body as eligible for compression.
+     */
+    static final class Compressible {
+        static final Compressible INSTANCE = new Compressible();
+        
+        private Compressible() {
+        }
+    }
+    
+    private final CompressionCodec codec;
+    private final long minSizeBytes;
+    
+    public CompressionInterceptor(CompressionCodec codec, long minSizeBytes) {
+        this.codec = codec;
+        this.minSizeBytes = minSizeBytes;
+    }
+    
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request original = chain.request();
+        RequestBody body = original.body();
+        
+        if (body == null || original.tag(Compressible.class) == null
+                || original.header("Content-Encoding") != null) {
+            return chain.proceed(original);
+        }
+        
+        long contentLength = body.contentLength();
+        if (contentLength >= 0 && contentLength < minSizeBytes) {
+            return chain.proceed(original);
+        }
+        
+        Request compressed = original.newBuilder()
+            .header("Content-Encoding", codec.getEncoding())
+            .method(original.method(), new CompressedRequestBody(body, codec))
+            .build();
+        return chain.proceed(compressed);
+    }
+    
+    /**
+     * Request body that compresses the wrapped body while it is written.
+     */
+    private static final class CompressedRequestBody extends RequestBody {
+        private final RequestBody delegate;
+        private final CompressionCodec codec;
+        
+        CompressedRequestBody(RequestBody delegate, CompressionCodec codec) {
+            this.delegate = delegate;
+            this.codec = codec;
+        }
+        
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+        
+        @Override
+        public long contentLength() {
+            return -1; // Unknown until compressed
+        }
+        
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            // Closing the compressing sink finishes the stream; the underlying sink is shielded
+            // from close because OkHttp still owns it
+            BufferedSink compressedSink = Okio.buffer(codec.compress(new UncloseableSink(sink)));
+            try {
+                delegate.writeTo(compressedSink);
+            } finally {
+                compressedSink.close();
+            }
+        }
+    }
+    
+    /**
+     * Forwards writes and flushes but ignores close, leaving the owner's sink open.
+     */
+    private static final class UncloseableSink extends ForwardingSink {
+        UncloseableSink(Sink delegate) {
+            super(delegate);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
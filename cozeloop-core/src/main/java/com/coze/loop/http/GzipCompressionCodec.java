@@ -0,0 +1,21 @@
+package com.coze.loop.http;
+
+import okio.GzipSink;
+import okio.Sink;
+
+/**
+ * Gzip request body compression.
+ */
+public class GzipCompressionCodec implements CompressionCodec {
+    public static final String ENCODING = "gzip";
+    
+    @Override
+    public String getEncoding() {
+        return ENCODING;
+    }
+    
+    @Override
+    public Sink compress(Sink sink) {
+        return new GzipSink(sink);
+    }
+}
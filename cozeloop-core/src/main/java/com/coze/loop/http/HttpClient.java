@@ -3,12 +3,14 @@ package com.coze.loop.http;
 import com.coze.loop.auth.Auth;
 import com.coze.loop.exception.CozeLoopException;
 import com.coze.loop.exception.ErrorCode;
+import com.coze.loop.exception.HttpStatusException;
 import com.coze.loop.internal.JsonUtils;
 import okhttp3.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -55,10 +57,28 @@ public class HttpClient {
                 TimeUnit.MINUTES))
             .retryOnConnectionFailure(true);
         
+        // Asynchronous calls are queued beyond these limits; every call goes to the same host
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(config.getMaxAsyncRequests());
+        dispatcher.setMaxRequestsPerHost(config.getMaxAsyncRequests());
+        builder.dispatcher(dispatcher);
+        
         // Add interceptors
         builder.addInterceptor(new AuthInterceptor(auth));
         builder.addInterceptor(new RetryInterceptor(config.getMaxRetries()));
         
+        // Compression runs inside the retry loop so every attempt re-encodes the original body;
+        // it only applies to requests the caller tagged as compressible
+        String encoding = config.getRequestCompression();
+        if (encoding != null && !encoding.isEmpty()) {
+            CompressionCodec codec = CompressionCodecs.forEncoding(encoding);
+            if (codec == null) {
+                throw new CozeLoopException(ErrorCode.INVALID_PARAM,
+                    "Unsupported request compression: " + encoding);
+            }
+            builder.addInterceptor(new CompressionInterceptor(codec, config.getCompressionMinSizeBytes()));
+        }
+        
         if (logger.isDebugEnabled()) {
             builder.addInterceptor(new LoggingInterceptor());
         }
@@ -100,6 +120,113 @@ public class HttpClient {
         return execute(request);
     }
     
+    /**
+     * Execute a POST request whose JSON body is streamed into the connection.
+     * 
+     * <p>The writer serializes directly to the request sink, so no String or byte array
+     * holding the whole payload is materialized. Prefer this over {@link #post(String, Object)}
+     * for large or high-frequency payloads.
+     *
+     * @param url the URL
+     * @param writer writes the JSON body; invoked again if the request is retried
+     * @return response body as string
+     */
+    public String postStreaming(String url, JsonBodyWriter writer) {
+        return postStreaming(url, writer, false);
+    }
+    
+    /**
+     * Execute a POST request whose JSON body is streamed into the connection, optionally
+     * compressing it with the configured request compression.
+     *
+     * @param url the URL
+     * @param writer writes the JSON body; invoked again if the request is retried
+     * @param compress whether the body is compressed when request compression is enabled;
+     *                 streamed bodies have no known length, so the minimum size does not apply
+     * @return response body as string
+     * @see HttpConfig#getRequestCompression()
+     */
+    public String postStreaming(String url, JsonBodyWriter writer, boolean compress) {
+        Request request = compressible(new Request.Builder(), compress)
+            .url(url)
+            .post(new JsonStreamingRequestBody(writer))
+            .build();
+        
+        return execute(request);
+    }
+    
+    /**
+     * Execute a POST request with JSON body without blocking the calling thread.
+     * 
+     * <p>The request is enqueued on OkHttp's dispatcher; the future is completed on an OkHttp
+     * thread, so dependent stages should not block. Cancelling the future cancels the call.
+     *
+     * @param url the URL
+     * @param body the request body object
+     * @return future of the response body as string, failing with the exceptions of
+     *         {@link #post(String, Object)}
+     */
+    public CompletableFuture<String> postAsync(String url, Object body) {
+        String json = JsonUtils.toJson(body);
+        RequestBody requestBody = RequestBody.create(json, JSON_MEDIA_TYPE);
+        
+        Request request = new Request.Builder()
+            .url(url)
+            .post(requestBody)
+            .build();
+        
+        return executeAsync(request);
+    }
+    
+    /**
+     * Execute a POST request whose JSON body is streamed into the connection, without blocking
+     * the calling thread.
+     *
+     * @param url the URL
+     * @param writer writes the JSON body; invoked again if the request is retried
+     * @return future of the response body as string
+     * @see #postAsync(String, Object)
+     */
+    public CompletableFuture<String> postStreamingAsync(String url, JsonBodyWriter writer) {
+        Request request = new Request.Builder()
+            .url(url)
+            .post(new JsonStreamingRequestBody(writer))
+            .build();
+        
+        return executeAsync(request);
+    }
+    
+    /**
+     * Execute a POST request with an already serialized JSON body.
+     *
+     * @param url the URL
+     * @param json the UTF-8 encoded JSON body
+     * @return response body as string
+     */
+    public String postJson(String url, byte[] json) {
+        return postJson(url, json, false);
+    }
+    
+    /**
+     * Execute a POST request with an already serialized JSON body, optionally compressing it
+     * with the configured request compression.
+     *
+     * @param url the URL
+     * @param json the UTF-8 encoded JSON body
+     * @param compress whether the body is compressed when request compression is enabled and
+     *                 it reaches the minimum size
+     * @return response body as string
+     * @see HttpConfig#getRequestCompression()
+     */
+    public String postJson(String url, byte[] json, boolean compress) {
+        Request request = compressible(new Request.Builder(), compress)
+            .url(url)
+            .post(RequestBody.create(json, JSON_MEDIA_TYPE))
+            .build();
+        
+        return execute(request);
+    }
+    
     /**
      * Execute a POST request with multipart form data.
      *
@@ -108,7 +235,22 @@ public class HttpClient {
      * @return response body as string
      */
     public String postMultipart(String url, MultipartBody formData) {
-        Request request = new Request.Builder()
+        return postMultipart(url, formData, false);
+    }
+    
+    /**
+     * Execute a POST request with multipart form data, optionally compressing it with the
+     * configured request compression.
+     *
+     * @param url the URL
+     * @param formData the multipart form data
+     * @param compress whether the body is compressed when request compression is enabled and
+     *                 it reaches the minimum size
+     * @return response body as string
+     * @see HttpConfig#getRequestCompression()
+     */
+    public String postMultipart(String url, MultipartBody formData, boolean compress) {
+        Request request = compressible(new Request.Builder(), compress)
             .url(url)
             .post(formData)
             .build();
@@ -116,6 +258,16 @@ public class HttpClient {
         return execute(request);
     }
     
+    /**
+     * Tag the request as eligible for compression by the {@link CompressionInterceptor}.
+     */
+    private static Request.Builder compressible(Request.Builder builder, boolean compress) {
+        if (compress) {
+            builder.tag(CompressionInterceptor.Compressible.class, CompressionInterceptor.Compressible.INSTANCE);
+        }
+        return builder;
+    }
+    
     /**
      * Execute a POST request with JSON body and return Response for streaming.
      * The caller is responsible for closing the Response.
@@ -134,12 +286,116 @@ public class HttpClient {
             .post(requestBody)
             .build();
         
-        Response response = okHttpClient.newCall(request).execute();
+        return executeStream(request);
+    }
+    
+    /**
+     * Execute a POST request whose JSON body is streamed into the connection, and return
+     * Response for streaming.
+     * The caller is responsible for closing the Response.
+     *
+     * @param url the URL
+     * @param writer writes the JSON body; invoked again if the request is retried
+     * @return Response object for streaming
+     * @throws IOException if the request fails
+     */
+    public Response postStream(String url, JsonBodyWriter writer) throws IOException {
+        Request request = new Request.Builder()
+            .url(url)
+            .post(new JsonStreamingRequestBody(writer))
+            .build();
         
+        return executeStream(request);
+    }
+    
+    /**
+     * Execute a POST request whose JSON body is streamed into the connection without blocking
+     * the calling thread, and return Response for streaming.
+     * The caller is responsible for closing the Response; cancelling the future before it
+     * completes cancels the request.
+     *
+     * @param url the URL
+     * @param writer writes the JSON body; invoked again if the request is retried
+     * @return future of the Response object for streaming
+     * @see #postStream(String, JsonBodyWriter)
+     */
+    public CompletableFuture<Response> postStreamAsync(String url, JsonBodyWriter writer) {
+        return executeStreamAsync(newPostStreamCall(url, writer));
+    }
+    
+    /**
+     * Create a POST call whose JSON body is streamed into the connection, to be executed with
+     * {@link #executeStreamAsync(Call)}. Unlike cancelling the future, {@link Call#cancel()}
+     * also aborts a response that is already being read, failing a read blocked on it.
+     *
+     * @param url the URL
+     * @param writer writes the JSON body; invoked again if the request is retried
+     * @return the call, not yet executed
+     */
+    public Call newPostStreamCall(String url, JsonBodyWriter writer) {
+        Request request = new Request.Builder()
+            .url(url)
+            .post(new JsonStreamingRequestBody(writer))
+            .build();
+        
+        return okHttpClient.newCall(request);
+    }
+    
+    /**
+     * Enqueue a streaming call without blocking the calling thread.
+     * The caller is responsible for closing the Response; cancelling the future before it
+     * completes cancels the call.
+     *
+     * @param call a call created by {@link #newPostStreamCall(String, JsonBodyWriter)}
+     * @return future of the Response object for streaming
+     */
+    public CompletableFuture<Response> executeStreamAsync(Call call) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(
+                    new CozeLoopException(ErrorCode.NETWORK_ERROR, "HTTP request failed", e));
+            }
+            
+            @Override
+            public void onResponse(Call call, Response response) {
+                try {
+                    if (!future.complete(checkStream(response))) {
+                        // Cancelled meanwhile
+                        response.close();
+                    }
+                } catch (IOException e) {
+                    future.completeExceptionally(
+                        new CozeLoopException(ErrorCode.NETWORK_ERROR, "HTTP request failed", e));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        future.whenComplete((response, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+    
+    /**
+     * Execute the request, keeping the response open.
+     */
+    private Response executeStream(Request request) throws IOException {
+        return checkStream(okHttpClient.newCall(request).execute());
+    }
+    
+    /**
+     * Return a streaming response, or close it and fail on an unsuccessful status.
+     */
+    private static Response checkStream(Response response) throws IOException {
         if (!response.isSuccessful()) {
             String errorBody = response.body() != null ? response.body().string() : "";
             response.close();
-            throw new CozeLoopException(ErrorCode.NETWORK_ERROR,
+            throw new HttpStatusException(response.code(),
                 String.format("HTTP request failed with code: %d, body: %s",
                     response.code(), errorBody));
         }
@@ -152,24 +408,64 @@ public class HttpClient {
      */
     private String execute(Request request) {
         try (Response response = okHttpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = response.body() != null ? response.body().string() : "";
-                throw new CozeLoopException(ErrorCode.NETWORK_ERROR,
-                    String.format("HTTP request failed with code: %d, body: %s",
-                        response.code(), errorBody));
+            return readBody(response);
+        } catch (IOException e) {
+            throw new CozeLoopException(ErrorCode.NETWORK_ERROR, "HTTP request failed", e);
+        }
+    }
+    
+    /**
+     * Enqueue the request.
+     */
+    private CompletableFuture<String> executeAsync(Request request) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Call call = okHttpClient.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(
+                    new CozeLoopException(ErrorCode.NETWORK_ERROR, "HTTP request failed", e));
             }
             
-            // Log Content-Type for debugging
-            String contentType = response.header("Content-Type");
-            if (logger.isDebugEnabled() && contentType != null) {
-                logger.debug("Response Content-Type: {}", contentType);
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response closing = response) {
+                    future.complete(readBody(closing));
+                } catch (IOException e) {
+                    future.completeExceptionally(
+                        new CozeLoopException(ErrorCode.NETWORK_ERROR, "HTTP request failed", e));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
             }
-            
-            ResponseBody body = response.body();
-            return body != null ? body.string() : "";
-        } catch (IOException e) {
-            throw new CozeLoopException(ErrorCode.NETWORK_ERROR, "HTTP request failed", e);
+        });
+        future.whenComplete((body, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+    
+    /**
+     * Read the body of a response, failing on an unsuccessful status.
+     */
+    private String readBody(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            String errorBody = response.body() != null ? response.body().string() : "";
+            throw new HttpStatusException(response.code(),
+                String.format("HTTP request failed with code: %d, body: %s",
+                    response.code(), errorBody));
+        }
+        
+        // Log Content-Type for debugging
+        String contentType = response.header("Content-Type");
+        if (logger.isDebugEnabled() && contentType != null) {
+            logger.debug("Response Content-Type: {}", contentType);
         }
+        
+        ResponseBody body = response.body();
+        return body != null ? body.string() : "";
     }
     
     /**
@@ -10,6 +10,18 @@ public class HttpConfig {
     private int maxIdleConnections = 5;
     private int keepAliveDurationMinutes = 5;
     private int maxRetries = 3;
+    // Content-Encoding used to compress span and file upload bodies (e.g. "gzip", see
+    // CompressionCodecs); null disables compression. Bodies smaller than
+    // compressionMinSizeBytes are sent as-is; streamed bodies of unknown length are always
+    // compressed.
+    private String requestCompression;
+    private long compressionMinSizeBytes = 1024;
+    // Concurrent asynchronous requests (OkHttp dispatcher limit); all requests go to one host,
+    // so this is also the per-host limit
+    private int maxAsyncRequests = 64;
+    // Threads reading pushed response streams; streams with outstanding demand take turns on
+    // them one chunk at a time, so more streams than threads wait instead of failing
+    private int streamThreads = 16;
     
     public HttpConfig() {
     }
@@ -63,6 +75,38 @@ public class HttpConfig {
         this.maxRetries = maxRetries;
     }
     
+    public String getRequestCompression() {
+        return requestCompression;
+    }
+    
+    public void setRequestCompression(String requestCompression) {
+        this.requestCompression = requestCompression;
+    }
+    
+    public long getCompressionMinSizeBytes() {
+        return compressionMinSizeBytes;
+    }
+    
+    public void setCompressionMinSizeBytes(long compressionMinSizeBytes) {
+        this.compressionMinSizeBytes = compressionMinSizeBytes;
+    }
+    
+    public int getMaxAsyncRequests() {
+        return maxAsyncRequests;
+    }
+    
+    public void setMaxAsyncRequests(int maxAsyncRequests) {
+        this.maxAsyncRequests = maxAsyncRequests;
+    }
+    
+    public int getStreamThreads() {
+        return streamThreads;
+    }
+    
+    public void setStreamThreads(int streamThreads) {
+        this.streamThreads = streamThreads;
+    }
+    
     public static Builder builder() {
         return new Builder();
     }
@@ -100,6 +144,26 @@ public class HttpConfig {
             return this;
         }
         
+        public Builder requestCompression(String encoding) {
+            config.requestCompression = encoding;
+            return this;
+        }
+        
+        public Builder compressionMinSizeBytes(long bytes) {
+            config.compressionMinSizeBytes = bytes;
+            return this;
+        }
+        
+        public Builder maxAsyncRequests(int max) {
+            config.maxAsyncRequests = max;
+            return this;
+        }
+        
+        public Builder streamThreads(int threads) {
+            config.streamThreads = threads;
+            return this;
+        }
+        
         public HttpConfig build() {
             return config;
         }
@@ -0,0 +1,22 @@
+package com.coze.loop.http;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Writes a JSON request body directly to a Jackson {@link JsonGenerator}.
+ * 
+ * <p>Implementations must be repeatable: the body may be written more than once
+ * when the request is retried.
+ */
+@FunctionalInterface
+public interface JsonBodyWriter {
+    /**
+     * Write the JSON body.
+     *
+     * @param generator the generator bound to the request sink
+     * @throws IOException if writing fails
+     */
+    void writeTo(JsonGenerator generator) throws IOException;
+}
@@ -0,0 +1,52 @@
+package com.coze.loop.http;
+
+import com.coze.loop.internal.JsonUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+
+/**
+ * Request body that serializes JSON straight into the OkHttp sink.
+ * 
+ * <p>Unlike {@code RequestBody.create(JsonUtils.toJson(body), ...)}, no intermediate
+ * String or byte array holding the whole payload is built: the {@link JsonBodyWriter}
+ * emits tokens into a Jackson {@link JsonGenerator} backed by the Okio
+ * {@link BufferedSink}, which encodes UTF-8 into pooled segments as it goes.
+ * 
+ * <p>The content length is unknown, so the body is sent with chunked transfer encoding.
+ */
+public class JsonStreamingRequestBody extends RequestBody {
+    static final MediaType JSON_MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
+    
+    private final JsonBodyWriter writer;
+    
+    public JsonStreamingRequestBody(JsonBodyWriter writer) {
+        this.writer = writer;
+    }
+    
+    @Override
+    public MediaType contentType() {
+        return JSON_MEDIA_TYPE;
+    }
+    
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+    
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        // The sink is owned by OkHttp, so the generator must not close it
+        JsonGenerator generator = JsonUtils.getMapper().getFactory()
+            .createGenerator(sink.outputStream())
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try {
+            writer.writeTo(generator);
+        } finally {
+            generator.close();
+        }
+    }
+}
@@ -51,8 +51,8 @@ public class RetryInterceptor implements Interceptor {
                     return response;
                 }
                 
-                // Close the unsuccessful response body
-                if (response.body() != null) {
+                // Close the unsuccessful response body, unless it is returned below
+                if (attempt < maxRetries && response.body() != null) {
                     response.body().close();
                 }
                 
@@ -1,11 +1,15 @@
 package com.coze.loop.internal;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
+import java.io.IOException;
+
 /**
  * JSON utility class for serialization and deserialization.
  */
@@ -14,6 +18,10 @@ public final class JsonUtils {
         .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
         .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
     
+    // Streaming writer: values are appended to an open generator, which is flushed once by its owner
+    private static final ObjectWriter STREAMING_WRITER = MAPPER.writer()
+        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    
     private JsonUtils() {
         // Utility class
     }
@@ -38,6 +46,20 @@ public final class JsonUtils {
         }
     }
     
+    /**
+     * Write an object to an open JSON generator.
+     * 
+     * <p>Unlike {@code ObjectMapper.writeValue(JsonGenerator, Object)}, the generator is not
+     * flushed after each value, so many values can be streamed into one buffered sink.
+     *
+     * @param generator the generator to write to
+     * @param value the object to write
+     * @throws IOException if writing fails
+     */
+    public static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        STREAMING_WRITER.writeValue(generator, value);
+    }
+    
     /**
      * Parse JSON string to object.
      *
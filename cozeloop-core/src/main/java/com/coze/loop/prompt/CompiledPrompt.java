@@ -0,0 +1,143 @@
+package com.coze.loop.prompt;
+
+import com.coze.loop.entity.ContentPart;
+import com.coze.loop.entity.Message;
+import com.coze.loop.entity.Prompt;
+import com.coze.loop.entity.ToolCall;
+import com.coze.loop.entity.VariableType;
+import com.coze.loop.exception.ErrorCode;
+import com.coze.loop.exception.PromptException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A prompt prepared by {@link PromptFormatter#compile(Prompt)} for repeated formatting.
+ *
+ * <p>Everything that does not depend on the variables is done once: the message templates are
+ * compiled by the prompt's template engine, the variable definitions are reduced to the checks
+ * that can fail, and texts without placeholders are marked static so they are never rendered.
+ * {@link #format(Map)} then only validates and binds the variables, building the messages
+ * directly instead of deep-copying the template's messages first.
+ *
+ * <p>Instances are immutable and thread-safe. {@link PromptCache} keeps one next to each cached
+ * prompt.
+ */
+public final class CompiledPrompt {
+    private final Prompt prompt;
+    private final VariableValidator validator;
+    // Variables to type-check, in definition order
+    private final String[] checkedKeys;
+    private final VariableType[] checkedTypes;
+    private final MessagePlan[] messages;
+    // Set when the prompt cannot be formatted; format() fails with it
+    private final String invalidReason;
+    
+    CompiledPrompt(Prompt prompt, VariableValidator validator, List<String> checkedKeys,
+                   List<VariableType> checkedTypes, List<MessagePlan> messages, String invalidReason) {
+        this.prompt = prompt;
+        this.validator = validator;
+        this.checkedKeys = checkedKeys.toArray(new String[0]);
+        this.checkedTypes = checkedTypes.toArray(new VariableType[0]);
+        this.messages = messages.toArray(new MessagePlan[0]);
+        this.invalidReason = invalidReason;
+    }
+    
+    /**
+     * Get the prompt this was compiled from.
+     *
+     * @return the prompt
+     */
+    public Prompt getPrompt() {
+        return prompt;
+    }
+    
+    /**
+     * Format the prompt messages with variables.
+     * The returned messages are new objects owned by the caller.
+     *
+     * @param variables the variables to substitute; null is treated as empty
+     * @return formatted messages
+     */
+    public List<Message> format(Map<String, Object> variables) {
+        if (invalidReason != null) {
+            throw new PromptException(ErrorCode.INVALID_PARAM, invalidReason);
+        }
+        if (variables == null) {
+            variables = Collections.emptyMap();
+        }
+        
+        for (int i = 0; i < checkedKeys.length; i++) {
+            Object value = variables.get(checkedKeys[i]);
+            if (value != null) {
+                validator.validateType(checkedKeys[i], value, checkedTypes[i]);
+            }
+        }
+        
+        List<Message> formatted = new ArrayList<>(messages.length);
+        for (MessagePlan message : messages) {
+            formatted.add(message.bind(variables));
+        }
+        return formatted;
+    }
+    
+    /**
+     * A template message with its content and text parts compiled.
+     */
+    static final class MessagePlan {
+        private final Message source;
+        // Null when the content is static
+        private final CompiledTemplate content;
+        // Null when the message has no parts
+        private final PartPlan[] parts;
+        
+        MessagePlan(Message source, CompiledTemplate content, List<PartPlan> parts) {
+            this.source = source;
+            this.content = content;
+            this.parts = parts != null ? parts.toArray(new PartPlan[0]) : null;
+        }
+        
+        Message bind(Map<String, Object> variables) {
+            Message message = new Message(source.getRole());
+            message.setReasoningContent(source.getReasoningContent());
+            message.setContent(content != null ? content.render(variables) : source.getContent());
+            message.setToolCallId(source.getToolCallId());
+            if (parts != null) {
+                List<ContentPart> boundParts = new ArrayList<>(parts.length);
+                for (PartPlan part : parts) {
+                    boundParts.add(part.bind(variables));
+                }
+                message.setParts(boundParts);
+            }
+            List<ToolCall> toolCalls = source.getToolCalls();
+            if (toolCalls != null) {
+                message.setToolCalls(new ArrayList<>(toolCalls));
+            }
+            return message;
+        }
+    }
+    
+    /**
+     * A template content part with its text compiled.
+     */
+    static final class PartPlan {
+        private final ContentPart source;
+        // Null when the part is not a templated text
+        private final CompiledTemplate text;
+        
+        PartPlan(ContentPart source, CompiledTemplate text) {
+            this.source = source;
+            this.text = text;
+        }
+        
+        ContentPart bind(Map<String, Object> variables) {
+            ContentPart part = source.deepCopy();
+            if (text != null) {
+                part.setText(text.render(variables));
+            }
+            return part;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.coze.loop.prompt;
+
+import java.util.Map;
+
+/**
+ * A template parsed once by a {@link TemplateEngine} and rendered many times.
+ * Implementations are immutable and thread-safe.
+ */
+public interface CompiledTemplate {
+    /**
+     * Render the template with variables.
+     *
+     * @param variables the variables to substitute
+     * @return rendered string
+     */
+    String render(Map<String, Object> variables);
+}
@@ -0,0 +1,127 @@
+package com.coze.loop.prompt;
+
+import com.coze.loop.entity.ContentPart;
+import com.coze.loop.entity.ExecuteParam;
+import com.coze.loop.entity.Message;
+import com.coze.loop.exception.ErrorCode;
+import com.coze.loop.exception.PromptException;
+import com.coze.loop.http.JsonBodyWriter;
+import com.coze.loop.internal.JsonUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the execute request body straight into the request sink.
+ *
+ * <p><b>Request Format:</b>
+ * <pre>
+ * {
+ *   "workspace_id": "...",
+ *   "prompt_identifier": {"prompt_key": "...", "version": "...", "label": "..."},
+ *   "variable_vals": [{"key": "...", "value": "..." | "placeholder_messages": [...] | "multi_part_values": [...]}],
+ *   "messages": [...]
+ * }
+ * </pre>
+ * Variable values are written by type: strings as {@code value}, messages as
+ * {@code placeholder_messages}, content parts as {@code multi_part_values}, anything else as
+ * its JSON text in {@code value}.
+ *
+ * <p>No intermediate map graph or whole-body String is built. The parameters are validated
+ * when the writer is created, so a bad parameter fails before the request is sent; the writer
+ * can be invoked again when the request is retried.
+ */
+final class ExecuteRequestWriter implements JsonBodyWriter {
+    private final String workspaceId;
+    private final ExecuteParam param;
+    
+    ExecuteRequestWriter(String workspaceId, ExecuteParam param) {
+        if (param.getVariableVals() != null) {
+            for (Map.Entry<String, Object> entry : param.getVariableVals().entrySet()) {
+                if (entry.getValue() == null) {
+                    throw new PromptException(ErrorCode.INVALID_PARAM,
+                        "Variable value for key '" + entry.getKey() + "' is null");
+                }
+            }
+        }
+        this.workspaceId = workspaceId;
+        this.param = param;
+    }
+    
+    @Override
+    public void writeTo(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("workspace_id", workspaceId);
+        
+        generator.writeObjectFieldStart("prompt_identifier");
+        generator.writeStringField("prompt_key", param.getPromptKey());
+        if (param.getVersion() != null && !param.getVersion().isEmpty()) {
+            generator.writeStringField("version", param.getVersion());
+        }
+        if (param.getLabel() != null && !param.getLabel().isEmpty()) {
+            generator.writeStringField("label", param.getLabel());
+        }
+        generator.writeEndObject();
+        
+        if (param.getVariableVals() != null && !param.getVariableVals().isEmpty()) {
+            generator.writeArrayFieldStart("variable_vals");
+            for (Map.Entry<String, Object> entry : param.getVariableVals().entrySet()) {
+                writeVariableVal(generator, entry.getKey(), entry.getValue());
+            }
+            generator.writeEndArray();
+        }
+        
+        if (param.getMessages() != null && !param.getMessages().isEmpty()) {
+            generator.writeArrayFieldStart("messages");
+            for (Message message : param.getMessages()) {
+                JsonUtils.writeValue(generator, message);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+    
+    private static void writeVariableVal(JsonGenerator generator, String key, Object value) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("key", key);
+        if (value instanceof String) {
+            generator.writeStringField("value", (String) value);
+        } else if (value instanceof Message) {
+            generator.writeArrayFieldStart("placeholder_messages");
+            JsonUtils.writeValue(generator, value);
+            generator.writeEndArray();
+        } else if (value instanceof ContentPart) {
+            generator.writeArrayFieldStart("multi_part_values");
+            JsonUtils.writeValue(generator, value);
+            generator.writeEndArray();
+        } else if (value instanceof List && !((List<?>) value).isEmpty()
+                && ((List<?>) value).get(0) instanceof Message) {
+            generator.writeFieldName("placeholder_messages");
+            JsonUtils.writeValue(generator, value);
+        } else if (value instanceof List && !((List<?>) value).isEmpty()
+                && ((List<?>) value).get(0) instanceof ContentPart) {
+            generator.writeFieldName("multi_part_values");
+            JsonUtils.writeValue(generator, value);
+        } else {
+            // Other types: serialize to JSON string
+            generator.writeStringField("value", JsonUtils.toJson(value));
+        }
+        generator.writeEndObject();
+    }
+    
+    /**
+     * Render the body as a String, for debug logging.
+     */
+    String toJson() {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = JsonUtils.getMapper().getFactory().createGenerator(out)) {
+            writeTo(generator);
+        } catch (IOException e) {
+            return "<unavailable: " + e.getMessage() + ">";
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.coze.loop.prompt;
+
+import com.coze.loop.entity.ExecuteResult;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Body of an execute response, bound in one pass by Jackson.
+ *
+ * <p><b>Response Format:</b>
+ * <pre>
+ * {"data": {"message": {...}, "finish_reason": "...", "usage": {...}}}
+ * </pre>
+ * Streaming execute sends the {@code data} object of each chunk as an SSE event.
+ */
+final class ExecuteResponse {
+    private ExecuteResult data;
+    // Whether the data field was present, possibly as null
+    private boolean hasData;
+    
+    ExecuteResult getData() {
+        return data;
+    }
+    
+    boolean hasData() {
+        return hasData;
+    }
+    
+    @JsonProperty("data")
+    void setData(ExecuteResult data) {
+        this.data = data;
+        this.hasData = true;
+    }
+}
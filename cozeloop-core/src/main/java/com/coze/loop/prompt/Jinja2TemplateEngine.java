@@ -2,23 +2,45 @@ package com.coze.loop.prompt;
 
 import com.coze.loop.exception.ErrorCode;
 import com.coze.loop.exception.PromptException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.hubspot.jinjava.Jinjava;
 import com.hubspot.jinjava.JinjavaConfig;
-import com.hubspot.jinjava.interpret.RenderResult;
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.TemplateError;
+import com.hubspot.jinjava.tree.Node;
 
+import java.util.List;
 import java.util.Map;
 
 /**
  * Jinja2 template engine using JinJava library.
+ *
+ * <p>Templates are parsed once into a JinJava node tree and cached by template content, bounded
+ * to {@link #MAX_CACHED_TEMPLATES} entries. Each render evaluates the cached tree with a fresh
+ * interpreter and context, so renders stay isolated from each other and safe to run concurrently.
+ *
+ * <p>JinJava copies its global context (all tags, filters and functions) for every render because
+ * rendering records state in parent contexts. The copy costs more than evaluating a typical prompt,
+ * so each thread keeps its own copy instead, cleared after every render.
  */
 public class Jinja2TemplateEngine implements TemplateEngine {
+    static final int MAX_CACHED_TEMPLATES = 1024;
+    
+    private final JinjavaConfig config;
     private final Jinjava jinjava;
+    private final ThreadLocal<Context> globalContexts;
+    private final Cache<String, CompiledTemplate> compiledTemplates = Caffeine.newBuilder()
+        .maximumSize(MAX_CACHED_TEMPLATES)
+        .build();
     
     public Jinja2TemplateEngine() {
-        JinjavaConfig config = JinjavaConfig.newBuilder()
+        this.config = JinjavaConfig.newBuilder()
             .withFailOnUnknownTokens(false)
             .build();
         this.jinjava = new Jinjava(config);
+        this.globalContexts = ThreadLocal.withInitial(jinjava::getGlobalContextCopy);
     }
     
     @Override
@@ -26,22 +48,78 @@ public class Jinja2TemplateEngine implements TemplateEngine {
         if (template == null || template.isEmpty()) {
             return template;
         }
-        
+        return compile(template).render(variables);
+    }
+    
+    @Override
+    public CompiledTemplate compile(String template) {
+        if (template == null || template.isEmpty()) {
+            return variables -> template;
+        }
+        return compiledTemplates.get(template, this::parse);
+    }
+    
+    /**
+     * Parse a template into a node tree. Syntax errors are kept and reported on every render,
+     * as rendering the raw template would.
+     */
+    private CompiledTemplate parse(String template) {
+        JinjavaInterpreter interpreter = newInterpreter(null);
         try {
-            RenderResult result = jinjava.renderForResult(template, variables);
-            
-            if (result.hasErrors()) {
+            Node tree = interpreter.parse(template);
+            List<TemplateError> errors = interpreter.getErrorsCopy();
+            if (!errors.isEmpty()) {
+                return variables -> {
+                    throw new PromptException(ErrorCode.TEMPLATE_RENDER_ERROR,
+                        "Jinja2 template render errors: " + errors);
+                };
+            }
+            return variables -> render(tree, variables);
+        } catch (Exception e) {
+            // Not cached as a failure: the next render parses again and reports the error
+            throw new PromptException(ErrorCode.TEMPLATE_RENDER_ERROR,
+                "Failed to render Jinja2 template", e);
+        } finally {
+            release();
+        }
+    }
+    
+    private String render(Node tree, Map<String, Object> variables) {
+        JinjavaInterpreter interpreter = newInterpreter(variables);
+        try {
+            String output = interpreter.render(tree, true);
+            List<TemplateError> errors = interpreter.getErrorsCopy();
+            if (!errors.isEmpty()) {
                 throw new PromptException(ErrorCode.TEMPLATE_RENDER_ERROR,
-                    "Jinja2 template render errors: " + result.getErrors());
+                    "Jinja2 template render errors: " + errors);
             }
-            
-            return result.getOutput();
+            return output;
         } catch (PromptException e) {
             throw e;
         } catch (Exception e) {
             throw new PromptException(ErrorCode.TEMPLATE_RENDER_ERROR,
                 "Failed to render Jinja2 template", e);
+        } finally {
+            release();
         }
     }
-}
 
+    /**
+     * Create an interpreter the way {@link Jinjava#renderForResult} does, on this thread's copy
+     * of the global context.
+     */
+    private JinjavaInterpreter newInterpreter(Map<String, Object> variables) {
+        Context context = new Context(globalContexts.get(), variables, config.getDisabled());
+        JinjavaInterpreter interpreter = config.getInterpreterFactory().newInstance(jinjava, context, config);
+        JinjavaInterpreter.pushCurrent(interpreter);
+        return interpreter;
+    }
+    
+    /**
+     * Clear what the render recorded in this thread's global context.
+     */
+    private void release() {
+        JinjavaInterpreter.popCurrent();
+        globalContexts.get().reset();
+    }
+}
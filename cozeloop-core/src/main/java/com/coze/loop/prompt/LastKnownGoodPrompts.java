@@ -0,0 +1,117 @@
+package com.coze.loop.prompt;
+
+import com.coze.loop.entity.Prompt;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The last prompts successfully fetched from the server, persisted to a {@link PromptSnapshotStore}.
+ *
+ * <p>{@link PromptProvider} restores them at startup to fill the cache before the first network
+ * call, and serves them when fetching a prompt that is not cached fails for any reason other
+ * than the prompt not existing. The set is bounded by the cache's maximum size and written to the snapshot file
+ * every {@code intervalSeconds} when it changed, and once more on {@link #close()}.
+ */
+final class LastKnownGoodPrompts {
+    private static final Logger logger = LoggerFactory.getLogger(LastKnownGoodPrompts.class);
+    
+    private final PromptSnapshotStore store;
+    private final Cache<String, Prompt> prompts;
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final ScheduledThreadPoolExecutor scheduler;
+    
+    /**
+     * @param store the snapshot file
+     * @param maxSize the maximum number of prompts kept
+     * @param intervalSeconds how often changes are written; 0 writes only on close
+     */
+    LastKnownGoodPrompts(PromptSnapshotStore store, long maxSize, long intervalSeconds) {
+        this.store = store;
+        this.prompts = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .build();
+        if (intervalSeconds > 0) {
+            this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "cozeloop-prompt-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.scheduler.scheduleWithFixedDelay(this::save, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+    
+    /**
+     * Read the snapshot file. A missing or unreadable file yields no prompts.
+     *
+     * @return the restored prompts by cache key
+     */
+    Map<String, Prompt> restore() {
+        Map<String, Prompt> restored;
+        try {
+            restored = store.load();
+        } catch (IOException e) {
+            logger.warn("Failed to read prompt snapshot {}", store.getPath(), e);
+            return new LinkedHashMap<>();
+        }
+        prompts.putAll(restored);
+        logger.info("Restored {} prompt(s) from snapshot {}", restored.size(), store.getPath());
+        return restored;
+    }
+    
+    Prompt get(String cacheKey) {
+        return prompts.getIfPresent(cacheKey);
+    }
+    
+    /**
+     * Remember a prompt fetched from the server.
+     */
+    void record(String cacheKey, Prompt prompt) {
+        prompts.put(cacheKey, prompt);
+        dirty.set(true);
+    }
+    
+    /**
+     * Forget a prompt the server no longer has.
+     */
+    void forget(String cacheKey) {
+        if (prompts.asMap().remove(cacheKey) != null) {
+            dirty.set(true);
+        }
+    }
+    
+    /**
+     * Write the snapshot file if anything changed since the last write.
+     */
+    synchronized void save() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            store.save(new LinkedHashMap<>(prompts.asMap()));
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            logger.warn("Failed to write prompt snapshot {}", store.getPath(), e);
+        }
+    }
+    
+    /**
+     * Stop the periodic writes and write pending changes.
+     */
+    void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        save();
+    }
+}
@@ -0,0 +1,43 @@
+package com.coze.loop.prompt;
+
+import com.coze.loop.entity.Prompt;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Body of an mget response, bound in one pass by Jackson.
+ *
+ * <p><b>Response Format:</b>
+ * <pre>
+ * {"data": {"items": [{"query": {"prompt_key": "...", "version": "...", "label": "..."}, "prompt": {...}}]}}
+ * </pre>
+ */
+final class MPullResponse {
+    @JsonProperty("data")
+    Data data;
+    
+    static final class Data {
+        @JsonProperty("items")
+        List<Item> items;
+    }
+    
+    static final class Item {
+        @JsonProperty("query")
+        Query query;
+        
+        @JsonProperty("prompt")
+        Prompt prompt;
+    }
+    
+    static final class Query {
+        @JsonProperty("prompt_key")
+        String promptKey;
+        
+        @JsonProperty("version")
+        String version;
+        
+        @JsonProperty("label")
+        String label;
+    }
+}
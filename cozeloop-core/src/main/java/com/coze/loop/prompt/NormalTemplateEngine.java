@@ -2,52 +2,181 @@ package com.coze.loop.prompt;
 
 import com.coze.loop.exception.ErrorCode;
 import com.coze.loop.exception.PromptException;
-import org.apache.commons.text.StringSubstitutor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
- * Normal template engine using Apache Commons Text.
+ * Normal template engine.
  * Supports ${variable} and {{variable}} placeholders.
+ *
+ * <p>Templates are compiled once into a list of literal and variable segments and rendered in
+ * a single pass, so the cost of a render is linear in the output size regardless of the number
+ * of variables. Compiled templates are cached by template content (which identifies a prompt
+ * version's message), bounded to {@link #MAX_CACHED_TEMPLATES} entries.
+ *
+ * <p><b>Placeholder Syntax:</b>
+ * <ul>
+ *   <li>{@code ${name}} is replaced by the variable, or kept as is if the variable is absent</li>
+ *   <li>{@code ${name:-default}} falls back to {@code default} if the variable is absent</li>
+ *   <li>{@code $${name}} escapes the placeholder and renders as {@code ${name}}</li>
+ *   <li>{@code {{name}}} is replaced by the variable, or kept as is if the variable is absent</li>
+ * </ul>
+ * Null values render as the empty string. Substituted values are inserted verbatim; placeholders
+ * inside them are not expanded.
  */
 public class NormalTemplateEngine implements TemplateEngine {
+    static final int MAX_CACHED_TEMPLATES = 1024;
+    private static final String DEFAULT_DELIMITER = ":-";
+    
+    private final Cache<String, CompiledTemplate> compiledTemplates = Caffeine.newBuilder()
+        .maximumSize(MAX_CACHED_TEMPLATES)
+        .build();
     
     @Override
     public String render(String template, Map<String, Object> variables) {
         if (template == null || template.isEmpty()) {
             return template;
         }
+        return compile(template).render(variables);
+    }
+    
+    @Override
+    public CompiledTemplate compile(String template) {
+        if (template == null || template.isEmpty()) {
+            return variables -> template;
+        }
+        return compiledTemplates.get(template, Compiled::parse);
+    }
+    
+    /**
+     * A template split into segments.
+     */
+    private static final class Compiled implements CompiledTemplate {
+        private static final int LITERAL = 0;
+        private static final int DOLLAR = 1;
+        private static final int BRACES = 2;
+        // Expected length of a substituted value, for sizing the output
+        private static final int VALUE_LENGTH_ESTIMATE = 16;
         
-        try {
-            // Handle null variables
-            if (variables == null) {
-                variables = new HashMap<>();
+        private final int[] kinds;
+        // Literal text, or the variable name
+        private final String[] texts;
+        // Default values of ${name:-default}
+        private final String[] defaults;
+        private final int sizeEstimate;
+        
+        private Compiled(List<Integer> kinds, List<String> texts, List<String> defaults) {
+            int count = kinds.size();
+            this.kinds = new int[count];
+            this.texts = texts.toArray(new String[0]);
+            this.defaults = defaults.toArray(new String[0]);
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                this.kinds[i] = kinds.get(i);
+                size += this.kinds[i] == LITERAL ? this.texts[i].length() : VALUE_LENGTH_ESTIMATE;
             }
-            
-            // Convert all values to strings
-            Map<String, String> stringVars = new HashMap<>();
-            for (Map.Entry<String, Object> entry : variables.entrySet()) {
-                String value = entry.getValue() != null ? 
-                    String.valueOf(entry.getValue()) : "";
-                stringVars.put(entry.getKey(), value);
+            this.sizeEstimate = size;
+        }
+        
+        static Compiled parse(String template) {
+            List<Integer> kinds = new ArrayList<>();
+            List<String> texts = new ArrayList<>();
+            List<String> defaults = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            int length = template.length();
+            int i = 0;
+            while (i < length) {
+                char c = template.charAt(i);
+                if (c == '$' && template.startsWith("$${", i)) {
+                    literal.append("${");
+                    i += 3;
+                    continue;
+                }
+                if (c == '$' && template.startsWith("${", i)) {
+                    int end = template.indexOf('}', i + 2);
+                    if (end > i + 2) {
+                        flush(literal, kinds, texts, defaults);
+                        String name = template.substring(i + 2, end);
+                        String defaultValue = null;
+                        int delimiter = name.indexOf(DEFAULT_DELIMITER);
+                        if (delimiter >= 0) {
+                            defaultValue = name.substring(delimiter + DEFAULT_DELIMITER.length());
+                            name = name.substring(0, delimiter);
+                        }
+                        kinds.add(DOLLAR);
+                        texts.add(name);
+                        defaults.add(defaultValue);
+                        i = end + 1;
+                        continue;
+                    }
+                }
+                if (c == '{' && template.startsWith("{{", i)) {
+                    int end = template.indexOf("}}", i + 2);
+                    // The name follows the last "{{" before the close: "{{{a}}}" is "{" + {{a}} + "}"
+                    int start = end < 0 ? -1 : template.lastIndexOf("{{", end - 2);
+                    if (start >= i && end > start + 2) {
+                        literal.append(template, i, start);
+                        flush(literal, kinds, texts, defaults);
+                        kinds.add(BRACES);
+                        texts.add(template.substring(start + 2, end));
+                        defaults.add(null);
+                        i = end + 2;
+                        continue;
+                    }
+                }
+                literal.append(c);
+                i++;
+            }
+            flush(literal, kinds, texts, defaults);
+            return new Compiled(kinds, texts, defaults);
+        }
+        
+        private static void flush(StringBuilder literal, List<Integer> kinds, List<String> texts,
+                                  List<String> defaults) {
+            if (literal.length() > 0) {
+                kinds.add(LITERAL);
+                texts.add(literal.toString());
+                defaults.add(null);
+                literal.setLength(0);
             }
-            
-            // Replace ${variable} style
-            StringSubstitutor substitutor = new StringSubstitutor(stringVars);
-            String result = substitutor.replace(template);
-            
-            // Replace {{variable}} style
-            for (Map.Entry<String, String> entry : stringVars.entrySet()) {
-                String placeholder = "{{" + entry.getKey() + "}}";
-                result = result.replace(placeholder, entry.getValue());
+        }
+        
+        @Override
+        public String render(Map<String, Object> variables) {
+            if (variables == null) {
+                variables = Collections.emptyMap();
+            }
+            try {
+                StringBuilder out = new StringBuilder(sizeEstimate);
+                for (int i = 0; i < kinds.length; i++) {
+                    String text = texts[i];
+                    if (kinds[i] == LITERAL) {
+                        out.append(text);
+                    } else if (variables.containsKey(text)) {
+                        Object value = variables.get(text);
+                        if (value != null) {
+                            out.append(value);
+                        }
+                    } else if (kinds[i] == DOLLAR) {
+                        if (defaults[i] != null) {
+                            out.append(defaults[i]);
+                        } else {
+                            out.append("${").append(text).append('}');
+                        }
+                    } else {
+                        out.append("{{").append(text).append("}}");
+                    }
+                }
+                return out.toString();
+            } catch (Exception e) {
+                throw new PromptException(ErrorCode.TEMPLATE_RENDER_ERROR,
+                    "Failed to render normal template", e);
             }
-            
-            return result;
-        } catch (Exception e) {
-            throw new PromptException(ErrorCode.TEMPLATE_RENDER_ERROR, 
-                "Failed to render normal template", e);
         }
     }
 }
-
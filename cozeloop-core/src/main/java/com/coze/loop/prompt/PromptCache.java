@@ -1,23 +1,67 @@
 package com.coze.loop.prompt;
 
 import com.coze.loop.entity.Prompt;
+import com.coze.loop.exception.ErrorCode;
+import com.coze.loop.exception.PromptException;
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
 import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
 /**
  * Cache for prompts using Caffeine.
- * Supports LRU eviction and automatic refresh.
+ * Supports LRU eviction and stale-while-revalidate refresh.
+ *
+ * <p><b>Stale-while-revalidate:</b>
+ * An entry is fresh for {@code refreshAfterWriteMinutes}, shifted by up to
+ * {@code refreshJitter} of it either way so that entries (and pods) written together do not
+ * refresh together. A read of an entry past its refresh time returns the stale value at once
+ * and reloads it in the background; a failed reload keeps the stale value and is retried a
+ * little later. An entry not replaced within {@code expireAfterWriteMinutes} of its write
+ * expires, bounding how stale a served prompt can be; the next read then waits for the load.
+ *
+ * <p><b>Negative Caching:</b>
+ * A load failing with {@link ErrorCode#PROMPT_NOT_FOUND} is cached for
+ * {@code negativeCacheSeconds}, failing reads of the missing prompt without asking the server
+ * again. Other failures are not cached.
+ *
+ * <p><b>Fallback:</b>
+ * A cache built with a fallback serves the fallback's prompt when loading a key that is not
+ * cached fails for a reason other than {@link ErrorCode#PROMPT_NOT_FOUND}, and retries the load
+ * on a read after a short delay. A failed refresh never falls back: the stale entry is kept,
+ * retried and expires as described above.
+ *
+ * <p><b>Compiled Prompts:</b>
+ * Each prompt is compiled by the {@link PromptFormatter} when it is written to the cache, and
+ * {@link #getCompiled(String)} returns the compiled form, so formatting a cached prompt only
+ * binds variables.
  */
 public class PromptCache {
     private static final Logger logger = LoggerFactory.getLogger(PromptCache.class);
+    private static final long MAX_REFRESH_RETRY_NANOS = TimeUnit.MINUTES.toNanos(1);
     
-    private final AsyncLoadingCache<String, Prompt> cache;
+    private final AsyncLoadingCache<String, Entry> cache;
+    private final Ticker ticker;
+    private final long refreshAfterNanos;
+    private final long expireAfterNanos;
+    private final long negativeTtlNanos;
+    private final double refreshJitter;
+    private final PromptFormatter formatter;
+    private final Function<String, Prompt> fallback;
     
     /**
      * Create a PromptCache with custom configuration.
@@ -26,15 +70,77 @@ public class PromptCache {
      * @param loader function to load prompt when not in cache
      */
     public PromptCache(PromptCacheConfig config, Function<String, Prompt> loader) {
+        this(config, (AsyncCacheLoader<String, Prompt>) (key, executor) -> CompletableFuture.supplyAsync(() -> {
+            logger.debug("Loading prompt from source: {}", key);
+            return loader.apply(key);
+        }, executor));
+    }
+    
+    /**
+     * Create a PromptCache with an asynchronous loader.
+     * Loads and refreshes call the loader without blocking a cache thread, so the loader can
+     * batch them.
+     *
+     * @param config cache configuration
+     * @param loader asynchronous loader of prompts not in cache
+     */
+    public PromptCache(PromptCacheConfig config, AsyncCacheLoader<String, Prompt> loader) {
+        this(config, loader, new PromptFormatter());
+    }
+    
+    /**
+     * Create a PromptCache with an asynchronous loader, compiling prompts with the given formatter.
+     *
+     * @param config cache configuration
+     * @param loader asynchronous loader of prompts not in cache
+     * @param formatter compiles the cached prompts
+     */
+    public PromptCache(PromptCacheConfig config, AsyncCacheLoader<String, Prompt> loader,
+                       PromptFormatter formatter) {
+        this(config, loader, formatter, null, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Create a PromptCache whose maintenance and completions run on the given executor.
+     *
+     * @param fallback returns the prompt to serve when loading an uncached key fails, or null;
+     *                 may itself be null
+     */
+    PromptCache(PromptCacheConfig config, AsyncCacheLoader<String, Prompt> loader,
+                PromptFormatter formatter, Function<String, Prompt> fallback, Executor executor) {
+        this(config, loader, formatter, fallback, Ticker.systemTicker(), executor);
+    }
+    
+    /**
+     * Create a PromptCache with a custom clock and executor, for tests.
+     */
+    PromptCache(PromptCacheConfig config, AsyncCacheLoader<String, Prompt> loader,
+                PromptFormatter formatter, Function<String, Prompt> fallback, Ticker ticker,
+                Executor executor) {
+        this.formatter = formatter;
+        this.fallback = fallback;
+        this.ticker = ticker;
+        this.refreshAfterNanos = TimeUnit.MINUTES.toNanos(config.getRefreshAfterWriteMinutes());
+        this.expireAfterNanos = TimeUnit.MINUTES.toNanos(config.getExpireAfterWriteMinutes());
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(config.getNegativeCacheSeconds());
+        this.refreshJitter = Math.max(0, Math.min(1, config.getRefreshJitter()));
         this.cache = Caffeine.newBuilder()
             .maximumSize(config.getMaxSize())
-            .expireAfterWrite(config.getExpireAfterWriteMinutes(), TimeUnit.MINUTES)
-            .refreshAfterWrite(config.getRefreshAfterWriteMinutes(), TimeUnit.MINUTES)
+            .expireAfter(new EntryExpiry())
+            .ticker(ticker)
+            .executor(executor)
             .recordStats()
-            .buildAsync((key, executor) -> CompletableFuture.supplyAsync(() -> {
-                logger.debug("Loading prompt from source: {}", key);
-                return loader.apply(key);
-            }, executor));
+            .buildAsync(new AsyncCacheLoader<String, Entry>() {
+                @Override
+                public CompletableFuture<Entry> asyncLoad(String key, Executor loadExecutor) {
+                    return load(loader, key, loadExecutor, false);
+                }
+                
+                @Override
+                public CompletableFuture<Entry> asyncReload(String key, Entry oldValue, Executor loadExecutor) {
+                    return load(loader, key, loadExecutor, true);
+                }
+            });
     }
     
     /**
@@ -44,7 +150,52 @@ public class PromptCache {
      * @return CompletableFuture of prompt
      */
     public CompletableFuture<Prompt> get(String key) {
-        return cache.get(key);
+        return getEntry(key).thenApply(PromptCache::unwrap);
+    }
+    
+    /**
+     * Get the compiled form of a prompt from cache, loading the prompt if necessary.
+     *
+     * @param key the cache key
+     * @return CompletableFuture of the compiled prompt
+     */
+    public CompletableFuture<CompiledPrompt> getCompiled(String key) {
+        return getEntry(key).thenApply(entry -> unwrap(entry) != null ? entry.compiled : null);
+    }
+    
+    private CompletableFuture<Entry> getEntry(String key) {
+        CompletableFuture<Entry> future = cache.get(key);
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            refreshIfStale(key, future.join());
+        }
+        return future;
+    }
+    
+    /**
+     * Get several prompts from cache, loading the missing ones.
+     *
+     * @param keys the cache keys
+     * @return CompletableFuture of the prompts by cache key
+     */
+    public CompletableFuture<Map<String, Prompt>> getAll(Iterable<String> keys) {
+        return cache.getAll(keys).thenApply(entries -> {
+            Map<String, Prompt> prompts = new LinkedHashMap<>();
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                refreshIfStale(entry.getKey(), entry.getValue());
+                prompts.put(entry.getKey(), unwrap(entry.getValue()));
+            }
+            return prompts;
+        });
+    }
+    
+    /**
+     * Reload entries in the background; the current values are served until the reload
+     * succeeds and kept if it fails.
+     *
+     * @param keys the cache keys
+     */
+    public void refreshAll(Iterable<String> keys) {
+        cache.synchronous().refreshAll(keys);
     }
     
     /**
@@ -55,7 +206,7 @@ public class PromptCache {
      */
     public Prompt getSync(String key) {
         try {
-            return cache.get(key).join();
+            return get(key).join();
         } catch (Exception e) {
             logger.error("Error getting prompt from cache: {}", key, e);
             return null;
@@ -69,7 +220,7 @@ public class PromptCache {
      * @param prompt the prompt
      */
     public void put(String key, Prompt prompt) {
-        cache.put(key, CompletableFuture.completedFuture(prompt));
+        cache.put(key, CompletableFuture.completedFuture(newEntry(prompt)));
     }
     
     /**
@@ -97,6 +248,122 @@ public class PromptCache {
         return cache.synchronous().stats();
     }
     
+    private CompletableFuture<Entry> load(AsyncCacheLoader<String, Prompt> loader, String key, Executor executor,
+                                          boolean reload) {
+        CompletableFuture<? extends Prompt> future;
+        try {
+            future = loader.asyncLoad(key, executor);
+        } catch (Exception e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        return future.handle((prompt, error) -> {
+            if (error == null) {
+                return prompt != null ? newEntry(prompt) : null;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+            boolean notFound = cause instanceof PromptException
+                && ((PromptException) cause).getErrorCode() == ErrorCode.PROMPT_NOT_FOUND;
+            if (notFound && negativeTtlNanos > 0) {
+                logger.debug("Caching absence of prompt {}", key);
+                return new Entry(null, null, cause.getMessage(), negativeTtlNanos, Long.MAX_VALUE);
+            }
+            Prompt lastKnown = !notFound && !reload && fallback != null ? fallback.apply(key) : null;
+            if (lastKnown != null) {
+                logger.warn("Loading prompt {} failed, serving last-known-good version: {}", key, cause.toString());
+                return new Entry(lastKnown, formatter.compile(lastKnown), null, expireAfterNanos,
+                    ticker.read() + retryDelayNanos());
+            }
+            throw cause instanceof CompletionException ? (CompletionException) cause : new CompletionException(cause);
+        });
+    }
+    
+    private Entry newEntry(Prompt prompt) {
+        return new Entry(prompt, formatter.compile(prompt), null, expireAfterNanos,
+            ticker.read() + jittered(refreshAfterNanos));
+    }
+    
+    /**
+     * Start a background reload of an entry past its refresh time, unless one is running.
+     */
+    private void refreshIfStale(String key, Entry entry) {
+        if (entry == null || entry.prompt == null || ticker.read() < entry.refreshAtNanos
+                || !entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        cache.synchronous().refresh(key).whenComplete((refreshed, error) -> {
+            if (error != null || refreshed == null || refreshed == entry) {
+                // Still serving the stale entry: try again later
+                entry.refreshAtNanos = ticker.read() + retryDelayNanos();
+                entry.refreshing.set(false);
+            }
+        });
+    }
+    
+    private long retryDelayNanos() {
+        return jittered(Math.min(refreshAfterNanos, MAX_REFRESH_RETRY_NANOS));
+    }
+    
+    private long jittered(long nanos) {
+        if (refreshJitter == 0 || nanos <= 0) {
+            return nanos;
+        }
+        double offset = (ThreadLocalRandom.current().nextDouble() * 2 - 1) * refreshJitter;
+        return nanos + (long) (nanos * offset);
+    }
+    
+    private static Prompt unwrap(Entry entry) {
+        if (entry == null) {
+            return null;
+        }
+        if (entry.prompt == null) {
+            throw new CompletionException(new PromptException(ErrorCode.PROMPT_NOT_FOUND, entry.notFoundMessage));
+        }
+        return entry.prompt;
+    }
+    
+    /**
+     * A cached prompt, or the cached absence of one.
+     */
+    private static final class Entry {
+        private final Prompt prompt;
+        private final CompiledPrompt compiled;
+        private final String notFoundMessage;
+        private final long ttlNanos;
+        private volatile long refreshAtNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+        
+        Entry(Prompt prompt, CompiledPrompt compiled, String notFoundMessage, long ttlNanos,
+              long refreshAtNanos) {
+            this.prompt = prompt;
+            this.compiled = compiled;
+            this.notFoundMessage = notFoundMessage;
+            this.ttlNanos = ttlNanos;
+            this.refreshAtNanos = refreshAtNanos;
+        }
+    }
+    
+    /**
+     * Expires each entry its own TTL after it was written.
+     */
+    private static final class EntryExpiry implements Expiry<String, Entry> {
+        @Override
+        public long expireAfterCreate(String key, Entry entry, long currentTime) {
+            return entry.ttlNanos;
+        }
+        
+        @Override
+        public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+            return entry.ttlNanos;
+        }
+        
+        @Override
+        public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+    
     /**
      * Configuration for prompt cache.
      */
@@ -104,6 +371,13 @@ public class PromptCache {
         private long maxSize = 1000;
         private long expireAfterWriteMinutes = 60;
         private long refreshAfterWriteMinutes = 30;
+        private long fetchBatchWindowMillis = 10;
+        private int fetchMaxBatchSize = 20;
+        private int fetchThreads = 2;
+        private String snapshotPath;
+        private long snapshotIntervalSeconds = 60;
+        private double refreshJitter = 0.1;
+        private long negativeCacheSeconds = 30;
         
         public long getMaxSize() {
             return maxSize;
@@ -129,6 +403,62 @@ public class PromptCache {
             this.refreshAfterWriteMinutes = refreshAfterWriteMinutes;
         }
         
+        public long getFetchBatchWindowMillis() {
+            return fetchBatchWindowMillis;
+        }
+        
+        public void setFetchBatchWindowMillis(long fetchBatchWindowMillis) {
+            this.fetchBatchWindowMillis = fetchBatchWindowMillis;
+        }
+        
+        public int getFetchMaxBatchSize() {
+            return fetchMaxBatchSize;
+        }
+        
+        public void setFetchMaxBatchSize(int fetchMaxBatchSize) {
+            this.fetchMaxBatchSize = fetchMaxBatchSize;
+        }
+        
+        public int getFetchThreads() {
+            return fetchThreads;
+        }
+        
+        public void setFetchThreads(int fetchThreads) {
+            this.fetchThreads = fetchThreads;
+        }
+        
+        public String getSnapshotPath() {
+            return snapshotPath;
+        }
+        
+        public void setSnapshotPath(String snapshotPath) {
+            this.snapshotPath = snapshotPath;
+        }
+        
+        public long getSnapshotIntervalSeconds() {
+            return snapshotIntervalSeconds;
+        }
+        
+        public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+            this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        }
+        
+        public double getRefreshJitter() {
+            return refreshJitter;
+        }
+        
+        public void setRefreshJitter(double refreshJitter) {
+            this.refreshJitter = refreshJitter;
+        }
+        
+        public long getNegativeCacheSeconds() {
+            return negativeCacheSeconds;
+        }
+        
+        public void setNegativeCacheSeconds(long negativeCacheSeconds) {
+            this.negativeCacheSeconds = negativeCacheSeconds;
+        }
+        
         public static Builder builder() {
             return new Builder();
         }
@@ -141,16 +471,82 @@ public class PromptCache {
                 return this;
             }
             
+            /**
+             * Maximum staleness: entries not refreshed within this time of their write expire.
+             */
             public Builder expireAfterWriteMinutes(long minutes) {
                 config.expireAfterWriteMinutes = minutes;
                 return this;
             }
             
+            /**
+             * Freshness: reads after this time serve the entry and refresh it in the background.
+             */
             public Builder refreshAfterWriteMinutes(long minutes) {
                 config.refreshAfterWriteMinutes = minutes;
                 return this;
             }
             
+            /**
+             * How long a cache miss waits for other misses to share its mget request.
+             * 0 sends every miss at once.
+             */
+            public Builder fetchBatchWindowMillis(long millis) {
+                config.fetchBatchWindowMillis = millis;
+                return this;
+            }
+            
+            /**
+             * Maximum number of prompts fetched by one mget request.
+             */
+            public Builder fetchMaxBatchSize(int size) {
+                config.fetchMaxBatchSize = size;
+                return this;
+            }
+            
+            /**
+             * Number of client-owned threads that send mget requests, complete fetches and run
+             * cache maintenance.
+             */
+            public Builder fetchThreads(int threads) {
+                config.fetchThreads = threads;
+                return this;
+            }
+            
+            /**
+             * File keeping the last-known-good prompts across restarts (optional).
+             * Restored prompts fill the cache at startup and are served when fetching an
+             * uncached prompt fails.
+             */
+            public Builder snapshotPath(String path) {
+                config.snapshotPath = path;
+                return this;
+            }
+            
+            /**
+             * How often changed prompts are written to the snapshot file; 0 writes only on close.
+             */
+            public Builder snapshotIntervalSeconds(long seconds) {
+                config.snapshotIntervalSeconds = seconds;
+                return this;
+            }
+            
+            /**
+             * Fraction (0 to 1) by which each entry's refresh time is randomly shifted either way.
+             */
+            public Builder refreshJitter(double jitter) {
+                config.refreshJitter = jitter;
+                return this;
+            }
+            
+            /**
+             * How long a PROMPT_NOT_FOUND result is cached; 0 disables negative caching.
+             */
+            public Builder negativeCacheSeconds(long seconds) {
+                config.negativeCacheSeconds = seconds;
+                return this;
+            }
+            
             public PromptCacheConfig build() {
                 return config;
             }
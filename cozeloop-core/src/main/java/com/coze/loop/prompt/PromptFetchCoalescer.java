@@ -0,0 +1,205 @@
+package com.coze.loop.prompt;
+
+import com.coze.loop.entity.Prompt;
+import com.coze.loop.exception.ErrorCode;
+import com.coze.loop.exception.PromptException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Merges prompt fetches that arrive within a short window into one mget request.
+ *
+ * <p>The first fetch of a window schedules a flush {@code windowMillis} later; fetches arriving
+ * before it join the pending batch, and a batch reaching {@code maxBatchSize} is sent at once.
+ * Concurrent fetches of the same cache key share one future. The batch fetcher returns the
+ * prompts by cache key without blocking; keys missing from its result fail with
+ * {@link ErrorCode#PROMPT_NOT_FOUND}, and a failed request fails every fetch of the batch.
+ */
+final class PromptFetchCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(PromptFetchCoalescer.class);
+    
+    private final Function<List<GetPromptParam>, CompletableFuture<Map<String, Prompt>>> batchFetcher;
+    private final Function<GetPromptParam, String> keyFunction;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Executor fetchExecutor;
+    private final ScheduledThreadPoolExecutor scheduler;
+    
+    private final Object lock = new Object();
+    private Map<String, PendingFetch> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    
+    /**
+     * @param batchFetcher starts fetching a batch of prompts, completing with them by cache key
+     * @param keyFunction computes the cache key of a parameter
+     * @param windowMillis how long to wait for more fetches; 0 sends every fetch at once
+     * @param maxBatchSize the maximum number of prompts per request
+     * @param fetchExecutor starts the batch requests and completes the fetches
+     */
+    PromptFetchCoalescer(Function<List<GetPromptParam>, CompletableFuture<Map<String, Prompt>>> batchFetcher,
+                         Function<GetPromptParam, String> keyFunction,
+                         long windowMillis,
+                         int maxBatchSize,
+                         Executor fetchExecutor) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.batchFetcher = batchFetcher;
+        this.keyFunction = keyFunction;
+        this.windowMillis = Math.max(0, windowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.fetchExecutor = fetchExecutor;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "cozeloop-prompt-fetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+    
+    /**
+     * Fetch a prompt as part of the next batch.
+     *
+     * @param param the prompt to fetch
+     * @return a future completed with the prompt, or exceptionally if it could not be fetched
+     */
+    CompletableFuture<Prompt> fetch(GetPromptParam param) {
+        String cacheKey = keyFunction.apply(param);
+        List<PendingFetch> batch = null;
+        PendingFetch fetch;
+        synchronized (lock) {
+            fetch = pending.get(cacheKey);
+            if (fetch != null) {
+                return fetch.future;
+            }
+            fetch = new PendingFetch(cacheKey, param);
+            pending.put(cacheKey, fetch);
+            if (pending.size() >= maxBatchSize || windowMillis == 0 || scheduler.isShutdown()) {
+                batch = drain();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (batch != null) {
+            dispatch(batch);
+        }
+        return fetch.future;
+    }
+    
+    /**
+     * Send the pending batch, if any.
+     */
+    void flush() {
+        List<PendingFetch> batch;
+        synchronized (lock) {
+            batch = drain();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+    
+    /**
+     * Stop the window timer; pending fetches are sent immediately.
+     */
+    void close() {
+        scheduler.shutdownNow();
+        flush();
+    }
+    
+    /**
+     * Take the pending batch and cancel its timer. Caller holds the lock.
+     */
+    private List<PendingFetch> drain() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<PendingFetch> batch = new ArrayList<>(pending.values());
+        pending = new LinkedHashMap<>();
+        return batch;
+    }
+    
+    private void dispatch(List<PendingFetch> batch) {
+        try {
+            fetchExecutor.execute(() -> execute(batch));
+        } catch (RejectedExecutionException e) {
+            fail(batch, new PromptException(ErrorCode.INTERNAL_ERROR,
+                "Prompt fetch rejected by executor", e));
+        }
+    }
+    
+    private void execute(List<PendingFetch> batch) {
+        List<GetPromptParam> params = new ArrayList<>(batch.size());
+        for (PendingFetch fetch : batch) {
+            params.add(fetch.param);
+        }
+        logger.debug("Fetching {} prompt(s) in one batch", params.size());
+        
+        CompletableFuture<Map<String, Prompt>> request;
+        try {
+            request = batchFetcher.apply(params);
+        } catch (Throwable t) {
+            fail(batch, t);
+            return;
+        }
+        // Complete the fetches off the HTTP client's threads
+        request.whenCompleteAsync((prompts, error) -> {
+            if (error != null) {
+                fail(batch, error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error);
+            } else {
+                complete(batch, prompts);
+            }
+        }, fetchExecutor);
+    }
+    
+    private static void complete(List<PendingFetch> batch, Map<String, Prompt> prompts) {
+        for (PendingFetch fetch : batch) {
+            Prompt prompt = prompts != null ? prompts.get(fetch.cacheKey) : null;
+            if (prompt != null) {
+                fetch.future.complete(prompt);
+            } else {
+                fetch.future.completeExceptionally(new PromptException(ErrorCode.PROMPT_NOT_FOUND,
+                    "Prompt not found: " + fetch.param.getPromptKey()));
+            }
+        }
+    }
+    
+    private static void fail(List<PendingFetch> batch, Throwable error) {
+        for (PendingFetch fetch : batch) {
+            fetch.future.completeExceptionally(error);
+        }
+    }
+    
+    /**
+     * A fetch waiting for its batch to be sent.
+     */
+    private static final class PendingFetch {
+        private final String cacheKey;
+        private final GetPromptParam param;
+        private final CompletableFuture<Prompt> future = new CompletableFuture<>();
+        
+        PendingFetch(String cacheKey, GetPromptParam param) {
+            this.cacheKey = cacheKey;
+            this.param = param;
+        }
+    }
+}
@@ -7,12 +7,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Formatter for prompt messages.
  * Handles template rendering and variable substitution.
+ *
+ * <p>{@link #compile(Prompt)} prepares a prompt once for formatting it many times;
+ * {@link #format(Prompt, Map)} compiles and formats in one call. Template engines cache their
+ * compiled templates, so compiling the same prompt again is cheap.
  */
 public class PromptFormatter {
     private static final Logger logger = LoggerFactory.getLogger(PromptFormatter.class);
@@ -35,22 +40,38 @@ public class PromptFormatter {
      * @return formatted messages
      */
     public List<Message> format(Prompt prompt, Map<String, Object> variables) {
-        if (prompt == null || prompt.getPromptTemplate() == null) {
+        return compile(prompt).format(variables);
+    }
+    
+    /**
+     * Prepare a prompt for repeated formatting.
+     * A prompt without a template compiles, but fails when formatted.
+     *
+     * @param prompt the prompt
+     * @return compiled prompt
+     */
+    public CompiledPrompt compile(Prompt prompt) {
+        if (prompt == null) {
             throw new PromptException(ErrorCode.INVALID_PARAM, "Prompt or template is null");
         }
         
         PromptTemplate template = prompt.getPromptTemplate();
-        
-        // Validate variables
-        if (template.getVariableDefs() != null) {
-            validator.validate(variables, template.getVariableDefs());
+        if (template == null) {
+            return new CompiledPrompt(prompt, validator, Collections.<String>emptyList(),
+                Collections.<VariableType>emptyList(), Collections.<CompiledPrompt.MessagePlan>emptyList(),
+                "Prompt or template is null");
         }
         
-        // Deep copy messages to avoid modifying original
-        List<Message> messages = new ArrayList<>();
-        if (template.getMessages() != null) {
-            for (Message msg : template.getMessages()) {
-                messages.add(msg.deepCopy());
+        // Keep only the variable checks that can fail
+        List<String> checkedKeys = new ArrayList<>();
+        List<VariableType> checkedTypes = new ArrayList<>();
+        if (template.getVariableDefs() != null) {
+            for (VariableDef def : template.getVariableDefs()) {
+                VariableType type = def.getType();
+                if (type != null && type != VariableType.PLACEHOLDER && type != VariableType.MULTI_PART) {
+                    checkedKeys.add(def.getKey());
+                    checkedTypes.add(type);
+                }
             }
         }
         
@@ -64,47 +85,74 @@ public class PromptFormatter {
         TemplateEngine engine = templateType == TemplateType.JINJA2 ? 
             jinja2Engine : normalEngine;
         
-        // Format each message
-        for (Message message : messages) {
-            formatMessage(message, variables, engine);
+        List<CompiledPrompt.MessagePlan> messages = new ArrayList<>();
+        if (template.getMessages() != null) {
+            for (Message message : template.getMessages()) {
+                messages.add(compileMessage(message, templateType, engine));
+            }
         }
-        
-        return messages;
+        return new CompiledPrompt(prompt, validator, checkedKeys, checkedTypes, messages, null);
     }
     
     /**
-     * Format a single message.
+     * Compile a single message.
      */
-    private void formatMessage(Message message, Map<String, Object> variables, 
-                               TemplateEngine engine) {
-        // Format content
-        if (message.getContent() != null && !message.getContent().isEmpty()) {
-            String formatted = engine.render(message.getContent(), variables);
-            message.setContent(formatted);
-        }
+    private CompiledPrompt.MessagePlan compileMessage(Message message, TemplateType templateType,
+                                                      TemplateEngine engine) {
+        CompiledTemplate content = compileText(message.getContent(), templateType, engine);
         
-        // Format parts
+        List<CompiledPrompt.PartPlan> parts = null;
         if (message.getParts() != null) {
+            parts = new ArrayList<>(message.getParts().size());
             for (ContentPart part : message.getParts()) {
-                formatContentPart(part, variables, engine);
+                parts.add(compileContentPart(part, templateType, engine));
             }
         }
+        return new CompiledPrompt.MessagePlan(message, content, parts);
     }
     
     /**
-     * Format a content part.
+     * Compile a content part.
      */
-    private void formatContentPart(ContentPart part, Map<String, Object> variables,
-                                   TemplateEngine engine) {
-        if (part.getType() == ContentType.TEXT && part.getText() != null) {
-            String formatted = engine.render(part.getText(), variables);
-            part.setText(formatted);
+    private CompiledPrompt.PartPlan compileContentPart(ContentPart part, TemplateType templateType,
+                                                       TemplateEngine engine) {
+        CompiledTemplate text = null;
+        if (part.getType() == ContentType.TEXT) {
+            text = compileText(part.getText(), templateType, engine);
         } else if (part.getType() == ContentType.MULTI_PART_VARIABLE) {
             // Handle multi-part variable
             // This is a placeholder for a variable that should be expanded
             // The actual implementation depends on your requirements
             logger.debug("Multi-part variable found in content part");
         }
+        return new CompiledPrompt.PartPlan(part, text);
+    }
+    
+    /**
+     * Compile a text, or return null if it contains no template syntax and is used as is.
+     * A template that fails to compile fails when rendered, as rendering it directly would.
+     */
+    private static CompiledTemplate compileText(String text, TemplateType templateType,
+                                                TemplateEngine engine) {
+        if (text == null || text.isEmpty() || !hasTemplateSyntax(text, templateType)) {
+            return null;
+        }
+        try {
+            return engine.compile(text);
+        } catch (PromptException e) {
+            return variables -> {
+                throw e;
+            };
+        }
+    }
+    
+    private static boolean hasTemplateSyntax(String text, TemplateType templateType) {
+        if (text.contains("{{")) {
+            return true;
+        }
+        if (templateType == TemplateType.JINJA2) {
+            return text.contains("{%") || text.contains("{#");
+        }
+        return text.contains("${");
     }
 }
-
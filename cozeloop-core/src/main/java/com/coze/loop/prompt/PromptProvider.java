@@ -1,36 +1,56 @@
 package com.coze.loop.prompt;
 
-import com.coze.loop.entity.ContentPart;
 import com.coze.loop.entity.ExecuteParam;
 import com.coze.loop.entity.ExecuteResult;
 import com.coze.loop.entity.Message;
 import com.coze.loop.entity.Prompt;
-import com.coze.loop.entity.TokenUsage;
 import com.coze.loop.exception.ErrorCode;
 import com.coze.loop.exception.PromptException;
 import com.coze.loop.http.HttpClient;
+import com.coze.loop.http.HttpConfig;
 import com.coze.loop.internal.JsonUtils;
 import com.coze.loop.internal.ValidationUtils;
 import com.coze.loop.stream.SSEDecoder;
 import com.coze.loop.stream.SSEParser;
+import com.coze.loop.stream.PushStream;
 import com.coze.loop.stream.ServerSentEvent;
+import com.coze.loop.stream.StreamListener;
 import com.coze.loop.stream.StreamReader;
+import com.coze.loop.stream.StreamSubscription;
+import com.fasterxml.jackson.databind.ObjectReader;
+import okhttp3.Call;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * Provider for prompt operations: fetch, cache, and format.
  */
 public class PromptProvider {
     private static final Logger logger = LoggerFactory.getLogger(PromptProvider.class);
+    // Tasks queued for the fetch threads before the submitting thread runs them itself
+    private static final int FETCH_QUEUE_CAPACITY = 1024;
+    // Chunks a stream reads before letting the next stream waiting for a stream thread read
+    private static final int STREAM_CHUNKS_PER_TASK = 1;
+    // Responses are bound into their types in a single streaming pass, without a Map tree
+    private static final ObjectReader MPULL_RESPONSE_READER = JsonUtils.getMapper().readerFor(MPullResponse.class);
+    private static final ObjectReader EXECUTE_RESPONSE_READER = JsonUtils.getMapper().readerFor(ExecuteResponse.class);
+    private static final ObjectReader EXECUTE_RESULT_READER = JsonUtils.getMapper().readerFor(ExecuteResult.class);
     
     private final HttpClient httpClient;
     private final String promptEndpoint;
@@ -41,8 +61,14 @@ public class PromptProvider {
     private final PromptFormatter formatter;
     // Map cacheKey to GetPromptParam for fetching from server
     private final Map<String, GetPromptParam> paramMap = new ConcurrentHashMap<>();
-    // Singleflight map for preventing duplicate requests
-    private final Map<String, CompletableFuture<Prompt>> singleflightMap = new ConcurrentHashMap<>();
+    // Merges concurrent cache misses into batched mget requests
+    private final PromptFetchCoalescer coalescer;
+    // Snapshot-backed fallback for failed fetches, null when no snapshot path is configured
+    private final LastKnownGoodPrompts lastKnownGood;
+    // Sends batches, completes fetches and runs cache maintenance; owned by this provider
+    private final ExecutorService fetchExecutor;
+    // Reads pushed streams while their listeners have demand
+    private final ExecutorService streamExecutor;
     
     public PromptProvider(HttpClient httpClient,
                          String promptEndpoint,
@@ -57,6 +83,21 @@ public class PromptProvider {
                          String executeStreamingEndpoint,
                          String workspaceId,
                          PromptCache.PromptCacheConfig cacheConfig) {
+        this(httpClient, promptEndpoint, executeEndpoint, executeStreamingEndpoint, workspaceId, cacheConfig,
+            new HttpConfig().getStreamThreads());
+    }
+    
+    /**
+     * @param streamThreads number of threads reading pushed execute streams, see
+     *                      {@link HttpConfig.Builder#streamThreads(int)}
+     */
+    public PromptProvider(HttpClient httpClient,
+                         String promptEndpoint,
+                         String executeEndpoint,
+                         String executeStreamingEndpoint,
+                         String workspaceId,
+                         PromptCache.PromptCacheConfig cacheConfig,
+                         int streamThreads) {
         this.httpClient = httpClient;
         this.promptEndpoint = promptEndpoint;
         this.executeEndpoint = executeEndpoint;
@@ -64,8 +105,88 @@ public class PromptProvider {
         this.workspaceId = workspaceId;
         this.formatter = new PromptFormatter();
         
-        // Initialize cache with this provider as the loader
-        this.cache = new PromptCache(cacheConfig, this::fetchPromptFromServer);
+        this.fetchExecutor = newFetchExecutor(cacheConfig.getFetchThreads());
+        this.streamExecutor = newStreamExecutor(streamThreads);
+        
+        this.coalescer = new PromptFetchCoalescer(this::doMPullPrompts, this::buildCacheKey,
+            cacheConfig.getFetchBatchWindowMillis(), cacheConfig.getFetchMaxBatchSize(),
+            fetchExecutor);
+        
+        if (cacheConfig.getSnapshotPath() != null && !cacheConfig.getSnapshotPath().isEmpty()) {
+            this.lastKnownGood = new LastKnownGoodPrompts(
+                new PromptSnapshotStore(Paths.get(cacheConfig.getSnapshotPath())),
+                cacheConfig.getMaxSize(), cacheConfig.getSnapshotIntervalSeconds());
+        } else {
+            this.lastKnownGood = null;
+        }
+        
+        // Initialize cache with this provider as the loader, falling back to the last-known-good
+        // prompts when an uncached prompt cannot be fetched
+        this.cache = new PromptCache(cacheConfig, (cacheKey, executor) -> loadPrompt(cacheKey), formatter,
+            lastKnownGood != null ? lastKnownGood::get : null, fetchExecutor);
+        
+        if (lastKnownGood != null) {
+            restoreSnapshot();
+        }
+    }
+    
+    /**
+     * Create the bounded pool for prompt fetches. Its tasks only start requests and complete
+     * futures, they never wait for a response; when the queue is full, or after close, the
+     * submitting thread runs the task itself so that no fetch is left incomplete.
+     */
+    private static ExecutorService newFetchExecutor(int threads) {
+        int size = Math.max(1, threads);
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(FETCH_QUEUE_CAPACITY),
+            runnable -> {
+                Thread thread = new Thread(runnable, "cozeloop-prompt-worker-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            (runnable, rejectedBy) -> runnable.run());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    /**
+     * Create the bounded pool reading pushed streams. A read blocks on the connection, so each
+     * drain task reads one chunk and then queues the stream behind the others: streams with
+     * outstanding demand take turns on the threads, and a stream waiting for a thread waits in
+     * the queue, which holds at most one task per open stream. Tasks are only rejected after
+     * close. Idle threads are released.
+     */
+    private static ExecutorService newStreamExecutor(int threads) {
+        int size = Math.max(1, threads);
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "cozeloop-prompt-stream-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            (runnable, rejectedBy) -> {
+                throw new RejectedExecutionException("Prompt provider is closed");
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    /**
+     * Fill the cache from the snapshot, then refresh the restored prompts from the server in
+     * the background; if the server is unreachable the restored prompts stay in use.
+     */
+    private void restoreSnapshot() {
+        Map<String, Prompt> restored = lastKnownGood.restore();
+        for (Map.Entry<String, Prompt> entry : restored.entrySet()) {
+            paramMap.putIfAbsent(entry.getKey(), parseParamFromCacheKey(entry.getKey()));
+            cache.put(entry.getKey(), entry.getValue());
+        }
+        if (!restored.isEmpty()) {
+            cache.refreshAll(restored.keySet());
+        }
     }
     
     /**
@@ -75,6 +196,42 @@ public class PromptProvider {
      * @return prompt
      */
     public Prompt getPrompt(GetPromptParam param) {
+        return join(getPromptAsync(param));
+    }
+    
+    /**
+     * Get a prompt (with caching) without blocking.
+     * A cache miss is fetched with a non-blocking HTTP call.
+     *
+     * @param param the parameters for getting prompt
+     * @return future of the prompt, failing with a {@link PromptException}
+     */
+    public CompletableFuture<Prompt> getPromptAsync(GetPromptParam param) {
+        return getCachedAsync(param, cache::get);
+    }
+    
+    /**
+     * Get a prompt compiled for formatting (with caching).
+     *
+     * @param param the parameters for getting prompt
+     * @return compiled prompt
+     */
+    public CompiledPrompt getCompiledPrompt(GetPromptParam param) {
+        return join(getCompiledPromptAsync(param));
+    }
+    
+    /**
+     * Get a prompt compiled for formatting (with caching) without blocking.
+     *
+     * @param param the parameters for getting prompt
+     * @return future of the compiled prompt, failing with a {@link PromptException}
+     */
+    public CompletableFuture<CompiledPrompt> getCompiledPromptAsync(GetPromptParam param) {
+        return getCachedAsync(param, cache::getCompiled);
+    }
+    
+    private <T> CompletableFuture<T> getCachedAsync(GetPromptParam param,
+                                                    Function<String, CompletableFuture<T>> lookup) {
         ValidationUtils.requireNonEmpty(param.getPromptKey(), "promptKey");
         
         String cacheKey = buildCacheKey(param);
@@ -82,22 +239,108 @@ public class PromptProvider {
         // Store param mapping for fetchPromptFromServer to use
         paramMap.put(cacheKey, param);
         
+        return lookup.apply(cacheKey).handle((value, error) -> {
+            if (error != null) {
+                throw new CompletionException(toPromptException(error, param.getPromptKey()));
+            }
+            if (value == null) {
+                throw new CompletionException(new PromptException(ErrorCode.PROMPT_NOT_FOUND,
+                    "Failed to get prompt: " + param.getPromptKey() + ". Cache returned null."));
+            }
+            return value;
+        });
+    }
+    
+    /**
+     * Wait for a future, rethrowing the exception it failed with.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Get several prompts (with caching).
+     * Prompts missing from the cache are fetched together, in as few mget requests as
+     * {@code fetchMaxBatchSize} allows.
+     *
+     * @param params the parameters for getting each prompt
+     * @return prompts in the order of {@code params}
+     */
+    public List<Prompt> getPrompts(List<GetPromptParam> params) {
+        ValidationUtils.requireNonNull(params, "params");
+        
+        List<String> cacheKeys = new ArrayList<>(params.size());
+        for (GetPromptParam param : params) {
+            ValidationUtils.requireNonNull(param, "param");
+            ValidationUtils.requireNonEmpty(param.getPromptKey(), "promptKey");
+            String cacheKey = buildCacheKey(param);
+            paramMap.put(cacheKey, param);
+            cacheKeys.add(cacheKey);
+        }
+        
+        Map<String, Prompt> prompts;
         try {
-            Prompt prompt = cache.getSync(cacheKey);
+            prompts = cache.getAll(cacheKeys).join();
+        } catch (CompletionException e) {
+            throw toPromptException(e, describe(params));
+        }
+        
+        List<Prompt> result = new ArrayList<>(params.size());
+        for (int i = 0; i < params.size(); i++) {
+            Prompt prompt = prompts.get(cacheKeys.get(i));
             if (prompt == null) {
                 throw new PromptException(ErrorCode.PROMPT_NOT_FOUND,
-                    "Failed to get prompt: " + param.getPromptKey() + ". Cache returned null.");
+                    "Failed to get prompt: " + params.get(i).getPromptKey());
             }
-            return prompt;
-        } catch (PromptException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new PromptException(ErrorCode.PROMPT_NOT_FOUND,
-                "Failed to get prompt: " + param.getPromptKey(), e);
-        } finally {
-            // Clean up param mapping after use (optional, can keep for cache refresh)
-            // paramMap.remove(cacheKey);
+            result.add(prompt);
         }
+        return result;
+    }
+    
+    /**
+     * Load prompts into the cache ahead of their first use.
+     * The prompts are fetched in parallel mget batches of up to {@code fetchMaxBatchSize}; each
+     * prompt is cached as soon as its batch returns, whether or not the others succeed.
+     *
+     * @param params the prompts to load
+     * @return a future completed when all prompts are cached, or exceptionally with the first
+     *         failure once every fetch has finished
+     */
+    public CompletableFuture<Void> preload(List<GetPromptParam> params) {
+        if (params == null || params.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        List<CompletableFuture<Prompt>> futures = new ArrayList<>(params.size());
+        for (GetPromptParam param : params) {
+            ValidationUtils.requireNonNull(param, "param");
+            ValidationUtils.requireNonEmpty(param.getPromptKey(), "promptKey");
+            String cacheKey = buildCacheKey(param);
+            paramMap.put(cacheKey, param);
+            futures.add(cache.get(cacheKey));
+        }
+        logger.info("Preloading {} prompt(s)", futures.size());
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+    
+    private static PromptException toPromptException(Throwable error, String promptKeys) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof PromptException) {
+            return (PromptException) cause;
+        }
+        return new PromptException(ErrorCode.PROMPT_NOT_FOUND,
+            "Failed to get prompt: " + promptKeys, cause);
+    }
+    
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
     }
     
     /**
@@ -119,14 +362,25 @@ public class PromptProvider {
     
     /**
      * Get and format prompt in one call.
+     * The prompt is compiled when it is cached, so this only binds the variables.
      *
      * @param param the parameters for getting prompt
      * @param variables the variables to substitute
      * @return formatted messages
      */
     public List<Message> getAndFormat(GetPromptParam param, Map<String, Object> variables) {
-        Prompt prompt = getPrompt(param);
-        return formatPrompt(prompt, variables);
+        return getCompiledPrompt(param).format(variables);
+    }
+    
+    /**
+     * Get and format prompt in one call without blocking.
+     *
+     * @param param the parameters for getting prompt
+     * @param variables the variables to substitute
+     * @return future of the formatted messages, failing with a {@link PromptException}
+     */
+    public CompletableFuture<List<Message>> getAndFormatAsync(GetPromptParam param, Map<String, Object> variables) {
+        return getCompiledPromptAsync(param).thenApply(compiled -> compiled.format(variables));
     }
     
     /**
@@ -147,16 +401,26 @@ public class PromptProvider {
     }
     
     /**
-     * Fetch prompt from server (called by cache loader).
-     * This method is called by the cache when a prompt is not found in cache.
-     * Uses mget API with singleflight pattern to prevent duplicate requests.
+     * Release the fetch coalescer's timer thread, the fetch threads and idle stream threads;
+     * pending fetches are sent immediately.
+     */
+    public void close() {
+        coalescer.close();
+        fetchExecutor.shutdown();
+        streamExecutor.shutdown();
+        if (lastKnownGood != null) {
+            lastKnownGood.close();
+        }
+    }
+    
+    /**
+     * Load a prompt on a cache miss or refresh (called by cache loader).
+     * The fetch joins the coalescer's pending batch instead of sending its own request.
      *
      * @param cacheKey the cache key
-     * @return prompt fetched from server
+     * @return future of the prompt fetched from server
      */
-    private Prompt fetchPromptFromServer(String cacheKey) {
-        logger.info("Fetching prompt from server for cache key: {}", cacheKey);
-        
+    private CompletableFuture<Prompt> loadPrompt(String cacheKey) {
         // Get parameters from map
         GetPromptParam param = paramMap.get(cacheKey);
         if (param == null) {
@@ -164,90 +428,75 @@ public class PromptProvider {
             logger.warn("Param not found in map for cache key: {}, attempting to parse from key", cacheKey);
             param = parseParamFromCacheKey(cacheKey);
         }
-        
-        // Make param effectively final for lambda
-        final GetPromptParam finalParam = param;
-        
-        // Build request for single query
-        List<Map<String, Object>> queries = new ArrayList<>();
-        Map<String, Object> query = new HashMap<>();
-        query.put("prompt_key", finalParam.getPromptKey());
-        if (finalParam.getVersion() != null && !finalParam.getVersion().isEmpty()) {
-            query.put("version", finalParam.getVersion());
+        CompletableFuture<Prompt> fetch = coalescer.fetch(param);
+        if (lastKnownGood == null) {
+            return fetch;
         }
-        if (finalParam.getLabel() != null && !finalParam.getLabel().isEmpty()) {
-            query.put("label", finalParam.getLabel());
+        return fetch.whenComplete((prompt, error) -> {
+            if (error == null) {
+                lastKnownGood.record(cacheKey, prompt);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (cause instanceof PromptException
+                    && ((PromptException) cause).getErrorCode() == ErrorCode.PROMPT_NOT_FOUND) {
+                lastKnownGood.forget(cacheKey);
+            }
+        });
+    }
+    
+    /**
+     * Execute one mget API request for a batch of prompts, without blocking.
+     *
+     * @param params the prompts to fetch, with distinct cache keys
+     * @return future of the fetched prompts by cache key; prompts the server did not return are absent
+     */
+    private CompletableFuture<Map<String, Prompt>> doMPullPrompts(List<GetPromptParam> params) {
+        List<Map<String, Object>> queries = new ArrayList<>(params.size());
+        for (GetPromptParam param : params) {
+            Map<String, Object> query = new HashMap<>();
+            query.put("prompt_key", param.getPromptKey());
+            if (param.getVersion() != null && !param.getVersion().isEmpty()) {
+                query.put("version", param.getVersion());
+            }
+            if (param.getLabel() != null && !param.getLabel().isEmpty()) {
+                query.put("label", param.getLabel());
+            }
+            queries.add(query);
         }
-        queries.add(query);
         
         // Build request body for mget API
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("workspace_id", workspaceId);
         requestBody.put("queries", queries);
         
-        // Generate singleflight key (sorted JSON of request)
-        String singleflightKey = JsonUtils.toJson(requestBody);
+        logger.debug("Requesting {} prompt(s) from server: endpoint={}, body={}",
+            params.size(), promptEndpoint, requestBody);
         
-        // Use singleflight pattern
-        CompletableFuture<Prompt> future = singleflightMap.computeIfAbsent(singleflightKey, key -> {
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    return doMPullPrompt(requestBody, finalParam);
-                } finally {
-                    // Remove from singleflight map after completion
-                    singleflightMap.remove(singleflightKey);
-                }
-            });
-        });
-        
-        try {
-            return future.get();
-        } catch (Exception e) {
-            if (e.getCause() instanceof PromptException) {
-                throw (PromptException) e.getCause();
+        // Make HTTP request to fetch prompts using mget API
+        return httpClient.postAsync(promptEndpoint, requestBody).handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                logger.error("Error fetching prompts from server: {}", describe(params), cause);
+                throw new CompletionException(cause instanceof PromptException ? cause
+                    : new PromptException(ErrorCode.INTERNAL_ERROR,
+                        "Failed to fetch prompts from server: " + describe(params), cause));
             }
-            throw new PromptException(ErrorCode.INTERNAL_ERROR,
-                "Failed to fetch prompt from server: " + param.getPromptKey(), e);
-        }
+            return parseMPullResponse(params, response);
+        });
     }
     
     /**
-     * Execute mget API request to fetch prompts.
-     *
-     * @param requestBody the request body
-     * @param param the original parameter (for logging)
-     * @return the fetched prompt
+     * Parse an mget response.
+     * Response items are matched to the requested prompts by their {@code query}.
      */
-    private Prompt doMPullPrompt(Map<String, Object> requestBody, GetPromptParam param) {
+    private Map<String, Prompt> parseMPullResponse(List<GetPromptParam> params, String response) {
         try {
-            logger.debug("Requesting prompt from server: endpoint={}, body={}", promptEndpoint, requestBody);
-            
-            // Log request information including headers that will be sent
-            logger.info("=== Request Prompt Details ===");
-            logger.info("URL: {}", promptEndpoint);
-            logger.info("Method: POST");
-            logger.info("Headers:");
-            logger.info("  Content-Type: application/json; charset=utf-8");
-            logger.info("  User-Agent: CozeLoop-Java-SDK/1.0.0");
-            logger.info("  Authorization: [configured by AuthInterceptor - see debug logs for details]");
-            logger.info("Request Body: {}", JsonUtils.toJson(requestBody));
-            logger.info("Prompt Key: {}", param.getPromptKey());
-            if (param.getVersion() != null && !param.getVersion().isEmpty()) {
-                logger.info("Version: {}", param.getVersion());
-            }
-            if (param.getLabel() != null && !param.getLabel().isEmpty()) {
-                logger.info("Label: {}", param.getLabel());
-            }
-            
-            // Make HTTP request to fetch prompt using mget API
-            String response = httpClient.post(promptEndpoint, requestBody);
-            
             if (response == null || response.isEmpty()) {
                 throw new PromptException(ErrorCode.PROMPT_NOT_FOUND,
-                    "Empty response from server for prompt: " + param.getPromptKey());
+                    "Empty response from server for prompts: " + describe(params));
             }
             
-            logger.info("=== Response Received ===");
             logger.debug("Response body: {}", response);
             
             // Check if response is HTML (likely an error page or redirect)
@@ -263,70 +512,86 @@ public class PromptProvider {
                 throw new PromptException(ErrorCode.INTERNAL_ERROR,
                     String.format("Server returned HTML instead of JSON. " +
                         "This usually indicates authentication failure or incorrect endpoint. " +
-                        "Endpoint: %s, Prompt Key: %s", promptEndpoint, param.getPromptKey()));
+                        "Endpoint: %s, Prompt Keys: %s", promptEndpoint, describe(params)));
             }
             
             // Parse response
-            Map<String, Object> responseMap;
+            MPullResponse responseBody;
             try {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> parsed = (Map<String, Object>) JsonUtils.fromJson(response, Map.class);
-                responseMap = parsed;
+                responseBody = MPULL_RESPONSE_READER.readValue(response);
             } catch (Exception e) {
                 logger.error("Failed to parse response as JSON. Response preview (first 500 chars): {}", 
                     response.length() > 500 ? response.substring(0, 500) : response);
                 throw new PromptException(ErrorCode.INTERNAL_ERROR,
                     String.format("Failed to parse response as JSON. " +
                         "This may indicate the server returned an error page. " +
-                        "Endpoint: %s, Prompt Key: %s", promptEndpoint, param.getPromptKey()), e);
+                        "Endpoint: %s, Prompt Keys: %s", promptEndpoint, describe(params)), e);
             }
             
-            if (responseMap == null) {
+            if (responseBody == null) {
                 throw new PromptException(ErrorCode.INTERNAL_ERROR,
                     "Failed to parse response from server");
             }
             
             // Parse mget response format: {data: {items: [{query: {...}, prompt: {...}}]}}
-            if (responseMap.containsKey("data")) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> dataMap = (Map<String, Object>) responseMap.get("data");
-                
-                if (dataMap != null && dataMap.containsKey("items")) {
-                    @SuppressWarnings("unchecked")
-                    List<Map<String, Object>> items = (List<Map<String, Object>>) dataMap.get("items");
-                    
-                    if (items != null && !items.isEmpty()) {
-                        // Get first item (should only be one for single query)
-                        Map<String, Object> item = items.get(0);
-                        if (item.containsKey("prompt")) {
-                            Object promptObj = item.get("prompt");
-                            String promptJson = JsonUtils.toJson(promptObj);
-                            Prompt prompt = JsonUtils.fromJson(promptJson, Prompt.class);
-                            
-                            if (prompt == null) {
-                                throw new PromptException(ErrorCode.PROMPT_NOT_FOUND,
-                                    "Failed to deserialize prompt from response");
-                            }
-                            
-                            logger.info("Successfully fetched prompt from server: {}", param.getPromptKey());
-                            return prompt;
-                        }
+            Map<String, Prompt> prompts = new HashMap<>();
+            List<MPullResponse.Item> items = responseBody.data != null ? responseBody.data.items : null;
+            if (items != null) {
+                for (MPullResponse.Item item : items) {
+                    if (item == null || item.prompt == null) {
+                        continue;
                     }
+                    String cacheKey = cacheKeyOfQuery(item.query, params);
+                    if (cacheKey == null) {
+                        logger.warn("Ignoring prompt item that matches no query: {}",
+                            item.query != null ? item.query.promptKey : null);
+                        continue;
+                    }
+                    prompts.put(cacheKey, item.prompt);
                 }
             }
             
-            throw new PromptException(ErrorCode.PROMPT_NOT_FOUND,
-                "Prompt not found in response. Response: " + response);
+            logger.debug("Fetched {} of {} prompt(s) from server", prompts.size(), params.size());
+            return prompts;
         } catch (PromptException e) {
-            logger.error("Error fetching prompt from server for key: {}", param.getPromptKey(), e);
+            logger.error("Error fetching prompts from server: {}", describe(params), e);
             throw e;
         } catch (Exception e) {
-            logger.error("Unexpected error fetching prompt from server for key: {}", param.getPromptKey(), e);
+            logger.error("Unexpected error fetching prompts from server: {}", describe(params), e);
             throw new PromptException(ErrorCode.INTERNAL_ERROR,
-                "Failed to fetch prompt from server: " + param.getPromptKey(), e);
+                "Failed to fetch prompts from server: " + describe(params), e);
         }
     }
     
+    /**
+     * Find the cache key of the requested prompt a response item answers.
+     * A server that does not echo the query can only be matched when one prompt was requested.
+     */
+    private String cacheKeyOfQuery(MPullResponse.Query query, List<GetPromptParam> params) {
+        if (query == null) {
+            return params.size() == 1 ? buildCacheKey(params.get(0)) : null;
+        }
+        if (query.promptKey == null) {
+            return null;
+        }
+        GetPromptParam param = new GetPromptParam();
+        param.setPromptKey(query.promptKey);
+        param.setVersion(query.version != null && !query.version.isEmpty() ? query.version : null);
+        param.setLabel(query.label != null && !query.label.isEmpty() ? query.label : null);
+        return buildCacheKey(param);
+    }
+    
+    private static String describe(List<GetPromptParam> params) {
+        StringBuilder keys = new StringBuilder();
+        for (GetPromptParam param : params) {
+            if (keys.length() > 0) {
+                keys.append(", ");
+            }
+            keys.append(param.getPromptKey());
+        }
+        return keys.toString();
+    }
+    
     /**
      * Parse GetPromptParam from cache key (fallback method).
      *
@@ -377,68 +642,16 @@ public class PromptProvider {
         
         try {
             // Build execute request
-            Map<String, Object> requestBody = buildExecuteRequest(param);
-            
-            logger.info("=== Execute Prompt Request ===");
-            logger.info("URL: {}", executeEndpoint);
-            logger.info("Method: POST");
-            logger.info("Request Body: {}", JsonUtils.toJson(requestBody));
+            ExecuteRequestWriter requestBody = new ExecuteRequestWriter(workspaceId, param);
             
-            // Make HTTP request
-            String response = httpClient.post(executeEndpoint, requestBody);
-            
-            if (response == null || response.isEmpty()) {
-                throw new PromptException(ErrorCode.INTERNAL_ERROR,
-                    "Empty response from server for execute request");
+            if (logger.isDebugEnabled()) {
+                logger.debug("Executing prompt: url={}, body={}", executeEndpoint, requestBody.toJson());
             }
             
-            logger.info("=== Execute Prompt Response ===");
-            logger.debug("Response body: {}", response);
+            // Make HTTP request, streaming the body into the connection
+            String response = httpClient.postStreaming(executeEndpoint, requestBody);
             
-            // Parse response
-            @SuppressWarnings("unchecked")
-            Map<String, Object> responseMap = JsonUtils.fromJson(response, Map.class);
-            
-            if (responseMap == null) {
-                throw new PromptException(ErrorCode.INTERNAL_ERROR,
-                    "Failed to parse response from server");
-            }
-            
-            // Parse response format: {data: {message: {...}, finish_reason: "...", usage: {...}}}
-            if (responseMap.containsKey("data")) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> dataMap = (Map<String, Object>) responseMap.get("data");
-                
-                ExecuteResult result = new ExecuteResult();
-                
-                if (dataMap != null) {
-                    if (dataMap.containsKey("message")) {
-                        Object messageObj = dataMap.get("message");
-                        String messageJson = JsonUtils.toJson(messageObj);
-                        Message message = JsonUtils.fromJson(messageJson, Message.class);
-                        result.setMessage(message);
-                    }
-                    
-                    if (dataMap.containsKey("finish_reason")) {
-                        Object finishReasonObj = dataMap.get("finish_reason");
-                        if (finishReasonObj != null) {
-                            result.setFinishReason(finishReasonObj.toString());
-                        }
-                    }
-                    
-                    if (dataMap.containsKey("usage")) {
-                        Object usageObj = dataMap.get("usage");
-                        String usageJson = JsonUtils.toJson(usageObj);
-                        TokenUsage usage = JsonUtils.fromJson(usageJson, TokenUsage.class);
-                        result.setUsage(usage);
-                    }
-                }
-                
-                return result;
-            } else {
-                throw new PromptException(ErrorCode.INTERNAL_ERROR,
-                    "Invalid response format. Response: " + response);
-            }
+            return parseExecuteResponse(response);
         } catch (PromptException e) {
             throw e;
         } catch (Exception e) {
@@ -447,6 +660,71 @@ public class PromptProvider {
         }
     }
     
+    /**
+     * Execute a prompt without blocking.
+     * The request is sent with a non-blocking HTTP call.
+     *
+     * @param param the execution parameters
+     * @return future of the execution result, failing with a {@link PromptException}
+     */
+    public CompletableFuture<ExecuteResult> executeAsync(ExecuteParam param) {
+        ValidationUtils.requireNonNull(param, "param");
+        ValidationUtils.requireNonEmpty(param.getPromptKey(), "promptKey");
+        
+        if (executeEndpoint == null) {
+            throw new PromptException(ErrorCode.INTERNAL_ERROR,
+                "Execute endpoint is not configured");
+        }
+        
+        // Build execute request
+        ExecuteRequestWriter requestBody = new ExecuteRequestWriter(workspaceId, param);
+        
+        if (logger.isDebugEnabled()) {
+            logger.debug("Executing prompt asynchronously: url={}, body={}", executeEndpoint, requestBody.toJson());
+        }
+        
+        return httpClient.postStreamingAsync(executeEndpoint, requestBody).handle((response, error) -> {
+            try {
+                if (error != null) {
+                    throw unwrap(error);
+                }
+                return parseExecuteResponse(response);
+            } catch (PromptException e) {
+                throw new CompletionException(e);
+            } catch (Throwable e) {
+                throw new CompletionException(new PromptException(ErrorCode.INTERNAL_ERROR,
+                    "Failed to execute prompt: " + param.getPromptKey(), e));
+            }
+        });
+    }
+    
+    /**
+     * Parse an execute response.
+     */
+    private static ExecuteResult parseExecuteResponse(String response) throws IOException {
+        if (response == null || response.isEmpty()) {
+            throw new PromptException(ErrorCode.INTERNAL_ERROR,
+                "Empty response from server for execute request");
+        }
+        
+        logger.debug("Response body: {}", response);
+        
+        // Parse response format: {data: {message: {...}, finish_reason: "...", usage: {...}}}
+        ExecuteResponse responseBody = EXECUTE_RESPONSE_READER.readValue(response);
+        
+        if (responseBody == null) {
+            throw new PromptException(ErrorCode.INTERNAL_ERROR,
+                "Failed to parse response from server");
+        }
+        
+        if (responseBody.hasData()) {
+            return responseBody.getData() != null ? responseBody.getData() : new ExecuteResult();
+        } else {
+            throw new PromptException(ErrorCode.INTERNAL_ERROR,
+                "Invalid response format. Response: " + response);
+        }
+    }
+    
     /**
      * Execute a prompt with streaming response.
      *
@@ -464,38 +742,17 @@ public class PromptProvider {
         
         try {
             // Build execute request
-            Map<String, Object> requestBody = buildExecuteRequest(param);
+            ExecuteRequestWriter requestBody = new ExecuteRequestWriter(workspaceId, param);
             
-            logger.info("=== Execute Streaming Prompt Request ===");
-            logger.info("URL: {}", executeStreamingEndpoint);
-            logger.info("Method: POST");
-            logger.info("Request Body: {}", JsonUtils.toJson(requestBody));
-            
-            // Make streaming HTTP request
-            Response response = httpClient.postStream(executeStreamingEndpoint, requestBody);
-            
-            // Get response body stream
-            ResponseBody body = response.body();
-            if (body == null) {
-                response.close();
-                throw new PromptException(ErrorCode.INTERNAL_ERROR,
-                    "Empty response body from server");
+            if (logger.isDebugEnabled()) {
+                logger.debug("Executing prompt with streaming: url={}, body={}",
+                    executeStreamingEndpoint, requestBody.toJson());
             }
             
-            InputStream inputStream = body.byteStream();
-            
-            // Create SSE decoder and parser
-            SSEDecoder decoder = new SSEDecoder(inputStream);
-            SSEParser<ExecuteResult> parser = new ExecuteSSEParser();
+            // Make streaming HTTP request, streaming the body into the connection
+            Response response = httpClient.postStream(executeStreamingEndpoint, requestBody);
             
-            // Create stream reader
-            return new StreamReader<ExecuteResult>(decoder, parser) {
-                @Override
-                public void close() throws IOException {
-                    super.close();
-                    response.close();
-                }
-            };
+            return newExecuteStreamReader(response);
         } catch (IOException e) {
             throw new PromptException(ErrorCode.INTERNAL_ERROR,
                 "Failed to execute streaming prompt: " + param.getPromptKey(), e);
@@ -503,91 +760,91 @@ public class PromptProvider {
     }
     
     /**
-     * Build execute request body from ExecuteParam.
+     * Execute a prompt with a streaming response pushed to a listener.
+     * The request is sent with a non-blocking HTTP call, and chunks are read on the
+     * {@code streamThreads} stream threads only while the listener has requested more: a
+     * stream waiting for its response or for demand holds no thread. Reading a chunk blocks
+     * a thread until the chunk arrives, so streams with demand read one chunk at a time and
+     * take turns; when there are more of them than threads, they wait for a thread instead of
+     * failing. Cancelling the stream aborts the call, also while a chunk is being read.
      *
      * @param param the execution parameters
-     * @return the request body map
+     * @param listener receives the subscription, then the results; failures are delivered to
+     *                 {@link StreamListener#onError} as {@link PromptException}s, or as the
+     *                 exception of an error event
+     * @return the subscription also passed to {@link StreamListener#onSubscribe}
      */
-    private Map<String, Object> buildExecuteRequest(ExecuteParam param) {
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("workspace_id", workspaceId);
+    public StreamSubscription executeStreaming(ExecuteParam param, StreamListener<? super ExecuteResult> listener) {
+        ValidationUtils.requireNonNull(param, "param");
+        ValidationUtils.requireNonEmpty(param.getPromptKey(), "promptKey");
+        ValidationUtils.requireNonNull(listener, "listener");
         
-        // Build prompt_identifier
-        Map<String, Object> promptIdentifier = new HashMap<>();
-        promptIdentifier.put("prompt_key", param.getPromptKey());
-        if (param.getVersion() != null && !param.getVersion().isEmpty()) {
-            promptIdentifier.put("version", param.getVersion());
-        }
-        if (param.getLabel() != null && !param.getLabel().isEmpty()) {
-            promptIdentifier.put("label", param.getLabel());
-        }
-        requestBody.put("prompt_identifier", promptIdentifier);
-        
-        // Build variable_vals
-        if (param.getVariableVals() != null && !param.getVariableVals().isEmpty()) {
-            List<Map<String, Object>> variableVals = new ArrayList<>();
-            for (Map.Entry<String, Object> entry : param.getVariableVals().entrySet()) {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-                
-                if (value == null) {
-                    throw new PromptException(ErrorCode.INVALID_PARAM,
-                        "Variable value for key '" + key + "' is null");
-                }
-                
-                Map<String, Object> variableVal = new HashMap<>();
-                variableVal.put("key", key);
-                
-                // Handle different value types
-                if (value instanceof String) {
-                    variableVal.put("value", value);
-                } else if (value instanceof Message) {
-                    List<Message> messages = new ArrayList<>();
-                    messages.add((Message) value);
-                    variableVal.put("placeholder_messages", messages);
-                } else if (value instanceof List) {
-                    List<?> list = (List<?>) value;
-                    if (!list.isEmpty()) {
-                        Object first = list.get(0);
-                        if (first instanceof Message) {
-                            @SuppressWarnings("unchecked")
-                            List<Message> messages = (List<Message>) value;
-                            variableVal.put("placeholder_messages", messages);
-                        } else if (first instanceof ContentPart) {
-                            @SuppressWarnings("unchecked")
-                            List<ContentPart> parts = (List<ContentPart>) value;
-                            variableVal.put("multi_part_values", parts);
-                        } else {
-                            // Other types: serialize to JSON string
-                            String jsonValue = JsonUtils.toJson(value);
-                            variableVal.put("value", jsonValue);
-                        }
-                    } else {
-                        // Empty list: serialize to JSON string
-                        String jsonValue = JsonUtils.toJson(value);
-                        variableVal.put("value", jsonValue);
-                    }
-                } else if (value instanceof ContentPart) {
-                    List<ContentPart> parts = new ArrayList<>();
-                    parts.add((ContentPart) value);
-                    variableVal.put("multi_part_values", parts);
-                } else {
-                    // Other types: serialize to JSON string
-                    String jsonValue = JsonUtils.toJson(value);
-                    variableVal.put("value", jsonValue);
+        if (executeStreamingEndpoint == null) {
+            throw new PromptException(ErrorCode.INTERNAL_ERROR,
+                "Execute streaming endpoint is not configured");
+        }
+        
+        // Build execute request
+        ExecuteRequestWriter requestBody = new ExecuteRequestWriter(workspaceId, param);
+        
+        if (logger.isDebugEnabled()) {
+            logger.debug("Executing prompt with streaming listener: url={}, body={}",
+                executeStreamingEndpoint, requestBody.toJson());
+        }
+        
+        if (streamExecutor.isShutdown()) {
+            throw new PromptException(ErrorCode.INTERNAL_ERROR, "Prompt provider is closed");
+        }
+        PushStream<ExecuteResult> stream = new PushStream<>(listener, streamExecutor, STREAM_CHUNKS_PER_TASK);
+        listener.onSubscribe(stream);
+        if (stream.isCancelled()) {
+            return stream;
+        }
+        
+        // Cancelling the call also aborts a response being read, so no thread stays blocked on it
+        Call call = httpClient.newPostStreamCall(executeStreamingEndpoint, requestBody);
+        stream.onCancel(call::cancel);
+        httpClient.executeStreamAsync(call).whenComplete((opened, error) -> {
+            if (error == null) {
+                try {
+                    stream.open(newExecuteStreamReader(opened));
+                } catch (PromptException e) {
+                    stream.fail(e);
                 }
-                
-                variableVals.add(variableVal);
+                return;
             }
-            requestBody.put("variable_vals", variableVals);
+            Throwable cause = unwrap(error);
+            stream.fail(cause instanceof PromptException ? cause
+                : new PromptException(ErrorCode.INTERNAL_ERROR,
+                    "Failed to execute streaming prompt: " + param.getPromptKey(), cause));
+        });
+        return stream;
+    }
+    
+    /**
+     * Read ExecuteResult chunks from a streaming response; closing the reader closes the response.
+     */
+    private static StreamReader<ExecuteResult> newExecuteStreamReader(Response response) {
+        // Get response body stream
+        ResponseBody body = response.body();
+        if (body == null) {
+            response.close();
+            throw new PromptException(ErrorCode.INTERNAL_ERROR,
+                "Empty response body from server");
         }
         
-        // Add messages if provided
-        if (param.getMessages() != null && !param.getMessages().isEmpty()) {
-            requestBody.put("messages", param.getMessages());
-        }
+        // Create SSE decoder and parser, decoding straight from the body's buffer
+        SSEDecoder decoder = new SSEDecoder(body.source());
+        SSEParser<ExecuteResult> parser = new ExecuteSSEParser();
         
-        return requestBody;
+        // Create stream reader
+        return new StreamReader<ExecuteResult>(decoder, parser) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                response.close();
+            }
+        };
     }
     
     /**
@@ -600,38 +857,8 @@ public class PromptProvider {
                 return null;
             }
             
-            // Parse streaming response
-            @SuppressWarnings("unchecked")
-            Map<String, Object> dataMap = JsonUtils.fromJson(sse.getData(), Map.class);
-            
-            if (dataMap == null) {
-                return null;
-            }
-            
-            ExecuteResult result = new ExecuteResult();
-            
-            if (dataMap.containsKey("message")) {
-                Object messageObj = dataMap.get("message");
-                String messageJson = JsonUtils.toJson(messageObj);
-                Message message = JsonUtils.fromJson(messageJson, Message.class);
-                result.setMessage(message);
-            }
-            
-            if (dataMap.containsKey("finish_reason")) {
-                Object finishReasonObj = dataMap.get("finish_reason");
-                if (finishReasonObj != null) {
-                    result.setFinishReason(finishReasonObj.toString());
-                }
-            }
-            
-            if (dataMap.containsKey("usage")) {
-                Object usageObj = dataMap.get("usage");
-                String usageJson = JsonUtils.toJson(usageObj);
-                TokenUsage usage = JsonUtils.fromJson(usageJson, TokenUsage.class);
-                result.setUsage(usage);
-            }
-            
-            return result;
+            // Parse streaming response: one chunk is bound straight into the result
+            return EXECUTE_RESULT_READER.readValue(sse.getData());
         }
         
         @Override
@@ -0,0 +1,179 @@
+package com.coze.loop.prompt;
+
+import com.coze.loop.entity.Prompt;
+import com.coze.loop.internal.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Local file holding a snapshot of the prompt cache, for fast restarts and offline fallback.
+ *
+ * <p><b>File Format:</b>
+ * <pre>
+ * +-------------+--------------+-------------------+-------------+
+ * | magic (4B)  | version (4B) | saved at ms (8B)  | count (4B)  |
+ * +-------------+--------------+-------------------+-------------+
+ * then per entry:
+ * +-----------------+---------------+-----------+-------------+-----------------------+
+ * | key length (4B) | key (UTF-8)   | crc32 (4B)| length (4B) | prompt JSON (UTF-8)   |
+ * +-----------------+---------------+-----------+-------------+-----------------------+
+ * </pre>
+ * The checksum covers the key and the prompt bytes. Reading skips entries whose checksum does
+ * not match and stops at a truncated entry, keeping everything read so far.
+ *
+ * <p><b>Atomic Replacement:</b>
+ * {@link #save(Map)} writes a temporary file next to the snapshot, forces it to disk and
+ * renames it over the snapshot, so a reader sees either the old or the new file, never a
+ * partial one.
+ */
+final class PromptSnapshotStore {
+    private static final Logger logger = LoggerFactory.getLogger(PromptSnapshotStore.class);
+    
+    static final int MAGIC = 0x434C5053; // "CLPS"
+    static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+    
+    private final Path path;
+    
+    /**
+     * @param path the snapshot file; its directory is created on first save
+     */
+    PromptSnapshotStore(Path path) {
+        this.path = path;
+    }
+    
+    Path getPath() {
+        return path;
+    }
+    
+    /**
+     * Read the snapshot by memory-mapping the file.
+     *
+     * @return the prompts by cache key; empty if the file is missing or not a snapshot
+     * @throws IOException if the file exists but cannot be read
+     */
+    Map<String, Prompt> load() throws IOException {
+        Map<String, Prompt> prompts = new LinkedHashMap<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                logger.warn("Ignoring prompt snapshot {} of invalid size {}", path, size);
+                return prompts;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                logger.warn("Ignoring prompt snapshot {} with unknown format", path);
+                return prompts;
+            }
+            buffer.getLong(); // saved at
+            int count = buffer.getInt();
+            
+            int skipped = 0;
+            try {
+                for (int i = 0; i < count; i++) {
+                    byte[] key = readBytes(buffer);
+                    int checksum = buffer.getInt();
+                    byte[] payload = readBytes(buffer);
+                    if (checksum(key, payload) != checksum) {
+                        skipped++;
+                        continue;
+                    }
+                    Prompt prompt = JsonUtils.fromJson(new String(payload, StandardCharsets.UTF_8), Prompt.class);
+                    if (prompt != null) {
+                        prompts.put(new String(key, StandardCharsets.UTF_8), prompt);
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                logger.warn("Prompt snapshot {} is truncated, read {} of {} entries", path, prompts.size(), count);
+            }
+            if (skipped > 0) {
+                logger.warn("Skipped {} corrupt entries in prompt snapshot {}", skipped, path);
+            }
+        } catch (NoSuchFileException e) {
+            return prompts;
+        }
+        return prompts;
+    }
+    
+    /**
+     * Replace the snapshot with the given prompts.
+     *
+     * @param prompts the prompts by cache key
+     * @throws IOException if the snapshot cannot be written
+     */
+    void save(Map<String, Prompt> prompts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(prompts.size());
+        for (Map.Entry<String, Prompt> entry : prompts.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] payload = JsonUtils.toJson(entry.getValue()).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(key.length);
+            out.write(key);
+            out.writeInt(checksum(key, payload));
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+        out.flush();
+        
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Read a length-prefixed byte array, treating a length past the end of the file as truncation.
+     */
+    private static byte[] readBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+    
+    private static int checksum(byte[] key, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(key, 0, key.length);
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+}
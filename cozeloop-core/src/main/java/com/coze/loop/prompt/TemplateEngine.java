@@ -14,5 +14,15 @@ public interface TemplateEngine {
      * @return rendered string
      */
     String render(String template, Map<String, Object> variables);
+    
+    /**
+     * Parse a template for repeated rendering.
+     * The default implementation re-renders the raw template on every call.
+     *
+     * @param template the template string
+     * @return compiled template
+     */
+    default CompiledTemplate compile(String template) {
+        return variables -> render(template, variables);
+    }
 }
-
@@ -44,7 +44,7 @@ public class VariableValidator {
     /**
      * Validate variable type.
      */
-    private void validateType(String key, Object value, VariableType expectedType) {
+    void validateType(String key, Object value, VariableType expectedType) {
         if (expectedType == null) {
             return;
         }
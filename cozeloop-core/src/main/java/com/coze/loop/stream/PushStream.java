@@ -0,0 +1,253 @@
+package com.coze.loop.stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes the chunks of a {@link StreamReader} to a {@link StreamListener} as they are requested.
+ *
+ * <p>The stream is created before its source is ready, so the listener can be subscribed
+ * while the request is in flight; {@link #open(StreamReader)} or {@link #fail(Throwable)}
+ * then supplies the outcome. Chunks are read on the executor only while there is
+ * outstanding demand: a stream whose listener has not requested more holds no thread, and
+ * a request resumes it with a new task. Signals are serialized, and a {@link #request(long)}
+ * made from a callback only adds demand to the running drain.
+ *
+ * <p>A drain task reads chunks until the demand is met, or, with a {@code chunksPerTask}
+ * limit, continues in a new task after that many chunks, so that streams sharing a small
+ * pool take turns instead of each keeping a thread while its listener has demand. The pool
+ * should queue tasks rather than reject them: a rejected drain fails the stream with the
+ * {@link RejectedExecutionException}, which is only meant for a shut down executor.
+ *
+ * <p>A chunk being read when the stream is cancelled is dropped, and the reader is closed
+ * by the draining thread. A read blocked on the source only returns when the source does;
+ * use {@link #onCancel(Runnable)} to abort it.
+ *
+ * @param <T> the type of the chunks
+ */
+public class PushStream<T> implements StreamSubscription {
+    private static final Logger logger = LoggerFactory.getLogger(PushStream.class);
+    
+    private final StreamListener<? super T> listener;
+    private final Executor executor;
+    private final int chunksPerTask;
+    private final AtomicLong demand = new AtomicLong();
+    // Number of drain requests; the thread that raises it from 0 runs the drain
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile StreamReader<T> reader;
+    private volatile Throwable pendingError;
+    private volatile boolean cancelled;
+    private volatile Runnable cancelAction;
+    // Set once a terminal signal was delivered; only accessed by the draining thread
+    private boolean done;
+    
+    /**
+     * @param listener receives the chunks
+     * @param executor reads chunks and delivers signals
+     */
+    public PushStream(StreamListener<? super T> listener, Executor executor) {
+        this(listener, executor, 0);
+    }
+    
+    /**
+     * @param listener receives the chunks
+     * @param executor reads chunks and delivers signals
+     * @param chunksPerTask chunks a drain task reads before continuing in a new task; 0 reads
+     *                      until the demand is met
+     */
+    public PushStream(StreamListener<? super T> listener, Executor executor, int chunksPerTask) {
+        this.listener = listener;
+        this.executor = executor;
+        this.chunksPerTask = Math.max(0, chunksPerTask);
+    }
+    
+    /**
+     * Supply the source of the chunks.
+     *
+     * @param reader the stream reader; closed when the stream ends or is cancelled
+     */
+    public void open(StreamReader<T> reader) {
+        this.reader = reader;
+        schedule();
+    }
+    
+    /**
+     * Fail the stream before or instead of opening it.
+     *
+     * @param error the failure delivered to the listener
+     */
+    public void fail(Throwable error) {
+        if (pendingError == null) {
+            pendingError = error;
+        }
+        schedule();
+    }
+    
+    /**
+     * Set an action run once when the stream is cancelled, such as cancelling the request that
+     * will open it. Runs at once if the stream is already cancelled.
+     *
+     * @param action the action
+     */
+    public void onCancel(Runnable action) {
+        cancelAction = action;
+        if (cancelled) {
+            runCancelAction();
+        }
+    }
+    
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            fail(new IllegalArgumentException("Requested chunk count must be positive: " + n));
+            return;
+        }
+        long current;
+        long next;
+        do {
+            current = demand.get();
+            if (current == Long.MAX_VALUE) {
+                return;
+            }
+            next = current + n < 0 ? Long.MAX_VALUE : current + n;
+        } while (!demand.compareAndSet(current, next));
+        schedule();
+    }
+    
+    @Override
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            runCancelAction();
+            schedule();
+        }
+    }
+    
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    private void runCancelAction() {
+        Runnable action = cancelAction;
+        cancelAction = null;
+        if (action != null) {
+            action.run();
+        }
+    }
+    
+    private void schedule() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        submitDrain();
+    }
+    
+    private void submitDrain() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // The executor is shut down: end the stream on this thread without reading
+            if (pendingError == null) {
+                pendingError = e;
+            }
+            drain();
+        }
+    }
+    
+    private void drain() {
+        int missed = 1;
+        while (true) {
+            if (drainAvailable()) {
+                // Give other tasks a turn; the drain stays claimed by the new task
+                submitDrain();
+                return;
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Deliver chunks while there is demand, or the terminal signal.
+     *
+     * @return whether the task read {@code chunksPerTask} chunks and demand remains
+     */
+    private boolean drainAvailable() {
+        int read = 0;
+        while (true) {
+            StreamReader<T> source = reader;
+            if (done || cancelled) {
+                done = true;
+                closeQuietly(source);
+                return false;
+            }
+            Throwable error = pendingError;
+            if (error != null) {
+                terminate(source, error);
+                return false;
+            }
+            if (source == null || demand.get() == 0) {
+                return false;
+            }
+            
+            T chunk;
+            try {
+                chunk = source.recv();
+            } catch (Exception e) {
+                if (cancelled) {
+                    // The read was aborted by the cancellation
+                    continue;
+                }
+                terminate(source, e);
+                return false;
+            }
+            if (cancelled) {
+                continue;
+            }
+            if (chunk == null) {
+                done = true;
+                listener.onComplete();
+                return false;
+            }
+            if (demand.get() != Long.MAX_VALUE) {
+                demand.decrementAndGet();
+            }
+            try {
+                listener.onChunk(chunk);
+            } catch (RuntimeException e) {
+                logger.debug("Stream listener failed, cancelling stream: {}", e.getMessage());
+                cancel();
+                terminate(source, e);
+                return false;
+            }
+            if (chunksPerTask > 0 && ++read >= chunksPerTask && demand.get() != 0) {
+                return true;
+            }
+        }
+    }
+    
+    private void terminate(StreamReader<T> source, Throwable error) {
+        done = true;
+        closeQuietly(source);
+        listener.onError(error);
+    }
+    
+    private static void closeQuietly(StreamReader<?> source) {
+        if (source == null) {
+            return;
+        }
+        try {
+            source.close();
+        } catch (Exception e) {
+            logger.debug("Failed to close stream reader: {}", e.getMessage());
+        }
+    }
+}
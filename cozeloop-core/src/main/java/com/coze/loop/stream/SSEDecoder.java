@@ -1,27 +1,54 @@
 package com.coze.loop.stream;
 
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Decoder for Server-Sent Events (SSE).
- * Parses SSE format from an InputStream.
+ * Parses SSE format from a {@link BufferedSource} or an InputStream.
+ *
+ * <p>Lines are scanned in place in the source's buffer: field names are matched on bytes
+ * (case-insensitively), surrounding whitespace is skipped by offset, and {@code data} values
+ * are moved segment by segment into a buffer reused across events. UTF-8 is decoded once per
+ * event for the data payload, and only for the {@code event} and {@code id} values otherwise.
+ *
+ * <p>Lines end with {@code \n}, {@code \r\n} or {@code \r}. Lines starting with a colon are
+ * comments, unknown fields are ignored, and an event without any field is skipped.
  */
 public class SSEDecoder {
     private static final Logger logger = LoggerFactory.getLogger(SSEDecoder.class);
     
-    private final BufferedReader reader;
+    private static final ByteString LINE_TERMINATORS = ByteString.encodeUtf8("\r\n");
+    private static final byte[] DATA = {'d', 'a', 't', 'a'};
+    private static final byte[] EVENT = {'e', 'v', 'e', 'n', 't'};
+    private static final byte[] ID = {'i', 'd'};
+    private static final byte[] RETRY = {'r', 'e', 't', 'r', 'y'};
+    
+    private final BufferedSource source;
+    private final Buffer buffer;
+    // Data lines of the current event, joined by '\n'
+    private final Buffer data = new Buffer();
+    private boolean hasData;
+    private String event;
+    private String id;
+    private Integer retry;
+    // Set after a line ending with '\r', whose '\n' may not have arrived yet
+    private boolean skipLineFeed;
     
     public SSEDecoder(InputStream inputStream) {
-        this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        this(Okio.buffer(Okio.source(inputStream)));
+    }
+    
+    public SSEDecoder(BufferedSource source) {
+        this.source = source;
+        this.buffer = source.getBuffer();
     }
     
     /**
@@ -31,86 +58,152 @@ public class SSEDecoder {
      * @throws IOException if reading fails
      */
     public ServerSentEvent decodeEvent() throws IOException {
-        ServerSentEvent event = new ServerSentEvent();
-        List<String> dataLines = new ArrayList<>();
-        
-        String line;
-        while ((line = reader.readLine()) != null) {
-            line = line.trim();
-            
-            // Empty line indicates end of event
-            if (line.isEmpty()) {
-                if (!dataLines.isEmpty() || event.getEvent() != null || 
-                    event.getId() != null || event.getRetry() != null) {
-                    event.setData(String.join("\n", dataLines));
-                    return event;
+        while (true) {
+            if (skipLineFeed) {
+                if (!source.request(1)) {
+                    break;
+                }
+                if (buffer.getByte(0) == '\n') {
+                    buffer.skip(1);
                 }
-                continue;
+                skipLineFeed = false;
             }
             
-            // Parse field:value format
-            int colonIndex = line.indexOf(':');
-            if (colonIndex == -1) {
-                // Line without colon, treat as field name with empty value
-                processField(event, line, "", dataLines);
-                continue;
+            long lineEnd = source.indexOfElement(LINE_TERMINATORS);
+            long lineLength = lineEnd != -1 ? lineEnd : buffer.size();
+            if (lineEnd == -1 && lineLength == 0) {
+                break;
             }
             
-            String field = line.substring(0, colonIndex).trim();
-            String value = line.substring(colonIndex + 1);
-            
-            // Remove leading space from value if present
-            if (value.startsWith(" ")) {
-                value = value.substring(1);
+            boolean dispatch = processLine(lineLength);
+            if (lineEnd != -1) {
+                skipLineFeed = buffer.readByte() == '\r';
+            }
+            if (dispatch && isPending()) {
+                return takeEvent();
             }
-            
-            processField(event, field, value, dataLines);
         }
         
         // EOF reached
-        if (!dataLines.isEmpty() || event.getEvent() != null || 
-            event.getId() != null || event.getRetry() != null) {
-            event.setData(String.join("\n", dataLines));
-            return event;
+        return isPending() ? takeEvent() : null;
+    }
+    
+    /**
+     * Consume one line (without its terminator) from the buffer.
+     *
+     * @return true if the line is blank and ends the event
+     */
+    private boolean processLine(long lineLength) throws IOException {
+        // Trim surrounding whitespace by offset
+        long start = 0;
+        while (start < lineLength && isWhitespace(buffer.getByte(start))) {
+            start++;
+        }
+        long end = lineLength;
+        while (end > start && isWhitespace(buffer.getByte(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            buffer.skip(lineLength);
+            return true;
         }
         
-        return null; // EOF, no more events
+        long colon = buffer.indexOf((byte) ':', start, end);
+        long fieldEnd = colon != -1 ? colon : end;
+        while (fieldEnd > start && isWhitespace(buffer.getByte(fieldEnd - 1))) {
+            fieldEnd--;
+        }
+        long valueStart = colon != -1 ? colon + 1 : end;
+        if (valueStart < end && buffer.getByte(valueStart) == ' ') {
+            valueStart++;
+        }
+        long valueLength = end - valueStart;
+        
+        if (fieldEquals(start, fieldEnd, DATA)) {
+            buffer.skip(valueStart);
+            if (hasData) {
+                data.writeByte('\n');
+            }
+            data.write(buffer, valueLength);
+            hasData = true;
+        } else if (fieldEquals(start, fieldEnd, EVENT)) {
+            buffer.skip(valueStart);
+            event = buffer.readUtf8(valueLength);
+        } else if (fieldEquals(start, fieldEnd, ID)) {
+            buffer.skip(valueStart);
+            id = buffer.readUtf8(valueLength);
+        } else if (fieldEquals(start, fieldEnd, RETRY)) {
+            buffer.skip(valueStart);
+            parseRetry(valueLength);
+        } else {
+            // Comment or unknown field, ignore
+            buffer.skip(valueStart);
+            buffer.skip(valueLength);
+        }
+        buffer.skip(lineLength - end);
+        return false;
     }
     
     /**
-     * Process a single SSE field.
+     * Whitespace as {@link String#trim()} sees it; bytes of multi-byte UTF-8 characters are
+     * negative and never match.
      */
-    private void processField(ServerSentEvent event, String field, String value, List<String> dataLines) {
-        switch (field.toLowerCase()) {
-            case "event":
-                event.setEvent(value);
-                break;
-            case "data":
-                dataLines.add(value);
-                break;
-            case "id":
-                event.setId(value);
-                break;
-            case "retry":
-                try {
-                    event.setRetry(Integer.parseInt(value));
-                } catch (NumberFormatException e) {
-                    logger.debug("Invalid retry value: {}", value);
-                }
-                break;
-            default:
-                // Unknown field, ignore
-                break;
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+    
+    /**
+     * Compare the field name at [start, end) of the buffer with a lowercase ASCII name,
+     * ignoring case.
+     */
+    private boolean fieldEquals(long start, long end, byte[] name) {
+        if (end - start != name.length) {
+            return false;
         }
+        for (int i = 0; i < name.length; i++) {
+            if ((buffer.getByte(start + i) | 0x20) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Parse the retry value from the buffer; invalid values are ignored.
+     */
+    private void parseRetry(long length) throws IOException {
+        long value = 0;
+        boolean valid = length > 0 && length <= 10;
+        for (long i = 0; valid && i < length; i++) {
+            byte b = buffer.getByte(i);
+            valid = b >= '0' && b <= '9';
+            value = value * 10 + (b - '0');
+        }
+        if (valid && value <= Integer.MAX_VALUE) {
+            retry = (int) value;
+            buffer.skip(length);
+        } else {
+            logger.debug("Invalid retry value: {}", buffer.readUtf8(length));
+        }
+    }
+    
+    private boolean isPending() {
+        return hasData || event != null || id != null || retry != null;
+    }
+    
+    private ServerSentEvent takeEvent() {
+        ServerSentEvent sse = new ServerSentEvent(event, hasData ? data.readUtf8() : "", id, retry);
+        hasData = false;
+        event = null;
+        id = null;
+        retry = null;
+        return sse;
     }
     
     /**
      * Close the decoder and release resources.
      */
     public void close() throws IOException {
-        if (reader != null) {
-            reader.close();
-        }
+        source.close();
     }
 }
-
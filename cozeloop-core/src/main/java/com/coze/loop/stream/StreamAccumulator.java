@@ -0,0 +1,316 @@
+package com.coze.loop.stream;
+
+import com.coze.loop.entity.ContentPart;
+import com.coze.loop.entity.ExecuteResult;
+import com.coze.loop.entity.Message;
+import com.coze.loop.entity.Role;
+import com.coze.loop.entity.TokenUsage;
+import com.coze.loop.entity.ToolCall;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Assembles the incremental {@link ExecuteResult} deltas of a streamed execution.
+ *
+ * <p>Content and reasoning content are appended to builders, and tool calls are merged by
+ * their {@code index}: the id, type and function name are taken from the deltas that carry
+ * them, and argument fragments are appended. Content parts are collected in order. The finish
+ * reason and token usage are those of the latest delta carrying them. Merging is linear in the
+ * response length; {@link #snapshot()} builds a new result from the current state at any time.
+ *
+ * <p>Timing is recorded against an injectable nanosecond clock, starting when the accumulator
+ * is created: time to first token (the first delta with content, reasoning content or tool
+ * call data), and the latency between consecutive token deltas as mean, maximum and a
+ * histogram over {@link #LATENCY_BUCKET_BOUNDS_MILLIS}.
+ *
+ * <p><b>Usage Example:</b>
+ * <pre>{@code
+ * StreamAccumulator accumulator = new StreamAccumulator();
+ * try (StreamReader<ExecuteResult> reader = client.executeStreaming(param)) {
+ *     ExecuteResult delta;
+ *     while ((delta = reader.recv()) != null) {
+ *         accumulator.add(delta);
+ *     }
+ * }
+ * ExecuteResult result = accumulator.complete();
+ * }</pre>
+ *
+ * <p>Methods are synchronized, so a snapshot can be taken while another thread adds deltas.
+ */
+public class StreamAccumulator {
+    /**
+     * Upper bounds (inclusive) of the inter-token latency histogram buckets, in milliseconds;
+     * the last bucket counts everything above the last bound.
+     */
+    public static final long[] LATENCY_BUCKET_BOUNDS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000};
+    
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    
+    private Role role;
+    private final StringBuilder content = new StringBuilder();
+    private boolean hasContent;
+    private final StringBuilder reasoningContent = new StringBuilder();
+    private boolean hasReasoningContent;
+    private List<ContentPart> parts;
+    private String toolCallId;
+    private final Map<Integer, ToolCallBuilder> toolCalls = new TreeMap<>();
+    private String finishReason;
+    private TokenUsage usage;
+    
+    private int chunkCount;
+    private int tokenChunkCount;
+    private long firstTokenNanos = -1;
+    private long lastTokenNanos = -1;
+    private long maxInterTokenNanos;
+    private final long[] latencyHistogram = new long[LATENCY_BUCKET_BOUNDS_MILLIS.length + 1];
+    private long completeNanos = -1;
+    
+    public StreamAccumulator() {
+        this(System::nanoTime);
+    }
+    
+    /**
+     * @param nanoClock the clock timing the stream, in nanoseconds
+     */
+    public StreamAccumulator(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+    }
+    
+    /**
+     * Merge a delta into the accumulated result.
+     *
+     * @param delta the streamed result; null is ignored
+     * @return this accumulator
+     */
+    public synchronized StreamAccumulator add(ExecuteResult delta) {
+        if (delta == null) {
+            return this;
+        }
+        chunkCount++;
+        boolean token = false;
+        
+        Message message = delta.getMessage();
+        if (message != null) {
+            if (message.getRole() != null) {
+                role = message.getRole();
+            }
+            if (message.getContent() != null && !message.getContent().isEmpty()) {
+                content.append(message.getContent());
+                hasContent = true;
+                token = true;
+            }
+            if (message.getReasoningContent() != null && !message.getReasoningContent().isEmpty()) {
+                reasoningContent.append(message.getReasoningContent());
+                hasReasoningContent = true;
+                token = true;
+            }
+            if (message.getParts() != null && !message.getParts().isEmpty()) {
+                if (parts == null) {
+                    parts = new ArrayList<>();
+                }
+                parts.addAll(message.getParts());
+                token = true;
+            }
+            if (message.getToolCallId() != null) {
+                toolCallId = message.getToolCallId();
+            }
+            if (message.getToolCalls() != null) {
+                for (ToolCall toolCall : message.getToolCalls()) {
+                    if (toolCall != null) {
+                        toolCalls.computeIfAbsent(toolCall.getIndex(), ToolCallBuilder::new).merge(toolCall);
+                        token = true;
+                    }
+                }
+            }
+        }
+        if (delta.getFinishReason() != null && !delta.getFinishReason().isEmpty()) {
+            finishReason = delta.getFinishReason();
+        }
+        if (delta.getUsage() != null) {
+            usage = delta.getUsage();
+        }
+        
+        if (token) {
+            recordToken(nanoClock.getAsLong());
+        }
+        return this;
+    }
+    
+    private void recordToken(long now) {
+        tokenChunkCount++;
+        if (firstTokenNanos < 0) {
+            firstTokenNanos = now;
+        } else {
+            long gap = now - lastTokenNanos;
+            maxInterTokenNanos = Math.max(maxInterTokenNanos, gap);
+            latencyHistogram[bucketOf(gap)]++;
+        }
+        lastTokenNanos = now;
+    }
+    
+    private static int bucketOf(long gapNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(gapNanos);
+        for (int i = 0; i < LATENCY_BUCKET_BOUNDS_MILLIS.length; i++) {
+            if (millis <= LATENCY_BUCKET_BOUNDS_MILLIS[i]) {
+                return i;
+            }
+        }
+        return LATENCY_BUCKET_BOUNDS_MILLIS.length;
+    }
+    
+    /**
+     * Build the result accumulated so far. The returned objects are new and owned by the caller.
+     *
+     * @return the accumulated result
+     */
+    public synchronized ExecuteResult snapshot() {
+        Message message = new Message(role);
+        message.setContent(hasContent ? content.toString() : null);
+        message.setReasoningContent(hasReasoningContent ? reasoningContent.toString() : null);
+        message.setParts(parts != null ? new ArrayList<>(parts) : null);
+        message.setToolCallId(toolCallId);
+        if (!toolCalls.isEmpty()) {
+            List<ToolCall> calls = new ArrayList<>(toolCalls.size());
+            for (ToolCallBuilder toolCall : toolCalls.values()) {
+                calls.add(toolCall.build());
+            }
+            message.setToolCalls(calls);
+        }
+        return ExecuteResult.builder()
+            .message(message)
+            .finishReason(finishReason)
+            .usage(usage)
+            .build();
+    }
+    
+    /**
+     * Mark the stream as ended and build the final result, including the token usage if the
+     * stream reported it.
+     *
+     * @return the accumulated result
+     */
+    public synchronized ExecuteResult complete() {
+        if (completeNanos < 0) {
+            completeNanos = nanoClock.getAsLong();
+        }
+        return snapshot();
+    }
+    
+    /**
+     * @return the number of deltas added
+     */
+    public synchronized int getChunkCount() {
+        return chunkCount;
+    }
+    
+    /**
+     * @return the number of deltas that carried content, reasoning content or tool call data
+     */
+    public synchronized int getTokenChunkCount() {
+        return tokenChunkCount;
+    }
+    
+    /**
+     * @return the token usage of the latest delta reporting it, or null
+     */
+    public synchronized TokenUsage getUsage() {
+        return usage;
+    }
+    
+    /**
+     * @return nanoseconds from creation to the first token delta, or -1 if none arrived
+     */
+    public synchronized long getTimeToFirstTokenNanos() {
+        return firstTokenNanos < 0 ? -1 : firstTokenNanos - startNanos;
+    }
+    
+    /**
+     * @return mean nanoseconds between consecutive token deltas, or -1 with fewer than two
+     */
+    public synchronized long getMeanInterTokenLatencyNanos() {
+        return tokenChunkCount < 2 ? -1 : (lastTokenNanos - firstTokenNanos) / (tokenChunkCount - 1);
+    }
+    
+    /**
+     * @return the longest time between consecutive token deltas in nanoseconds, or -1 with
+     *         fewer than two
+     */
+    public synchronized long getMaxInterTokenLatencyNanos() {
+        return tokenChunkCount < 2 ? -1 : maxInterTokenNanos;
+    }
+    
+    /**
+     * Get the counts of inter-token latencies per bucket of {@link #LATENCY_BUCKET_BOUNDS_MILLIS},
+     * plus one final bucket for larger latencies.
+     *
+     * @return a copy of the bucket counts
+     */
+    public synchronized long[] getInterTokenLatencyHistogram() {
+        return Arrays.copyOf(latencyHistogram, latencyHistogram.length);
+    }
+    
+    /**
+     * @return nanoseconds from creation to {@link #complete()}, or -1 if not completed
+     */
+    public synchronized long getDurationNanos() {
+        return completeNanos < 0 ? -1 : completeNanos - startNanos;
+    }
+    
+    /**
+     * A tool call merged from its deltas.
+     */
+    private static final class ToolCallBuilder {
+        private final int index;
+        private String id;
+        private String type;
+        private String name;
+        private StringBuilder arguments;
+        
+        ToolCallBuilder(int index) {
+            this.index = index;
+        }
+        
+        void merge(ToolCall delta) {
+            if (delta.getId() != null && !delta.getId().isEmpty()) {
+                id = delta.getId();
+            }
+            if (delta.getType() != null && !delta.getType().isEmpty()) {
+                type = delta.getType();
+            }
+            ToolCall.FunctionCall function = delta.getFunctionCall();
+            if (function != null) {
+                if (function.getName() != null && !function.getName().isEmpty()) {
+                    name = function.getName();
+                }
+                if (function.getArguments() != null) {
+                    if (arguments == null) {
+                        arguments = new StringBuilder();
+                    }
+                    arguments.append(function.getArguments());
+                }
+            }
+        }
+        
+        ToolCall build() {
+            ToolCall toolCall = new ToolCall();
+            toolCall.setIndex(index);
+            toolCall.setId(id);
+            toolCall.setType(type);
+            if (name != null || arguments != null) {
+                ToolCall.FunctionCall function = new ToolCall.FunctionCall();
+                function.setName(name);
+                function.setArguments(arguments != null ? arguments.toString() : null);
+                toolCall.setFunctionCall(function);
+            }
+            return toolCall;
+        }
+    }
+}
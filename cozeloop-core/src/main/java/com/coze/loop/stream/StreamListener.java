@@ -0,0 +1,42 @@
+package com.coze.loop.stream;
+
+/**
+ * Callback receiver of a push-based stream.
+ *
+ * <p>Signals are delivered one at a time: {@link #onSubscribe} first, then
+ * {@link #onChunk} at most as many times as requested, then either {@link #onComplete} or
+ * {@link #onError}. Callbacks run on the stream's threads and must not block; a chunk
+ * arriving while there is no demand stays unread, so a slow listener slows the server
+ * down instead of buffering.
+ *
+ * @param <T> the type of the chunks
+ */
+public interface StreamListener<T> {
+    /**
+     * Called once before any other signal. The default requests an unbounded number of chunks.
+     *
+     * @param subscription requests chunks and cancels the stream
+     */
+    default void onSubscribe(StreamSubscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+    
+    /**
+     * Called for each chunk.
+     *
+     * @param chunk the chunk
+     */
+    void onChunk(T chunk);
+    
+    /**
+     * Called when the stream ended normally.
+     */
+    void onComplete();
+    
+    /**
+     * Called when the stream failed; no other signal follows.
+     *
+     * @param error the failure
+     */
+    void onError(Throwable error);
+}
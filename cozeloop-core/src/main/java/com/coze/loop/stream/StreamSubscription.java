@@ -0,0 +1,30 @@
+package com.coze.loop.stream;
+
+/**
+ * Demand and cancellation handle of a push-based stream.
+ *
+ * @see StreamListener
+ */
+public interface StreamSubscription {
+    /**
+     * Allow the stream to deliver up to {@code n} more chunks. Demand accumulates, and
+     * {@link Long#MAX_VALUE} means unbounded. A non-positive {@code n} fails the stream
+     * with an {@link IllegalArgumentException}.
+     *
+     * @param n the number of additional chunks
+     */
+    void request(long n);
+    
+    /**
+     * Stop the stream and release its connection. No signal is delivered after the chunk
+     * in progress, if any.
+     */
+    void cancel();
+    
+    /**
+     * Check if the stream was cancelled.
+     *
+     * @return true if cancelled
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,142 @@
+package com.coze.loop.trace;
+
+/**
+ * UTF-8-aware truncation of span input/output values.
+ *
+ * <p>An oversized value keeps a head and a tail segment joined by a marker that records the
+ * original size, e.g. {@code "{\"messages\":[...[truncated, 1048576 bytes]...]}"}. Sizes are counted
+ * in UTF-8 bytes, which is what the exporter sends, without encoding the string; segments never
+ * split a surrogate pair, so the result always encodes to valid UTF-8 within the budget.
+ */
+final class AttributeTruncator {
+    private static final String MARKER_PREFIX = "...[truncated, ";
+    private static final String MARKER_SUFFIX = " bytes]...";
+    
+    private AttributeTruncator() {
+    }
+    
+    /**
+     * Number of bytes {@code value} occupies when encoded as UTF-8.
+     *
+     * @param value the string
+     * @return the UTF-8 length
+     */
+    static long utf8Length(String value) {
+        int length = value.length();
+        long bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    // 4 bytes for the pair, counted over 2 chars
+                    bytes += 2;
+                    i++;
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+    
+    /**
+     * Whether {@code value} fits in {@code maxBytes} UTF-8 bytes, avoiding a full count where
+     * the char length alone decides.
+     */
+    static boolean fits(String value, long maxBytes) {
+        long chars = value.length();
+        if (chars > maxBytes) {
+            return false;
+        }
+        if (chars * 3 <= maxBytes) {
+            return true;
+        }
+        return utf8Length(value) <= maxBytes;
+    }
+    
+    /**
+     * Truncate {@code value} to at most {@code maxBytes} UTF-8 bytes, keeping its head and tail.
+     *
+     * <p>When the budget is too small to hold the marker, only the head is kept.
+     *
+     * @param value the value, which must not fit in {@code maxBytes}
+     * @param originalBytes the UTF-8 length of {@code value}
+     * @param maxBytes the byte budget
+     * @return the truncated value
+     */
+    static String truncate(String value, long originalBytes, long maxBytes) {
+        String marker = MARKER_PREFIX + originalBytes + MARKER_SUFFIX;
+        long available = maxBytes - marker.length();
+        if (available <= 0) {
+            return value.substring(0, headEnd(value, maxBytes));
+        }
+        long headBudget = available / 2;
+        int headEnd = headEnd(value, headBudget);
+        int tailStart = tailStart(value, headEnd, available - headBudget);
+        return new StringBuilder(headEnd + marker.length() + value.length() - tailStart)
+            .append(value, 0, headEnd)
+            .append(marker)
+            .append(value, tailStart, value.length())
+            .toString();
+    }
+    
+    /** End index of the longest prefix that fits in {@code budget} bytes. */
+    private static int headEnd(String value, long budget) {
+        int length = value.length();
+        long bytes = 0;
+        int i = 0;
+        while (i < length) {
+            char c = value.charAt(i);
+            int width;
+            int chars = 1;
+            if (c < 0x80) {
+                width = 1;
+            } else if (c < 0x800) {
+                width = 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                width = 4;
+                chars = 2;
+            } else {
+                width = 3;
+            }
+            if (bytes + width > budget) {
+                break;
+            }
+            bytes += width;
+            i += chars;
+        }
+        return i;
+    }
+    
+    /** Start index of the longest suffix, not overlapping {@code floor}, that fits in {@code budget} bytes. */
+    private static int tailStart(String value, int floor, long budget) {
+        long bytes = 0;
+        int i = value.length();
+        while (i > floor) {
+            char c = value.charAt(i - 1);
+            int width;
+            int chars = 1;
+            if (c < 0x80) {
+                width = 1;
+            } else if (c < 0x800) {
+                width = 2;
+            } else if (Character.isLowSurrogate(c) && i - 2 >= floor
+                    && Character.isHighSurrogate(value.charAt(i - 2))) {
+                width = 4;
+                chars = 2;
+            } else {
+                width = 3;
+            }
+            if (bytes + width > budget) {
+                break;
+            }
+            bytes += width;
+            i -= chars;
+        }
+        return i;
+    }
+}
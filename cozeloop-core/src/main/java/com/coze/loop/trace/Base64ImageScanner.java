@@ -0,0 +1,123 @@
+package com.coze.loop.trace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Regex-free scanner for inline base64 images ({@code data:image/<type>;base64,<data>}).
+ *
+ * <p>Matches what {@code data:image/([a-z]+);base64,([A-Za-z0-9+/=]+)} (case-insensitive) matches,
+ * except that the {@code data:} scheme itself must be lowercase, as every producer emits it. Content
+ * is only inspected around occurrences of {@code "data:"}, found with
+ * {@link String#indexOf(String, int)}; strings without inline images cost a single intrinsic
+ * search and no allocation. Each candidate is validated in one forward pass.
+ */
+final class Base64ImageScanner {
+    private static final String DATA_PREFIX = "data:";
+    private static final String IMAGE_PREFIX = "image/";
+    private static final String BASE64_MARKER = ";base64,";
+    
+    private Base64ImageScanner() {
+    }
+    
+    /**
+     * Find all inline base64 images in {@code content}, in order of appearance.
+     *
+     * @param content the content to scan
+     * @return the matches, empty if there are none
+     */
+    static List<Match> scan(String content) {
+        if (content == null) {
+            return Collections.emptyList();
+        }
+        List<Match> matches = null;
+        int length = content.length();
+        int from = 0;
+        int start;
+        while ((start = content.indexOf(DATA_PREFIX, from)) >= 0) {
+            int position = start + DATA_PREFIX.length();
+            from = position;
+            if (!content.regionMatches(true, position, IMAGE_PREFIX, 0, IMAGE_PREFIX.length())) {
+                continue;
+            }
+            position += IMAGE_PREFIX.length();
+            
+            int typeStart = position;
+            while (position < length && isAsciiLetter(content.charAt(position))) {
+                position++;
+            }
+            if (position == typeStart
+                    || !content.regionMatches(true, position, BASE64_MARKER, 0, BASE64_MARKER.length())) {
+                continue;
+            }
+            int typeEnd = position;
+            position += BASE64_MARKER.length();
+            
+            int dataStart = position;
+            while (position < length && isBase64Char(content.charAt(position))) {
+                position++;
+            }
+            if (position == dataStart) {
+                continue;
+            }
+            
+            if (matches == null) {
+                matches = new ArrayList<>();
+            }
+            matches.add(new Match(content, start, typeStart, typeEnd, dataStart, position));
+            from = position;
+        }
+        return matches != null ? matches : Collections.<Match>emptyList();
+    }
+    
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+    
+    private static boolean isBase64Char(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+            || c == '+' || c == '/' || c == '=';
+    }
+    
+    /**
+     * An inline image located in a content string.
+     */
+    static final class Match {
+        private final String content;
+        private final int start;
+        private final int typeStart;
+        private final int typeEnd;
+        private final int dataStart;
+        private final int end;
+        
+        Match(String content, int start, int typeStart, int typeEnd, int dataStart, int end) {
+            this.content = content;
+            this.start = start;
+            this.typeStart = typeStart;
+            this.typeEnd = typeEnd;
+            this.dataStart = dataStart;
+            this.end = end;
+        }
+        
+        /** Index of the {@code data:} prefix. */
+        int getStart() {
+            return start;
+        }
+        
+        /** Index just past the last base64 character. */
+        int getEnd() {
+            return end;
+        }
+        
+        /** Image subtype, e.g. {@code png}. */
+        String getFileType() {
+            return content.substring(typeStart, typeEnd);
+        }
+        
+        /** The base64 payload (copied out of the content). */
+        String getData() {
+            return content.substring(dataStart, end);
+        }
+    }
+}
@@ -37,10 +37,30 @@ import java.util.Map;
  * Span otelSpan = cozeSpan.getSpan();
  * // Use OpenTelemetry APIs directly
  * }</pre>
+ * 
+ * <p><b>Size limits:</b> when the span is created with a {@link CozeLoopTracerProvider.TraceConfig}
+ * that sets {@code maxAttributeBytes} or {@code maxSpanBytes}, input and output are truncated when
+ * they are set, so only the truncated value sits in the span until export. A truncated value keeps
+ * its head and tail around a marker, and its original UTF-8 size is recorded in the
+ * {@code input.original_bytes}/{@code output.original_bytes} tag. With
+ * {@code divertOversizedPayloads} the full value is also kept on the span, so that the exporter can
+ * upload it as a text file instead of dropping the truncated part; the span then holds the whole
+ * payload until it is exported, which bounds the exported span but not its memory. Setting a value
+ * that fits clears the size tag and diverted value of an earlier truncated one.
+ * 
+ * <p><b>Deferred serialization:</b> with {@code deferSerialization}, non-String inputs and outputs
+ * are not serialized here: only a reference is kept in {@link DeferredPayloads}, and the exporter
+ * thread serializes (and applies the size limits to) them in {@link SpanConverter}. Such objects
+ * must not be mutated after they are set. Inputs and outputs of spans that are not recording,
+ * e.g. sampled out, are ignored in every mode.
  */
 public class CozeLoopSpan implements AutoCloseable {
     private final Span span;
     private final Scope scope;
+    private final PayloadBudget budget;
+    private final DeferredPayloads deferredPayloads;
+    private boolean inputTruncated;
+    private boolean outputTruncated;
     
     /**
      * Create a new CozeLoopSpan wrapper.
@@ -52,40 +72,105 @@ public class CozeLoopSpan implements AutoCloseable {
      * @param scope the scope that makes this span current in the context
      */
     public CozeLoopSpan(Span span, Scope scope) {
+        this(span, scope, null);
+    }
+    
+    /**
+     * Create a new CozeLoopSpan wrapper that enforces the input/output size limits of
+     * {@code config}.
+     *
+     * @param span the underlying OpenTelemetry Span
+     * @param scope the scope that makes this span current in the context
+     * @param config the trace configuration, or null for no limits
+     */
+    public CozeLoopSpan(Span span, Scope scope, CozeLoopTracerProvider.TraceConfig config) {
+        this(span, scope, config, null);
+    }
+    
+    /**
+     * Create a new CozeLoopSpan wrapper that enforces the input/output size limits of
+     * {@code config} and defers serialization of non-String values to export time.
+     *
+     * @param span the underlying OpenTelemetry Span
+     * @param scope the scope that makes this span current in the context
+     * @param config the trace configuration, or null for no limits
+     * @param deferredPayloads the registry of deferred values, or null to serialize immediately
+     */
+    public CozeLoopSpan(Span span, Scope scope, CozeLoopTracerProvider.TraceConfig config,
+                        DeferredPayloads deferredPayloads) {
         this.span = span;
         this.scope = scope;
+        this.budget = new PayloadBudget(config);
+        this.deferredPayloads = deferredPayloads;
     }
     
     /**
      * Set the input for this span.
+     * 
+     * <p>The value is truncated if it exceeds the configured size limits.
      *
      * @param input the input object
      * @return this span
      */
     public CozeLoopSpan setInput(Object input) {
-        if (input != null) {
-            String inputStr = input instanceof String ? 
-                (String) input : JsonUtils.toJson(input);
-            span.setAttribute(AttributeKey.stringKey("cozeloop.input"), inputStr);
-        }
+        setPayload(true, input);
         return this;
     }
     
     /**
      * Set the output for this span.
+     * 
+     * <p>The value is truncated if it exceeds the configured size limits.
      *
      * @param output the output object
      * @return this span
      */
     public CozeLoopSpan setOutput(Object output) {
-        if (output != null) {
-            String outputStr = output instanceof String ? 
-                (String) output : JsonUtils.toJson(output);
-            span.setAttribute(AttributeKey.stringKey("cozeloop.output"), outputStr);
-        }
+        setPayload(false, output);
         return this;
     }
     
+    /**
+     * Store the input or output, serialized now or deferred to export time, and truncated to
+     * what is left of the attribute and span budgets.
+     *
+     * @param isInput whether the value is the input
+     * @param value the value
+     */
+    private synchronized void setPayload(boolean isInput, Object value) {
+        if (value == null || !span.isRecording()) {
+            return;
+        }
+        if (deferredPayloads != null) {
+            // A String replaces an earlier deferred object, so clear it either way
+            deferredPayloads.put(span, isInput, value instanceof String ? null : value);
+            if (!(value instanceof String)) {
+                return;
+            }
+        }
+        
+        String field = isInput ? "input" : "output";
+        String serialized = value instanceof String ? (String) value : JsonUtils.toJson(value);
+        PayloadBudget.Payload payload = budget.apply(isInput, serialized);
+        boolean wasTruncated = isInput ? inputTruncated : outputTruncated;
+        if (payload.isTruncated() || wasTruncated) {
+            // Attributes cannot be removed, so a value that fits overwrites the earlier tags with
+            // -1 and "", which SpanConverter leaves out
+            span.setAttribute(AttributeKey.longKey(field + ".original_bytes"), payload.getOriginalBytes());
+            if (payload.getOverflow() != null || wasTruncated) {
+                // Exported as a file by FileUploader
+                span.setAttribute(AttributeKey.stringKey("cozeloop." + field + "_overflow"),
+                    payload.getOverflow() != null ? payload.getOverflow() : "");
+            }
+        }
+        if (isInput) {
+            inputTruncated = payload.isTruncated();
+        } else {
+            outputTruncated = payload.isTruncated();
+        }
+        span.setAttribute(AttributeKey.stringKey("cozeloop." + field), payload.getValue());
+    }
+    
     /**
      * Set the error for this span.
      *
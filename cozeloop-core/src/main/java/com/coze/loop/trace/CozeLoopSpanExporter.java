@@ -2,18 +2,32 @@ package com.coze.loop.trace;
 
 import com.coze.loop.entity.UploadFile;
 import com.coze.loop.entity.UploadSpan;
+import com.coze.loop.exception.HttpStatusException;
 import com.coze.loop.http.HttpClient;
+import com.coze.loop.internal.JsonUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Custom OpenTelemetry SpanExporter that exports spans to CozeLoop platform.
@@ -58,6 +72,25 @@ import java.util.Map;
  *   <li>Attaches object storage keys to spans for later retrieval</li>
  * </ul>
  * 
+ * <p><b>Pipelined Export:</b>
+ * When {@code exportConcurrency} is greater than 1, sub-batches are posted concurrently on a
+ * dedicated executor instead of one after another on the exporter thread. At most
+ * {@code exportConcurrency} sub-batches are in flight at any time; once the window is full the
+ * exporter thread waits for a slot, which keeps memory bounded and pushes back on the
+ * BatchSpanProcessor. The {@link CompletableResultCode} returned by {@link #export} completes
+ * when every sub-batch has finished.
+ * 
+ * <p><b>Disk Spool:</b>
+ * When a {@link SpanSpool} is supplied, sub-batches that fail with a transient error
+ * (network failure, 5xx, 408 or 429) are appended to the spool instead of being dropped, and
+ * count as exported. A background drainer replays spooled batches in order, backing off
+ * exponentially (1s up to 60s) while the endpoint keeps failing. During that backoff new
+ * sub-batches overflow straight into the spool without a network attempt, so an outage does not
+ * stall the exporter thread on retries. Batches the server rejects permanently (other 4xx) or
+ * that fail for any other reason, such as a serialization error, are never spooled; spooled
+ * batches failing that way on replay are dropped and counted in
+ * {@link #getDroppedSpooledBatchCount()}.
+ * 
  * <p><b>Thread Safety:</b>
  * This exporter is thread-safe and can be called concurrently from multiple threads.
  * The {@code isShutdown} flag is volatile to ensure proper visibility across threads.
@@ -94,6 +127,21 @@ public class CozeLoopSpanExporter implements SpanExporter {
      */
     private static final int EXPORT_BATCH_SIZE = 25;
     
+    /**
+     * Maximum time to wait for in-flight sub-batches when the exporter is shut down.
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    
+    /**
+     * Initial delay between spool replay attempts; also the idle poll interval of the drainer.
+     */
+    private static final long SPOOL_INITIAL_BACKOFF_MILLIS = 1000;
+    
+    /**
+     * Maximum delay between spool replay attempts while the endpoint keeps failing.
+     */
+    private static final long SPOOL_MAX_BACKOFF_MILLIS = 60000;
+    
     private final HttpClient httpClient;
     private final String spanEndpoint;
     @SuppressWarnings("unused") // Used by FileUploader constructor
@@ -102,6 +150,49 @@ public class CozeLoopSpanExporter implements SpanExporter {
     private final String serviceName;
     private final FileUploader fileUploader;
     
+    /**
+     * Input/output objects whose serialization is deferred to export time, or null when
+     * {@code deferSerialization} is off.
+     */
+    private final DeferredPayloads deferredPayloads;
+    
+    /**
+     * Executor for pipelined sub-batch export, or {@code null} when sub-batches
+     * are exported sequentially on the calling thread.
+     */
+    private final ExecutorService exportExecutor;
+    
+    /**
+     * Bounds the number of sub-batches in flight in pipelined mode.
+     */
+    private final Semaphore inFlightPermits;
+    
+    /**
+     * Disk spool for batches that could not be exported, or {@code null} when disabled.
+     */
+    private final SpanSpool spool;
+    
+    /**
+     * Single-threaded scheduler replaying spooled batches, or {@code null} when the spool is disabled.
+     */
+    private final ScheduledThreadPoolExecutor drainExecutor;
+    
+    /**
+     * True while the endpoint is failing and spooled batches are waiting for replay;
+     * new batches then go straight to the spool.
+     */
+    private volatile boolean spoolBacklogged = false;
+    
+    /**
+     * Current replay backoff, only accessed from the drainer thread.
+     */
+    private long drainBackoffMillis = SPOOL_INITIAL_BACKOFF_MILLIS;
+    
+    /**
+     * Spooled batches dropped on replay because they failed permanently.
+     */
+    private final AtomicLong droppedSpooledBatches = new AtomicLong();
+    
     private volatile boolean isShutdown = false;
     
     /**
@@ -126,12 +217,117 @@ public class CozeLoopSpanExporter implements SpanExporter {
                                 String fileEndpoint,
                                 String workspaceId,
                                 String serviceName) {
+        this(httpClient, spanEndpoint, fileEndpoint, workspaceId, serviceName, 1);
+    }
+    
+    /**
+     * Create a new CozeLoopSpanExporter with pipelined sub-batch export.
+     * 
+     * <p>With {@code exportConcurrency} of 1 (or less) sub-batches are exported sequentially
+     * on the exporter thread, exactly as the 5-argument constructor does. Larger values enable
+     * pipelined export: up to {@code exportConcurrency} sub-batches are posted concurrently.
+     *
+     * @param httpClient the HTTP client for making API calls (handles retries, auth, etc.)
+     * @param spanEndpoint the CozeLoop API endpoint for uploading spans
+     * @param fileEndpoint the CozeLoop API endpoint for uploading files (multimodal content)
+     * @param workspaceId the CozeLoop workspace ID
+     * @param serviceName the service name (used for resource identification)
+     * @param exportConcurrency maximum number of sub-batches exported concurrently
+     */
+    public CozeLoopSpanExporter(HttpClient httpClient,
+                                String spanEndpoint,
+                                String fileEndpoint,
+                                String workspaceId,
+                                String serviceName,
+                                int exportConcurrency) {
+        this(httpClient, spanEndpoint, fileEndpoint, workspaceId, serviceName, exportConcurrency, null);
+    }
+    
+    /**
+     * Create a new CozeLoopSpanExporter backed by a disk spool.
+     * 
+     * <p>Batches that fail with a transient error are written to {@code spool} and replayed in the
+     * background once the endpoint recovers. Batches left in the spool by a previous process are
+     * replayed as well. The exporter takes ownership of the spool and closes it on shutdown.
+     *
+     * @param httpClient the HTTP client for making API calls (handles retries, auth, etc.)
+     * @param spanEndpoint the CozeLoop API endpoint for uploading spans
+     * @param fileEndpoint the CozeLoop API endpoint for uploading files (multimodal content)
+     * @param workspaceId the CozeLoop workspace ID
+     * @param serviceName the service name (used for resource identification)
+     * @param exportConcurrency maximum number of sub-batches exported concurrently
+     * @param spool the disk spool for failed batches, or {@code null} to drop them
+     */
+    public CozeLoopSpanExporter(HttpClient httpClient,
+                                String spanEndpoint,
+                                String fileEndpoint,
+                                String workspaceId,
+                                String serviceName,
+                                int exportConcurrency,
+                                SpanSpool spool) {
+        this(httpClient, spanEndpoint, fileEndpoint, workspaceId, serviceName,
+            CozeLoopTracerProvider.TraceConfig.builder().exportConcurrency(exportConcurrency).build(),
+            spool);
+    }
+    
+    /**
+     * Create a new CozeLoopSpanExporter from a trace configuration.
+     * 
+     * <p>Export concurrency and the file upload stage limits are taken from {@code config}.
+     *
+     * @param httpClient the HTTP client for making API calls (handles retries, auth, etc.)
+     * @param spanEndpoint the CozeLoop API endpoint for uploading spans
+     * @param fileEndpoint the CozeLoop API endpoint for uploading files (multimodal content)
+     * @param workspaceId the CozeLoop workspace ID
+     * @param serviceName the service name (used for resource identification)
+     * @param config the trace configuration
+     * @param spool the disk spool for failed batches, or {@code null} to drop them
+     */
+    public CozeLoopSpanExporter(HttpClient httpClient,
+                                String spanEndpoint,
+                                String fileEndpoint,
+                                String workspaceId,
+                                String serviceName,
+                                CozeLoopTracerProvider.TraceConfig config,
+                                SpanSpool spool) {
         this.httpClient = httpClient;
         this.spanEndpoint = spanEndpoint;
         this.fileEndpoint = fileEndpoint;
         this.workspaceId = workspaceId;
         this.serviceName = serviceName;
-        this.fileUploader = new FileUploader(httpClient, fileEndpoint, workspaceId);
+        this.fileUploader = new FileUploader(httpClient, fileEndpoint, workspaceId,
+            config.getFileUploadConcurrency(), config.getFileUploadCacheSize());
+        this.deferredPayloads = config.isDeferSerialization() ? new DeferredPayloads(config) : null;
+        
+        int exportConcurrency = config.getExportConcurrency();
+        if (exportConcurrency > 1) {
+            this.exportExecutor = Executors.newFixedThreadPool(
+                exportConcurrency, new ExportThreadFactory("cozeloop-span-export-"));
+            this.inFlightPermits = new Semaphore(exportConcurrency);
+        } else {
+            this.exportExecutor = null;
+            this.inFlightPermits = null;
+        }
+        
+        this.spool = spool;
+        if (spool != null) {
+            this.drainExecutor = new ScheduledThreadPoolExecutor(1,
+                new ExportThreadFactory("cozeloop-span-spool-"));
+            this.drainExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            // Replay anything left over from a previous run right away
+            scheduleDrain(0);
+        } else {
+            this.drainExecutor = null;
+        }
+    }
+    
+    /**
+     * Get the registry of deferred input/output values this exporter serializes.
+     *
+     * @return the registry, or null if serialization is not deferred
+     */
+    DeferredPayloads getDeferredPayloads() {
+        return deferredPayloads;
     }
     
     /**
@@ -157,9 +353,11 @@ public class CozeLoopSpanExporter implements SpanExporter {
      * 
      * <p><b>Performance Considerations:</b>
      * <ul>
-     *   <li>File extraction and upload happen synchronously (may block briefly)</li>
+     *   <li>File extraction happens on the calling thread; uploads run on the {@link FileUploader}
+     *       pool and a sub-batch only waits for the uploads of its own spans</li>
      *   <li>Batch splitting is O(n) where n is the number of spans</li>
-     *   <li>Network calls are made sequentially (one batch at a time)</li>
+     *   <li>Network calls are made sequentially (one batch at a time), unless pipelined
+     *       export is enabled, in which case up to {@code exportConcurrency} batches are in flight</li>
      * </ul>
      * 
      * @param spans the collection of spans to export (from OpenTelemetry BatchSpanProcessor)
@@ -170,6 +368,7 @@ public class CozeLoopSpanExporter implements SpanExporter {
         // Check if exporter is shutdown
         if (isShutdown) {
             logger.warn("Export called after shutdown, ignoring");
+            releaseDeferredPayloads(spans);
             return CompletableResultCode.ofFailure();
         }
         
@@ -182,28 +381,22 @@ public class CozeLoopSpanExporter implements SpanExporter {
         // This conversion extracts all span data (attributes, events, timing, etc.)
         // and transforms it into CozeLoop's UploadSpan format
         List<UploadSpan> uploadSpans = new ArrayList<>();
+        List<List<UploadFile>> filesPerSpan = new ArrayList<>();
         try {
             for (SpanData spanData : spans) {
                 // Convert OpenTelemetry SpanData to CozeLoop UploadSpan
-                UploadSpan uploadSpan = SpanConverter.convert(spanData, workspaceId, serviceName);
+                UploadSpan uploadSpan = SpanConverter.convert(spanData, workspaceId, serviceName, deferredPayloads);
                 
                 // Step 2: Handle multimodal content (images, large text)
-                // Extract file references from span attributes and upload them
-                List<UploadFile> files = fileUploader.extractFiles(spanData);
-                if (!files.isEmpty()) {
-                    // Upload files to CozeLoop object storage
-                    String objectStorage = fileUploader.uploadFiles(files);
-                    if (objectStorage != null) {
-                        // Attach object storage key to span for later retrieval
-                        uploadSpan.setObjectStorage(objectStorage);
-                    }
-                }
+                // Extract inline images and diverted oversized payloads; uploads are started below
+                filesPerSpan.add(fileUploader.extractFiles(uploadSpan));
                 
                 uploadSpans.add(uploadSpan);
             }
         } catch (Exception e) {
             // Conversion errors fail the entire export
             logger.error("Failed to convert spans for export", e);
+            releaseDeferredPayloads(spans);
             return CompletableResultCode.ofFailure();
         }
         
@@ -211,9 +404,18 @@ public class CozeLoopSpanExporter implements SpanExporter {
             return CompletableResultCode.ofSuccess();
         }
         
+        // Upload files of all spans in the background (deduplicated, one request per span);
+        // each sub-batch waits only for the uploads of its own spans before being posted
+        List<CompletableFuture<FileUploader.UploadResult>> uploads = fileUploader.uploadAsync(filesPerSpan);
+        
         // Step 3: Split into batches of EXPORT_BATCH_SIZE (25 spans each)
         int totalSpans = uploadSpans.size();
         int totalBatches = (totalSpans + EXPORT_BATCH_SIZE - 1) / EXPORT_BATCH_SIZE;
+        
+        if (exportExecutor != null) {
+            return exportPipelined(uploadSpans, filesPerSpan, uploads, totalBatches);
+        }
+        
         int successCount = 0;
         int failureCount = 0;
         
@@ -228,6 +430,7 @@ public class CozeLoopSpanExporter implements SpanExporter {
             
             try {
                 // Export this batch to CozeLoop platform
+                attachUploads(batch, filesPerSpan.subList(start, end), uploads.subList(start, end));
                 exportBatch(batch, i + 1, totalBatches);
                 successCount++;
                 logger.debug("Successfully exported batch {}/{} ({} spans)", 
@@ -254,11 +457,141 @@ public class CozeLoopSpanExporter implements SpanExporter {
         }
     }
     
+    /**
+     * Export sub-batches concurrently through a bounded in-flight window.
+     * 
+     * <p>The calling thread submits sub-batches to the export executor, waiting for a free
+     * permit whenever {@code exportConcurrency} batches are already in flight. The returned
+     * result completes once every sub-batch has finished, and fails if any of them failed.
+     *
+     * @param uploadSpans the converted spans to export
+     * @param filesPerSpan the files extracted from each span
+     * @param uploads the pending file uploads of each span
+     * @param totalBatches the number of sub-batches
+     * @return result that completes when all sub-batches have finished
+     */
+    private CompletableResultCode exportPipelined(List<UploadSpan> uploadSpans,
+                                                  List<List<UploadFile>> filesPerSpan,
+                                                  List<CompletableFuture<FileUploader.UploadResult>> uploads,
+                                                  int totalBatches) {
+        CompletableResultCode result = new CompletableResultCode();
+        AtomicInteger remaining = new AtomicInteger(totalBatches);
+        AtomicInteger failureCount = new AtomicInteger();
+        int totalSpans = uploadSpans.size();
+        
+        logger.debug("Exporting {} spans in {} batches (batch size: {}, pipelined)",
+            totalSpans, totalBatches, EXPORT_BATCH_SIZE);
+        
+        for (int i = 0; i < totalBatches; i++) {
+            int start = i * EXPORT_BATCH_SIZE;
+            int end = Math.min(start + EXPORT_BATCH_SIZE, totalSpans);
+            List<UploadSpan> batch = uploadSpans.subList(start, end);
+            List<List<UploadFile>> batchFiles = filesPerSpan.subList(start, end);
+            List<CompletableFuture<FileUploader.UploadResult>> batchUploads = uploads.subList(start, end);
+            int batchNumber = i + 1;
+            
+            try {
+                inFlightPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Batches that were never submitted count as failed
+                int skipped = totalBatches - i;
+                logger.warn("Interrupted while exporting, {} batches were not sent", skipped);
+                failureCount.addAndGet(skipped);
+                if (remaining.addAndGet(-skipped) == 0) {
+                    result.fail();
+                }
+                return result;
+            }
+            
+            try {
+                exportExecutor.execute(() -> {
+                    try {
+                        attachUploads(batch, batchFiles, batchUploads);
+                        exportBatch(batch, batchNumber, totalBatches);
+                        logger.debug("Successfully exported batch {}/{} ({} spans)",
+                            batchNumber, totalBatches, batch.size());
+                    } catch (Exception e) {
+                        failureCount.incrementAndGet();
+                        logger.error("Failed to export batch {}/{} ({} spans): {}",
+                            batchNumber, totalBatches, batch.size(), e.getMessage(), e);
+                    } finally {
+                        inFlightPermits.release();
+                        completeIfDone(result, remaining, failureCount, totalSpans, totalBatches);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlightPermits.release();
+                failureCount.incrementAndGet();
+                logger.error("Failed to submit batch {}/{}: exporter is shutting down",
+                    batchNumber, totalBatches);
+                completeIfDone(result, remaining, failureCount, totalSpans, totalBatches);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Complete the export result once the last outstanding sub-batch has finished.
+     */
+    private void completeIfDone(CompletableResultCode result, AtomicInteger remaining,
+                                AtomicInteger failureCount, int totalSpans, int totalBatches) {
+        if (remaining.decrementAndGet() != 0) {
+            return;
+        }
+        int failed = failureCount.get();
+        if (failed == 0) {
+            logger.debug("Successfully exported all {} spans in {} batches",
+                totalSpans, totalBatches);
+            result.succeed();
+        } else {
+            logger.warn("Exported {} spans: {} batches succeeded, {} batches failed",
+                totalSpans, totalBatches - failed, failed);
+            result.fail();
+        }
+    }
+    
+    /**
+     * Release the deferred input/output of spans that will not be converted.
+     */
+    private void releaseDeferredPayloads(Collection<SpanData> spans) {
+        if (deferredPayloads == null || spans == null) {
+            return;
+        }
+        for (SpanData spanData : spans) {
+            deferredPayloads.remove(spanData.getTraceId(), spanData.getSpanId());
+        }
+    }
+    
+    /**
+     * Wait for the file uploads of a sub-batch, attach the object storage keys to its spans and
+     * replace their inline images with references to the uploaded files.
+     *
+     * @param batch the spans of the sub-batch
+     * @param files the files extracted from those spans, in the same order
+     * @param uploads the pending uploads of those spans, in the same order
+     */
+    private void attachUploads(List<UploadSpan> batch, List<List<UploadFile>> files,
+                               List<CompletableFuture<FileUploader.UploadResult>> uploads) {
+        for (int i = 0; i < batch.size(); i++) {
+            // Upload futures never complete exceptionally; failed uploads yield null keys
+            FileUploader.UploadResult result = uploads.get(i).join();
+            UploadSpan span = batch.get(i);
+            if (result.getObjectStorage() != null) {
+                // Attach object storage key to span for later retrieval
+                span.setObjectStorage(result.getObjectStorage());
+            }
+            fileUploader.replaceInlineImages(span, files.get(i), result);
+        }
+    }
+    
     /**
      * Export a single batch of spans to the remote server.
      * 
      * <p>This method sends a batch of UploadSpan objects to the CozeLoop platform
-     * via HTTP POST. The payload is a JSON object containing the spans array.
+     * via HTTP POST. The payload is a JSON object containing the spans array, streamed
+     * straight into the request sink (no intermediate Map or String is built).
      * 
      * <p><b>Payload Format:</b>
      * <pre>{@code
@@ -285,13 +618,26 @@ public class CozeLoopSpanExporter implements SpanExporter {
      * @throws Exception if the HTTP request fails after all retries
      */
     private void exportBatch(List<UploadSpan> batch, int batchNumber, int totalBatches) throws Exception {
-        // Build payload: { "spans": [ ... ] }
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("spans", batch);
+        if (spool != null && spoolBacklogged) {
+            // Endpoint is down and the drainer is backing off: overflow straight to disk
+            if (spoolBatch(batch)) {
+                return;
+            }
+        }
         
-        // Send HTTP POST request to CozeLoop platform
-        // The HTTP client handles authentication, retries, and error handling
-        httpClient.post(spanEndpoint, payload);
+        try {
+            // Send HTTP POST request to CozeLoop platform, streaming { "spans": [ ... ] }
+            // The HTTP client handles authentication, retries, and error handling
+            httpClient.postStreaming(spanEndpoint, generator -> writeSpans(generator, batch), true);
+        } catch (Exception e) {
+            if (spool == null || !isTransient(e) || !spoolBatch(batch)) {
+                throw e;
+            }
+            spoolBacklogged = true;
+            logger.warn("Failed to export batch {}/{} ({} spans), spooled to disk for replay: {}",
+                batchNumber, totalBatches, batch.size(), e.getMessage());
+            return;
+        }
         
         // Log at trace level for detailed debugging
         if (logger.isTraceEnabled()) {
@@ -300,6 +646,117 @@ public class CozeLoopSpanExporter implements SpanExporter {
         }
     }
     
+    /**
+     * Append a batch to the disk spool.
+     *
+     * @param batch the spans to spool
+     * @return true if the batch was stored
+     */
+    private boolean spoolBatch(List<UploadSpan> batch) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (JsonGenerator generator = JsonUtils.getMapper().getFactory().createGenerator(out)) {
+                writeSpans(generator, batch);
+            }
+            if (spool.append(out.toByteArray())) {
+                return true;
+            }
+            logger.warn("Span batch of {} bytes does not fit in the spool", out.size());
+        } catch (Exception e) {
+            logger.error("Failed to spool span batch: {}", e.getMessage(), e);
+        }
+        return false;
+    }
+    
+    /**
+     * Replay spooled batches until the spool is empty or the endpoint fails, then reschedule.
+     */
+    private void drainSpool() {
+        if (isShutdown) {
+            return;
+        }
+        try {
+            SpanSpool.Record record;
+            while (!isShutdown && (record = spool.peek()) != null) {
+                try {
+                    httpClient.postJson(spanEndpoint, record.getPayload(), true);
+                } catch (Exception e) {
+                    if (isTransient(e)) {
+                        throw e;
+                    }
+                    droppedSpooledBatches.incrementAndGet();
+                    logger.warn("Dropping spooled span batch that failed permanently: {}", e.getMessage());
+                }
+                spool.ack(record);
+                drainBackoffMillis = SPOOL_INITIAL_BACKOFF_MILLIS;
+            }
+            spoolBacklogged = false;
+            scheduleDrain(SPOOL_INITIAL_BACKOFF_MILLIS);
+        } catch (Exception e) {
+            if (isShutdown) {
+                return;
+            }
+            spoolBacklogged = true;
+            logger.warn("Failed to replay spooled spans, retrying in {} ms: {}",
+                drainBackoffMillis, e.getMessage());
+            scheduleDrain(drainBackoffMillis);
+            drainBackoffMillis = Math.min(drainBackoffMillis * 2, SPOOL_MAX_BACKOFF_MILLIS);
+        }
+    }
+    
+    private void scheduleDrain(long delayMillis) {
+        try {
+            drainExecutor.schedule(this::drainSpool, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Exporter is shutting down
+        }
+    }
+    
+    /**
+     * Get the number of spooled batches dropped on replay because they failed permanently.
+     *
+     * @return dropped batch count
+     */
+    public long getDroppedSpooledBatchCount() {
+        return droppedSpooledBatches.get();
+    }
+    
+    /**
+     * Whether an export failure may succeed later: an I/O failure or a retryable HTTP status.
+     * Serialization errors and any other exception would fail the same way on every replay.
+     */
+    static boolean isTransient(Exception e) {
+        if (e instanceof HttpStatusException) {
+            return ((HttpStatusException) e).isRetryable();
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JsonProcessingException) {
+                return false;
+            }
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Write the span upload payload: {@code { "spans": [ ... ] }}.
+     *
+     * @param generator the generator bound to the request sink
+     * @param spans the spans to write
+     * @throws IOException if writing fails
+     */
+    static void writeSpans(JsonGenerator generator, List<UploadSpan> spans) throws IOException {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("spans");
+        for (UploadSpan span : spans) {
+            JsonUtils.writeValue(generator, span);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+    
     /**
      * Flush any pending spans.
      * 
@@ -323,6 +780,8 @@ public class CozeLoopSpanExporter implements SpanExporter {
      * <p>This method should be called when the application is shutting down to:
      * <ul>
      *   <li>Mark the exporter as shutdown (prevents new exports)</li>
+     *   <li>Wait for in-flight pipelined batches to finish (up to 10 seconds)</li>
+     *   <li>Stop the spool drainer and close the spool (pending batches stay on disk)</li>
      *   <li>Close HTTP client connections</li>
      *   <li>Release any held resources</li>
      * </ul>
@@ -344,7 +803,26 @@ public class CozeLoopSpanExporter implements SpanExporter {
         isShutdown = true;
         
         try {
-            // Close HTTP client to release connections and resources
+            // Let in-flight pipelined batches finish before closing connections
+            if (exportExecutor != null) {
+                exportExecutor.shutdown();
+                if (!exportExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    logger.warn("Timed out waiting for in-flight span batches to finish");
+                    exportExecutor.shutdownNow();
+                }
+            }
+            
+            // Stop replaying; anything still spooled is replayed by the next process
+            if (drainExecutor != null) {
+                drainExecutor.shutdown();
+                if (!drainExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    drainExecutor.shutdownNow();
+                }
+                spool.close();
+            }
+            
+            // Stop the file upload stage, then close HTTP client to release connections and resources
+            fileUploader.close();
             httpClient.close();
             logger.info("CozeLoopSpanExporter shutdown completed");
             return CompletableResultCode.ofSuccess();
@@ -353,5 +831,23 @@ public class CozeLoopSpanExporter implements SpanExporter {
             return CompletableResultCode.ofFailure();
         }
     }
+    
+    /**
+     * Thread factory for export and spool drainer threads (daemon, named for diagnostics).
+     */
+    private static final class ExportThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger counter = new AtomicInteger();
+        
+        ExportThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+        
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
-
@@ -0,0 +1,501 @@
+package com.coze.loop.trace;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Span processor that batches ended spans through a lock-free ring buffer.
+ *
+ * <p>This is a drop-in alternative to OpenTelemetry's {@code BatchSpanProcessor} for
+ * applications that end spans at very high rates. The stock processor hands spans to its worker
+ * through an {@code ArrayBlockingQueue}, so every {@link #onEnd} takes a lock shared by all
+ * request threads. This processor publishes spans into a bounded {@link RingBuffer} with a
+ * single CAS instead; request threads never block and never contend on a lock.
+ *
+ * <p><b>Worker:</b>
+ * A single daemon thread drains the buffer into batches of up to {@code maxExportBatchSize}
+ * spans and hands them to the exporter. A batch is exported when it is full, when
+ * {@code scheduleDelay} has elapsed since the last export, on {@link #forceFlush()} and on
+ * {@link #shutdown()}. Exports are synchronous and bounded by {@code exporterTimeout}.
+ *
+ * <p><b>Wait Strategies:</b>
+ * When the buffer is empty and the current batch is not due yet, the worker waits according to
+ * its {@link WaitStrategy}:
+ * <ul>
+ *   <li>{@link WaitStrategy#SPIN}: Busy-spins. Lowest latency, but keeps one core fully busy</li>
+ *   <li>{@link WaitStrategy#YIELD}: Yields the CPU between polls. Low latency, high CPU use</li>
+ *   <li>{@link WaitStrategy#PARK}: Parks until the batch is due or producers have queued enough
+ *       spans to fill it. Negligible CPU use when idle (default)</li>
+ * </ul>
+ *
+ * <p><b>Overflow Policies:</b>
+ * When the buffer is full, an ended span is handled according to the {@link OverflowPolicy}:
+ * {@link OverflowPolicy#DROP_NEWEST} discards the span being ended (the same behavior as
+ * {@code BatchSpanProcessor}), {@link OverflowPolicy#DROP_OLDEST} evicts the oldest queued span
+ * to make room, favoring recent data. Dropped spans are counted in {@link #getDroppedSpanCount()}.
+ *
+ * <p><b>Usage:</b>
+ * <pre>{@code
+ * SpanProcessor processor = CozeLoopSpanProcessor.builder(exporter)
+ *     .setMaxQueueSize(8192)
+ *     .setWaitStrategy(CozeLoopSpanProcessor.WaitStrategy.YIELD)
+ *     .setOverflowPolicy(CozeLoopSpanProcessor.OverflowPolicy.DROP_OLDEST)
+ *     .build();
+ * }</pre>
+ * Usually it is selected through {@code TraceConfig.spanProcessorType(RING_BUFFER)}.
+ *
+ * @see CozeLoopTracerProvider.TraceConfig
+ */
+public final class CozeLoopSpanProcessor implements SpanProcessor {
+    private static final Logger logger = LoggerFactory.getLogger(CozeLoopSpanProcessor.class);
+    
+    /**
+     * How often a producer retries evicting the oldest span under DROP_OLDEST before
+     * giving up and dropping its own span (only reached under extreme contention).
+     */
+    private static final int MAX_EVICTION_ATTEMPTS = 16;
+    
+    /**
+     * How the worker waits for spans when the buffer is empty.
+     */
+    public enum WaitStrategy {
+        /** Busy-spin on the buffer. */
+        SPIN,
+        /** Yield the CPU between polls. */
+        YIELD,
+        /** Park until the batch is due or enough spans are queued. */
+        PARK
+    }
+    
+    /**
+     * What happens to an ended span when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Evict the oldest queued span. */
+        DROP_OLDEST,
+        /** Discard the span being ended. */
+        DROP_NEWEST
+    }
+    
+    private final SpanExporter spanExporter;
+    private final RingBuffer<ReadableSpan> buffer;
+    private final int maxExportBatchSize;
+    private final long scheduleDelayNanos;
+    private final long exporterTimeoutNanos;
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    private final DeferredPayloads deferredPayloads;
+    private final Thread worker;
+    
+    private final AtomicLong droppedSpans = new AtomicLong();
+    private final AtomicReference<CompletableResultCode> flushRequest = new AtomicReference<>();
+    private final AtomicBoolean isShutdown = new AtomicBoolean(false);
+    private final CompletableResultCode shutdownResult = new CompletableResultCode();
+    
+    /**
+     * Set by a parked worker: the number of queued spans that completes its batch.
+     * Producers unpark the worker once the buffer reaches it; 0 means the worker is not parked.
+     */
+    private volatile int spansNeeded;
+    private volatile boolean loggedShutdownDrop;
+    /**
+     * Set by the worker once its final drain is done; spans and flush requests arriving later
+     * are handled by the caller.
+     */
+    private volatile boolean workerExited;
+    
+    private CozeLoopSpanProcessor(Builder builder) {
+        this.spanExporter = builder.spanExporter;
+        this.buffer = new RingBuffer<>(builder.maxQueueSize);
+        this.maxExportBatchSize = builder.maxExportBatchSize;
+        this.scheduleDelayNanos = builder.scheduleDelayNanos;
+        this.exporterTimeoutNanos = builder.exporterTimeoutNanos;
+        this.waitStrategy = builder.waitStrategy;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.deferredPayloads = builder.deferredPayloads;
+        this.worker = new Thread(this::runWorker, "cozeloop-span-processor");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+    
+    /**
+     * Create a builder for a processor exporting to {@code spanExporter}.
+     *
+     * @param spanExporter the exporter receiving batches
+     * @return a new builder
+     */
+    public static Builder builder(SpanExporter spanExporter) {
+        if (spanExporter == null) {
+            throw new IllegalArgumentException("spanExporter cannot be null");
+        }
+        return new Builder(spanExporter);
+    }
+    
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+        // Nothing to do on start
+    }
+    
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+    
+    /**
+     * Publish an ended span to the ring buffer. Never blocks.
+     *
+     * <p>Spans ending after {@link #shutdown()} are dropped and counted, as the worker no longer
+     * drains the buffer.
+     *
+     * @param span the ended span
+     */
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (span == null || !span.getSpanContext().isSampled()) {
+            return;
+        }
+        if (isShutdown.get()) {
+            drop(span);
+            logShutdownDrop();
+            return;
+        }
+        if (!buffer.offer(span)) {
+            handleOverflow(span);
+        }
+        // The worker may have finished its final drain between the check above and the offer
+        if (workerExited) {
+            if (dropRemaining() > 0) {
+                logShutdownDrop();
+            }
+            return;
+        }
+        int needed = spansNeeded;
+        if (needed > 0 && buffer.size() >= needed) {
+            LockSupport.unpark(worker);
+        }
+    }
+    
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+    
+    private void handleOverflow(ReadableSpan span) {
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            for (int i = 0; i < MAX_EVICTION_ATTEMPTS; i++) {
+                ReadableSpan oldest = buffer.poll();
+                if (oldest != null) {
+                    drop(oldest);
+                }
+                if (buffer.offer(span)) {
+                    return;
+                }
+            }
+        }
+        if (drop(span) == 1) {
+            logger.warn("Span buffer is full (capacity: {}), dropping spans", buffer.capacity());
+        }
+    }
+    
+    private void logShutdownDrop() {
+        if (!loggedShutdownDrop) {
+            loggedShutdownDrop = true;
+            logger.warn("Span processor is shut down, dropping spans");
+        }
+    }
+    
+    /**
+     * Drop every span still in the buffer once the worker has stopped draining it.
+     *
+     * @return the number of spans dropped
+     */
+    private int dropRemaining() {
+        int dropped = 0;
+        ReadableSpan span;
+        while ((span = buffer.poll()) != null) {
+            drop(span);
+            dropped++;
+        }
+        return dropped;
+    }
+    
+    /**
+     * Count a discarded span and release its deferred input/output.
+     *
+     * @return the dropped span count
+     */
+    private long drop(ReadableSpan span) {
+        if (deferredPayloads != null) {
+            SpanContext spanContext = span.getSpanContext();
+            deferredPayloads.remove(spanContext.getTraceId(), spanContext.getSpanId());
+        }
+        return droppedSpans.incrementAndGet();
+    }
+    
+    /**
+     * Export all spans queued so far and flush the exporter.
+     *
+     * @return result that completes once queued spans have been exported
+     */
+    @Override
+    public CompletableResultCode forceFlush() {
+        if (isShutdown.get()) {
+            return CompletableResultCode.ofSuccess();
+        }
+        CompletableResultCode result = new CompletableResultCode();
+        while (true) {
+            CompletableResultCode pending = flushRequest.get();
+            if (pending != null) {
+                return pending;
+            }
+            if (flushRequest.compareAndSet(null, result)) {
+                break;
+            }
+        }
+        // Nobody will complete the request if the worker already took its final flush request
+        if (workerExited && flushRequest.compareAndSet(result, null)) {
+            result.succeed();
+            return result;
+        }
+        LockSupport.unpark(worker);
+        return result;
+    }
+    
+    /**
+     * Export remaining spans and shut down the exporter. Idempotent.
+     *
+     * @return result that completes once the worker has finished
+     */
+    @Override
+    public CompletableResultCode shutdown() {
+        if (isShutdown.compareAndSet(false, true)) {
+            LockSupport.unpark(worker);
+        }
+        return shutdownResult;
+    }
+    
+    /**
+     * Get the number of spans dropped because the buffer was full or the processor was shut down.
+     *
+     * @return dropped span count
+     */
+    public long getDroppedSpanCount() {
+        return droppedSpans.get();
+    }
+    
+    private void runWorker() {
+        List<SpanData> batch = new ArrayList<>(maxExportBatchSize);
+        long nextExportNanos = System.nanoTime() + scheduleDelayNanos;
+        
+        while (!isShutdown.get()) {
+            CompletableResultCode flush = flushRequest.get();
+            if (flush != null) {
+                batch = drainAndExport(batch);
+                flushExporter(flush);
+                nextExportNanos = System.nanoTime() + scheduleDelayNanos;
+                continue;
+            }
+            
+            ReadableSpan span;
+            while (batch.size() < maxExportBatchSize && (span = buffer.poll()) != null) {
+                batch.add(span.toSpanData());
+            }
+            
+            if (batch.size() >= maxExportBatchSize || System.nanoTime() - nextExportNanos >= 0) {
+                batch = export(batch);
+                nextExportNanos = System.nanoTime() + scheduleDelayNanos;
+            } else if (buffer.isEmpty()) {
+                await(maxExportBatchSize - batch.size(), nextExportNanos);
+            }
+        }
+        
+        // Final drain on shutdown
+        drainAndExport(batch);
+        workerExited = true;
+        CompletableResultCode flush = flushRequest.getAndSet(null);
+        if (flush != null) {
+            flush.succeed();
+        }
+        CompletableResultCode exporterShutdown = spanExporter.shutdown();
+        // Spans offered after the final drain are dropped here or by onEnd, whichever polls them
+        dropRemaining();
+        exporterShutdown.whenComplete(() -> shutdownResult.succeed());
+    }
+    
+    private void await(int needed, long deadlineNanos) {
+        switch (waitStrategy) {
+            case SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            case PARK:
+            default:
+                spansNeeded = needed;
+                // Re-check after publishing the wake-up threshold to avoid a lost wake-up
+                if (buffer.size() < needed && flushRequest.get() == null && !isShutdown.get()) {
+                    LockSupport.parkNanos(this, deadlineNanos - System.nanoTime());
+                }
+                spansNeeded = 0;
+                break;
+        }
+    }
+    
+    /**
+     * Export everything currently in the buffer, in batches.
+     */
+    private List<SpanData> drainAndExport(List<SpanData> batch) {
+        ReadableSpan span;
+        while ((span = buffer.poll()) != null) {
+            batch.add(span.toSpanData());
+            if (batch.size() >= maxExportBatchSize) {
+                batch = export(batch);
+            }
+        }
+        return export(batch);
+    }
+    
+    /**
+     * Export a batch and wait for the result, returning a fresh batch list.
+     */
+    private List<SpanData> export(List<SpanData> batch) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        try {
+            CompletableResultCode result = spanExporter.export(batch);
+            result.join(exporterTimeoutNanos, TimeUnit.NANOSECONDS);
+            if (!result.isSuccess()) {
+                logger.debug("Exporter failed to export {} spans", batch.size());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Exporter threw an exception while exporting {} spans", batch.size(), e);
+        }
+        return new ArrayList<>(maxExportBatchSize);
+    }
+    
+    private void flushExporter(CompletableResultCode flush) {
+        try {
+            spanExporter.flush().join(exporterTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            logger.warn("Exporter threw an exception while flushing", e);
+        } finally {
+            flushRequest.compareAndSet(flush, null);
+            flush.succeed();
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "CozeLoopSpanProcessor{"
+            + "spanExporter=" + spanExporter
+            + ", capacity=" + buffer.capacity()
+            + ", maxExportBatchSize=" + maxExportBatchSize
+            + ", waitStrategy=" + waitStrategy
+            + ", overflowPolicy=" + overflowPolicy
+            + '}';
+    }
+    
+    /**
+     * Builder for {@link CozeLoopSpanProcessor}. Defaults match {@code BatchSpanProcessor}.
+     */
+    public static final class Builder {
+        private final SpanExporter spanExporter;
+        private int maxQueueSize = 2048;
+        private int maxExportBatchSize = 512;
+        private long scheduleDelayNanos = TimeUnit.MILLISECONDS.toNanos(5000);
+        private long exporterTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(30000);
+        private WaitStrategy waitStrategy = WaitStrategy.PARK;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+        private DeferredPayloads deferredPayloads;
+        
+        private Builder(SpanExporter spanExporter) {
+            this.spanExporter = spanExporter;
+        }
+        
+        /**
+         * Set the ring buffer capacity (rounded up to a power of two).
+         */
+        public Builder setMaxQueueSize(int maxQueueSize) {
+            if (maxQueueSize <= 0) {
+                throw new IllegalArgumentException("maxQueueSize must be positive");
+            }
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+        
+        public Builder setMaxExportBatchSize(int maxExportBatchSize) {
+            if (maxExportBatchSize <= 0) {
+                throw new IllegalArgumentException("maxExportBatchSize must be positive");
+            }
+            this.maxExportBatchSize = maxExportBatchSize;
+            return this;
+        }
+        
+        public Builder setScheduleDelay(long delay, TimeUnit unit) {
+            if (delay < 0) {
+                throw new IllegalArgumentException("delay must be non-negative");
+            }
+            this.scheduleDelayNanos = unit.toNanos(delay);
+            return this;
+        }
+        
+        public Builder setExporterTimeout(long timeout, TimeUnit unit) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException("timeout must be non-negative");
+            }
+            this.exporterTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+        
+        public Builder setWaitStrategy(WaitStrategy waitStrategy) {
+            if (waitStrategy == null) {
+                throw new IllegalArgumentException("waitStrategy cannot be null");
+            }
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+        
+        public Builder setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            if (overflowPolicy == null) {
+                throw new IllegalArgumentException("overflowPolicy cannot be null");
+            }
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+        
+        /**
+         * Release the deferred input/output of dropped spans from {@code deferredPayloads}.
+         */
+        Builder setDeferredPayloads(DeferredPayloads deferredPayloads) {
+            this.deferredPayloads = deferredPayloads;
+            return this;
+        }
+        
+        /**
+         * Build the processor and start its worker thread.
+         */
+        public CozeLoopSpanProcessor build() {
+            if (maxExportBatchSize > maxQueueSize) {
+                maxExportBatchSize = maxQueueSize;
+            }
+            return new CozeLoopSpanProcessor(this);
+        }
+    }
+}
@@ -7,11 +7,18 @@ import io.opentelemetry.api.trace.TracerProvider;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
+import io.opentelemetry.sdk.trace.SpanProcessor;
 import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
 import io.opentelemetry.semconv.ResourceAttributes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -25,7 +32,8 @@ import java.util.concurrent.TimeUnit;
  * <ul>
  *   <li><b>Resource</b>: Defines service metadata (service name, workspace ID)</li>
  *   <li><b>SdkTracerProvider</b>: Manages Tracer instances and SpanProcessors</li>
- *   <li><b>BatchSpanProcessor</b>: First-level batching (configurable batch size)</li>
+ *   <li><b>BatchSpanProcessor</b>: First-level batching (configurable batch size); the lock-free
+ *       {@link CozeLoopSpanProcessor} can be selected instead via {@code spanProcessorType}</li>
  *   <li><b>CozeLoopSpanExporter</b>: Second-level batching (25 spans per batch) and export</li>
  * </ul>
  * 
@@ -74,6 +82,7 @@ public class CozeLoopTracerProvider {
     private final SdkTracerProvider sdkTracerProvider;
     private final OpenTelemetrySdk openTelemetrySdk;
     private final CozeLoopSpanExporter spanExporter;
+    private final TraceConfig config;
     
     /**
      * Private constructor. Use {@link #create} to create instances.
@@ -105,11 +114,14 @@ public class CozeLoopTracerProvider {
                                     String workspaceId,
                                     String serviceName,
                                     TraceConfig config) {
+        this.config = config;
+        
         // Step 1: Create the custom span exporter
         // This exporter implements OpenTelemetry's SpanExporter interface and handles
         // conversion from OpenTelemetry SpanData to CozeLoop format, plus second-level batching
         this.spanExporter = new CozeLoopSpanExporter(
-            httpClient, spanEndpoint, fileEndpoint, workspaceId, serviceName);
+            httpClient, spanEndpoint, fileEndpoint, workspaceId, serviceName,
+            config, openSpool(config));
         
         // Step 2: Create Resource with service metadata
         // Resource attributes are attached to all spans and help identify the service
@@ -121,28 +133,59 @@ public class CozeLoopTracerProvider {
                 .put("workspace.id", workspaceId)
                 .build());
         
-        // Step 3: Create BatchSpanProcessor (first-level batching)
+        // Step 3: Create the span processor (first-level batching)
         // This processor:
         // - Queues spans up to maxQueueSize
         // - Batches spans up to batchSize before sending to exporter
         // - Exports on schedule (scheduleDelay) or when batch is full
         // - Uses async processing to avoid blocking application threads
-        BatchSpanProcessor batchProcessor = BatchSpanProcessor.builder(spanExporter)
-            .setMaxQueueSize(config.getMaxQueueSize())
-            .setMaxExportBatchSize(config.getBatchSize())
-            .setScheduleDelay(config.getScheduleDelayMillis(), TimeUnit.MILLISECONDS)
-            .setExporterTimeout(config.getExportTimeoutMillis(), TimeUnit.MILLISECONDS)
-            .build();
+        // BATCH uses OpenTelemetry's BatchSpanProcessor, RING_BUFFER the lock-free CozeLoopSpanProcessor
+        // With tail sampling, spans pass through TailSamplingSpanExporter, which forwards only
+        // the traces worth keeping to the CozeLoop exporter
+        SpanExporter processorExporter = spanExporter;
+        if (config.isTailSampling()) {
+            processorExporter = TailSamplingSpanExporter.builder(spanExporter)
+                .setLatencyThreshold(config.getTailSamplingLatencyThresholdMillis(), TimeUnit.MILLISECONDS)
+                .setDecisionWait(config.getTailSamplingDecisionWaitMillis(), TimeUnit.MILLISECONDS)
+                .setMaxTraces(config.getTailSamplingMaxTraces())
+                .setMaxSpansPerTrace(config.getTailSamplingMaxSpansPerTrace())
+                .setDeferredPayloads(spanExporter.getDeferredPayloads())
+                .build();
+        }
+        SpanProcessor batchProcessor;
+        if (config.getSpanProcessorType() == TraceConfig.SpanProcessorType.RING_BUFFER) {
+            batchProcessor = CozeLoopSpanProcessor.builder(processorExporter)
+                .setMaxQueueSize(config.getMaxQueueSize())
+                .setMaxExportBatchSize(config.getBatchSize())
+                .setScheduleDelay(config.getScheduleDelayMillis(), TimeUnit.MILLISECONDS)
+                .setExporterTimeout(config.getExportTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .setWaitStrategy(config.getWaitStrategy())
+                .setOverflowPolicy(config.getOverflowPolicy())
+                .setDeferredPayloads(spanExporter.getDeferredPayloads())
+                .build();
+        } else {
+            batchProcessor = BatchSpanProcessor.builder(processorExporter)
+                .setMaxQueueSize(config.getMaxQueueSize())
+                .setMaxExportBatchSize(config.getBatchSize())
+                .setScheduleDelay(config.getScheduleDelayMillis(), TimeUnit.MILLISECONDS)
+                .setExporterTimeout(config.getExportTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        }
         
         // Step 4: Create SdkTracerProvider
         // This is the core OpenTelemetry component that:
         // - Manages Tracer instances
         // - Processes spans through SpanProcessors
         // - Attaches Resource attributes to all spans
-        this.sdkTracerProvider = SdkTracerProvider.builder()
+        // - Samples root spans by ratio / span type; children follow their parent (head sampling)
+        SdkTracerProviderBuilder providerBuilder = SdkTracerProvider.builder()
             .setResource(resource)
-            .addSpanProcessor(batchProcessor)
-            .build();
+            .addSpanProcessor(batchProcessor);
+        if (config.getSamplingRatio() < 1.0 || !config.getSpanTypeSamplingRatios().isEmpty()) {
+            providerBuilder.setSampler(Sampler.parentBased(
+                new SpanTypeRatioSampler(config.getSamplingRatio(), config.getSpanTypeSamplingRatios())));
+        }
+        this.sdkTracerProvider = providerBuilder.build();
         
         // Step 5: Build and register OpenTelemetry SDK
         // We check if GlobalOpenTelemetry is already set to avoid conflicts in tests
@@ -228,6 +271,26 @@ public class CozeLoopTracerProvider {
         return sdkTracerProvider;
     }
     
+    /**
+     * Get the trace configuration this provider was created with.
+     * 
+     * <p>{@link CozeLoopSpan} reads its input/output size limits from it.
+     *
+     * @return the trace configuration
+     */
+    public TraceConfig getTraceConfig() {
+        return config;
+    }
+    
+    /**
+     * Get the registry that holds span input/output objects until the exporter serializes them.
+     *
+     * @return the registry, or null if {@code deferSerialization} is off
+     */
+    public DeferredPayloads getDeferredPayloads() {
+        return spanExporter.getDeferredPayloads();
+    }
+    
     /**
      * Shutdown the tracer provider and flush all pending spans.
      * 
@@ -269,6 +332,29 @@ public class CozeLoopTracerProvider {
         }
     }
     
+    /**
+     * Open the disk spool configured in {@code config}, if any.
+     * 
+     * <p>A spool that cannot be opened is logged and skipped: tracing keeps working,
+     * failed batches are just not persisted.
+     *
+     * @param config the trace configuration
+     * @return the spool, or null if disabled or unavailable
+     */
+    private static SpanSpool openSpool(TraceConfig config) {
+        if (config.getSpoolDirectory() == null || config.getSpoolDirectory().isEmpty()) {
+            return null;
+        }
+        try {
+            return new SpanSpool(Paths.get(config.getSpoolDirectory()),
+                config.getSpoolSegmentBytes(), config.getSpoolMaxBytes());
+        } catch (Exception e) {
+            logger.error("Failed to open span spool at {}, failed batches will be dropped",
+                config.getSpoolDirectory(), e);
+            return null;
+        }
+    }
+    
     /**
      * Trace configuration for OpenTelemetry BatchSpanProcessor.
      * 
@@ -282,6 +368,42 @@ public class CozeLoopTracerProvider {
      *       (default: 5000ms = 5 seconds)</li>
      *   <li><b>exportTimeoutMillis</b>: Maximum time to wait for export to complete
      *       (default: 30000ms = 30 seconds)</li>
+     *   <li><b>exportConcurrency</b>: Maximum number of 25-span sub-batches posted concurrently
+     *       by CozeLoopSpanExporter (default: 1 = sequential)</li>
+     *   <li><b>spoolDirectory</b>: Directory of the disk spool that keeps batches which could not
+     *       be exported and replays them later (default: null = disabled)</li>
+     *   <li><b>spoolMaxBytes</b>: Maximum total size of the spool; the oldest data is dropped
+     *       beyond it (default: 256MB)</li>
+     *   <li><b>spoolSegmentBytes</b>: Size of each spool segment file (default: 16MB)</li>
+     *   <li><b>spanProcessorType</b>: {@code BATCH} for OpenTelemetry's BatchSpanProcessor or
+     *       {@code RING_BUFFER} for the lock-free {@link CozeLoopSpanProcessor} (default: BATCH)</li>
+     *   <li><b>waitStrategy</b>: How the RING_BUFFER worker waits for spans (default: PARK)</li>
+     *   <li><b>overflowPolicy</b>: Which span the RING_BUFFER processor drops when full
+     *       (default: DROP_NEWEST)</li>
+     *   <li><b>fileUploadConcurrency</b>: Maximum multimodal file upload requests in flight (default: 4)</li>
+     *   <li><b>fileUploadCacheSize</b>: Number of uploaded file hashes remembered to skip
+     *       re-uploading identical files (default: 1024)</li>
+     *   <li><b>maxAttributeBytes</b>: Maximum UTF-8 size of a span's input or output; larger values
+     *       are truncated when set (default: 0 = unlimited)</li>
+     *   <li><b>maxSpanBytes</b>: Maximum combined UTF-8 size of a span's input and output
+     *       (default: 0 = unlimited)</li>
+     *   <li><b>divertOversizedPayloads</b>: Upload the full value of a truncated input/output as a
+     *       text file instead of discarding the truncated part; the span keeps the full value in
+     *       memory until it is exported (default: false)</li>
+     *   <li><b>deferSerialization</b>: Keep only a reference to non-String inputs/outputs and
+     *       serialize them to JSON on the exporter thread (default: false)</li>
+     *   <li><b>samplingRatio</b>: Fraction of traces recorded, decided at the root span and
+     *       inherited by child spans (default: 1.0 = all)</li>
+     *   <li><b>spanTypeSamplingRatios</b>: Sampling ratios for root spans of specific
+     *       {@code span.type}s, overriding samplingRatio (default: none)</li>
+     *   <li><b>tailSampling</b>: Buffer spans per trace and export only traces with an error or a
+     *       slow span, see {@link TailSamplingSpanExporter} (default: false)</li>
+     *   <li><b>tailSamplingLatencyThresholdMillis</b>: Span duration that makes a trace slow
+     *       (default: 0 = only errors are kept)</li>
+     *   <li><b>tailSamplingDecisionWaitMillis</b>: How long an undecided trace is buffered
+     *       (default: 30000)</li>
+     *   <li><b>tailSamplingMaxTraces</b> / <b>tailSamplingMaxSpansPerTrace</b>: Tail sampling
+     *       buffer bounds (default: 10000 / 1000)</li>
      * </ul>
      * 
      * <p><b>Tuning Guidelines:</b>
@@ -289,6 +411,12 @@ public class CozeLoopTracerProvider {
      *   <li><b>High Throughput</b>: Increase maxQueueSize and batchSize</li>
      *   <li><b>Low Latency</b>: Decrease scheduleDelayMillis</li>
      *   <li><b>Network Issues</b>: Increase exportTimeoutMillis</li>
+     *   <li><b>High Latency Endpoint</b>: Increase exportConcurrency so sub-batches are pipelined</li>
+     *   <li><b>Unreliable Endpoint</b>: Set spoolDirectory so outages do not lose spans</li>
+     *   <li><b>Very High Span Rates</b>: Use the RING_BUFFER processor to remove queue lock contention</li>
+     *   <li><b>Large Prompts/Responses</b>: Set maxAttributeBytes/maxSpanBytes to bound span memory</li>
+     *   <li><b>Latency-Sensitive Requests</b>: Enable deferSerialization to move JSON encoding off the request thread</li>
+     *   <li><b>High Volume</b>: Lower samplingRatio, or enable tailSampling to keep only errors and slow traces</li>
      * </ul>
      */
     public static class TraceConfig {
@@ -304,6 +432,76 @@ public class CozeLoopTracerProvider {
         /** Timeout for export operations in milliseconds (default: 30000) */
         private long exportTimeoutMillis = 30000;
         
+        /** Maximum sub-batches exported concurrently (default: 1, i.e. sequential export) */
+        private int exportConcurrency = 1;
+        
+        /** Directory of the disk spool for failed batches (default: null, spooling disabled) */
+        private String spoolDirectory;
+        
+        /** Maximum total size of the spool in bytes (default: 256MB) */
+        private long spoolMaxBytes = 256L * 1024 * 1024;
+        
+        /** Size of each spool segment file in bytes (default: 16MB) */
+        private long spoolSegmentBytes = 16L * 1024 * 1024;
+        
+        /** Span processor implementation (default: BATCH) */
+        private SpanProcessorType spanProcessorType = SpanProcessorType.BATCH;
+        
+        /** Worker wait strategy of the RING_BUFFER processor (default: PARK) */
+        private CozeLoopSpanProcessor.WaitStrategy waitStrategy = CozeLoopSpanProcessor.WaitStrategy.PARK;
+        
+        /** Overflow policy of the RING_BUFFER processor (default: DROP_NEWEST) */
+        private CozeLoopSpanProcessor.OverflowPolicy overflowPolicy = CozeLoopSpanProcessor.OverflowPolicy.DROP_NEWEST;
+        
+        /** Maximum file upload requests in flight (default: 4) */
+        private int fileUploadConcurrency = 4;
+        
+        /** Number of uploaded file hashes remembered for deduplication (default: 1024) */
+        private int fileUploadCacheSize = 1024;
+        
+        /** Maximum UTF-8 bytes of a span's input or output (default: 0, unlimited) */
+        private int maxAttributeBytes = 0;
+        
+        /** Maximum combined UTF-8 bytes of a span's input and output (default: 0, unlimited) */
+        private int maxSpanBytes = 0;
+        
+        /** Upload oversized input/output as a file instead of dropping the excess (default: false) */
+        private boolean divertOversizedPayloads = false;
+        
+        /** Serialize non-String inputs/outputs at export time instead of when set (default: false) */
+        private boolean deferSerialization = false;
+        
+        /** Fraction of traces sampled at the root span (default: 1.0, all) */
+        private double samplingRatio = 1.0;
+        
+        /** Root span sampling ratios by span type, overriding samplingRatio (default: none) */
+        private Map<String, Double> spanTypeSamplingRatios = new HashMap<>();
+        
+        /** Keep only traces with an error or slow span (default: false) */
+        private boolean tailSampling = false;
+        
+        /** Span duration in milliseconds that keeps a trace (default: 0, latency ignored) */
+        private long tailSamplingLatencyThresholdMillis = 0;
+        
+        /** How long an undecided trace is buffered in milliseconds (default: 30000) */
+        private long tailSamplingDecisionWaitMillis = 30000;
+        
+        /** Maximum traces buffered by the tail sampler (default: 10000) */
+        private int tailSamplingMaxTraces = 10000;
+        
+        /** Maximum spans buffered per trace by the tail sampler (default: 1000) */
+        private int tailSamplingMaxSpansPerTrace = 1000;
+        
+        /**
+         * Span processor implementations.
+         */
+        public enum SpanProcessorType {
+            /** OpenTelemetry's BatchSpanProcessor. */
+            BATCH,
+            /** Lock-free {@link CozeLoopSpanProcessor}. */
+            RING_BUFFER
+        }
+        
         public int getMaxQueueSize() {
             return maxQueueSize;
         }
@@ -336,6 +534,167 @@ public class CozeLoopTracerProvider {
             this.exportTimeoutMillis = exportTimeoutMillis;
         }
         
+        public int getExportConcurrency() {
+            return exportConcurrency;
+        }
+        
+        public void setExportConcurrency(int exportConcurrency) {
+            this.exportConcurrency = exportConcurrency;
+        }
+        
+        public String getSpoolDirectory() {
+            return spoolDirectory;
+        }
+        
+        public void setSpoolDirectory(String spoolDirectory) {
+            this.spoolDirectory = spoolDirectory;
+        }
+        
+        public long getSpoolMaxBytes() {
+            return spoolMaxBytes;
+        }
+        
+        public void setSpoolMaxBytes(long spoolMaxBytes) {
+            this.spoolMaxBytes = spoolMaxBytes;
+        }
+        
+        public long getSpoolSegmentBytes() {
+            return spoolSegmentBytes;
+        }
+        
+        public void setSpoolSegmentBytes(long spoolSegmentBytes) {
+            this.spoolSegmentBytes = spoolSegmentBytes;
+        }
+        
+        public SpanProcessorType getSpanProcessorType() {
+            return spanProcessorType;
+        }
+        
+        public void setSpanProcessorType(SpanProcessorType spanProcessorType) {
+            this.spanProcessorType = spanProcessorType;
+        }
+        
+        public CozeLoopSpanProcessor.WaitStrategy getWaitStrategy() {
+            return waitStrategy;
+        }
+        
+        public void setWaitStrategy(CozeLoopSpanProcessor.WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+        }
+        
+        public CozeLoopSpanProcessor.OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+        
+        public void setOverflowPolicy(CozeLoopSpanProcessor.OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+        
+        public int getFileUploadConcurrency() {
+            return fileUploadConcurrency;
+        }
+        
+        public void setFileUploadConcurrency(int fileUploadConcurrency) {
+            this.fileUploadConcurrency = fileUploadConcurrency;
+        }
+        
+        public int getFileUploadCacheSize() {
+            return fileUploadCacheSize;
+        }
+        
+        public void setFileUploadCacheSize(int fileUploadCacheSize) {
+            this.fileUploadCacheSize = fileUploadCacheSize;
+        }
+        
+        public int getMaxAttributeBytes() {
+            return maxAttributeBytes;
+        }
+        
+        public void setMaxAttributeBytes(int maxAttributeBytes) {
+            this.maxAttributeBytes = maxAttributeBytes;
+        }
+        
+        public int getMaxSpanBytes() {
+            return maxSpanBytes;
+        }
+        
+        public void setMaxSpanBytes(int maxSpanBytes) {
+            this.maxSpanBytes = maxSpanBytes;
+        }
+        
+        public boolean isDivertOversizedPayloads() {
+            return divertOversizedPayloads;
+        }
+        
+        public void setDivertOversizedPayloads(boolean divertOversizedPayloads) {
+            this.divertOversizedPayloads = divertOversizedPayloads;
+        }
+        
+        public boolean isDeferSerialization() {
+            return deferSerialization;
+        }
+        
+        public void setDeferSerialization(boolean deferSerialization) {
+            this.deferSerialization = deferSerialization;
+        }
+        
+        public double getSamplingRatio() {
+            return samplingRatio;
+        }
+        
+        public void setSamplingRatio(double samplingRatio) {
+            this.samplingRatio = samplingRatio;
+        }
+        
+        public Map<String, Double> getSpanTypeSamplingRatios() {
+            return spanTypeSamplingRatios;
+        }
+        
+        public void setSpanTypeSamplingRatios(Map<String, Double> spanTypeSamplingRatios) {
+            this.spanTypeSamplingRatios = spanTypeSamplingRatios != null
+                ? spanTypeSamplingRatios : new HashMap<String, Double>();
+        }
+        
+        public boolean isTailSampling() {
+            return tailSampling;
+        }
+        
+        public void setTailSampling(boolean tailSampling) {
+            this.tailSampling = tailSampling;
+        }
+        
+        public long getTailSamplingLatencyThresholdMillis() {
+            return tailSamplingLatencyThresholdMillis;
+        }
+        
+        public void setTailSamplingLatencyThresholdMillis(long tailSamplingLatencyThresholdMillis) {
+            this.tailSamplingLatencyThresholdMillis = tailSamplingLatencyThresholdMillis;
+        }
+        
+        public long getTailSamplingDecisionWaitMillis() {
+            return tailSamplingDecisionWaitMillis;
+        }
+        
+        public void setTailSamplingDecisionWaitMillis(long tailSamplingDecisionWaitMillis) {
+            this.tailSamplingDecisionWaitMillis = tailSamplingDecisionWaitMillis;
+        }
+        
+        public int getTailSamplingMaxTraces() {
+            return tailSamplingMaxTraces;
+        }
+        
+        public void setTailSamplingMaxTraces(int tailSamplingMaxTraces) {
+            this.tailSamplingMaxTraces = tailSamplingMaxTraces;
+        }
+        
+        public int getTailSamplingMaxSpansPerTrace() {
+            return tailSamplingMaxSpansPerTrace;
+        }
+        
+        public void setTailSamplingMaxSpansPerTrace(int tailSamplingMaxSpansPerTrace) {
+            this.tailSamplingMaxSpansPerTrace = tailSamplingMaxSpansPerTrace;
+        }
+        
         public static Builder builder() {
             return new Builder();
         }
@@ -363,6 +722,106 @@ public class CozeLoopTracerProvider {
                 return this;
             }
             
+            public Builder exportConcurrency(int concurrency) {
+                config.exportConcurrency = concurrency;
+                return this;
+            }
+            
+            public Builder spoolDirectory(String directory) {
+                config.spoolDirectory = directory;
+                return this;
+            }
+            
+            public Builder spoolMaxBytes(long bytes) {
+                config.spoolMaxBytes = bytes;
+                return this;
+            }
+            
+            public Builder spoolSegmentBytes(long bytes) {
+                config.spoolSegmentBytes = bytes;
+                return this;
+            }
+            
+            public Builder spanProcessorType(SpanProcessorType type) {
+                config.spanProcessorType = type;
+                return this;
+            }
+            
+            public Builder waitStrategy(CozeLoopSpanProcessor.WaitStrategy strategy) {
+                config.waitStrategy = strategy;
+                return this;
+            }
+            
+            public Builder overflowPolicy(CozeLoopSpanProcessor.OverflowPolicy policy) {
+                config.overflowPolicy = policy;
+                return this;
+            }
+            
+            public Builder fileUploadConcurrency(int concurrency) {
+                config.fileUploadConcurrency = concurrency;
+                return this;
+            }
+            
+            public Builder fileUploadCacheSize(int size) {
+                config.fileUploadCacheSize = size;
+                return this;
+            }
+            
+            public Builder maxAttributeBytes(int bytes) {
+                config.maxAttributeBytes = bytes;
+                return this;
+            }
+            
+            public Builder maxSpanBytes(int bytes) {
+                config.maxSpanBytes = bytes;
+                return this;
+            }
+            
+            public Builder divertOversizedPayloads(boolean divert) {
+                config.divertOversizedPayloads = divert;
+                return this;
+            }
+            
+            public Builder deferSerialization(boolean defer) {
+                config.deferSerialization = defer;
+                return this;
+            }
+            
+            public Builder samplingRatio(double ratio) {
+                config.samplingRatio = ratio;
+                return this;
+            }
+            
+            public Builder spanTypeSamplingRatio(String spanType, double ratio) {
+                config.spanTypeSamplingRatios.put(spanType, ratio);
+                return this;
+            }
+            
+            public Builder tailSampling(boolean enabled) {
+                config.tailSampling = enabled;
+                return this;
+            }
+            
+            public Builder tailSamplingLatencyThresholdMillis(long millis) {
+                config.tailSamplingLatencyThresholdMillis = millis;
+                return this;
+            }
+            
+            public Builder tailSamplingDecisionWaitMillis(long millis) {
+                config.tailSamplingDecisionWaitMillis = millis;
+                return this;
+            }
+            
+            public Builder tailSamplingMaxTraces(int maxTraces) {
+                config.tailSamplingMaxTraces = maxTraces;
+                return this;
+            }
+            
+            public Builder tailSamplingMaxSpansPerTrace(int maxSpans) {
+                config.tailSamplingMaxSpansPerTrace = maxSpans;
+                return this;
+            }
+            
             public TraceConfig build() {
                 return config;
             }
@@ -0,0 +1,135 @@
+package com.coze.loop.trace;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Input/output objects whose JSON serialization is deferred to export time.
+ *
+ * <p>With {@code TraceConfig.deferSerialization} enabled, {@link CozeLoopSpan#setInput(Object)} and
+ * {@link CozeLoopSpan#setOutput(Object)} store only a reference to non-String values here, keyed
+ * by trace ID and span ID. {@link SpanConverter} removes and serializes them on the exporter
+ * thread, so the request thread never pays for Jackson, and spans dropped before export are never
+ * serialized at all.
+ *
+ * <p>This registry is the only copy of the values, so entries are never evicted by size or age
+ * while their span may still be exported. An entry lives as long as its span:
+ * <ul>
+ *   <li>It is removed when the span is converted for export</li>
+ *   <li>Components that discard spans ({@link CozeLoopSpanProcessor} on overflow or after
+ *       shutdown, {@link TailSamplingSpanExporter} for dropped traces, the exporter after
+ *       shutdown) {@link #remove(String, String) release} it</li>
+ *   <li>It is released once the span object itself is garbage collected, which covers spans
+ *       discarded where the SDK does not report it, e.g. by a full {@code BatchSpanProcessor}
+ *       queue, and spans that are never ended. A queued or exporting span is still reachable</li>
+ * </ul>
+ *
+ * <p>Values are captured by reference, so callers must not mutate an object after setting it;
+ * pass an immutable snapshot if it is reused.
+ */
+public final class DeferredPayloads {
+    private final CozeLoopTracerProvider.TraceConfig config;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Span> collectedSpans = new ReferenceQueue<>();
+    
+    /**
+     * @param config the trace configuration whose size limits apply to the serialized values
+     */
+    DeferredPayloads(CozeLoopTracerProvider.TraceConfig config) {
+        this.config = config;
+    }
+    
+    /**
+     * Store a deferred input or output of a span, replacing any previous one.
+     *
+     * @param span the span the value belongs to
+     * @param isInput whether the value is the input
+     * @param value the value, or null to clear it
+     */
+    void put(Span span, boolean isInput, Object value) {
+        expungeCollectedSpans();
+        SpanContext spanContext = span.getSpanContext();
+        String key = key(spanContext.getTraceId(), spanContext.getSpanId());
+        Entry entry = value != null
+            ? entries.computeIfAbsent(key, k -> new Entry(span, k, collectedSpans))
+            : entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        if (isInput) {
+            entry.input = value;
+        } else {
+            entry.output = value;
+        }
+    }
+    
+    /**
+     * Remove and return the deferred values of a span, either to serialize them or to release
+     * them because the span is discarded.
+     *
+     * @param traceId the trace ID
+     * @param spanId the span ID
+     * @return the entry, or null if the span has no deferred values
+     */
+    Entry remove(String traceId, String spanId) {
+        expungeCollectedSpans();
+        return entries.remove(key(traceId, spanId));
+    }
+    
+    /**
+     * Create an empty size budget for the values of one span.
+     */
+    PayloadBudget newBudget() {
+        return new PayloadBudget(config);
+    }
+    
+    /**
+     * Number of spans holding deferred values.
+     */
+    int size() {
+        expungeCollectedSpans();
+        return entries.size();
+    }
+    
+    /**
+     * Release the entries of spans that were garbage collected without being exported.
+     */
+    private void expungeCollectedSpans() {
+        Entry entry;
+        while ((entry = (Entry) collectedSpans.poll()) != null) {
+            entries.remove(entry.key, entry);
+        }
+    }
+    
+    private static String key(String traceId, String spanId) {
+        return traceId + spanId;
+    }
+    
+    /**
+     * Deferred values of one span. Refers to the span weakly, so that the values are released
+     * when the span is collected.
+     */
+    static final class Entry extends WeakReference<Span> {
+        private final String key;
+        private volatile Object input;
+        private volatile Object output;
+        
+        Entry(Span span, String key, ReferenceQueue<Span> queue) {
+            super(span, queue);
+            this.key = key;
+        }
+        
+        Object getInput() {
+            return input;
+        }
+        
+        Object getOutput() {
+            return output;
+        }
+    }
+}
@@ -1,37 +1,109 @@
 package com.coze.loop.trace;
 
 import com.coze.loop.entity.UploadFile;
+import com.coze.loop.entity.UploadSpan;
 import com.coze.loop.http.HttpClient;
 import com.coze.loop.internal.IdGenerator;
 import com.coze.loop.internal.JsonUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import okhttp3.MultipartBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Uploader for multimodal files extracted from span data.
+ * 
+ * <p>Besides the synchronous {@link #uploadFiles(List)}, the uploader offers an asynchronous,
+ * deduplicating upload stage ({@link #uploadAsync(List)}) used by {@link CozeLoopSpanExporter}:
+ * <ul>
+ *   <li>Each file is identified by the SHA-256 of its decoded bytes. Files already uploaded are
+ *       served from a bounded cache of hash to TOS key and object storage key, and are not sent
+ *       again; files currently being uploaded are shared between callers</li>
+ *   <li>The new files of each span are uploaded in a request of their own, as with
+ *       {@link #uploadFiles(List)}, rather than batched with other spans' files, so that the
+ *       object storage key a span carries never stands for files of unrelated spans</li>
+ *   <li>A span reuses a deduplicated file by the TOS key and object storage key of the request
+ *       that stored it. A span carries a single object storage key: its own request's, or else
+ *       that of its first reused file. Files stored under another key stay inline</li>
+ *   <li>Requests run on a dedicated pool of {@code uploadConcurrency} threads, and each span gets
+ *       its own future, so a span only waits for the requests carrying its files</li>
+ * </ul>
+ * 
+ * <p>Inline images ({@code data:image/<type>;base64,...}) are located with
+ * {@link Base64ImageScanner} rather than a regex. Once uploaded, {@link #replaceInlineImages}
+ * swaps each inline image in the span for the TOS key of the uploaded file, so the span payload
+ * does not carry the image a second time. Inputs and outputs that {@link CozeLoopSpan} truncated
+ * with {@code divertOversizedPayloads} are uploaded in full as text files.
  */
 public class FileUploader {
     private static final Logger logger = LoggerFactory.getLogger(FileUploader.class);
-    private static final Pattern BASE64_PATTERN = Pattern.compile(
-        "data:image/([a-z]+);base64,([A-Za-z0-9+/=]+)", Pattern.CASE_INSENSITIVE);
+    private static final int DEFAULT_UPLOAD_CONCURRENCY = 4;
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+    private static final String OVERFLOW_FILE_SUFFIX = "_overflow.txt";
     
     private final HttpClient httpClient;
     private final String uploadEndpoint;
     private final String workspaceId;
     
+    /**
+     * References of files already uploaded, keyed by content hash.
+     */
+    private final Cache<String, FileRef> uploadedFiles;
+    
+    /**
+     * Uploads in progress, keyed by content hash, so concurrent spans share one upload.
+     */
+    private final Map<String, CompletableFuture<FileRef>> inFlightUploads = new ConcurrentHashMap<>();
+    
+    private final ExecutorService uploadExecutor;
+    
     public FileUploader(HttpClient httpClient, String uploadEndpoint, String workspaceId) {
+        this(httpClient, uploadEndpoint, workspaceId,
+            DEFAULT_UPLOAD_CONCURRENCY, DEFAULT_CACHE_SIZE);
+    }
+    
+    /**
+     * Create an uploader with explicit limits for the asynchronous upload stage.
+     *
+     * @param httpClient the HTTP client
+     * @param uploadEndpoint the file upload endpoint
+     * @param workspaceId the workspace ID
+     * @param uploadConcurrency maximum number of upload requests in flight
+     * @param cacheSize maximum number of uploaded file hashes remembered
+     */
+    public FileUploader(HttpClient httpClient, String uploadEndpoint, String workspaceId,
+                        int uploadConcurrency, int cacheSize) {
         this.httpClient = httpClient;
         this.uploadEndpoint = uploadEndpoint;
         this.workspaceId = workspaceId;
+        this.uploadedFiles = Caffeine.newBuilder()
+            .maximumSize(Math.max(0, cacheSize))
+            .build();
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.uploadExecutor = Executors.newFixedThreadPool(Math.max(1, uploadConcurrency), runnable -> {
+            Thread thread = new Thread(runnable, "cozeloop-file-upload-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
     
     /**
@@ -41,36 +113,56 @@ public class FileUploader {
      * @return list of upload files
      */
     public List<UploadFile> extractFiles(SpanData spanData) {
-        List<UploadFile> files = new ArrayList<>();
-        
-        // Check input for base64 images
-        String input = spanData.getAttributes().get(AttributeKey.stringKey("cozeloop.input"));
-        if (input != null) {
-            extractBase64Files(input, "input", files);
+        return extractFiles(
+            spanData.getAttributes().get(AttributeKey.stringKey("cozeloop.input")),
+            spanData.getAttributes().get(AttributeKey.stringKey("cozeloop.output")));
+    }
+    
+    /**
+     * Extract multimodal files from a converted span's input and output.
+     * 
+     * <p>Inline images are returned in order of appearance, input first, which is the order
+     * {@link #replaceInlineImages} expects. They are followed by the full input/output that
+     * {@link CozeLoopSpan} diverted when it exceeded the size limits, as text files.
+     *
+     * @param span the converted span
+     * @return list of upload files
+     */
+    public List<UploadFile> extractFiles(UploadSpan span) {
+        List<UploadFile> files = extractFiles(span.getInput(), span.getOutput());
+        if (span.getInputOverflow() == null && span.getOutputOverflow() == null) {
+            return files;
         }
         
-        // Check output for base64 images
-        String output = spanData.getAttributes().get(AttributeKey.stringKey("cozeloop.output"));
-        if (output != null) {
-            extractBase64Files(output, "output", files);
+        files = new ArrayList<>(files);
+        addOverflowFile(span.getInputOverflow(), "input", files);
+        addOverflowFile(span.getOutputOverflow(), "output", files);
+        return files;
+    }
+    
+    private List<UploadFile> extractFiles(String input, String output) {
+        List<Base64ImageScanner.Match> inputImages = Base64ImageScanner.scan(input);
+        List<Base64ImageScanner.Match> outputImages = Base64ImageScanner.scan(output);
+        if (inputImages.isEmpty() && outputImages.isEmpty()) {
+            return Collections.emptyList();
         }
         
+        List<UploadFile> files = new ArrayList<>(inputImages.size() + outputImages.size());
+        addFiles(inputImages, "input", files);
+        addFiles(outputImages, "output", files);
         return files;
     }
     
     /**
-     * Extract base64 encoded files from content.
+     * Create upload files for the inline images found in one field.
      */
-    private void extractBase64Files(String content, String tagKey, List<UploadFile> files) {
-        Matcher matcher = BASE64_PATTERN.matcher(content);
-        
-        while (matcher.find()) {
-            String fileType = matcher.group(1);
-            String base64Data = matcher.group(2);
+    private void addFiles(List<Base64ImageScanner.Match> images, String tagKey, List<UploadFile> files) {
+        for (Base64ImageScanner.Match image : images) {
+            String fileType = image.getFileType();
             
             UploadFile file = UploadFile.builder()
                 .tosKey(generateTosKey())
-                .data(base64Data)
+                .data(image.getData())
                 .uploadType("base64")
                 .tagKey(tagKey)
                 .fileType(fileType)
@@ -82,6 +174,92 @@ public class FileUploader {
         }
     }
     
+    /**
+     * Create a text file holding the full value of a diverted input or output.
+     */
+    private void addOverflowFile(String content, String tagKey, List<UploadFile> files) {
+        if (content == null || content.isEmpty()) {
+            return;
+        }
+        files.add(UploadFile.builder()
+            .tosKey(generateTosKey())
+            .data(Base64.getEncoder().encodeToString(content.getBytes(StandardCharsets.UTF_8)))
+            .uploadType("base64")
+            .tagKey(tagKey)
+            .fileType("txt")
+            .name(tagKey + OVERFLOW_FILE_SUFFIX)
+            .spaceId(workspaceId)
+            .build());
+    }
+    
+    /**
+     * Replace the inline images of a span with the TOS keys of their uploaded files.
+     * 
+     * <p>{@code files} must be the result of {@link #extractFiles(UploadSpan)} for this span, and
+     * {@code result} its upload result. Images whose upload failed are left inline.
+     *
+     * @param span the converted span
+     * @param files the files extracted from the span
+     * @param result the upload result of those files
+     */
+    public void replaceInlineImages(UploadSpan span, List<UploadFile> files, UploadResult result) {
+        if (files.isEmpty() || result.getTosKeys().isEmpty()) {
+            return;
+        }
+        // Output images follow the input images; diverted payloads come last and are not inline
+        List<Base64ImageScanner.Match> inputImages = Base64ImageScanner.scan(span.getInput());
+        span.setInput(replaceImages(span.getInput(), inputImages, result.getTosKeys(), 0));
+        span.setOutput(replaceImages(span.getOutput(), Base64ImageScanner.scan(span.getOutput()),
+            result.getTosKeys(), inputImages.size()));
+        linkOverflowFiles(span, files, result.getTosKeys());
+    }
+    
+    /**
+     * Tag the span with the TOS keys of its uploaded diverted payloads
+     * ({@code input.overflow_tos_key}/{@code output.overflow_tos_key}).
+     */
+    private static void linkOverflowFiles(UploadSpan span, List<UploadFile> files, List<String> tosKeys) {
+        for (int i = 0; i < files.size() && i < tosKeys.size(); i++) {
+            UploadFile file = files.get(i);
+            if (tosKeys.get(i) == null || file.getName() == null
+                    || !file.getName().endsWith(OVERFLOW_FILE_SUFFIX)) {
+                continue;
+            }
+            if (span.getTagsString() == null) {
+                span.setTagsString(new HashMap<>());
+            }
+            span.getTagsString().put(file.getTagKey() + ".overflow_tos_key", tosKeys.get(i));
+        }
+    }
+    
+    /**
+     * Rebuild {@code content} with the k-th inline image replaced by {@code tosKeys[offset + k]}.
+     */
+    private static String replaceImages(String content, List<Base64ImageScanner.Match> images,
+                                        List<String> tosKeys, int offset) {
+        if (images.isEmpty()) {
+            return content;
+        }
+        StringBuilder replaced = null;
+        int copied = 0;
+        for (int k = 0; k < images.size() && offset + k < tosKeys.size(); k++) {
+            String tosKey = tosKeys.get(offset + k);
+            if (tosKey == null) {
+                continue;
+            }
+            if (replaced == null) {
+                replaced = new StringBuilder(content.length());
+            }
+            Base64ImageScanner.Match image = images.get(k);
+            replaced.append(content, copied, image.getStart()).append(tosKey);
+            copied = image.getEnd();
+        }
+        if (replaced == null) {
+            return content;
+        }
+        return replaced.append(content, copied, content.length()).toString();
+    }
+    
     /**
      * Upload files to the server.
      *
@@ -105,7 +283,7 @@ public class FileUploader {
             MultipartBody formData = builder.build();
             
             // Upload files
-            String response = httpClient.postMultipart(uploadEndpoint, formData);
+            String response = httpClient.postMultipart(uploadEndpoint, formData, true);
             
             // Parse response to get object storage key
             // Assuming response contains {"object_storage": "key"}
@@ -120,11 +298,218 @@ public class FileUploader {
         }
     }
     
+    /**
+     * Upload the files of many spans asynchronously.
+     * 
+     * <p>Returns one future per entry of {@code filesPerSpan}. Its {@link UploadResult} carries the
+     * object storage key to attach to that span and the TOS key under which each of the span's
+     * files was stored. The object storage key is the one returned by the request that uploaded
+     * the span's new files; when all of the span's files were uploaded before, by this or another
+     * span, it is the key of the request that stored the first of them. Files stored under a
+     * different object storage key than the span's, and failed uploads, yield {@code null} TOS
+     * keys and stay inline; the futures never complete exceptionally.
+     *
+     * @param filesPerSpan the extracted files of each span
+     * @return upload result futures, in the same order as {@code filesPerSpan}
+     */
+    public List<CompletableFuture<UploadResult>> uploadAsync(List<List<UploadFile>> filesPerSpan) {
+        List<CompletableFuture<UploadResult>> results = new ArrayList<>(filesPerSpan.size());
+        for (List<UploadFile> files : filesPerSpan) {
+            if (files == null || files.isEmpty()) {
+                results.add(CompletableFuture.completedFuture(UploadResult.EMPTY));
+                continue;
+            }
+            
+            List<CompletableFuture<FileRef>> fileFutures = new ArrayList<>(files.size());
+            List<UploadFile> newFiles = new ArrayList<>();
+            List<String> newHashes = new ArrayList<>();
+            List<CompletableFuture<FileRef>> newFutures = new ArrayList<>();
+            for (UploadFile file : files) {
+                String hash = contentHash(file);
+                FileRef cached = uploadedFiles.getIfPresent(hash);
+                if (cached != null) {
+                    fileFutures.add(CompletableFuture.completedFuture(cached));
+                    continue;
+                }
+                CompletableFuture<FileRef> created = new CompletableFuture<>();
+                CompletableFuture<FileRef> inFlight = inFlightUploads.putIfAbsent(hash, created);
+                if (inFlight != null) {
+                    fileFutures.add(inFlight);
+                    continue;
+                }
+                newFiles.add(file);
+                newHashes.add(hash);
+                newFutures.add(created);
+                fileFutures.add(created);
+            }
+            
+            CompletableFuture<String> request = newFiles.isEmpty()
+                ? CompletableFuture.completedFuture(null)
+                : submitUpload(newFiles, newHashes, newFutures);
+            results.add(combine(fileFutures, request));
+        }
+        return results;
+    }
+    
+    /**
+     * Combine the per-file uploads of a span and the request carrying its new files into its
+     * upload result.
+     *
+     * @param fileFutures the uploads of the span's files, in order
+     * @param request the object storage key of the span's own request
+     */
+    @SuppressWarnings("rawtypes")
+    private static CompletableFuture<UploadResult> combine(List<CompletableFuture<FileRef>> fileFutures,
+                                                           CompletableFuture<String> request) {
+        return CompletableFuture.allOf(fileFutures.toArray(new CompletableFuture[0])).thenCombine(request,
+            (ignored, ownObjectStorage) -> {
+                String objectStorage = ownObjectStorage;
+                for (int i = 0; objectStorage == null && i < fileFutures.size(); i++) {
+                    FileRef ref = fileFutures.get(i).join();
+                    objectStorage = ref != null ? ref.objectStorage : null;
+                }
+                List<String> tosKeys = new ArrayList<>(fileFutures.size());
+                for (CompletableFuture<FileRef> future : fileFutures) {
+                    FileRef ref = future.join();
+                    // A file is only linked through the object storage key the span carries
+                    tosKeys.add(ref != null && ref.objectStorage.equals(objectStorage) ? ref.tosKey : null);
+                }
+                return new UploadResult(objectStorage, tosKeys);
+            });
+    }
+    
+    /**
+     * Upload one multipart request of files on the upload pool, completing each file's future
+     * with its reference (or {@code null} on failure).
+     *
+     * @return the object storage key returned for the request, or null on failure
+     */
+    private CompletableFuture<String> submitUpload(List<UploadFile> files, List<String> hashes,
+                                                   List<CompletableFuture<FileRef>> futures) {
+        CompletableFuture<String> request = new CompletableFuture<>();
+        try {
+            uploadExecutor.execute(() -> {
+                String objectStorage = null;
+                try {
+                    objectStorage = uploadFiles(files);
+                } finally {
+                    completeUploads(files, hashes, futures, objectStorage);
+                    request.complete(objectStorage);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("File uploader is closed, skipping upload of {} files", files.size());
+            completeUploads(files, hashes, futures, null);
+            request.complete(null);
+        }
+        return request;
+    }
+    
+    /**
+     * Record the outcome of an upload request, then complete its futures. The cache and in-flight
+     * map are updated first, so callers woken by the futures never see a stale in-flight entry.
+     *
+     * @param objectStorage the object storage key returned for the request, or null if it failed
+     */
+    private void completeUploads(List<UploadFile> files, List<String> hashes,
+                                 List<CompletableFuture<FileRef>> futures, String objectStorage) {
+        List<FileRef> refs = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            FileRef ref = objectStorage != null ? new FileRef(files.get(i).getTosKey(), objectStorage) : null;
+            if (ref != null) {
+                uploadedFiles.put(hashes.get(i), ref);
+            }
+            inFlightUploads.remove(hashes.get(i), futures.get(i));
+            refs.add(ref);
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            futures.get(i).complete(refs.get(i));
+        }
+    }
+    
+    /**
+     * Stop the asynchronous upload stage. Uploads already submitted are allowed to finish.
+     */
+    public void close() {
+        uploadExecutor.shutdown();
+    }
+    
+    /**
+     * Compute the SHA-256 of a file's decoded content, as a hex string.
+     * Data that is not valid base64 is hashed as-is.
+     */
+    static String contentHash(UploadFile file) {
+        String data = file.getData() != null ? file.getData() : "";
+        byte[] bytes;
+        if ("base64".equals(file.getUploadType())) {
+            try {
+                bytes = Base64.getDecoder().decode(data);
+            } catch (IllegalArgumentException e) {
+                bytes = data.getBytes(StandardCharsets.UTF_8);
+            }
+        } else {
+            bytes = data.getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is mandatory on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+    
     /**
      * Generate a unique TOS (Object Storage) key.
      */
     private String generateTosKey() {
         return "cozeloop/" + workspaceId + "/" + IdGenerator.generateUuid();
     }
+    
+    /**
+     * Result of uploading the files of one span.
+     */
+    public static final class UploadResult {
+        static final UploadResult EMPTY = new UploadResult(null, Collections.<String>emptyList());
+        
+        private final String objectStorage;
+        private final List<String> tosKeys;
+        
+        UploadResult(String objectStorage, List<String> tosKeys) {
+            this.objectStorage = objectStorage;
+            this.tosKeys = tosKeys;
+        }
+        
+        /**
+         * @return the object storage key to attach to the span, or null if nothing was uploaded
+         */
+        public String getObjectStorage() {
+            return objectStorage;
+        }
+        
+        /**
+         * @return the TOS key of each file, in extraction order; null for files that failed or
+         *         are stored under another object storage key
+         */
+        public List<String> getTosKeys() {
+            return tosKeys;
+        }
+    }
+    
+    /**
+     * Where an uploaded file is stored, and the object storage key of the request that stored it.
+     */
+    private static final class FileRef {
+        private final String tosKey;
+        private final String objectStorage;
+        
+        FileRef(String tosKey, String objectStorage) {
+            this.tosKey = tosKey;
+            this.objectStorage = objectStorage;
+        }
+    }
 }
-
@@ -0,0 +1,117 @@
+package com.coze.loop.trace;
+
+/**
+ * Input/output size budget of one span.
+ *
+ * <p>Applies {@code maxAttributeBytes} to each value and {@code maxSpanBytes} to input and output
+ * combined, tracking the UTF-8 size of what is stored so a replaced value releases its share.
+ * Used by {@link CozeLoopSpan} when values are set, and by {@link SpanConverter} when deferred
+ * values are serialized at export time.
+ */
+final class PayloadBudget {
+    private static final long UNLIMITED = Long.MAX_VALUE;
+    
+    private final long maxAttributeBytes;
+    private final long maxSpanBytes;
+    private final boolean divertOversizedPayloads;
+    
+    private long inputBytes;
+    private long outputBytes;
+    
+    /**
+     * @param config the trace configuration, or null for no limits
+     */
+    PayloadBudget(CozeLoopTracerProvider.TraceConfig config) {
+        this.maxAttributeBytes = config != null && config.getMaxAttributeBytes() > 0
+            ? config.getMaxAttributeBytes() : UNLIMITED;
+        this.maxSpanBytes = config != null && config.getMaxSpanBytes() > 0
+            ? config.getMaxSpanBytes() : UNLIMITED;
+        this.divertOversizedPayloads = config != null && config.isDivertOversizedPayloads();
+    }
+    
+    /**
+     * Whether any limit is configured.
+     */
+    boolean isLimited() {
+        return maxAttributeBytes != UNLIMITED || maxSpanBytes != UNLIMITED;
+    }
+    
+    /**
+     * Record the size of a value stored without going through {@link #apply}.
+     *
+     * @param isInput whether the value is the input
+     * @param value the stored value
+     */
+    void record(boolean isInput, String value) {
+        if (maxSpanBytes == UNLIMITED) {
+            return;
+        }
+        long bytes = value != null ? AttributeTruncator.utf8Length(value) : 0;
+        if (isInput) {
+            inputBytes = bytes;
+        } else {
+            outputBytes = bytes;
+        }
+    }
+    
+    /**
+     * Fit {@code value} into what is left of the budget and record its stored size.
+     *
+     * @param isInput whether the value is the input
+     * @param value the serialized value
+     * @return the value to store, truncated if needed
+     */
+    Payload apply(boolean isInput, String value) {
+        long budget = maxAttributeBytes;
+        if (maxSpanBytes != UNLIMITED) {
+            long otherBytes = isInput ? outputBytes : inputBytes;
+            budget = Math.min(budget, Math.max(0, maxSpanBytes - otherBytes));
+        }
+        
+        Payload payload;
+        if (budget == UNLIMITED || AttributeTruncator.fits(value, budget)) {
+            payload = new Payload(value, -1, null);
+        } else {
+            long originalBytes = AttributeTruncator.utf8Length(value);
+            payload = new Payload(AttributeTruncator.truncate(value, originalBytes, budget),
+                originalBytes, divertOversizedPayloads ? value : null);
+        }
+        record(isInput, payload.getValue());
+        return payload;
+    }
+    
+    /**
+     * A value fitted into the budget.
+     */
+    static final class Payload {
+        private final String value;
+        private final long originalBytes;
+        private final String overflow;
+        
+        Payload(String value, long originalBytes, String overflow) {
+            this.value = value;
+            this.originalBytes = originalBytes;
+            this.overflow = overflow;
+        }
+        
+        /** The value to store. */
+        String getValue() {
+            return value;
+        }
+        
+        /** Whether the value was truncated. */
+        boolean isTruncated() {
+            return originalBytes >= 0;
+        }
+        
+        /** UTF-8 size of the value before truncation, or -1 if it was not truncated. */
+        long getOriginalBytes() {
+            return originalBytes;
+        }
+        
+        /** The full value to upload as a file, or null if it is not diverted. */
+        String getOverflow() {
+            return overflow;
+        }
+    }
+}
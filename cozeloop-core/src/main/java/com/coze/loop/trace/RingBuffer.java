@@ -0,0 +1,123 @@
+package com.coze.loop.trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer (Dmitry Vyukov's bounded MPMC queue).
+ *
+ * <p>Every slot carries a sequence number that tells producers and consumers whether the slot
+ * is free for the current lap or holds a published element. Producers claim a slot with a CAS
+ * on the enqueue cursor, consumers with a CAS on the dequeue cursor; no locks are taken and a
+ * full or empty buffer is reported immediately instead of blocking.
+ *
+ * <p>Although {@link CozeLoopSpanProcessor} has a single consuming worker, producers also
+ * poll to implement the drop-oldest overflow policy, so both ends must tolerate contention.
+ *
+ * @param <T> element type
+ */
+final class RingBuffer<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private final AtomicLong dequeuePosition = new AtomicLong();
+    
+    /**
+     * Create a ring buffer.
+     *
+     * @param requestedCapacity minimum capacity, rounded up to a power of two
+     */
+    RingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 1 || requestedCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid ring buffer capacity: " + requestedCapacity);
+        }
+        int capacity = Integer.highestOneBit(requestedCapacity);
+        if (capacity < requestedCapacity) {
+            capacity <<= 1;
+        }
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+    
+    /**
+     * Insert an element if there is room.
+     *
+     * @param element the element, not null
+     * @return false if the buffer is full
+     */
+    boolean offer(T element) {
+        long position = enqueuePosition.get();
+        int index;
+        while (true) {
+            index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+        elements.lazySet(index, element);
+        // Publish: the slot now holds an element for this lap
+        sequences.set(index, position + 1);
+        return true;
+    }
+    
+    /**
+     * Remove the oldest element.
+     *
+     * @return the element, or null if the buffer is empty
+     */
+    T poll() {
+        long position = dequeuePosition.get();
+        int index;
+        while (true) {
+            index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = dequeuePosition.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = dequeuePosition.get();
+            }
+        }
+        T element = elements.get(index);
+        elements.lazySet(index, null);
+        // Release: the slot is free for the next lap
+        sequences.set(index, position + mask + 1);
+        return element;
+    }
+    
+    /**
+     * Approximate number of elements; exact when producers and consumers are quiescent.
+     *
+     * @return the number of elements
+     */
+    int size() {
+        long size = enqueuePosition.get() - dequeuePosition.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+    
+    boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    int capacity() {
+        return mask + 1;
+    }
+}
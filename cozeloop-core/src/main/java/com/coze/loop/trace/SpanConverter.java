@@ -1,10 +1,13 @@
 package com.coze.loop.trace;
 
 import com.coze.loop.entity.UploadSpan;
+import com.coze.loop.internal.JsonUtils;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.sdk.trace.data.SpanData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -32,6 +35,8 @@ import java.util.concurrent.TimeUnit;
  *         <li>"cozeloop.input" → {@link UploadSpan#setInput(String)}</li>
  *         <li>"cozeloop.output" → {@link UploadSpan#setOutput(String)}</li>
  *         <li>"cozeloop.object_storage" → {@link UploadSpan#setObjectStorage(String)}</li>
+ *         <li>"cozeloop.input_overflow"/"cozeloop.output_overflow" → {@link UploadSpan#setInputOverflow(String)}/
+ *             {@link UploadSpan#setOutputOverflow(String)}</li>
  *         <li>"span.type" → {@link UploadSpan#setSpanType(String)}</li>
  *       </ul>
  *   </li>
@@ -80,6 +85,7 @@ import java.util.concurrent.TimeUnit;
  * @see CozeLoopSpanExporter
  */
 public final class SpanConverter {
+    private static final Logger logger = LoggerFactory.getLogger(SpanConverter.class);
     
     private SpanConverter() {
         // Utility class
@@ -162,6 +168,8 @@ public final class SpanConverter {
         String output = attributes.get(AttributeKey.stringKey("cozeloop.output"));
         uploadSpan.setInput(input);
         uploadSpan.setOutput(output);
+        uploadSpan.setInputOverflow(emptyToNull(attributes.get(AttributeKey.stringKey("cozeloop.input_overflow"))));
+        uploadSpan.setOutputOverflow(emptyToNull(attributes.get(AttributeKey.stringKey("cozeloop.output_overflow"))));
         
         // Step 8: Extract object storage key (for multimodal content)
         // This is set by FileUploader when files are uploaded
@@ -190,6 +198,11 @@ public final class SpanConverter {
                 return;
             }
             
+            // A negative original size is left by CozeLoopSpan when a truncated value was replaced
+            if (keyStr.endsWith(".original_bytes") && value instanceof Long && (Long) value < 0) {
+                return;
+            }
+            
             // Check if this is a system tag (prefixed with "system.")
             boolean isSystemTag = keyStr.startsWith("system.");
             
@@ -257,6 +270,90 @@ public final class SpanConverter {
         return uploadSpan;
     }
     
+    /**
+     * Convert OpenTelemetry SpanData to CozeLoop UploadSpan, serializing the input/output whose
+     * serialization {@link CozeLoopSpan} deferred.
+     * 
+     * <p>Deferred values are removed from {@code deferredPayloads}, serialized on the calling
+     * (exporter) thread and fitted into the span's size budget exactly as if they had been set
+     * as Strings; they replace any value stored on the span itself. A value that cannot be
+     * serialized is logged and left out.
+     *
+     * @param spanData the OpenTelemetry span data to convert
+     * @param workspaceId the CozeLoop workspace ID (added to UploadSpan)
+     * @param serviceName the service name (added to UploadSpan)
+     * @param deferredPayloads the registry of deferred values, or null if serialization is not deferred
+     * @return converted UploadSpan ready for export to CozeLoop platform
+     */
+    public static UploadSpan convert(SpanData spanData, String workspaceId, String serviceName,
+                                     DeferredPayloads deferredPayloads) {
+        UploadSpan uploadSpan = convert(spanData, workspaceId, serviceName);
+        if (deferredPayloads == null) {
+            return uploadSpan;
+        }
+        DeferredPayloads.Entry entry = deferredPayloads.remove(spanData.getTraceId(), spanData.getSpanId());
+        if (entry == null) {
+            return uploadSpan;
+        }
+        
+        Object input = entry.getInput();
+        Object output = entry.getOutput();
+        PayloadBudget budget = deferredPayloads.newBudget();
+        // Values stored when they were set keep their share of the span budget
+        if (input == null) {
+            budget.record(true, uploadSpan.getInput());
+        }
+        if (output == null) {
+            budget.record(false, uploadSpan.getOutput());
+        }
+        if (input != null) {
+            applyDeferred(uploadSpan, budget, true, input);
+        }
+        if (output != null) {
+            applyDeferred(uploadSpan, budget, false, output);
+        }
+        return uploadSpan;
+    }
+    
+    /**
+     * Serialize a deferred input/output and store it on the converted span.
+     */
+    private static void applyDeferred(UploadSpan uploadSpan, PayloadBudget budget, boolean isInput, Object value) {
+        String field = isInput ? "input" : "output";
+        String serialized;
+        try {
+            serialized = JsonUtils.toJson(value);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to serialize deferred {} of span {}", field, uploadSpan.getSpanId(), e);
+            return;
+        }
+        
+        PayloadBudget.Payload payload = budget.apply(isInput, serialized);
+        if (isInput) {
+            uploadSpan.setInput(payload.getValue());
+            uploadSpan.setInputOverflow(payload.getOverflow());
+        } else {
+            uploadSpan.setOutput(payload.getValue());
+            uploadSpan.setOutputOverflow(payload.getOverflow());
+        }
+        
+        Map<String, Long> tagsLong = uploadSpan.getTagsLong();
+        if (tagsLong != null) {
+            tagsLong.remove(field + ".original_bytes");
+        }
+        if (payload.isTruncated()) {
+            if (tagsLong == null) {
+                tagsLong = new HashMap<>();
+                uploadSpan.setTagsLong(tagsLong);
+            }
+            tagsLong.put(field + ".original_bytes", payload.getOriginalBytes());
+        }
+    }
+    
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+    
     /**
      * Convert OpenTelemetry StatusCode to CozeLoop status code.
      * 
@@ -0,0 +1,409 @@
+package com.coze.loop.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent, segmented write-ahead spool for span batches that could not be exported.
+ *
+ * <p>The spool is a FIFO queue of opaque payloads (serialized span batches) stored in
+ * memory-mapped segment files under a directory. It is used by {@link CozeLoopSpanExporter}
+ * to keep spans across endpoint outages and process restarts.
+ *
+ * <p><b>On-disk Format:</b>
+ * Each segment file ({@code segment-<sequence>.spool}) is preallocated and zero-filled.
+ * Records are appended back to back:
+ * <pre>
+ * +-------------+-----------+------------------+
+ * | length (4B) | crc32 (4B)| payload (length) |
+ * +-------------+-----------+------------------+
+ * </pre>
+ * A length of 0 marks the end of the written data. A negative length marks a record that
+ * has been acknowledged (delivered) and must be skipped.
+ *
+ * <p><b>Crash Safety:</b>
+ * The payload and checksum are written before the length, so a record only becomes visible
+ * once it is complete. On startup every segment is scanned; scanning stops at the first
+ * record with an invalid length or checksum (a torn write), and appending resumes there.
+ * Acknowledgement flips the sign of the length in place, so at worst a record delivered just
+ * before a crash is replayed once more (at-least-once delivery). Every append is forced to
+ * disk before it returns, so a stored batch also survives an operating system crash;
+ * acknowledgements are only forced on rotation and {@link #close()}.
+ *
+ * <p><b>Size Caps:</b>
+ * A new segment is created when the current one is full. If the total size would exceed
+ * {@code maxBytes}, the oldest segments are dropped (their spans are lost) to make room,
+ * so the spool always favors recent data.
+ *
+ * <p><b>Thread Safety:</b>
+ * All public methods are synchronized; the spool can be shared by the exporter thread(s)
+ * and the background drainer.
+ */
+public class SpanSpool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SpanSpool.class);
+    
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final int RECORD_HEADER_BYTES = 8;
+    
+    private final Path directory;
+    private final long segmentBytes;
+    private final long maxBytes;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSequence;
+    private long totalBytes;
+    private boolean closed;
+    
+    /**
+     * Open (or create) a spool in the given directory, recovering any existing segments.
+     *
+     * @param directory the spool directory (created if missing)
+     * @param segmentBytes the size of each segment file
+     * @param maxBytes the maximum total size of all segment files
+     * @throws IOException if the directory or segments cannot be opened
+     */
+    public SpanSpool(Path directory, long segmentBytes, long maxBytes) throws IOException {
+        if (segmentBytes <= RECORD_HEADER_BYTES || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid spool segment size: " + segmentBytes);
+        }
+        if (maxBytes < segmentBytes) {
+            throw new IllegalArgumentException("Spool max size must be at least one segment");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        recover();
+    }
+    
+    /**
+     * Append a payload to the spool.
+     *
+     * @param payload the payload bytes
+     * @return true if the payload was stored and forced to disk, false if it can never fit
+     * @throws IOException if a segment cannot be created
+     */
+    public synchronized boolean append(byte[] payload) throws IOException {
+        checkNotClosed();
+        long recordBytes = RECORD_HEADER_BYTES + (long) payload.length;
+        if (recordBytes > maxBytes || recordBytes > Integer.MAX_VALUE) {
+            return false;
+        }
+        
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.remaining() < recordBytes) {
+            segment = rotate(Math.max(segmentBytes, recordBytes));
+        }
+        
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        
+        MappedByteBuffer buffer = segment.buffer;
+        int position = segment.writePosition;
+        // Payload and checksum first, length last: the record is invisible until complete
+        buffer.position(position + RECORD_HEADER_BYTES);
+        buffer.put(payload);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, payload.length);
+        segment.writePosition = position + (int) recordBytes;
+        buffer.force();
+        return true;
+    }
+    
+    /**
+     * Get the oldest undelivered record without removing it.
+     *
+     * @return the oldest record, or null if the spool is empty
+     */
+    public synchronized Record peek() {
+        checkNotClosed();
+        for (Segment segment : segments) {
+            if (segment.readPosition < segment.writePosition) {
+                MappedByteBuffer buffer = segment.buffer;
+                int length = buffer.getInt(segment.readPosition);
+                byte[] payload = new byte[length];
+                buffer.position(segment.readPosition + RECORD_HEADER_BYTES);
+                buffer.get(payload);
+                return new Record(segment, segment.readPosition, payload);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Acknowledge a record returned by {@link #peek()}, removing it from the spool.
+     * Fully delivered segments are deleted.
+     *
+     * @param record the record to acknowledge
+     */
+    public synchronized void ack(Record record) {
+        checkNotClosed();
+        Segment segment = record.segment;
+        if (!segments.contains(segment) || segment.readPosition != record.position) {
+            // Segment was dropped by the size cap while the record was being delivered
+            return;
+        }
+        MappedByteBuffer buffer = segment.buffer;
+        int length = buffer.getInt(record.position);
+        buffer.putInt(record.position, -length);
+        segment.readPosition = record.position + RECORD_HEADER_BYTES + length;
+        
+        if (segment.readPosition >= segment.writePosition && segment != segments.peekLast()) {
+            segments.remove(segment);
+            delete(segment);
+        }
+    }
+    
+    /**
+     * Check whether the spool has undelivered records.
+     *
+     * @return true if no records are pending
+     */
+    public synchronized boolean isEmpty() {
+        for (Segment segment : segments) {
+            if (segment.readPosition < segment.writePosition) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Get the total size of the segment files.
+     *
+     * @return size in bytes
+     */
+    public synchronized long sizeBytes() {
+        return totalBytes;
+    }
+    
+    /**
+     * Flush mapped segments to disk and release file handles.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments) {
+            try {
+                segment.buffer.force();
+                segment.channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close spool segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+        segments.clear();
+    }
+    
+    /**
+     * Scan existing segments, dropping fully delivered ones and locating read/write positions.
+     */
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+        
+        int pendingRecords = 0;
+        for (Path file : files) {
+            nextSequence = Math.max(nextSequence, sequenceOf(file) + 1);
+            Segment segment = open(file, Files.size(file));
+            pendingRecords += scan(segment);
+            segments.addLast(segment);
+            totalBytes += segment.capacity;
+        }
+        
+        // Drop delivered segments, except the newest one which stays open for appends
+        while (segments.size() > 1) {
+            Segment oldest = segments.peekFirst();
+            if (oldest.readPosition < oldest.writePosition) {
+                break;
+            }
+            segments.removeFirst();
+            delete(oldest);
+        }
+        
+        if (pendingRecords > 0) {
+            logger.info("Recovered {} spooled span batches from {}", pendingRecords, directory);
+        }
+    }
+    
+    /**
+     * Scan a segment, validating checksums and positioning its read and write cursors.
+     *
+     * @return the number of undelivered records
+     */
+    private int scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        int readPosition = -1;
+        int pending = 0;
+        
+        while (position + RECORD_HEADER_BYTES <= segment.capacity) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            int payloadLength = Math.abs(length);
+            if (length == Integer.MIN_VALUE
+                    || position + RECORD_HEADER_BYTES + (long) payloadLength > segment.capacity) {
+                logger.warn("Corrupt record in spool segment {} at offset {}, truncating",
+                    segment.path, position);
+                break;
+            }
+            if (length > 0) {
+                byte[] payload = new byte[payloadLength];
+                buffer.position(position + RECORD_HEADER_BYTES);
+                buffer.get(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload, 0, payloadLength);
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    logger.warn("Checksum mismatch in spool segment {} at offset {}, truncating",
+                        segment.path, position);
+                    break;
+                }
+                if (readPosition < 0) {
+                    readPosition = position;
+                }
+                pending++;
+            }
+            position += RECORD_HEADER_BYTES + payloadLength;
+        }
+        
+        // Zero the torn tail so future appends start from a clean end marker
+        for (int i = position; i < Math.min(position + RECORD_HEADER_BYTES, segment.capacity); i++) {
+            buffer.put(i, (byte) 0);
+        }
+        
+        segment.writePosition = position;
+        segment.readPosition = readPosition >= 0 ? readPosition : position;
+        return pending;
+    }
+    
+    /**
+     * Start a new segment, dropping the oldest segments if the size cap would be exceeded.
+     */
+    private Segment rotate(long capacity) throws IOException {
+        Segment current = segments.peekLast();
+        if (current != null) {
+            current.buffer.force();
+        }
+        
+        int droppedSegments = 0;
+        while (!segments.isEmpty() && totalBytes + capacity > maxBytes) {
+            Segment oldest = segments.removeFirst();
+            if (oldest.readPosition < oldest.writePosition) {
+                droppedSegments++;
+            }
+            delete(oldest);
+        }
+        if (droppedSegments > 0) {
+            logger.warn("Span spool is full ({} bytes), dropped {} oldest segments with undelivered spans",
+                maxBytes, droppedSegments);
+        }
+        
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+        Segment segment = open(file, capacity);
+        segments.addLast(segment);
+        totalBytes += segment.capacity;
+        return segment;
+    }
+    
+    private Segment open(Path file, long capacity) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return new Segment(file, channel, buffer, (int) capacity);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    private void delete(Segment segment) {
+        totalBytes -= segment.capacity;
+        try {
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spool segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+    
+    private void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("Span spool is closed");
+        }
+    }
+    
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * A spooled payload returned by {@link #peek()}.
+     */
+    public static final class Record {
+        private final Segment segment;
+        private final int position;
+        private final byte[] payload;
+        
+        private Record(Segment segment, int position, byte[] payload) {
+            this.segment = segment;
+            this.position = position;
+            this.payload = payload;
+        }
+        
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+    
+    /**
+     * A memory-mapped segment file with its read and write cursors.
+     */
+    private static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private int readPosition;
+        private int writePosition;
+        
+        Segment(Path path, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+        
+        int remaining() {
+            return capacity - writePosition;
+        }
+    }
+}
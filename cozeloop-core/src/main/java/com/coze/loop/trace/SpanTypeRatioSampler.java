@@ -0,0 +1,65 @@
+package com.coze.loop.trace;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trace ID ratio sampler with per-{@code span.type} rates.
+ *
+ * <p>The rate is chosen from the {@code span.type} attribute the span is started with
+ * ({@code CozeLoopClient.startSpan(name, spanType)} sets it before the span starts), falling back
+ * to the default ratio for other types. Each rate uses {@link Sampler#traceIdRatioBased(double)},
+ * so the decision is deterministic per trace ID.
+ *
+ * <p>The provider wraps this sampler in {@link Sampler#parentBased(Sampler)}, so it only decides
+ * for root spans; child spans, local or remote, follow their parent's decision and traces are
+ * sampled whole.
+ */
+final class SpanTypeRatioSampler implements Sampler {
+    private static final AttributeKey<String> SPAN_TYPE = AttributeKey.stringKey("span.type");
+    
+    private final Sampler defaultSampler;
+    private final Map<String, Sampler> samplersBySpanType;
+    
+    /**
+     * @param defaultRatio the sampling ratio of span types without their own ratio
+     * @param spanTypeRatios sampling ratios by span type
+     */
+    SpanTypeRatioSampler(double defaultRatio, Map<String, Double> spanTypeRatios) {
+        this.defaultSampler = Sampler.traceIdRatioBased(defaultRatio);
+        Map<String, Sampler> samplers = new HashMap<>();
+        if (spanTypeRatios != null) {
+            for (Map.Entry<String, Double> entry : spanTypeRatios.entrySet()) {
+                samplers.put(entry.getKey(), Sampler.traceIdRatioBased(entry.getValue()));
+            }
+        }
+        this.samplersBySpanType = Collections.unmodifiableMap(samplers);
+    }
+    
+    @Override
+    public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+                                       Attributes attributes, List<LinkData> parentLinks) {
+        String spanType = attributes.get(SPAN_TYPE);
+        Sampler sampler = spanType != null ? samplersBySpanType.get(spanType) : null;
+        if (sampler == null) {
+            sampler = defaultSampler;
+        }
+        return sampler.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+    }
+    
+    @Override
+    public String getDescription() {
+        return "SpanTypeRatioSampler{default=" + defaultSampler.getDescription()
+            + ", bySpanType=" + samplersBySpanType.keySet() + "}";
+    }
+}
@@ -0,0 +1,385 @@
+package com.coze.loop.trace;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Span exporter decorator that keeps whole traces containing an error or a slow span and drops
+ * the rest.
+ *
+ * <p>Spans are buffered per trace until the trace can be decided:
+ * <ul>
+ *   <li>As soon as a span with status ERROR (CozeLoop {@code statusCode} 1) or a duration of at
+ *       least {@code latencyThreshold} arrives, the trace is kept: its buffered spans are
+ *       forwarded to the delegate and later spans of the trace pass straight through</li>
+ *   <li>When the local root span (no parent, or a remote parent) arrives without the trace having
+ *       been kept, the trace is dropped, along with later spans of it</li>
+ *   <li>Traces still undecided {@code decisionWait} after their first span, e.g. because the
+ *       root span is still running or was lost, are dropped</li>
+ * </ul>
+ *
+ * <p><b>Bounded Buffering:</b>
+ * At most {@code maxTraces} traces are buffered; beyond that the oldest undecided trace is
+ * dropped to make room. A trace buffers at most {@code maxSpansPerTrace} spans; further spans
+ * of an undecided trace are dropped (once a trace is kept, spans are no longer buffered).
+ * Decisions are remembered for {@code maxTraces} recent traces so that spans ending after their
+ * trace was decided follow the decision. Dropped spans are counted in
+ * {@link #getDroppedSpanCount()}, and their deferred input/output, if any, is released from
+ * {@link DeferredPayloads}.
+ *
+ * <p><b>Usage:</b>
+ * <pre>{@code
+ * SpanExporter exporter = TailSamplingSpanExporter.builder(cozeLoopExporter)
+ *     .setLatencyThreshold(2, TimeUnit.SECONDS)
+ *     .setDecisionWait(30, TimeUnit.SECONDS)
+ *     .build();
+ * }</pre>
+ * Usually it is enabled through {@code TraceConfig.tailSampling(true)}, which places it between
+ * the span processor and {@link CozeLoopSpanExporter}.
+ *
+ * @see CozeLoopTracerProvider.TraceConfig
+ */
+public final class TailSamplingSpanExporter implements SpanExporter {
+    private static final Logger logger = LoggerFactory.getLogger(TailSamplingSpanExporter.class);
+    
+    private final SpanExporter delegate;
+    private final long latencyThresholdNanos;
+    private final long decisionWaitNanos;
+    private final int maxTraces;
+    private final int maxSpansPerTrace;
+    private final DeferredPayloads deferredPayloads;
+    private final LongSupplier nanoClock;
+    
+    /**
+     * Undecided traces in order of their first span, guarded by {@code this}.
+     */
+    private final LinkedHashMap<String, PendingTrace> pendingTraces = new LinkedHashMap<>();
+    
+    /**
+     * Recent decisions by trace ID: true to keep, false to drop.
+     */
+    private final Cache<String, Boolean> decisions;
+    
+    private final ScheduledExecutorService expiryExecutor;
+    private final AtomicLong droppedSpans = new AtomicLong();
+    private volatile boolean isShutdown = false;
+    
+    private TailSamplingSpanExporter(Builder builder, LongSupplier nanoClock, boolean scheduleExpiry) {
+        this.delegate = builder.delegate;
+        this.latencyThresholdNanos = builder.latencyThresholdNanos;
+        this.decisionWaitNanos = builder.decisionWaitNanos;
+        this.maxTraces = builder.maxTraces;
+        this.maxSpansPerTrace = builder.maxSpansPerTrace;
+        this.deferredPayloads = builder.deferredPayloads;
+        this.nanoClock = nanoClock;
+        this.decisions = Caffeine.newBuilder()
+            .maximumSize(builder.maxTraces)
+            .build();
+        
+        if (scheduleExpiry) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "cozeloop-tail-sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            long period = Math.max(TimeUnit.MILLISECONDS.toNanos(100), Math.min(decisionWaitNanos / 4,
+                TimeUnit.SECONDS.toNanos(1)));
+            executor.scheduleWithFixedDelay(this::expireTraces, period, period, TimeUnit.NANOSECONDS);
+            this.expiryExecutor = executor;
+        } else {
+            this.expiryExecutor = null;
+        }
+    }
+    
+    /**
+     * Create a builder for a tail-sampling exporter in front of {@code delegate}.
+     *
+     * @param delegate the exporter that receives the spans of kept traces
+     * @return a new builder
+     */
+    public static Builder builder(SpanExporter delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate must not be null");
+        }
+        return new Builder(delegate);
+    }
+    
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        if (isShutdown) {
+            for (SpanData span : spans) {
+                drop(span);
+            }
+            return CompletableResultCode.ofFailure();
+        }
+        List<SpanData> forward = new ArrayList<>();
+        synchronized (this) {
+            for (SpanData span : spans) {
+                accept(span, forward);
+            }
+        }
+        return forward.isEmpty() ? CompletableResultCode.ofSuccess() : delegate.export(forward);
+    }
+    
+    /**
+     * Route one span: forward, drop or buffer it. Caller holds the lock.
+     */
+    private void accept(SpanData span, List<SpanData> forward) {
+        String traceId = span.getTraceId();
+        Boolean decision = decisions.getIfPresent(traceId);
+        if (decision != null) {
+            if (decision) {
+                forward.add(span);
+            } else {
+                drop(span);
+            }
+            return;
+        }
+        
+        PendingTrace trace = pendingTraces.get(traceId);
+        if (isInteresting(span)) {
+            decisions.put(traceId, Boolean.TRUE);
+            if (trace != null) {
+                pendingTraces.remove(traceId);
+                forward.addAll(trace.spans);
+            }
+            forward.add(span);
+            return;
+        }
+        if (isLocalRoot(span)) {
+            decisions.put(traceId, Boolean.FALSE);
+            if (trace != null) {
+                pendingTraces.remove(traceId);
+                drop(trace);
+            }
+            drop(span);
+            return;
+        }
+        
+        if (trace == null) {
+            if (pendingTraces.size() >= maxTraces) {
+                evictOldest();
+            }
+            trace = new PendingTrace(nanoClock.getAsLong());
+            pendingTraces.put(traceId, trace);
+        }
+        if (trace.spans.size() < maxSpansPerTrace) {
+            trace.spans.add(span);
+        } else {
+            drop(span);
+        }
+    }
+    
+    /**
+     * Count a dropped span and release its deferred input/output.
+     */
+    private void drop(SpanData span) {
+        droppedSpans.incrementAndGet();
+        if (deferredPayloads != null) {
+            deferredPayloads.remove(span.getTraceId(), span.getSpanId());
+        }
+    }
+    
+    private void drop(PendingTrace trace) {
+        for (SpanData span : trace.spans) {
+            drop(span);
+        }
+    }
+    
+    private boolean isInteresting(SpanData span) {
+        if (span.getStatus().getStatusCode() == StatusCode.ERROR) {
+            return true;
+        }
+        return latencyThresholdNanos > 0
+            && span.getEndEpochNanos() - span.getStartEpochNanos() >= latencyThresholdNanos;
+    }
+    
+    private static boolean isLocalRoot(SpanData span) {
+        SpanContext parent = span.getParentSpanContext();
+        return !parent.isValid() || parent.isRemote();
+    }
+    
+    /**
+     * Drop the oldest undecided trace. Caller holds the lock.
+     */
+    private void evictOldest() {
+        Iterator<Map.Entry<String, PendingTrace>> iterator = pendingTraces.entrySet().iterator();
+        if (iterator.hasNext()) {
+            Map.Entry<String, PendingTrace> oldest = iterator.next();
+            iterator.remove();
+            decisions.put(oldest.getKey(), Boolean.FALSE);
+            drop(oldest.getValue());
+        }
+    }
+    
+    /**
+     * Drop traces that stayed undecided for longer than {@code decisionWait}.
+     */
+    void expireTraces() {
+        long now = nanoClock.getAsLong();
+        synchronized (this) {
+            Iterator<Map.Entry<String, PendingTrace>> iterator = pendingTraces.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, PendingTrace> entry = iterator.next();
+                // Insertion order is first-seen order, so the rest are younger
+                if (now - entry.getValue().firstSeenNanos < decisionWaitNanos) {
+                    break;
+                }
+                iterator.remove();
+                decisions.put(entry.getKey(), Boolean.FALSE);
+                drop(entry.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Number of spans dropped because their trace was not kept or the buffers were full.
+     *
+     * @return the dropped span count
+     */
+    public long getDroppedSpanCount() {
+        return droppedSpans.get();
+    }
+    
+    /**
+     * Number of traces currently buffered awaiting a decision.
+     */
+    synchronized int getPendingTraceCount() {
+        return pendingTraces.size();
+    }
+    
+    @Override
+    public CompletableResultCode flush() {
+        return delegate.flush();
+    }
+    
+    /**
+     * Stop the expiry task, drop undecided traces and shut down the delegate.
+     *
+     * <p>Traces still undecided at shutdown contain neither an error nor a slow span so far, so
+     * they are dropped like expired ones.
+     */
+    @Override
+    public CompletableResultCode shutdown() {
+        if (isShutdown) {
+            return CompletableResultCode.ofSuccess();
+        }
+        isShutdown = true;
+        if (expiryExecutor != null) {
+            expiryExecutor.shutdownNow();
+        }
+        synchronized (this) {
+            for (PendingTrace trace : pendingTraces.values()) {
+                drop(trace);
+            }
+            pendingTraces.clear();
+        }
+        logger.debug("Tail sampler shut down, {} spans dropped in total", droppedSpans.get());
+        return delegate.shutdown();
+    }
+    
+    /**
+     * Spans of an undecided trace.
+     */
+    private static final class PendingTrace {
+        private final long firstSeenNanos;
+        private final List<SpanData> spans = new ArrayList<>();
+        
+        PendingTrace(long firstSeenNanos) {
+            this.firstSeenNanos = firstSeenNanos;
+        }
+    }
+    
+    /**
+     * Builder for {@link TailSamplingSpanExporter}.
+     */
+    public static final class Builder {
+        private final SpanExporter delegate;
+        private long latencyThresholdNanos = 0;
+        private long decisionWaitNanos = TimeUnit.SECONDS.toNanos(30);
+        private int maxTraces = 10000;
+        private int maxSpansPerTrace = 1000;
+        private DeferredPayloads deferredPayloads;
+        
+        private Builder(SpanExporter delegate) {
+            this.delegate = delegate;
+        }
+        
+        /**
+         * Keep traces with a span lasting at least {@code threshold}; 0 disables the latency rule.
+         */
+        public Builder setLatencyThreshold(long threshold, TimeUnit unit) {
+            if (threshold < 0) {
+                throw new IllegalArgumentException("threshold must be non-negative");
+            }
+            this.latencyThresholdNanos = unit.toNanos(threshold);
+            return this;
+        }
+        
+        /**
+         * Drop traces still undecided this long after their first span.
+         */
+        public Builder setDecisionWait(long wait, TimeUnit unit) {
+            if (wait <= 0) {
+                throw new IllegalArgumentException("wait must be positive");
+            }
+            this.decisionWaitNanos = unit.toNanos(wait);
+            return this;
+        }
+        
+        public Builder setMaxTraces(int maxTraces) {
+            if (maxTraces <= 0) {
+                throw new IllegalArgumentException("maxTraces must be positive");
+            }
+            this.maxTraces = maxTraces;
+            return this;
+        }
+        
+        public Builder setMaxSpansPerTrace(int maxSpansPerTrace) {
+            if (maxSpansPerTrace <= 0) {
+                throw new IllegalArgumentException("maxSpansPerTrace must be positive");
+            }
+            this.maxSpansPerTrace = maxSpansPerTrace;
+            return this;
+        }
+        
+        /**
+         * Release the deferred input/output of dropped spans from {@code deferredPayloads}.
+         */
+        Builder setDeferredPayloads(DeferredPayloads deferredPayloads) {
+            this.deferredPayloads = deferredPayloads;
+            return this;
+        }
+        
+        public TailSamplingSpanExporter build() {
+            return new TailSamplingSpanExporter(this, System::nanoTime, true);
+        }
+        
+        /**
+         * Build with a custom clock and no background expiry; tests call {@link #expireTraces()}.
+         */
+        TailSamplingSpanExporter build(LongSupplier nanoClock) {
+            return new TailSamplingSpanExporter(this, nanoClock, false);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.coze.loop.client;
+
+import com.coze.loop.entity.ExecuteParam;
+import com.coze.loop.entity.ExecuteResult;
+import com.coze.loop.entity.TokenUsage;
+import com.coze.loop.exception.ErrorCode;
+import com.coze.loop.exception.PromptException;
+import com.coze.loop.http.HttpClient;
+import com.coze.loop.internal.JsonUtils;
+import com.coze.loop.prompt.PromptProvider;
+import com.coze.loop.stream.SSEDecoder;
+import com.coze.loop.stream.SSEParser;
+import com.coze.loop.stream.ServerSentEvent;
+import com.coze.loop.stream.StreamReader;
+import com.coze.loop.trace.CozeLoopTracerProvider;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the execute spans created by CozeLoopClientImpl.
+ */
+class ExecuteSpanTest {
+
+    private static final String STREAM =
+        "data: {\"message\":{\"role\":\"assistant\",\"content\":\"Hel\"}}\n\n"
+            + "data: {\"message\":{\"content\":\"lo\"}}\n\n"
+            + "data: {\"finish_reason\":\"stop\",\"usage\":{\"input_tokens\":4,\"output_tokens\":2}}\n\n";
+
+    private final List<SpanData> exported = new CopyOnWriteArrayList<>();
+    private final PromptProvider promptProvider = mock(PromptProvider.class);
+    private SdkTracerProvider sdkTracerProvider;
+
+    @AfterEach
+    void tearDown() {
+        if (sdkTracerProvider != null) {
+            sdkTracerProvider.shutdown();
+        }
+    }
+
+    @Test
+    void testStreamSpanRecordsChunkMetricsAtEof() throws Exception {
+        CozeLoopClient client = newClient(Sampler.alwaysOn());
+        ExecuteParam param = ExecuteParam.builder().promptKey("greeting").build();
+        when(promptProvider.executeStreaming(param)).thenReturn(reader(STREAM));
+        
+        StreamReader<ExecuteResult> stream = client.executeStreaming(param);
+        int chunks = 0;
+        while (stream.recv() != null) {
+            chunks++;
+        }
+        stream.close();
+        
+        assertThat(chunks).isEqualTo(3);
+        assertThat(exported).hasSize(1);
+        SpanData span = exported.get(0);
+        assertThat(span.getName()).isEqualTo(ExecuteSpan.SPAN_NAME);
+        assertThat(span.getAttributes().get(AttributeKey.stringKey("span.type"))).isEqualTo("model");
+        assertThat(span.getAttributes().get(AttributeKey.stringKey("prompt.key"))).isEqualTo("greeting");
+        assertThat(span.getAttributes().get(AttributeKey.booleanKey("llm.streaming"))).isTrue();
+        assertThat(span.getAttributes().get(AttributeKey.longKey("llm.chunk_count"))).isEqualTo(3L);
+        assertThat(span.getAttributes().get(AttributeKey.doubleKey("llm.time_to_first_token_ms"))).isNotNull();
+        assertThat(span.getAttributes().get(AttributeKey.doubleKey("llm.inter_chunk_latency.mean_ms"))).isNotNull();
+        assertThat(span.getAttributes().get(AttributeKey.longKey("llm.inter_chunk_latency.le_1ms"))).isNotNull();
+        assertThat(span.getAttributes().get(AttributeKey.longKey("llm.output_tokens"))).isEqualTo(2L);
+        assertThat(span.getAttributes().get(AttributeKey.longKey("llm.total_tokens"))).isEqualTo(6L);
+        assertThat(span.getAttributes().get(AttributeKey.stringKey("llm.finish_reason"))).isEqualTo("stop");
+        assertThat(span.getAttributes().get(AttributeKey.stringKey("cozeloop.output"))).contains("Hello");
+        assertThat(span.getAttributes().get(AttributeKey.booleanKey("llm.stream.closed_early"))).isNull();
+    }
+
+    @Test
+    void testStreamClosedEarlyEndsSpanOnClose() throws Exception {
+        CozeLoopClient client = newClient(Sampler.alwaysOn());
+        ExecuteParam param = ExecuteParam.builder().promptKey("greeting").build();
+        when(promptProvider.executeStreaming(param)).thenReturn(reader(STREAM));
+        
+        StreamReader<ExecuteResult> stream = client.executeStreaming(param);
+        stream.recv();
+        assertThat(exported).isEmpty();
+        stream.close();
+        
+        assertThat(stream.isClosed()).isTrue();
+        assertThat(exported).hasSize(1);
+        assertThat(exported.get(0).getAttributes().get(AttributeKey.booleanKey("llm.stream.closed_early"))).isTrue();
+        assertThat(exported.get(0).getAttributes().get(AttributeKey.longKey("llm.chunk_count"))).isEqualTo(1L);
+    }
+
+    @Test
+    void testExecuteSpanRecordsUsageAndErrors() {
+        CozeLoopClient client = newClient(Sampler.alwaysOn());
+        ExecuteParam ok = ExecuteParam.builder().promptKey("ok").build();
+        ExecuteParam failing = ExecuteParam.builder().promptKey("failing").build();
+        when(promptProvider.execute(ok)).thenReturn(ExecuteResult.builder()
+            .finishReason("stop").usage(new TokenUsage(3, 5)).build());
+        when(promptProvider.execute(failing)).thenThrow(new PromptException(ErrorCode.INTERNAL_ERROR, "boom"));
+        
+        client.execute(ok);
+        assertThatThrownBy(() -> client.execute(failing)).hasMessageContaining("boom");
+        
+        assertThat(exported).hasSize(2);
+        assertThat(exported.get(0).getAttributes().get(AttributeKey.booleanKey("llm.streaming"))).isFalse();
+        assertThat(exported.get(0).getAttributes().get(AttributeKey.longKey("llm.input_tokens"))).isEqualTo(3L);
+        assertThat(exported.get(0).getAttributes().get(AttributeKey.longKey("llm.chunk_count"))).isNull();
+        assertThat(exported.get(1).getStatus().getStatusCode()).isEqualTo(StatusCode.ERROR);
+    }
+
+    @Test
+    void testSampledOutStreamPassesThrough() throws Exception {
+        CozeLoopClient client = newClient(Sampler.alwaysOff());
+        ExecuteParam param = ExecuteParam.builder().promptKey("greeting").build();
+        when(promptProvider.executeStreaming(param)).thenReturn(reader(STREAM));
+        
+        StreamReader<ExecuteResult> stream = client.executeStreaming(param);
+        assertThat(stream.recv().getMessage().getContent()).isEqualTo("Hel");
+        stream.close();
+        
+        assertThat(exported).isEmpty();
+    }
+
+    private CozeLoopClient newClient(Sampler sampler) {
+        sdkTracerProvider = SdkTracerProvider.builder()
+            .setSampler(sampler)
+            .addSpanProcessor(SimpleSpanProcessor.create(new CollectingExporter()))
+            .build();
+        CozeLoopTracerProvider tracerProvider = mock(CozeLoopTracerProvider.class);
+        when(tracerProvider.getTracer(any())).thenReturn(sdkTracerProvider.get("test"));
+        return new CozeLoopClientImpl("workspace", tracerProvider, promptProvider, mock(HttpClient.class));
+    }
+
+    private static StreamReader<ExecuteResult> reader(String text) {
+        return new StreamReader<>(new SSEDecoder(new Buffer().writeUtf8(text)), new SSEParser<ExecuteResult>() {
+            @Override
+            public ExecuteResult parse(ServerSentEvent sse) {
+                return JsonUtils.fromJson(sse.getData(), ExecuteResult.class);
+            }
+
+            @Override
+            public Exception handleError(ServerSentEvent sse) {
+                return null;
+            }
+        });
+    }
+
+    private class CollectingExporter implements SpanExporter {
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            exported.addAll(spans);
+            return CompletableResultCode.ofSuccess();
+        }
+        
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+        
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
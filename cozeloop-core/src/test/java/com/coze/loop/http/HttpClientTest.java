@@ -2,6 +2,7 @@ package com.coze.loop.http;
 
 import com.coze.loop.auth.Auth;
 import com.coze.loop.exception.CozeLoopException;
+import com.coze.loop.exception.HttpStatusException;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.jupiter.api.AfterEach;
@@ -11,8 +12,12 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -79,6 +84,98 @@ class HttpClientTest {
         client.close();
     }
 
+    @Test
+    void testPostStreamingRequest() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .setBody("{\"result\":\"success\"}"));
+        
+        HttpClient client = new HttpClient(auth);
+        
+        String response = client.postStreaming(mockWebServer.url("/test").toString(), generator -> {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("items");
+            generator.writeString("a");
+            generator.writeString("b");
+            generator.writeEndArray();
+            generator.writeEndObject();
+        });
+        
+        assertThat(response).contains("success");
+        okhttp3.mockwebserver.RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getBody().readUtf8()).isEqualTo("{\"items\":[\"a\",\"b\"]}");
+        assertThat(request.getHeader("Content-Type")).startsWith("application/json");
+        
+        client.close();
+    }
+
+    @Test
+    void testPostRequestWithGzipCompression() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200).setBody("OK"));
+        
+        HttpConfig config = HttpConfig.builder()
+            .requestCompression("gzip")
+            .compressionMinSizeBytes(16)
+            .build();
+        HttpClient client = new HttpClient(auth, config);
+        byte[] body = "{\"content\":\"repetitive content repetitive content repetitive content\"}"
+            .getBytes(StandardCharsets.UTF_8);
+        
+        client.postJson(mockWebServer.url("/test").toString(), body, true);
+        
+        okhttp3.mockwebserver.RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getHeader("Content-Encoding")).isEqualTo("gzip");
+        okio.BufferedSource decompressed = okio.Okio.buffer(new okio.GzipSource(request.getBody()));
+        assertThat(decompressed.readUtf8()).contains("repetitive content");
+        
+        client.close();
+    }
+
+    @Test
+    void testUntaggedRequestIsNotCompressed() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200).setBody("OK"));
+        
+        HttpConfig config = HttpConfig.builder()
+            .requestCompression("gzip")
+            .compressionMinSizeBytes(16)
+            .build();
+        HttpClient client = new HttpClient(auth, config);
+        Map<String, Object> body = new HashMap<>();
+        body.put("content", "repetitive content repetitive content repetitive content");
+        
+        client.post(mockWebServer.url("/test").toString(), body);
+        
+        okhttp3.mockwebserver.RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getHeader("Content-Encoding")).isNull();
+        assertThat(request.getBody().readUtf8()).contains("repetitive content");
+        
+        client.close();
+    }
+
+    @Test
+    void testSmallBodyIsNotCompressed() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200).setBody("OK"));
+        
+        HttpClient client = new HttpClient(auth, HttpConfig.builder().requestCompression("gzip").build());
+        
+        client.postJson(mockWebServer.url("/test").toString(),
+            "{\"key\":\"value\"}".getBytes(StandardCharsets.UTF_8), true);
+        
+        okhttp3.mockwebserver.RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getHeader("Content-Encoding")).isNull();
+        assertThat(request.getBody().readUtf8()).isEqualTo("{\"key\":\"value\"}");
+        
+        client.close();
+    }
+
+    @Test
+    void testUnsupportedCompressionIsRejected() {
+        HttpConfig config = HttpConfig.builder().requestCompression("unknown").build();
+        
+        assertThatThrownBy(() -> new HttpClient(auth, config))
+            .isInstanceOf(CozeLoopException.class);
+    }
+
     @Test
     void testPostRequestWithErrorResponse() throws IOException {
         mockWebServer.enqueue(new MockResponse()
@@ -93,6 +190,33 @@ class HttpClientTest {
         client.close();
     }
 
+    @Test
+    void testPostAsyncRequest() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .setBody("{\"result\":\"success\"}"));
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(400)
+            .setBody("Bad Request"));
+        
+        HttpClient client = new HttpClient(auth, HttpConfig.builder().maxRetries(0).build());
+        Map<String, Object> body = new HashMap<>();
+        body.put("key", "value");
+        
+        CompletableFuture<String> response = client.postAsync(mockWebServer.url("/test").toString(), body);
+        
+        assertThat(response.get(5, TimeUnit.SECONDS)).contains("success");
+        assertThat(mockWebServer.takeRequest().getBody().readUtf8()).isEqualTo("{\"key\":\"value\"}");
+        
+        CompletableFuture<String> failed = client.postStreamingAsync(mockWebServer.url("/test").toString(),
+            generator -> generator.writeString("value"));
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(HttpStatusException.class);
+        
+        client.close();
+    }
+
     @Test
     void testGetRequestWithErrorResponse() throws IOException {
         mockWebServer.enqueue(new MockResponse()
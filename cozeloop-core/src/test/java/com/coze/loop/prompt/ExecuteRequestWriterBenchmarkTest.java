@@ -0,0 +1,102 @@
+package com.coze.loop.prompt;
+
+import com.coze.loop.entity.ExecuteParam;
+import com.coze.loop.entity.Message;
+import com.coze.loop.entity.Role;
+import com.coze.loop.http.JsonStreamingRequestBody;
+import com.coze.loop.internal.JsonUtils;
+import okio.BufferedSink;
+import okio.Okio;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the bytes allocated per execute request body by the streaming writer with the
+ * previous path, which built a map graph, serialized it to a String and encoded that again.
+ *
+ * <p>Run with {@code mvn test -Dtest=ExecuteRequestWriterBenchmarkTest -Dcozeloop.benchmark=true}
+ * on a HotSpot JVM.
+ */
+@EnabledIfSystemProperty(named = "cozeloop.benchmark", matches = "true")
+class ExecuteRequestWriterBenchmarkTest {
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 50_000;
+
+    @Test
+    void benchmarkAllocatedBytesPerRequest() throws Exception {
+        ExecuteParam param = param();
+        BufferedSink sink = Okio.buffer(Okio.blackhole());
+        JsonStreamingRequestBody streaming = new JsonStreamingRequestBody(new ExecuteRequestWriter("ws", param));
+        
+        long legacy = measure(() -> sink.write(JsonUtils.toJson(legacyBody("ws", param)).getBytes(StandardCharsets.UTF_8)));
+        long streamed = measure(() -> streaming.writeTo(sink));
+        
+        System.out.printf("Execute body, map + String: %d bytes/op%n", legacy / ITERATIONS);
+        System.out.printf("Execute body, streaming writer: %d bytes/op%n", streamed / ITERATIONS);
+        assertThat(streamed).isLessThan(legacy);
+    }
+
+    private static long measure(Body body) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP; i++) {
+            body.write();
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ITERATIONS; i++) {
+            body.write();
+        }
+        return threads.getThreadAllocatedBytes(thread) - before;
+    }
+
+    /**
+     * The request body as it was built before the streaming writer.
+     */
+    private static Map<String, Object> legacyBody(String workspaceId, ExecuteParam param) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("workspace_id", workspaceId);
+        Map<String, Object> identifier = new HashMap<>();
+        identifier.put("prompt_key", param.getPromptKey());
+        identifier.put("version", param.getVersion());
+        body.put("prompt_identifier", identifier);
+        List<Map<String, Object>> vals = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : param.getVariableVals().entrySet()) {
+            Map<String, Object> val = new HashMap<>();
+            val.put("key", entry.getKey());
+            val.put("value", entry.getValue());
+            vals.add(val);
+        }
+        body.put("variable_vals", vals);
+        body.put("messages", param.getMessages());
+        return body;
+    }
+
+    private static ExecuteParam param() {
+        Map<String, Object> variables = new LinkedHashMap<>();
+        for (int i = 0; i < 8; i++) {
+            variables.put("var_" + i, "value of variable " + i + " with some typical prompt text");
+        }
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            messages.add(Message.builder().role(i % 2 == 0 ? Role.USER : Role.ASSISTANT)
+                .content("Turn " + i + ": a message of moderate length, as found in a chat history.").build());
+        }
+        return ExecuteParam.builder().promptKey("benchmark").version("1").variableVals(variables)
+            .messages(messages).build();
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write() throws Exception;
+    }
+}
@@ -0,0 +1,114 @@
+package com.coze.loop.prompt;
+
+import com.coze.loop.auth.TokenAuth;
+import com.coze.loop.entity.ContentPart;
+import com.coze.loop.entity.ContentType;
+import com.coze.loop.entity.ExecuteParam;
+import com.coze.loop.entity.ExecuteResult;
+import com.coze.loop.entity.Message;
+import com.coze.loop.entity.Role;
+import com.coze.loop.exception.ErrorCode;
+import com.coze.loop.exception.PromptException;
+import com.coze.loop.http.HttpClient;
+import com.coze.loop.http.HttpConfig;
+import com.coze.loop.internal.JsonUtils;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Unit tests for ExecuteRequestWriter.
+ */
+class ExecuteRequestWriterTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testWritesIdentifierVariablesAndMessages() {
+        Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put("name", "Alice");
+        variables.put("history", Collections.singletonList(Message.builder().role(Role.USER).content("hi").build()));
+        variables.put("image", ContentPart.builder().type(ContentType.IMAGE_URL).imageUrl("https://example.com/a.png").build());
+        variables.put("count", 3);
+        variables.put("empty", Collections.emptyList());
+        ExecuteParam param = ExecuteParam.builder()
+            .promptKey("greeting")
+            .label("prod")
+            .variableVals(variables)
+            .messages(Collections.singletonList(Message.builder().role(Role.USER).content("question").build()))
+            .build();
+        
+        Map<String, Object> body = JsonUtils.fromJson(new ExecuteRequestWriter("ws", param).toJson(), Map.class);
+        
+        assertThat(body).containsEntry("workspace_id", "ws");
+        assertThat((Map<String, Object>) body.get("prompt_identifier"))
+            .containsOnly(entry("prompt_key", (Object) "greeting"), entry("label", (Object) "prod"));
+        List<Map<String, Object>> vals = (List<Map<String, Object>>) body.get("variable_vals");
+        assertThat(vals).hasSize(5);
+        assertThat(vals.get(0)).containsEntry("key", "name").containsEntry("value", "Alice");
+        assertThat((List<Map<String, Object>>) vals.get(1).get("placeholder_messages"))
+            .singleElement().satisfies(message -> assertThat(message).containsEntry("content", "hi"));
+        assertThat((List<Map<String, Object>>) vals.get(2).get("multi_part_values"))
+            .singleElement().satisfies(part -> assertThat(part).containsEntry("image_url", "https://example.com/a.png"));
+        assertThat(vals.get(3)).containsEntry("value", "3");
+        assertThat(vals.get(4)).containsEntry("value", "[]");
+        assertThat((List<Map<String, Object>>) body.get("messages"))
+            .singleElement().satisfies(message -> assertThat(message).containsEntry("content", "question"));
+    }
+
+    @Test
+    void testNullVariableValueFailsBeforeSending() {
+        ExecuteParam param = ExecuteParam.builder()
+            .promptKey("greeting")
+            .variableVals(Collections.singletonMap("name", null))
+            .build();
+        
+        assertThatThrownBy(() -> new ExecuteRequestWriter("ws", param))
+            .isInstanceOf(PromptException.class)
+            .satisfies(e -> assertThat(((PromptException) e).getErrorCode()).isEqualTo(ErrorCode.INVALID_PARAM));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testExecuteStreamsBodyToServer() throws Exception {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setResponseCode(200)
+                .setBody("{\"code\":0,\"data\":{\"message\":{\"role\":\"assistant\",\"content\":\"Hello\"},"
+                    + "\"finish_reason\":\"stop\"}}"));
+            server.start();
+            HttpClient httpClient = new HttpClient(new TokenAuth("test-token"), HttpConfig.builder().maxRetries(0).build());
+            PromptProvider provider = new PromptProvider(httpClient, server.url("/mget").toString(),
+                server.url("/execute").toString(), null, "ws", PromptCache.PromptCacheConfig.builder().build());
+            try {
+                ExecuteResult result = provider.execute(ExecuteParam.builder()
+                    .promptKey("greeting")
+                    .version("3")
+                    .variableVals(Collections.singletonMap("name", "Bob"))
+                    .build());
+
+                assertThat(result.getMessage().getContent()).isEqualTo("Hello");
+                assertThat(result.getFinishReason()).isEqualTo("stop");
+                RecordedRequest request = server.takeRequest();
+                assertThat(request.getHeader("Transfer-Encoding")).isEqualTo("chunked");
+                Map<String, Object> body = JsonUtils.fromJson(request.getBody().readUtf8(), Map.class);
+                assertThat((Map<String, Object>) body.get("prompt_identifier"))
+                    .containsEntry("prompt_key", "greeting").containsEntry("version", "3");
+                assertThat((List<Object>) body.get("variable_vals")).isEqualTo(Arrays.asList(
+                    JsonUtils.fromJson("{\"key\":\"name\",\"value\":\"Bob\"}", Map.class)));
+            } finally {
+                provider.close();
+                httpClient.close();
+            }
+        }
+    }
+}
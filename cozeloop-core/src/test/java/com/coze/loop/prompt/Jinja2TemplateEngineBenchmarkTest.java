@@ -0,0 +1,71 @@
+package com.coze.loop.prompt;
+
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.JinjavaConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares rendering a cached node tree with parsing the template on every render.
+ *
+ * <p>Run with {@code mvn test -Dtest=Jinja2TemplateEngineBenchmarkTest -Dcozeloop.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "cozeloop.benchmark", matches = "true")
+class Jinja2TemplateEngineBenchmarkTest {
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    private static final String TEMPLATE = "You are {{ assistant }}, helping {{ user.name }}.\n"
+        + "{% if user.vip %}Treat the user as a VIP.{% else %}Be concise.{% endif %}\n"
+        + "Context:\n{% for doc in docs %}- {{ doc | upper }}\n{% endfor %}"
+        + "Answer in {{ language | default('English') }}.";
+
+    @Test
+    void benchmarkCompiledVersusParsedRender() {
+        Jinjava jinjava = new Jinjava(JinjavaConfig.newBuilder().withFailOnUnknownTokens(false).build());
+        Jinja2TemplateEngine engine = new Jinja2TemplateEngine();
+        Map<String, Object> variables = variables();
+        
+        String expected = jinjava.renderForResult(TEMPLATE, variables).getOutput();
+        assertThat(engine.render(TEMPLATE, variables)).isEqualTo(expected);
+        
+        long parsed = measure(() -> jinjava.renderForResult(TEMPLATE, variables).getOutput());
+        long compiled = measure(() -> engine.render(TEMPLATE, variables));
+        
+        System.out.printf("Jinja2 render, parse every time: %d ns/op%n", parsed / ITERATIONS);
+        System.out.printf("Jinja2 render, cached node tree: %d ns/op%n", compiled / ITERATIONS);
+        System.out.printf("Speedup: %.2fx%n", (double) parsed / compiled);
+    }
+
+    private static long measure(Supplier<String> render) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += render.get().length();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += render.get().length();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertThat(sink).isPositive();
+        return elapsed;
+    }
+
+    private static Map<String, Object> variables() {
+        Map<String, Object> user = new HashMap<>();
+        user.put("name", "Alice");
+        user.put("vip", true);
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("assistant", "CozeLoop");
+        variables.put("user", user);
+        variables.put("docs", Arrays.asList("first document", "second document", "third document"));
+        return variables;
+    }
+}
@@ -1,11 +1,19 @@
 package com.coze.loop.prompt;
 
+import com.coze.loop.exception.ErrorCode;
+import com.coze.loop.exception.PromptException;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Unit tests for Jinja2TemplateEngine.
@@ -96,5 +104,46 @@ class Jinja2TemplateEngineTest {
         
         assertThat(result.trim()).isEqualTo("User: Bob, Age: 30");
     }
-}
 
+    @Test
+    void testCompiledTemplateIsCachedAndReusable() {
+        String template = "{% for item in items %}{{ prefix }}{{ item }} {% endfor %}";
+        CompiledTemplate compiled = engine.compile(template);
+        
+        assertThat(engine.compile(template)).isSameAs(compiled);
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("prefix", "-");
+        variables.put("items", Arrays.asList("a", "b"));
+        assertThat(compiled.render(variables).trim()).isEqualTo("-a -b");
+        variables.put("prefix", "+");
+        variables.put("items", Collections.singletonList("c"));
+        assertThat(compiled.render(variables).trim()).isEqualTo("+c");
+    }
+
+    @Test
+    void testCompiledTemplateRendersConcurrently() {
+        CompiledTemplate compiled = engine.compile("{% set greeting = 'Hi ' ~ name %}{{ greeting }}");
+        
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Map<String, Object> variables = Collections.singletonMap("name", "user-" + i);
+            futures.add(CompletableFuture.supplyAsync(() -> compiled.render(variables)));
+        }
+        
+        for (int i = 0; i < 50; i++) {
+            assertThat(futures.get(i).join()).isEqualTo("Hi user-" + i);
+        }
+    }
+
+    @Test
+    void testSyntaxErrorIsReportedOnEveryRender() {
+        String template = "{% if name %}unclosed";
+        
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> engine.render(template, Collections.singletonMap("name", "x")))
+                .isInstanceOf(PromptException.class)
+                .satisfies(e -> assertThat(((PromptException) e).getErrorCode())
+                    .isEqualTo(ErrorCode.TEMPLATE_RENDER_ERROR));
+        }
+    }
+}
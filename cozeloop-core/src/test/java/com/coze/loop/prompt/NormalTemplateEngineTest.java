@@ -120,5 +120,70 @@ class NormalTemplateEngineTest {
         assertThat(result).isNotNull();
         assertThat(result).contains("Value:");
     }
-}
 
+    @Test
+    void testRenderWithDefaultValueAndEscape() {
+        String template = "Hi ${name:-guest}, literal $${name} and {{missing}}";
+        
+        String result = engine.render(template, new HashMap<>());
+        
+        assertThat(result).isEqualTo("Hi guest, literal ${name} and {{missing}}");
+    }
+
+    @Test
+    void testValuesAreInsertedVerbatim() {
+        String template = "{{a}} ${b}";
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("a", "{{b}}");
+        variables.put("b", "x");
+        
+        String result = engine.render(template, variables);
+        
+        assertThat(result).isEqualTo("{{b}} x");
+    }
+
+    @Test
+    void testRenderWithTripleBraces() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("name", "value");
+        
+        assertThat(engine.render("{{{name}}}", variables)).isEqualTo("{value}");
+        assertThat(engine.render("a {{ {{name}} b", variables)).isEqualTo("a {{ value b");
+    }
+
+    @Test
+    void testUnterminatedPlaceholdersAreLiteral() {
+        assertThat(engine.render("cost: ${price and {{total", new HashMap<>()))
+            .isEqualTo("cost: ${price and {{total");
+    }
+
+    @Test
+    void testCompiledTemplateIsCachedAndReusable() {
+        String template = "{{greeting}}, ${name}!";
+        CompiledTemplate compiled = engine.compile(template);
+        
+        assertThat(engine.compile(template)).isSameAs(compiled);
+        
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("greeting", "Hello");
+        variables.put("name", "Eve");
+        assertThat(compiled.render(variables)).isEqualTo("Hello, Eve!");
+        variables.put("name", "Frank");
+        assertThat(compiled.render(variables)).isEqualTo("Hello, Frank!");
+        assertThat(compiled.render(null)).isEqualTo("{{greeting}}, ${name}!");
+    }
+
+    @Test
+    void testRenderWithManyVariables() {
+        StringBuilder template = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        Map<String, Object> variables = new HashMap<>();
+        for (int i = 0; i < 40; i++) {
+            template.append("line ").append(i).append(": {{v").append(i).append("}}\n");
+            expected.append("line ").append(i).append(": value-").append(i).append("\n");
+            variables.put("v" + i, "value-" + i);
+        }
+        
+        assertThat(engine.render(template.toString(), variables)).isEqualTo(expected.toString());
+    }
+}
@@ -1,13 +1,25 @@
 package com.coze.loop.prompt;
 
+import com.coze.loop.entity.Message;
 import com.coze.loop.entity.Prompt;
+import com.coze.loop.entity.PromptTemplate;
+import com.coze.loop.entity.Role;
+import com.coze.loop.exception.ErrorCode;
+import com.coze.loop.exception.PromptException;
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Unit tests for PromptCache.
@@ -100,5 +112,169 @@ class PromptCacheTest {
         // Should return same instance from cache
         assertThat(prompt1).isSameAs(prompt2);
     }
-}
 
+    @Test
+    void testStaleValueIsServedWhileRevalidating() {
+        AtomicLong ticker = new AtomicLong();
+        AtomicInteger loads = new AtomicInteger();
+        PromptCache swrCache = newSwrCache(ticker, (key, executor) ->
+            CompletableFuture.completedFuture(prompt(key, "v" + loads.incrementAndGet())));
+        
+        assertThat(swrCache.getSync("key").getVersion()).isEqualTo("v1");
+        
+        // Past the refresh time: the stale value is returned and reloaded in the background
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        assertThat(swrCache.getSync("key").getVersion()).isEqualTo("v1");
+        assertThat(loads).hasValue(2);
+        assertThat(swrCache.getSync("key").getVersion()).isEqualTo("v2");
+        
+        // Past the maximum staleness: the entry expired and the read waits for a load
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(61));
+        assertThat(swrCache.getSync("key").getVersion()).isEqualTo("v3");
+    }
+
+    @Test
+    void testFailedRefreshKeepsStaleValueAndRetries() {
+        AtomicLong ticker = new AtomicLong();
+        AtomicInteger loads = new AtomicInteger();
+        PromptCache swrCache = newSwrCache(ticker, (key, executor) -> {
+            CompletableFuture<Prompt> future = new CompletableFuture<>();
+            if (loads.incrementAndGet() == 2) {
+                future.completeExceptionally(new IllegalStateException("server down"));
+            } else {
+                future.complete(prompt(key, "v" + loads.get()));
+            }
+            return future;
+        });
+        swrCache.getSync("key");
+        
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        assertThat(swrCache.getSync("key").getVersion()).isEqualTo("v1");
+        assertThat(swrCache.getSync("key").getVersion()).isEqualTo("v1");
+        assertThat(loads).hasValue(2);
+        
+        // Retried after the backoff
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        swrCache.getSync("key");
+        assertThat(swrCache.getSync("key").getVersion()).isEqualTo("v3");
+    }
+
+    @Test
+    void testFallbackIsServedOnlyWhenNothingIsCached() {
+        AtomicLong ticker = new AtomicLong();
+        AtomicInteger loads = new AtomicInteger();
+        PromptCache swrCache = newSwrCache(ticker, (key, executor) -> {
+            CompletableFuture<Prompt> future = new CompletableFuture<>();
+            if (loads.incrementAndGet() == 1) {
+                future.complete(prompt(key, "v1"));
+            } else {
+                future.completeExceptionally(new IllegalStateException("server down"));
+            }
+            return future;
+        }, key -> prompt(key, "last-known-good"));
+        swrCache.getSync("key");
+        
+        // A failed refresh keeps the stale entry instead of replacing it with the fallback
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        assertThat(swrCache.getSync("key").getVersion()).isEqualTo("v1");
+        assertThat(swrCache.getSync("key").getVersion()).isEqualTo("v1");
+        assertThat(loads).hasValue(2);
+        
+        // Once the stale entry expired, the failed load falls back
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(50));
+        assertThat(swrCache.getSync("key").getVersion()).isEqualTo("last-known-good");
+        assertThat(loads).hasValue(3);
+        
+        // The fallback is retried after the backoff, not after the full refresh interval
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        assertThat(swrCache.getSync("key").getVersion()).isEqualTo("last-known-good");
+        assertThat(loads).hasValue(4);
+    }
+
+    @Test
+    void testNotFoundIsCachedBriefly() {
+        AtomicLong ticker = new AtomicLong();
+        AtomicInteger loads = new AtomicInteger();
+        PromptCache swrCache = newSwrCache(ticker, (key, executor) -> {
+            loads.incrementAndGet();
+            CompletableFuture<Prompt> future = new CompletableFuture<>();
+            future.completeExceptionally(new PromptException(ErrorCode.PROMPT_NOT_FOUND, "missing " + key));
+            return future;
+        });
+        
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> swrCache.get("key").join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(PromptException.class)
+                .hasRootCauseMessage("missing key");
+        }
+        assertThat(loads).hasValue(1);
+        
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        assertThatThrownBy(() -> swrCache.get("key").join()).hasCauseInstanceOf(PromptException.class);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void testOtherFailuresAreNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        PromptCache swrCache = newSwrCache(new AtomicLong(), (key, executor) -> {
+            loads.incrementAndGet();
+            CompletableFuture<Prompt> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("server down"));
+            return future;
+        });
+        
+        assertThat(swrCache.getSync("key")).isNull();
+        assertThat(swrCache.getSync("key")).isNull();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void testCompiledPromptIsBuiltOncePerLoad() {
+        AtomicLong ticker = new AtomicLong();
+        AtomicInteger version = new AtomicInteger();
+        PromptCache swrCache = newSwrCache(ticker, (key, executor) -> {
+            Prompt prompt = prompt(key, String.valueOf(version.incrementAndGet()));
+            PromptTemplate template = new PromptTemplate();
+            template.setMessages(Collections.singletonList(
+                Message.builder().role(Role.USER).content("v" + prompt.getVersion() + " ${name}").build()));
+            prompt.setPromptTemplate(template);
+            return CompletableFuture.completedFuture(prompt);
+        });
+        
+        CompiledPrompt compiled = swrCache.getCompiled("key").join();
+        assertThat(swrCache.getCompiled("key").join()).isSameAs(compiled);
+        assertThat(compiled.getPrompt()).isSameAs(swrCache.get("key").join());
+        assertThat(compiled.format(Collections.singletonMap("name", "Ann")).get(0).getContent())
+            .isEqualTo("v1 Ann");
+        
+        // A refresh replaces the compiled prompt with the reloaded one
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        swrCache.get("key").join();
+        assertThat(swrCache.getCompiled("key").join().format(null).get(0).getContent())
+            .isEqualTo("v2 ${name}");
+    }
+
+    private static PromptCache newSwrCache(AtomicLong ticker, AsyncCacheLoader<String, Prompt> loader) {
+        return newSwrCache(ticker, loader, null);
+    }
+
+    private static PromptCache newSwrCache(AtomicLong ticker, AsyncCacheLoader<String, Prompt> loader,
+                                           Function<String, Prompt> fallback) {
+        PromptCache.PromptCacheConfig config = PromptCache.PromptCacheConfig.builder()
+            .refreshAfterWriteMinutes(10)
+            .expireAfterWriteMinutes(60)
+            .refreshJitter(0)
+            .negativeCacheSeconds(30)
+            .build();
+        return new PromptCache(config, loader, new PromptFormatter(), fallback, ticker::get, Runnable::run);
+    }
+
+    private static Prompt prompt(String key, String version) {
+        Prompt prompt = new Prompt();
+        prompt.setPromptKey(key);
+        prompt.setVersion(version);
+        return prompt;
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -127,6 +128,84 @@ class PromptFormatterTest {
         assertThat(messages).isNotNull();
     }
 
+    @Test
+    void testCompiledPromptFormatsRepeatedly() {
+        Prompt prompt = createPrompt(TemplateType.NORMAL);
+        CompiledPrompt compiled = formatter.compile(prompt);
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("name", "Frank");
+        variables.put("message", "Hi");
+        
+        List<Message> first = compiled.format(variables);
+        first.get(0).setContent("changed by caller");
+        variables.put("name", "Grace");
+        List<Message> second = compiled.format(variables);
+        
+        assertThat(second.get(0).getContent()).isEqualTo("Hello Grace, your message is: Hi");
+        assertThat(second.get(0).getRole()).isEqualTo(Role.USER);
+        assertThat(compiled.getPrompt()).isSameAs(prompt);
+        assertThat(formatter.format(prompt, variables).get(0).getContent())
+            .isEqualTo(second.get(0).getContent());
+    }
+
+    @Test
+    void testCompiledPromptCopiesStaticMessagesAndParts() {
+        PromptTemplate template = new PromptTemplate();
+        template.setTemplateType(TemplateType.JINJA2);
+        Message system = new Message(Role.SYSTEM);
+        system.setContent("You are helpful. Prices are in ${currency}.");
+        Message user = Message.builder()
+            .role(Role.USER)
+            .addPart(ContentPart.builder().type(ContentType.TEXT).text("Describe {{ item }}").build())
+            .addPart(ContentPart.builder().type(ContentType.IMAGE_URL).imageUrl("https://example.com/a.png").build())
+            .build();
+        List<Message> templateMessages = new ArrayList<>();
+        templateMessages.add(system);
+        templateMessages.add(user);
+        template.setMessages(templateMessages);
+        Prompt prompt = new Prompt();
+        prompt.setPromptTemplate(template);
+        
+        List<Message> messages = formatter.compile(prompt).format(Collections.singletonMap("item", "a cat"));
+        
+        // "${...}" is not Jinja2 syntax and is kept as is
+        assertThat(messages.get(0).getContent()).isEqualTo("You are helpful. Prices are in ${currency}.");
+        assertThat(messages.get(0)).isNotSameAs(system);
+        assertThat(messages.get(1).getParts()).hasSize(2);
+        assertThat(messages.get(1).getParts().get(0).getText()).isEqualTo("Describe a cat");
+        assertThat(messages.get(1).getParts().get(1).getImageUrl()).isEqualTo("https://example.com/a.png");
+        assertThat(messages.get(1).getParts().get(1)).isNotSameAs(user.getParts().get(1));
+        assertThat(user.getParts().get(0).getText()).isEqualTo("Describe {{ item }}");
+    }
+
+    @Test
+    void testCompiledPromptValidatesVariableTypes() {
+        Prompt prompt = createPrompt(TemplateType.NORMAL);
+        List<VariableDef> defs = new ArrayList<>();
+        defs.add(new VariableDef("name", VariableType.STRING));
+        defs.add(new VariableDef("context", VariableType.PLACEHOLDER));
+        prompt.getPromptTemplate().setVariableDefs(defs);
+        CompiledPrompt compiled = formatter.compile(prompt);
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("name", 42);
+        variables.put("context", 1);
+        
+        assertThatThrownBy(() -> compiled.format(variables))
+            .isInstanceOf(PromptException.class)
+            .hasMessageContaining("name");
+        assertThat(compiled.format(null)).hasSize(1);
+    }
+
+    @Test
+    void testCompiledPromptWithoutTemplateFailsOnFormat() {
+        Prompt prompt = new Prompt();
+        
+        CompiledPrompt compiled = formatter.compile(prompt);
+        
+        assertThatThrownBy(() -> compiled.format(new HashMap<>()))
+            .isInstanceOf(PromptException.class);
+    }
+
     private Prompt createPrompt(TemplateType templateType) {
         PromptTemplate template = new PromptTemplate();
         template.setTemplateType(templateType);
@@ -0,0 +1,433 @@
+package com.coze.loop.prompt;
+
+import com.coze.loop.auth.TokenAuth;
+import com.coze.loop.entity.ExecuteParam;
+import com.coze.loop.entity.ExecuteResult;
+import com.coze.loop.entity.Prompt;
+import com.coze.loop.exception.ErrorCode;
+import com.coze.loop.exception.PromptException;
+import com.coze.loop.http.HttpClient;
+import com.coze.loop.http.HttpConfig;
+import com.coze.loop.internal.JsonUtils;
+import com.coze.loop.stream.StreamListener;
+import com.coze.loop.stream.StreamReader;
+import com.coze.loop.stream.StreamSubscription;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for PromptProvider batched fetching.
+ */
+class PromptProviderTest {
+
+    private MockWebServer mockWebServer;
+    private HttpClient httpClient;
+    private PromptProvider provider;
+    private final List<List<String>> requestedKeys = new CopyOnWriteArrayList<>();
+    private volatile boolean serverFailing = false;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.setDispatcher(new MGetDispatcher());
+        mockWebServer.start();
+        httpClient = new HttpClient(new TokenAuth("test-token"), HttpConfig.builder().maxRetries(0).build());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (provider != null) {
+            provider.close();
+        }
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testConcurrentMissesShareOneRequest() {
+        provider = newProvider(200, 20);
+        
+        List<CompletableFuture<Prompt>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            GetPromptParam param = param("prompt-" + i);
+            futures.add(CompletableFuture.supplyAsync(() -> provider.getPrompt(param)));
+        }
+        
+        for (int i = 0; i < 5; i++) {
+            assertThat(futures.get(i).join().getPromptKey()).isEqualTo("prompt-" + i);
+        }
+        assertThat(requestedKeys).hasSize(1);
+        assertThat(requestedKeys.get(0)).containsExactlyInAnyOrder(
+            "prompt-0", "prompt-1", "prompt-2", "prompt-3", "prompt-4");
+    }
+
+    @Test
+    void testGetPromptsSplitsByMaxBatchSizeAndKeepsOrder() {
+        provider = newProvider(50, 2);
+        List<GetPromptParam> params = Arrays.asList(
+            param("a"), param("b"), param("c"), param("a"), param("d"), param("e"));
+        
+        List<Prompt> prompts = provider.getPrompts(params);
+        
+        assertThat(prompts.stream().map(Prompt::getPromptKey).collect(Collectors.toList()))
+            .containsExactly("a", "b", "c", "a", "d", "e");
+        assertThat(requestedKeys).hasSize(3).allSatisfy(keys -> assertThat(keys).hasSizeLessThanOrEqualTo(2));
+        
+        // Served from cache afterwards
+        provider.getPrompts(params);
+        assertThat(requestedKeys).hasSize(3);
+    }
+
+    @Test
+    void testItemsAreRoutedByQuery() {
+        provider = newProvider(50, 20);
+        GetPromptParam labeled = GetPromptParam.builder().promptKey("shared").label("beta").build();
+        GetPromptParam versioned = GetPromptParam.builder().promptKey("shared").version("2").build();
+        
+        List<Prompt> prompts = provider.getPrompts(Arrays.asList(labeled, versioned));
+        
+        assertThat(requestedKeys).hasSize(1);
+        assertThat(prompts.get(0).getVersion()).isEqualTo("label-beta");
+        assertThat(prompts.get(1).getVersion()).isEqualTo("2");
+    }
+
+    @Test
+    void testMissingPromptFailsOnlyItsCaller() {
+        provider = newProvider(200, 20);
+        
+        CompletableFuture<Prompt> found = CompletableFuture.supplyAsync(() -> provider.getPrompt(param("present")));
+        CompletableFuture<Prompt> missing = CompletableFuture.supplyAsync(() -> provider.getPrompt(param("missing")));
+        
+        assertThat(found.join().getPromptKey()).isEqualTo("present");
+        assertThatThrownBy(missing::join)
+            .hasCauseInstanceOf(PromptException.class)
+            .satisfies(e -> assertThat(((PromptException) e.getCause()).getErrorCode())
+                .isEqualTo(ErrorCode.PROMPT_NOT_FOUND));
+        assertThat(requestedKeys).hasSize(1);
+    }
+
+    @Test
+    void testPreloadFillsCacheAndReportsFailures() {
+        provider = newProvider(50, 20);
+        
+        CompletableFuture<Void> ready = provider.preload(Arrays.asList(param("a"), param("missing"), param("b")));
+        
+        assertThatThrownBy(ready::join).hasCauseInstanceOf(PromptException.class);
+        assertThat(requestedKeys).hasSize(1);
+        // Prompts that were found stay cached
+        assertThat(provider.getPrompts(Arrays.asList(param("a"), param("b")))).hasSize(2);
+        assertThat(requestedKeys).hasSize(1);
+        assertThat(provider.preload(Collections.emptyList())).isCompleted();
+    }
+
+    @Test
+    void testSnapshotServesLastKnownGoodAcrossRestart(@TempDir Path dir) {
+        PromptCache.PromptCacheConfig config = PromptCache.PromptCacheConfig.builder()
+            .fetchBatchWindowMillis(0)
+            .snapshotPath(dir.resolve("prompts.snapshot").toString())
+            .snapshotIntervalSeconds(0)
+            .build();
+        provider = newProvider(config);
+        provider.getPrompt(param("a"));
+        provider.close();
+        
+        // Restart while the server is down: the restored prompt is served without a fetch
+        serverFailing = true;
+        provider = newProvider(config);
+        assertThat(provider.getPrompt(param("a")).getPromptKey()).isEqualTo("a");
+        
+        // A failed reload after invalidation falls back to the last-known-good prompt too
+        provider.invalidateCache(param("a"));
+        assertThat(provider.getPrompt(param("a")).getPromptKey()).isEqualTo("a");
+        assertThatThrownBy(() -> provider.getPrompt(param("b"))).isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void testAsyncCallsDoNotBlockTheCaller() {
+        provider = newProvider(200, 20);
+        
+        CompletableFuture<Prompt> prompt = provider.getPromptAsync(param("a"));
+        CompletableFuture<Prompt> missing = provider.getPromptAsync(param("missing"));
+        
+        // Still waiting for the batch window
+        assertThat(prompt).isNotDone();
+        assertThat(prompt.join().getPromptKey()).isEqualTo("a");
+        assertThatThrownBy(missing::join)
+            .hasCauseInstanceOf(PromptException.class)
+            .satisfies(e -> assertThat(((PromptException) e.getCause()).getErrorCode())
+                .isEqualTo(ErrorCode.PROMPT_NOT_FOUND));
+        assertThat(provider.getAndFormatAsync(param("a"), null))
+            .failsWithin(Duration.ofSeconds(5))
+            .withThrowableOfType(ExecutionException.class)
+            .withCauseInstanceOf(PromptException.class);
+        assertThat(requestedKeys).hasSize(1);
+    }
+
+    @Test
+    void testFetchesCompleteOnClientOwnedThreads() {
+        provider = newProvider(100, 20);
+        
+        CompletableFuture<String> completingThread = provider.getPromptAsync(param("a"))
+            .thenApply(prompt -> Thread.currentThread().getName());
+        
+        assertThat(completingThread.join()).startsWith("cozeloop-prompt-worker-");
+        
+        // After close, fetches still complete, on the submitting thread
+        provider.close();
+        assertThat(provider.getPromptAsync(param("b")).join().getPromptKey()).isEqualTo("b");
+    }
+
+    @Test
+    void testExecuteAsync() {
+        provider = newProvider(PromptCache.PromptCacheConfig.builder().build());
+        
+        ExecuteResult result = provider.executeAsync(ExecuteParam.builder().promptKey("a").build()).join();
+        
+        assertThat(result.getMessage().getContent()).isEqualTo("answer to a");
+        serverFailing = true;
+        assertThatThrownBy(() -> provider.executeAsync(ExecuteParam.builder().promptKey("a").build()).join())
+            .hasCauseInstanceOf(PromptException.class);
+    }
+
+    @Test
+    void testExecuteStreamingBindsEachChunk() throws Exception {
+        provider = newProvider(PromptCache.PromptCacheConfig.builder().build());
+        
+        List<ExecuteResult> chunks = new ArrayList<>();
+        try (StreamReader<ExecuteResult> reader = provider.executeStreaming(
+                ExecuteParam.builder().promptKey("a").build())) {
+            ExecuteResult chunk;
+            while ((chunk = reader.recv()) != null) {
+                chunks.add(chunk);
+            }
+        }
+        
+        // The malformed chunk is skipped
+        assertThat(chunks).extracting(chunk -> chunk.getMessage().getContent()).containsExactly("Hel", "lo");
+        assertThat(chunks.get(0).getUsage()).isNull();
+        assertThat(chunks.get(1).getFinishReason()).isEqualTo("stop");
+        assertThat(chunks.get(1).getUsage().getInputTokens()).isEqualTo(3);
+        assertThat(chunks.get(1).getUsage().getOutputTokens()).isEqualTo(2);
+    }
+
+    @Test
+    void testExecuteStreamingPushesToListener() {
+        provider = newProvider(PromptCache.PromptCacheConfig.builder().build());
+        List<String> contents = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        
+        provider.executeStreaming(ExecuteParam.builder().promptKey("a").build(), new StreamListener<ExecuteResult>() {
+            private StreamSubscription subscription;
+
+            @Override
+            public void onSubscribe(StreamSubscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onChunk(ExecuteResult chunk) {
+                contents.add(chunk.getMessage().getContent());
+                subscription.request(1);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                done.completeExceptionally(error);
+            }
+        });
+        
+        assertThat(done).succeedsWithin(Duration.ofSeconds(5));
+        assertThat(contents).containsExactly("Hel", "lo");
+        
+        serverFailing = true;
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        provider.executeStreaming(ExecuteParam.builder().promptKey("a").build(), new StreamListener<ExecuteResult>() {
+            @Override
+            public void onChunk(ExecuteResult chunk) {
+            }
+
+            @Override
+            public void onComplete() {
+                failed.complete(null);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                failed.completeExceptionally(error);
+            }
+        });
+        assertThat(failed).failsWithin(Duration.ofSeconds(5))
+            .withThrowableOfType(ExecutionException.class)
+            .withCauseInstanceOf(PromptException.class);
+    }
+
+    @Test
+    void testStreamsWaitForBusyStreamThreadsAndCancelAbortsRead() {
+        provider = newProvider(PromptCache.PromptCacheConfig.builder().build(), 1);
+        CompletableFuture<ExecuteResult> firstChunk = new CompletableFuture<>();
+        CompletableFuture<Throwable> slowError = new CompletableFuture<>();
+        
+        // Keeps the only stream thread in reads blocked on the throttled body
+        StreamSubscription slow = provider.executeStreaming(ExecuteParam.builder().promptKey("slow").build(),
+            new StreamListener<ExecuteResult>() {
+                @Override
+                public void onChunk(ExecuteResult chunk) {
+                    firstChunk.complete(chunk);
+                }
+
+                @Override
+                public void onComplete() {
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    slowError.complete(error);
+                }
+            });
+        assertThat(firstChunk).succeedsWithin(Duration.ofSeconds(5));
+        
+        // Another stream takes turns with the slow one instead of failing
+        assertThat(executeStreaming("a")).succeedsWithin(Duration.ofSeconds(10));
+        
+        // Cancelling aborts the blocked read well before the next chunk arrives
+        CompletableFuture<Void> next = executeStreaming("a");
+        slow.cancel();
+        assertThat(next).succeedsWithin(Duration.ofMillis(1500));
+        assertThat(slowError).isNotDone();
+    }
+
+    private CompletableFuture<Void> executeStreaming(String promptKey) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        provider.executeStreaming(ExecuteParam.builder().promptKey(promptKey).build(), new StreamListener<ExecuteResult>() {
+            @Override
+            public void onChunk(ExecuteResult chunk) {
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                done.completeExceptionally(error);
+            }
+        });
+        return done;
+    }
+
+    private PromptProvider newProvider(long windowMillis, int maxBatchSize) {
+        return newProvider(PromptCache.PromptCacheConfig.builder()
+            .fetchBatchWindowMillis(windowMillis)
+            .fetchMaxBatchSize(maxBatchSize)
+            .build());
+    }
+
+    private PromptProvider newProvider(PromptCache.PromptCacheConfig config) {
+        return newProvider(config, HttpConfig.builder().build().getStreamThreads());
+    }
+
+    private PromptProvider newProvider(PromptCache.PromptCacheConfig config, int streamThreads) {
+        return new PromptProvider(httpClient, mockWebServer.url("/v1/loop/prompts/mget").toString(),
+            mockWebServer.url("/v1/loop/prompts/execute").toString(),
+            mockWebServer.url("/v1/loop/prompts/execute_streaming").toString(), "workspace", config,
+            streamThreads);
+    }
+
+    private static GetPromptParam param(String promptKey) {
+        return GetPromptParam.builder().promptKey(promptKey).build();
+    }
+
+    /**
+     * Answers mget requests with the requested prompts, except keys named "missing", in reverse
+     * order so that items must be matched by their query. Execute requests are answered with
+     * "answer to" the prompt key; the stream of the prompt "slow" sends one chunk every three
+     * seconds.
+     */
+    private class MGetDispatcher extends Dispatcher {
+        @Override
+        @SuppressWarnings("unchecked")
+        public MockResponse dispatch(RecordedRequest request) {
+            if (serverFailing) {
+                return new MockResponse().setResponseCode(503);
+            }
+            Map<String, Object> body = JsonUtils.fromJson(request.getBody().readUtf8(), Map.class);
+            if (request.getPath().endsWith("/execute_streaming")) {
+                Map<String, Object> identifier = (Map<String, Object>) body.get("prompt_identifier");
+                if ("slow".equals(identifier.get("prompt_key"))) {
+                    String chunk = "data: {\"message\":{\"role\":\"assistant\",\"content\":\"Hel\"}}\n\n";
+                    return new MockResponse().setResponseCode(200)
+                        .setHeader("Content-Type", "text/event-stream")
+                        .setBody(chunk + chunk + chunk)
+                        .throttleBody(chunk.length(), 3, TimeUnit.SECONDS);
+                }
+                return new MockResponse().setResponseCode(200)
+                    .setHeader("Content-Type", "text/event-stream")
+                    .setBody("data: {\"message\":{\"role\":\"assistant\",\"content\":\"Hel\"}}\n\n"
+                        + "data: not json\n\n"
+                        + "data: {\"message\":{\"role\":\"assistant\",\"content\":\"lo\"},"
+                        + "\"finish_reason\":\"stop\",\"usage\":{\"input_tokens\":3,\"output_tokens\":2}}\n\n");
+            }
+            if (request.getPath().endsWith("/execute")) {
+                Map<String, Object> identifier = (Map<String, Object>) body.get("prompt_identifier");
+                return new MockResponse().setResponseCode(200).setBody("{\"code\":0,\"data\":{\"message\":"
+                    + "{\"role\":\"assistant\",\"content\":\"answer to " + identifier.get("prompt_key") + "\"}}}");
+            }
+            List<Map<String, Object>> queries = (List<Map<String, Object>>) body.get("queries");
+            List<String> keys = new ArrayList<>();
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (Map<String, Object> query : queries) {
+                String promptKey = (String) query.get("prompt_key");
+                keys.add(promptKey);
+                if ("missing".equals(promptKey)) {
+                    continue;
+                }
+                Map<String, Object> prompt = new HashMap<>();
+                prompt.put("prompt_key", promptKey);
+                prompt.put("version", query.containsKey("label")
+                    ? "label-" + query.get("label") : query.getOrDefault("version", "1"));
+                Map<String, Object> item = new HashMap<>();
+                item.put("query", query);
+                item.put("prompt", prompt);
+                items.add(0, item);
+            }
+            requestedKeys.add(keys);
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("items", items);
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 0);
+            response.put("data", data);
+            return new MockResponse().setResponseCode(200).setBody(JsonUtils.toJson(response));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.coze.loop.prompt;
+
+import com.coze.loop.entity.Prompt;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for PromptSnapshotStore.
+ */
+class PromptSnapshotStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRoundTrip() throws Exception {
+        PromptSnapshotStore store = new PromptSnapshotStore(dir.resolve("nested/prompts.snapshot"));
+        
+        store.save(prompts("a", "b"));
+        Map<String, Prompt> loaded = store.load();
+        
+        assertThat(loaded).containsOnlyKeys("a::", "b::");
+        assertThat(loaded.get("b::").getVersion()).isEqualTo("v-b");
+        assertThat(Files.exists(dir.resolve("nested/prompts.snapshot.tmp"))).isFalse();
+    }
+
+    @Test
+    void testMissingOrForeignFileIsEmpty() throws Exception {
+        Path path = dir.resolve("prompts.snapshot");
+        assertThat(new PromptSnapshotStore(path).load()).isEmpty();
+        
+        Files.write(path, "not a snapshot file at all".getBytes(StandardCharsets.UTF_8));
+        assertThat(new PromptSnapshotStore(path).load()).isEmpty();
+    }
+
+    @Test
+    void testCorruptEntryIsSkipped() throws Exception {
+        Path path = dir.resolve("prompts.snapshot");
+        PromptSnapshotStore store = new PromptSnapshotStore(path);
+        store.save(prompts("a", "b"));
+        
+        // Flip a byte inside the first prompt's JSON
+        byte[] bytes = Files.readAllBytes(path);
+        int index = indexOf(bytes, "v-a".getBytes(StandardCharsets.UTF_8));
+        bytes[index] = 'X';
+        Files.write(path, bytes);
+        
+        assertThat(store.load()).containsOnlyKeys("b::");
+    }
+
+    @Test
+    void testTruncatedFileKeepsCompleteEntries() throws Exception {
+        Path path = dir.resolve("prompts.snapshot");
+        PromptSnapshotStore store = new PromptSnapshotStore(path);
+        store.save(prompts("a", "b"));
+        
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 5));
+        
+        assertThat(store.load()).containsOnlyKeys("a::");
+    }
+
+    private static Map<String, Prompt> prompts(String... keys) {
+        Map<String, Prompt> prompts = new LinkedHashMap<>();
+        for (String key : keys) {
+            Prompt prompt = new Prompt();
+            prompt.setPromptKey(key);
+            prompt.setVersion("v-" + key);
+            prompts.put(key + "::", prompt);
+        }
+        return prompts;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= bytes.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError("pattern not found");
+    }
+}
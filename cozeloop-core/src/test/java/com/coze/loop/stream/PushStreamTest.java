@@ -0,0 +1,196 @@
+package com.coze.loop.stream;
+
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for PushStream.
+ */
+class PushStreamTest {
+
+    @Test
+    void testDeliversOnlyRequestedChunks() {
+        RecordingListener listener = new RecordingListener(1);
+        PushStream<String> stream = new PushStream<>(listener, Runnable::run);
+        listener.onSubscribe(stream);
+        DataReader reader = reader("data: a\n\ndata: b\n\ndata: c\n\n");
+        
+        stream.open(reader);
+        assertThat(listener.signals).containsExactly("a");
+        
+        stream.request(2);
+        assertThat(listener.signals).containsExactly("a", "b", "c");
+        
+        stream.request(1);
+        assertThat(listener.signals).containsExactly("a", "b", "c", "complete");
+        assertThat(reader.isClosed()).isTrue();
+    }
+
+    @Test
+    void testRequestFromCallbackDoesNotRecurse() {
+        RecordingListener listener = new RecordingListener(1) {
+            @Override
+            public void onChunk(String chunk) {
+                super.onChunk(chunk);
+                // Re-entrant request: the running drain picks it up
+                subscription.request(1);
+                signals.add("after " + chunk);
+            }
+        };
+        PushStream<String> stream = new PushStream<>(listener, Runnable::run);
+        listener.onSubscribe(stream);
+        
+        stream.open(reader("data: a\n\ndata: b\n\n"));
+        
+        assertThat(listener.signals).containsExactly("a", "after a", "b", "after b", "complete");
+    }
+
+    @Test
+    void testCancelStopsSignalsAndClosesReader() {
+        RecordingListener listener = new RecordingListener(Long.MAX_VALUE) {
+            @Override
+            public void onChunk(String chunk) {
+                super.onChunk(chunk);
+                subscription.cancel();
+            }
+        };
+        PushStream<String> stream = new PushStream<>(listener, Runnable::run);
+        List<String> cancelled = new CopyOnWriteArrayList<>();
+        stream.onCancel(() -> cancelled.add("request cancelled"));
+        listener.onSubscribe(stream);
+        DataReader reader = reader("data: a\n\ndata: b\n\n");
+        
+        stream.open(reader);
+        
+        assertThat(listener.signals).containsExactly("a");
+        assertThat(stream.isCancelled()).isTrue();
+        assertThat(cancelled).containsExactly("request cancelled");
+        assertThat(reader.isClosed()).isTrue();
+    }
+
+    @Test
+    void testFailures() {
+        RecordingListener errorEvent = new RecordingListener(Long.MAX_VALUE);
+        PushStream<String> stream = new PushStream<>(errorEvent, Runnable::run);
+        errorEvent.onSubscribe(stream);
+        DataReader reader = reader("data: a\n\nevent: error\ndata: boom\n\ndata: b\n\n");
+        stream.open(reader);
+        assertThat(errorEvent.signals).containsExactly("a", "error: boom");
+        assertThat(reader.isClosed()).isTrue();
+        
+        // A failure before the source opens wins, and the late source is closed
+        RecordingListener failed = new RecordingListener(Long.MAX_VALUE);
+        stream = new PushStream<>(failed, Runnable::run);
+        failed.onSubscribe(stream);
+        stream.fail(new IllegalStateException("request failed"));
+        DataReader late = reader("data: a\n\n");
+        stream.open(late);
+        assertThat(failed.signals).containsExactly("error: request failed");
+        assertThat(late.isClosed()).isTrue();
+        
+        RecordingListener invalidDemand = new RecordingListener(0);
+        stream = new PushStream<>(invalidDemand, Runnable::run);
+        invalidDemand.onSubscribe(stream);
+        stream.open(reader("data: a\n\n"));
+        stream.request(0);
+        assertThat(invalidDemand.signals).hasSize(1);
+        assertThat(invalidDemand.signals.get(0)).startsWith("error: Requested chunk count must be positive");
+    }
+
+    @Test
+    void testStreamsTakeTurnsOnSharedExecutor() {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        List<String> order = new ArrayList<>();
+        for (String name : Arrays.asList("1", "2")) {
+            RecordingListener listener = new RecordingListener(Long.MAX_VALUE) {
+                @Override
+                public void onChunk(String chunk) {
+                    order.add(name + chunk);
+                }
+
+                @Override
+                public void onComplete() {
+                    order.add(name + " complete");
+                }
+            };
+            PushStream<String> stream = new PushStream<>(listener, tasks::add, 1);
+            listener.onSubscribe(stream);
+            stream.open(reader("data: a\n\ndata: b\n\n"));
+        }
+        
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+        
+        assertThat(order).containsExactly("1a", "2a", "1b", "2b", "1 complete", "2 complete");
+    }
+
+    private static DataReader reader(String text) {
+        return new DataReader(new SSEDecoder(new Buffer().writeUtf8(text)));
+    }
+
+    /**
+     * A StreamReader of SSE data strings; "error" events fail the stream.
+     */
+    private static class DataReader extends StreamReader<String> {
+        DataReader(SSEDecoder decoder) {
+            super(decoder, new SSEParser<String>() {
+                @Override
+                public String parse(ServerSentEvent sse) {
+                    return sse.getData();
+                }
+
+                @Override
+                public Exception handleError(ServerSentEvent sse) {
+                    return "error".equals(sse.getEvent()) ? new IOException(sse.getData()) : null;
+                }
+            });
+        }
+    }
+
+    /**
+     * Records signals, requesting {@code initialDemand} chunks on subscribe.
+     */
+    private static class RecordingListener implements StreamListener<String> {
+        final List<String> signals = new CopyOnWriteArrayList<>();
+        final long initialDemand;
+        StreamSubscription subscription;
+        
+        RecordingListener(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+        
+        @Override
+        public void onSubscribe(StreamSubscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+        }
+        
+        @Override
+        public void onChunk(String chunk) {
+            signals.add(chunk);
+        }
+        
+        @Override
+        public void onComplete() {
+            signals.add("complete");
+        }
+        
+        @Override
+        public void onError(Throwable error) {
+            signals.add("error: " + error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.coze.loop.stream;
+
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for SSEDecoder.
+ */
+class SSEDecoderTest {
+
+    @Test
+    void testDecodesEventsAndFields() throws IOException {
+        SSEDecoder decoder = decoder(
+            ": keep-alive comment\n"
+                + "event: message\n"
+                + "id: 1\n"
+                + "retry: 3000\n"
+                + "data: {\"a\":1}\n"
+                + "\n"
+                + "data: first\n"
+                + "data:second\n"
+                + "data\n"
+                + "unknown: ignored\n"
+                + "\n"
+                + "\n"
+                + "Event: done\n"
+                + "retry: soon\n"
+                + "\n");
+        
+        ServerSentEvent first = decoder.decodeEvent();
+        assertThat(first.getEvent()).isEqualTo("message");
+        assertThat(first.getId()).isEqualTo("1");
+        assertThat(first.getRetry()).isEqualTo(3000);
+        assertThat(first.getData()).isEqualTo("{\"a\":1}");
+        
+        ServerSentEvent second = decoder.decodeEvent();
+        assertThat(second.getEvent()).isNull();
+        assertThat(second.getId()).isNull();
+        assertThat(second.getData()).isEqualTo("first\nsecond\n");
+        
+        // Field names match case-insensitively; an invalid retry is ignored
+        ServerSentEvent third = decoder.decodeEvent();
+        assertThat(third.getEvent()).isEqualTo("done");
+        assertThat(third.getRetry()).isNull();
+        assertThat(third.hasData()).isFalse();
+        
+        assertThat(decoder.decodeEvent()).isNull();
+    }
+
+    @Test
+    void testLineTerminatorsAndUnterminatedLastEvent() throws IOException {
+        SSEDecoder decoder = decoder("data: a\r\ndata: b\r\n\r\ndata: c\rdata: d\r\rdata:  e  ");
+        
+        assertThat(decoder.decodeEvent().getData()).isEqualTo("a\nb");
+        assertThat(decoder.decodeEvent().getData()).isEqualTo("c\nd");
+        // Surrounding whitespace is trimmed, apart from the one space after the colon
+        assertThat(decoder.decodeEvent().getData()).isEqualTo(" e");
+        assertThat(decoder.decodeEvent()).isNull();
+    }
+
+    @Test
+    void testDecodesStreamArrivingByteByByte() throws IOException {
+        String text = "data: 你好, wörld\r\n\r\ndata: 😀\n\n";
+        InputStream trickle = new FilterInputStream(
+            new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        SSEDecoder decoder = new SSEDecoder(trickle);
+        
+        assertThat(decoder.decodeEvent().getData()).isEqualTo("你好, wörld");
+        assertThat(decoder.decodeEvent().getData()).isEqualTo("😀");
+        assertThat(decoder.decodeEvent()).isNull();
+        decoder.close();
+    }
+
+    private static SSEDecoder decoder(String text) {
+        return new SSEDecoder(new Buffer().writeUtf8(text));
+    }
+}
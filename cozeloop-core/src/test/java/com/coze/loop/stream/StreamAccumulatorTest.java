@@ -0,0 +1,126 @@
+package com.coze.loop.stream;
+
+import com.coze.loop.entity.ExecuteResult;
+import com.coze.loop.entity.Message;
+import com.coze.loop.entity.Role;
+import com.coze.loop.entity.TokenUsage;
+import com.coze.loop.entity.ToolCall;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Unit tests for StreamAccumulator.
+ */
+class StreamAccumulatorTest {
+
+    @Test
+    void testMergesContentReasoningAndToolCalls() {
+        StreamAccumulator accumulator = new StreamAccumulator();
+        
+        accumulator.add(delta(Role.ASSISTANT, "Hel", "think"));
+        accumulator.add(delta(null, "lo", " more"));
+        ExecuteResult partial = accumulator.snapshot();
+        accumulator.add(toolCallDelta(toolCall(1, "call_b", "search", "{\"q\":")));
+        accumulator.add(toolCallDelta(toolCall(0, "call_a", "weather", "{\"city\"")));
+        accumulator.add(toolCallDelta(toolCall(1, null, null, "\"x\"}")));
+        accumulator.add(toolCallDelta(toolCall(0, null, null, ":\"Paris\"}")));
+        accumulator.add(ExecuteResult.builder().finishReason("tool_calls").usage(new TokenUsage(10, 7)).build());
+        ExecuteResult result = accumulator.complete();
+        
+        assertThat(partial.getMessage().getContent()).isEqualTo("Hello");
+        assertThat(partial.getMessage().getToolCalls()).isNull();
+        
+        Message message = result.getMessage();
+        assertThat(message.getRole()).isEqualTo(Role.ASSISTANT);
+        assertThat(message.getContent()).isEqualTo("Hello");
+        assertThat(message.getReasoningContent()).isEqualTo("think more");
+        assertThat(message.getToolCalls()).extracting(ToolCall::getIndex, ToolCall::getId,
+                call -> call.getFunctionCall().getName(), call -> call.getFunctionCall().getArguments())
+            .containsExactly(
+                tuple(0, "call_a", "weather", "{\"city\":\"Paris\"}"),
+                tuple(1, "call_b", "search", "{\"q\":\"x\"}"));
+        assertThat(result.getFinishReason()).isEqualTo("tool_calls");
+        assertThat(result.getUsage().getOutputTokens()).isEqualTo(7);
+        assertThat(accumulator.getChunkCount()).isEqualTo(7);
+        assertThat(accumulator.getTokenChunkCount()).isEqualTo(6);
+    }
+
+    @Test
+    void testRecordsTimeToFirstTokenAndInterTokenLatency() {
+        AtomicLong now = new AtomicLong(1_000);
+        StreamAccumulator accumulator = new StreamAccumulator(now::get);
+        
+        // A role-only delta is not a token
+        advanceMillis(now, 5);
+        accumulator.add(ExecuteResult.builder().message(new Message(Role.ASSISTANT)).build());
+        assertThat(accumulator.getTimeToFirstTokenNanos()).isEqualTo(-1);
+        
+        advanceMillis(now, 95);
+        accumulator.add(delta(null, "a", null));
+        advanceMillis(now, 3);
+        accumulator.add(delta(null, "b", null));
+        advanceMillis(now, 30);
+        accumulator.add(delta(null, "c", null));
+        advanceMillis(now, 2000);
+        accumulator.add(delta(null, "d", null));
+        advanceMillis(now, 10);
+        accumulator.complete();
+        
+        assertThat(accumulator.getTimeToFirstTokenNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(accumulator.getMeanInterTokenLatencyNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(2033) / 3);
+        assertThat(accumulator.getMaxInterTokenLatencyNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(2000));
+        long[] expected = new long[StreamAccumulator.LATENCY_BUCKET_BOUNDS_MILLIS.length + 1];
+        expected[2] = 1;                  // 3 ms: <= 5
+        expected[5] = 1;                  // 30 ms: <= 50
+        expected[expected.length - 1] = 1; // 2000 ms: > 1000
+        assertThat(accumulator.getInterTokenLatencyHistogram()).isEqualTo(expected);
+        assertThat(accumulator.getDurationNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(2143));
+    }
+
+    @Test
+    void testEmptyStream() {
+        StreamAccumulator accumulator = new StreamAccumulator();
+        
+        ExecuteResult result = accumulator.add(null).complete();
+        
+        assertThat(result.getMessage().getContent()).isNull();
+        assertThat(result.getUsage()).isNull();
+        assertThat(accumulator.getChunkCount()).isZero();
+        assertThat(accumulator.getMeanInterTokenLatencyNanos()).isEqualTo(-1);
+        assertThat(accumulator.getMaxInterTokenLatencyNanos()).isEqualTo(-1);
+    }
+
+    private static void advanceMillis(AtomicLong now, long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private static ExecuteResult delta(Role role, String content, String reasoning) {
+        Message message = new Message(role);
+        message.setContent(content);
+        message.setReasoningContent(reasoning);
+        return ExecuteResult.builder().message(message).build();
+    }
+
+    private static ExecuteResult toolCallDelta(ToolCall toolCall) {
+        Message message = new Message();
+        message.setToolCalls(Arrays.asList(toolCall));
+        return ExecuteResult.builder().message(message).build();
+    }
+
+    private static ToolCall toolCall(int index, String id, String name, String arguments) {
+        ToolCall toolCall = new ToolCall();
+        toolCall.setIndex(index);
+        toolCall.setId(id);
+        ToolCall.FunctionCall function = new ToolCall.FunctionCall();
+        function.setName(name);
+        function.setArguments(arguments);
+        toolCall.setFunctionCall(function);
+        return toolCall;
+    }
+}
@@ -0,0 +1,75 @@
+package com.coze.loop.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for AttributeTruncator.
+ */
+class AttributeTruncatorTest {
+
+    @Test
+    void testUtf8LengthMatchesEncoder() {
+        String[] values = {"", "ascii", "héllo", "中文字符", "emoji 😀 pair", "lone \uD800 surrogate"};
+        for (String value : values) {
+            if (value.contains("\uD800")) {
+                // Counted as 3 bytes, the encoder writes a 1-byte '?'; an over-estimate is safe
+                assertThat(AttributeTruncator.utf8Length(value))
+                    .isGreaterThanOrEqualTo(value.getBytes(StandardCharsets.UTF_8).length);
+            } else {
+                assertThat(AttributeTruncator.utf8Length(value))
+                    .as("length of %s", value)
+                    .isEqualTo(value.getBytes(StandardCharsets.UTF_8).length);
+            }
+        }
+    }
+
+    @Test
+    void testFits() {
+        assertThat(AttributeTruncator.fits("abc", 3)).isTrue();
+        assertThat(AttributeTruncator.fits("abcd", 3)).isFalse();
+        assertThat(AttributeTruncator.fits("中中", 5)).isFalse();
+        assertThat(AttributeTruncator.fits("中中", 6)).isTrue();
+    }
+
+    @Test
+    void testKeepsHeadAndTailAroundMarker() {
+        String value = repeat('a', 100) + repeat('z', 100);
+        
+        String truncated = AttributeTruncator.truncate(value, 200, 60);
+        
+        assertThat(truncated).startsWith("aaaa").endsWith("zzzz").contains("...[truncated, 200 bytes]...");
+        assertThat(truncated.getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(60);
+    }
+
+    @Test
+    void testNeverSplitsMultiByteCharacters() {
+        String value = repeat('中', 50) + "😀😀😀😀😀😀" + repeat('文', 50);
+        long original = AttributeTruncator.utf8Length(value);
+        
+        for (int budget = 0; budget < 120; budget++) {
+            String truncated = AttributeTruncator.truncate(value, original, budget);
+            byte[] encoded = truncated.getBytes(StandardCharsets.UTF_8);
+            assertThat(encoded.length).as("budget %s", budget).isLessThanOrEqualTo(budget);
+            // Round-trips, so no replacement characters were introduced
+            assertThat(new String(encoded, StandardCharsets.UTF_8)).isEqualTo(truncated);
+            assertThat(truncated).doesNotContain("�");
+        }
+    }
+
+    @Test
+    void testBudgetSmallerThanMarkerKeepsHeadOnly() {
+        assertThat(AttributeTruncator.truncate("abcdefghij", 10, 4)).isEqualTo("abcd");
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package com.coze.loop.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for Base64ImageScanner.
+ */
+class Base64ImageScannerTest {
+
+    /** The pattern the scanner replaces; results must be identical for lowercase "data:". */
+    private static final Pattern REFERENCE_PATTERN = Pattern.compile(
+        "data:image/([a-z]+);base64,([A-Za-z0-9+/=]+)", Pattern.CASE_INSENSITIVE);
+
+    @Test
+    void testMatchesSameImagesAsRegex() {
+        List<String> inputs = Arrays.asList(
+            "",
+            "plain text without images",
+            "data:image/png;base64,iVBORw0KGgo=",
+            "{\"a\":\"data:image/png;base64,AAAA\",\"b\":\"data:image/jpeg;base64,BBBB==\"}",
+            "data:IMAGE/PNG;BASE64,QUJD",
+            "data:data:image/gif;base64,R0lG",
+            "data:image/;base64,AAAA",
+            "data:image/png;base64,",
+            "data:image/png;base64",
+            "data:image/svg+xml;base64,PHN2Zz4=",
+            "data:text/plain;base64,SGVsbG8=",
+            "data:image/png;base64,AA\\nBB",
+            "xxdata:image/webp;base64,UklGRg==yy data:",
+            "data:image/png;base64,AAAA data:image/png;base64,AAAA");
+        
+        for (String input : inputs) {
+            assertThat(scan(input)).as("scan of %s", input).isEqualTo(regex(input));
+        }
+    }
+
+    @Test
+    void testReportsPositions() {
+        String content = "x data:image/png;base64,QUJD y";
+        
+        List<Base64ImageScanner.Match> matches = Base64ImageScanner.scan(content);
+        
+        assertThat(matches).hasSize(1);
+        assertThat(matches.get(0).getStart()).isEqualTo(2);
+        assertThat(matches.get(0).getEnd()).isEqualTo(content.length() - 2);
+    }
+
+    @Test
+    void testSchemeIsCaseSensitive() {
+        assertThat(Base64ImageScanner.scan("DATA:image/png;base64,QUJD")).isEmpty();
+    }
+
+    @Test
+    void testNullAndImageFreeContentReturnEmpty() {
+        assertThat(Base64ImageScanner.scan(null)).isEmpty();
+        assertThat(Base64ImageScanner.scan("no data here")).isEmpty();
+    }
+
+    private static List<String> scan(String input) {
+        List<String> results = new ArrayList<>();
+        for (Base64ImageScanner.Match match : Base64ImageScanner.scan(input)) {
+            results.add(match.getFileType() + ":" + match.getData());
+        }
+        return results;
+    }
+
+    private static List<String> regex(String input) {
+        List<String> results = new ArrayList<>();
+        Matcher matcher = REFERENCE_PATTERN.matcher(input);
+        while (matcher.find()) {
+            results.add(matcher.group(1) + ":" + matcher.group(2));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,243 @@
+package com.coze.loop.trace;
+
+import com.coze.loop.auth.TokenAuth;
+import com.coze.loop.exception.CozeLoopException;
+import com.coze.loop.exception.ErrorCode;
+import com.coze.loop.exception.HttpStatusException;
+import com.coze.loop.http.HttpClient;
+import com.coze.loop.http.HttpConfig;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.GzipSource;
+import okio.Okio;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for CozeLoopSpanExporter.
+ */
+class CozeLoopSpanExporterTest {
+
+    private MockWebServer mockWebServer;
+    private HttpClient httpClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+        httpClient = new HttpClient(new TokenAuth("test-token"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testSequentialExportSplitsIntoBatches() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockWebServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+        }
+        CozeLoopSpanExporter exporter = newExporter(1);
+        
+        CompletableResultCode result = exporter.export(createSpans(60));
+        
+        assertThat(result.join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(3);
+        String body = mockWebServer.takeRequest().getBody().readUtf8();
+        assertThat(body).startsWith("{\"spans\":[{");
+        assertThat(body).contains("\"workspace_id\":\"test-workspace\"");
+        exporter.shutdown();
+    }
+
+    @Test
+    void testPipelinedExportCompletesWhenAllBatchesFinish() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mockWebServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}")
+                .setBodyDelay(50, TimeUnit.MILLISECONDS));
+        }
+        CozeLoopSpanExporter exporter = newExporter(4);
+        
+        CompletableResultCode result = exporter.export(createSpans(110));
+        
+        assertThat(result.join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(5);
+        exporter.shutdown();
+    }
+
+    @Test
+    void testPipelinedExportFailsWhenAnyBatchFails() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(400).setBody("bad request"));
+        CozeLoopSpanExporter exporter = newExporter(2);
+        
+        CompletableResultCode result = exporter.export(createSpans(50));
+        
+        assertThat(result.join(10, TimeUnit.SECONDS).isSuccess()).isFalse();
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+        exporter.shutdown();
+    }
+
+    @Test
+    void testSpanBatchesAreCompressedWhenEnabled() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+        HttpClient gzipClient = new HttpClient(new TokenAuth("test-token"),
+            HttpConfig.builder().requestCompression("gzip").build());
+        CozeLoopSpanExporter exporter = new CozeLoopSpanExporter(gzipClient,
+            mockWebServer.url("/v1/loop/traces/ingest").toString(),
+            mockWebServer.url("/v1/loop/files/upload").toString(),
+            "test-workspace", "test-service", 1);
+        
+        assertThat(exporter.export(createSpans(1)).join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+        
+        RecordedRequest request = mockWebServer.takeRequest(5, TimeUnit.SECONDS);
+        assertThat(request.getHeader("Content-Encoding")).isEqualTo("gzip");
+        String body = Okio.buffer(new GzipSource(request.getBody())).readUtf8();
+        assertThat(body).startsWith("{\"spans\":[{");
+        exporter.shutdown();
+    }
+
+    @Test
+    void testTransientFailureIsSpooledAndReplayed(@TempDir Path spoolDirectory) throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503).setBody("unavailable"));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+        HttpClient noRetryClient = new HttpClient(new TokenAuth("test-token"),
+            HttpConfig.builder().maxRetries(0).build());
+        SpanSpool spool = new SpanSpool(spoolDirectory, 64 * 1024, 1024 * 1024);
+        CozeLoopSpanExporter exporter = new CozeLoopSpanExporter(noRetryClient,
+            mockWebServer.url("/v1/loop/traces/ingest").toString(),
+            mockWebServer.url("/v1/loop/files/upload").toString(),
+            "test-workspace", "test-service", 1, spool);
+        
+        CompletableResultCode result = exporter.export(createSpans(5));
+        
+        // The failed batch is persisted, so the export counts as successful
+        assertThat(result.join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+        String failedBody = mockWebServer.takeRequest(5, TimeUnit.SECONDS).getBody().readUtf8();
+        RecordedRequest replayed = mockWebServer.takeRequest(10, TimeUnit.SECONDS);
+        assertThat(replayed).isNotNull();
+        assertThat(replayed.getBody().readUtf8()).isEqualTo(failedBody);
+        exporter.shutdown();
+    }
+
+    @Test
+    void testPermanentFailureIsNotSpooled(@TempDir Path spoolDirectory) throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(400).setBody("bad request"));
+        SpanSpool spool = new SpanSpool(spoolDirectory, 64 * 1024, 1024 * 1024);
+        CozeLoopSpanExporter exporter = new CozeLoopSpanExporter(httpClient,
+            mockWebServer.url("/v1/loop/traces/ingest").toString(),
+            mockWebServer.url("/v1/loop/files/upload").toString(),
+            "test-workspace", "test-service", 1, spool);
+        
+        CompletableResultCode result = exporter.export(createSpans(5));
+        
+        assertThat(result.join(10, TimeUnit.SECONDS).isSuccess()).isFalse();
+        assertThat(spool.isEmpty()).isTrue();
+        exporter.shutdown();
+    }
+
+    @Test
+    void testOnlyIoFailuresAndRetryableStatusesAreTransient() {
+        assertThat(CozeLoopSpanExporter.isTransient(
+            new CozeLoopException(ErrorCode.NETWORK_ERROR, "HTTP request failed", new IOException("reset"))))
+            .isTrue();
+        assertThat(CozeLoopSpanExporter.isTransient(new HttpStatusException(503, "unavailable"))).isTrue();
+        assertThat(CozeLoopSpanExporter.isTransient(new HttpStatusException(400, "bad request"))).isFalse();
+        assertThat(CozeLoopSpanExporter.isTransient(new NullPointerException())).isFalse();
+        assertThat(CozeLoopSpanExporter.isTransient(new CozeLoopException(ErrorCode.NETWORK_ERROR,
+            "HTTP request failed", new JsonMappingException(null, "cannot serialize")))).isFalse();
+    }
+
+    @Test
+    void testSpooledBatchRejectedOnReplayIsDroppedAndCounted(@TempDir Path spoolDirectory) throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(400).setBody("bad request"));
+        SpanSpool spool = new SpanSpool(spoolDirectory, 64 * 1024, 1024 * 1024);
+        assertThat(spool.append("{\"spans\":[]}".getBytes(StandardCharsets.UTF_8))).isTrue();
+        CozeLoopSpanExporter exporter = new CozeLoopSpanExporter(httpClient,
+            mockWebServer.url("/v1/loop/traces/ingest").toString(),
+            mockWebServer.url("/v1/loop/files/upload").toString(),
+            "test-workspace", "test-service", 1, spool);
+        
+        assertThat(mockWebServer.takeRequest(5, TimeUnit.SECONDS)).isNotNull();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (exporter.getDroppedSpooledBatchCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        
+        assertThat(exporter.getDroppedSpooledBatchCount()).isEqualTo(1);
+        assertThat(spool.isEmpty()).isTrue();
+        exporter.shutdown();
+    }
+
+    @Test
+    void testExportAfterShutdownFails() {
+        CozeLoopSpanExporter exporter = newExporter(2);
+        exporter.shutdown();
+        
+        assertThat(exporter.export(createSpans(1)).isSuccess()).isFalse();
+    }
+
+    private CozeLoopSpanExporter newExporter(int exportConcurrency) {
+        return new CozeLoopSpanExporter(httpClient,
+            mockWebServer.url("/v1/loop/traces/ingest").toString(),
+            mockWebServer.url("/v1/loop/files/upload").toString(),
+            "test-workspace", "test-service", exportConcurrency);
+    }
+
+    private static List<SpanData> createSpans(int count) {
+        List<SpanData> spans = new ArrayList<>();
+        SdkTracerProvider provider = SdkTracerProvider.builder()
+            .addSpanProcessor(SimpleSpanProcessor.create(new CollectingExporter(spans)))
+            .build();
+        Tracer tracer = provider.get("test");
+        for (int i = 0; i < count; i++) {
+            tracer.spanBuilder("span-" + i).startSpan().end();
+        }
+        provider.shutdown();
+        return spans;
+    }
+
+    private static final class CollectingExporter implements SpanExporter {
+        private final List<SpanData> spans;
+        
+        CollectingExporter(List<SpanData> spans) {
+            this.spans = spans;
+        }
+        
+        @Override
+        public CompletableResultCode export(Collection<SpanData> batch) {
+            spans.addAll(batch);
+            return CompletableResultCode.ofSuccess();
+        }
+        
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+        
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
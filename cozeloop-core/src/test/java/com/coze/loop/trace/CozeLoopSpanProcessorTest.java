@@ -0,0 +1,280 @@
+package com.coze.loop.trace;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for CozeLoopSpanProcessor.
+ */
+class CozeLoopSpanProcessorTest {
+
+    @Test
+    void testForceFlushExportsQueuedSpans() {
+        CollectingExporter exporter = new CollectingExporter();
+        CozeLoopSpanProcessor processor = CozeLoopSpanProcessor.builder(exporter)
+            .setScheduleDelay(1, TimeUnit.HOURS)
+            .build();
+        SdkTracerProvider provider = newProvider(processor);
+        
+        endSpans(provider.get("test"), 0, 10);
+        
+        assertThat(processor.forceFlush().join(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        assertThat(exporter.spans).hasSize(10);
+        provider.shutdown().join(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testExportsWhenBatchIsFullWithEveryWaitStrategy() throws Exception {
+        for (CozeLoopSpanProcessor.WaitStrategy strategy : CozeLoopSpanProcessor.WaitStrategy.values()) {
+            CollectingExporter exporter = new CollectingExporter();
+            CozeLoopSpanProcessor processor = CozeLoopSpanProcessor.builder(exporter)
+                .setMaxExportBatchSize(5)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .setWaitStrategy(strategy)
+                .build();
+            SdkTracerProvider provider = newProvider(processor);
+
+            endSpans(provider.get("test"), 0, 5);
+
+            assertThat(exporter.awaitSpans(5, 5, TimeUnit.SECONDS))
+                .as("batch exported with %s", strategy).isTrue();
+            assertThat(exporter.batchSizes).containsExactly(5);
+            provider.shutdown().join(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testExportsOnScheduleDelay() throws Exception {
+        CollectingExporter exporter = new CollectingExporter();
+        CozeLoopSpanProcessor processor = CozeLoopSpanProcessor.builder(exporter)
+            .setScheduleDelay(50, TimeUnit.MILLISECONDS)
+            .build();
+        SdkTracerProvider provider = newProvider(processor);
+        
+        endSpans(provider.get("test"), 0, 3);
+        
+        assertThat(exporter.awaitSpans(3, 5, TimeUnit.SECONDS)).isTrue();
+        provider.shutdown().join(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testDropNewestDiscardsSpansEndedWhileFull() throws Exception {
+        List<String> exported = exportWithBlockedWorker(CozeLoopSpanProcessor.OverflowPolicy.DROP_NEWEST);
+        
+        assertThat(exported).containsExactly("span-0", "span-1", "span-2", "span-3", "span-4");
+    }
+
+    @Test
+    void testDropOldestEvictsQueuedSpans() throws Exception {
+        List<String> exported = exportWithBlockedWorker(CozeLoopSpanProcessor.OverflowPolicy.DROP_OLDEST);
+        
+        assertThat(exported).containsExactly("span-0", "span-3", "span-4", "span-5", "span-6");
+    }
+
+    @Test
+    void testShutdownExportsRemainingSpansAndShutsDownExporter() {
+        CollectingExporter exporter = new CollectingExporter();
+        CozeLoopSpanProcessor processor = CozeLoopSpanProcessor.builder(exporter)
+            .setScheduleDelay(1, TimeUnit.HOURS)
+            .build();
+        SdkTracerProvider provider = newProvider(processor);
+        
+        endSpans(provider.get("test"), 0, 7);
+        
+        assertThat(provider.shutdown().join(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        assertThat(exporter.spans).hasSize(7);
+        assertThat(exporter.shutdown).isTrue();
+        // Idempotent
+        assertThat(processor.shutdown().isSuccess()).isTrue();
+    }
+
+    @Test
+    void testSpansEndedAfterShutdownAreDropped() {
+        CollectingExporter exporter = new CollectingExporter();
+        CozeLoopSpanProcessor processor = CozeLoopSpanProcessor.builder(exporter).build();
+        SdkTracerProvider provider = newProvider(processor);
+        Tracer tracer = provider.get("test");
+        Span late = tracer.spanBuilder("late").startSpan();
+        
+        assertThat(processor.shutdown().join(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        late.end();
+        
+        assertThat(processor.getDroppedSpanCount()).isEqualTo(1);
+        assertThat(exporter.spans).isEmpty();
+        provider.shutdown().join(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testSpansAndFlushesRacingShutdownAreNeverLost() throws Exception {
+        int threads = 4;
+        int spansPerThread = 2000;
+        for (int round = 0; round < 20; round++) {
+            CollectingExporter exporter = new CollectingExporter();
+            CozeLoopSpanProcessor processor = CozeLoopSpanProcessor.builder(exporter)
+                .setMaxQueueSize(1 << 16)
+                .build();
+            SdkTracerProvider provider = newProvider(processor);
+            Tracer tracer = provider.get("test");
+            List<CompletableResultCode> flushes = new CopyOnWriteArrayList<>();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread producer = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < spansPerThread; i++) {
+                        tracer.spanBuilder("span-" + i).startSpan().end();
+                        if (i % 100 == 0) {
+                            flushes.add(processor.forceFlush());
+                        }
+                    }
+                });
+                producer.start();
+                producers.add(producer);
+            }
+
+            start.countDown();
+            CompletableResultCode shutdown = processor.shutdown();
+            for (Thread producer : producers) {
+                producer.join(10_000);
+            }
+
+            assertThat(shutdown.join(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+            assertThat(exporter.spans.size() + processor.getDroppedSpanCount())
+                .as("round %d", round).isEqualTo(threads * spansPerThread);
+            for (CompletableResultCode flush : flushes) {
+                assertThat(flush.join(5, TimeUnit.SECONDS).isDone()).isTrue();
+            }
+            provider.shutdown().join(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testDroppedSpansReleaseDeferredPayloads() {
+        CozeLoopTracerProvider.TraceConfig config = CozeLoopTracerProvider.TraceConfig.builder()
+            .deferSerialization(true)
+            .build();
+        DeferredPayloads deferred = new DeferredPayloads(config);
+        CozeLoopSpanProcessor processor = CozeLoopSpanProcessor.builder(new CollectingExporter())
+            .setDeferredPayloads(deferred)
+            .build();
+        SdkTracerProvider provider = newProvider(processor);
+        Span otelSpan = provider.get("test").spanBuilder("late").startSpan();
+        CozeLoopSpan span = new CozeLoopSpan(otelSpan, Scope.noop(), config, deferred);
+        span.setInput(Collections.singletonMap("large", "payload"));
+        assertThat(deferred.size()).isEqualTo(1);
+        
+        processor.shutdown().join(5, TimeUnit.SECONDS);
+        span.close();
+        
+        assertThat(deferred.size()).isZero();
+        provider.shutdown().join(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Block the worker inside the first export, fill the 4-slot buffer, end two more spans,
+     * then release the worker and return the names of every exported span.
+     */
+    private List<String> exportWithBlockedWorker(CozeLoopSpanProcessor.OverflowPolicy policy) throws Exception {
+        CollectingExporter exporter = new CollectingExporter();
+        exporter.block();
+        CozeLoopSpanProcessor processor = CozeLoopSpanProcessor.builder(exporter)
+            .setMaxQueueSize(4)
+            .setMaxExportBatchSize(1)
+            .setOverflowPolicy(policy)
+            .build();
+        SdkTracerProvider provider = newProvider(processor);
+        Tracer tracer = provider.get("test");
+        
+        endSpans(tracer, 0, 1);
+        assertThat(exporter.exportEntered.await(5, TimeUnit.SECONDS)).isTrue();
+        endSpans(tracer, 1, 7);
+        assertThat(processor.getDroppedSpanCount()).isEqualTo(2);
+        
+        exporter.unblock();
+        provider.shutdown().join(5, TimeUnit.SECONDS);
+        return exporter.spans.stream().map(SpanData::getName).collect(Collectors.toList());
+    }
+
+    private static SdkTracerProvider newProvider(CozeLoopSpanProcessor processor) {
+        return SdkTracerProvider.builder().addSpanProcessor(processor).build();
+    }
+
+    private static void endSpans(Tracer tracer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            tracer.spanBuilder("span-" + i).startSpan().end();
+        }
+    }
+
+    private static final class CollectingExporter implements SpanExporter {
+        private final List<SpanData> spans = new CopyOnWriteArrayList<>();
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final CountDownLatch exportEntered = new CountDownLatch(1);
+        private volatile CountDownLatch release;
+        private volatile boolean shutdown;
+        
+        void block() {
+            release = new CountDownLatch(1);
+        }
+        
+        void unblock() {
+            release.countDown();
+        }
+        
+        boolean awaitSpans(int count, long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (spans.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            return spans.size() >= count;
+        }
+        
+        @Override
+        public CompletableResultCode export(Collection<SpanData> batch) {
+            exportEntered.countDown();
+            CountDownLatch latch = release;
+            if (latch != null) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            spans.addAll(new ArrayList<>(batch));
+            batchSizes.add(batch.size());
+            return CompletableResultCode.ofSuccess();
+        }
+        
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+        
+        @Override
+        public CompletableResultCode shutdown() {
+            shutdown = true;
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.coze.loop.trace;
+
+import com.coze.loop.entity.UploadSpan;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for CozeLoopSpan size limits and deferred serialization.
+ */
+class CozeLoopSpanTest {
+
+    private final SdkTracerProvider provider = SdkTracerProvider.builder().build();
+
+    @AfterEach
+    void tearDown() {
+        provider.shutdown();
+    }
+
+    @Test
+    void testNoLimitsKeepsFullValues() {
+        CozeLoopSpan span = newSpan(null);
+        String input = repeat(10_000);
+        
+        span.setInput(input);
+        span.setOutput(Collections.singletonMap("answer", 42));
+        
+        assertThat(attribute(span, "cozeloop.input")).isEqualTo(input);
+        assertThat(attribute(span, "cozeloop.output")).isEqualTo("{\"answer\":42}");
+        assertThat(readable(span).getAttribute(AttributeKey.longKey("input.original_bytes"))).isNull();
+        span.close();
+    }
+
+    @Test
+    void testAttributeLimitTruncatesAndRecordsOriginalSize() {
+        CozeLoopSpan span = newSpan(CozeLoopTracerProvider.TraceConfig.builder().maxAttributeBytes(100).build());
+        
+        span.setInput(repeat(1000));
+        span.setOutput("short");
+        
+        assertThat(bytes(attribute(span, "cozeloop.input"))).isLessThanOrEqualTo(100);
+        assertThat(attribute(span, "cozeloop.input")).contains("...[truncated, 1000 bytes]...");
+        assertThat(readable(span).getAttribute(AttributeKey.longKey("input.original_bytes"))).isEqualTo(1000L);
+        assertThat(attribute(span, "cozeloop.output")).isEqualTo("short");
+        // Nothing diverted unless configured
+        assertThat(attribute(span, "cozeloop.input_overflow")).isNull();
+        span.close();
+    }
+
+    @Test
+    void testSpanLimitIsSharedByInputAndOutput() {
+        CozeLoopSpan span = newSpan(CozeLoopTracerProvider.TraceConfig.builder().maxSpanBytes(150).build());
+        
+        span.setInput(repeat(100));
+        span.setOutput(repeat(100));
+        
+        assertThat(attribute(span, "cozeloop.input")).hasSize(100);
+        assertThat(bytes(attribute(span, "cozeloop.output"))).isLessThanOrEqualTo(50);
+        assertThat(readable(span).getAttribute(AttributeKey.longKey("output.original_bytes"))).isEqualTo(100L);
+        
+        // Replacing the input releases its share of the budget
+        span.setInput("x");
+        span.setOutput(repeat(100));
+        assertThat(attribute(span, "cozeloop.output")).hasSize(100);
+        span.close();
+    }
+
+    @Test
+    void testDivertKeepsFullValueForUpload() {
+        CozeLoopSpan span = newSpan(CozeLoopTracerProvider.TraceConfig.builder()
+            .maxAttributeBytes(64)
+            .divertOversizedPayloads(true)
+            .build());
+        String output = repeat(500);
+        
+        span.setOutput(output);
+        
+        assertThat(bytes(attribute(span, "cozeloop.output"))).isLessThanOrEqualTo(64);
+        assertThat(attribute(span, "cozeloop.output_overflow")).isEqualTo(output);
+        span.close();
+    }
+
+    @Test
+    void testValueThatFitsClearsEarlierTruncation() {
+        CozeLoopSpan span = newSpan(CozeLoopTracerProvider.TraceConfig.builder()
+            .maxAttributeBytes(64)
+            .divertOversizedPayloads(true)
+            .build());
+        
+        span.setOutput(repeat(500));
+        span.setOutput("final");
+        span.close();
+        
+        UploadSpan uploadSpan = SpanConverter.convert(readable(span).toSpanData(), "ws", "service");
+        assertThat(uploadSpan.getOutput()).isEqualTo("final");
+        assertThat(uploadSpan.getOutputOverflow()).isNull();
+        assertThat(uploadSpan.getTagsLong()).isNull();
+    }
+
+    @Test
+    void testDeferredObjectsAreSerializedAtConversion() {
+        CozeLoopTracerProvider.TraceConfig config = CozeLoopTracerProvider.TraceConfig.builder()
+            .deferSerialization(true)
+            .maxAttributeBytes(64)
+            .build();
+        DeferredPayloads deferred = new DeferredPayloads(config);
+        Span otelSpan = provider.get("test").spanBuilder("span").startSpan();
+        CozeLoopSpan span = new CozeLoopSpan(otelSpan, otelSpan.makeCurrent(), config, deferred);
+        SerializationCounter input = new SerializationCounter(repeat(200));
+        
+        span.setInput(input);
+        span.setOutput("plain string");
+        span.close();
+        
+        // Only a reference was stored
+        assertThat(input.serializations).isZero();
+        assertThat(attribute(span, "cozeloop.input")).isNull();
+        assertThat(deferred.size()).isEqualTo(1);
+        
+        SpanData spanData = readable(span).toSpanData();
+        UploadSpan uploadSpan = SpanConverter.convert(spanData, "ws", "service", deferred);
+        
+        assertThat(input.serializations).isEqualTo(1);
+        assertThat(uploadSpan.getInput()).startsWith("{\"value\":\"abc").contains("...[truncated, 212 bytes]...");
+        assertThat(uploadSpan.getTagsLong()).containsEntry("input.original_bytes", 212L);
+        assertThat(uploadSpan.getOutput()).isEqualTo("plain string");
+        assertThat(deferred.size()).isZero();
+    }
+
+    @Test
+    void testStringReplacesDeferredObject() {
+        CozeLoopTracerProvider.TraceConfig config = CozeLoopTracerProvider.TraceConfig.builder()
+            .deferSerialization(true)
+            .build();
+        DeferredPayloads deferred = new DeferredPayloads(config);
+        Span otelSpan = provider.get("test").spanBuilder("span").startSpan();
+        CozeLoopSpan span = new CozeLoopSpan(otelSpan, otelSpan.makeCurrent(), config, deferred);
+        
+        span.setOutput(Collections.singletonMap("stale", true));
+        span.setOutput("final");
+        span.close();
+        
+        UploadSpan uploadSpan = SpanConverter.convert(readable(span).toSpanData(), "ws", "service", deferred);
+        assertThat(uploadSpan.getOutput()).isEqualTo("final");
+    }
+
+    @Test
+    void testNonRecordingSpanIsNeverSerialized() {
+        SerializationCounter input = new SerializationCounter("value");
+        CozeLoopSpan span = new CozeLoopSpan(Span.getInvalid(), Span.getInvalid().makeCurrent(), null);
+        
+        span.setInput(input);
+        span.close();
+        
+        assertThat(input.serializations).isZero();
+    }
+
+    private CozeLoopSpan newSpan(CozeLoopTracerProvider.TraceConfig config) {
+        Span span = provider.get("test").spanBuilder("span").startSpan();
+        return new CozeLoopSpan(span, span.makeCurrent(), config);
+    }
+
+    private static ReadableSpan readable(CozeLoopSpan span) {
+        return (ReadableSpan) span.getSpan();
+    }
+
+    private static String attribute(CozeLoopSpan span, String key) {
+        return readable(span).getAttribute(AttributeKey.stringKey(key));
+    }
+
+    /** Counts how often Jackson serializes it. */
+    static final class SerializationCounter {
+        private final String value;
+        private int serializations;
+        
+        SerializationCounter(String value) {
+            this.value = value;
+        }
+        
+        public String getValue() {
+            serializations++;
+            return value;
+        }
+    }
+
+    private static int bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static String repeat(int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        return builder.toString();
+    }
+}
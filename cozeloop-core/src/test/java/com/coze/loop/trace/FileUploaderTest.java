@@ -0,0 +1,237 @@
+package com.coze.loop.trace;
+
+import com.coze.loop.auth.TokenAuth;
+import com.coze.loop.entity.UploadFile;
+import com.coze.loop.entity.UploadSpan;
+import com.coze.loop.http.HttpClient;
+import com.coze.loop.http.HttpConfig;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for FileUploader.
+ */
+class FileUploaderTest {
+
+    private MockWebServer mockWebServer;
+    private FileUploader fileUploader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+        HttpClient httpClient = new HttpClient(new TokenAuth("test-token"),
+            HttpConfig.builder().maxRetries(0).build());
+        fileUploader = new FileUploader(httpClient,
+            mockWebServer.url("/v1/loop/files/upload").toString(), "test-workspace", 2, 100);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fileUploader.close();
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testEachSpanUploadsItsOwnFiles() throws Exception {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String body = request.getBody().readUtf8();
+                String storage = body.contains(encode("first")) ? "storage-1" : "storage-2";
+                return new MockResponse().setBody("{\"object_storage\":\"" + storage + "\"}");
+            }
+        });
+        
+        List<CompletableFuture<FileUploader.UploadResult>> results = fileUploader.uploadAsync(Arrays.asList(
+            Collections.singletonList(image("first")),
+            Collections.<UploadFile>emptyList(),
+            Arrays.asList(image("second"), image("third"))));
+        
+        assertThat(results.get(0).get(5, TimeUnit.SECONDS).getObjectStorage()).isEqualTo("storage-1");
+        assertThat(results.get(1).get(5, TimeUnit.SECONDS).getObjectStorage()).isNull();
+        assertThat(results.get(2).get(5, TimeUnit.SECONDS).getObjectStorage()).isEqualTo("storage-2");
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testIdenticalContentIsUploadedOnce() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody("{\"object_storage\":\"storage-1\"}"));
+        UploadFile original = image("same");
+        
+        List<CompletableFuture<FileUploader.UploadResult>> first = fileUploader.uploadAsync(Arrays.asList(
+            Collections.singletonList(original),
+            Collections.singletonList(image("same"))));
+        assertThat(first.get(0).get(5, TimeUnit.SECONDS).getObjectStorage()).isEqualTo("storage-1");
+        // The second span sent no request of its own; it references the stored file by the TOS key
+        // and object storage key of the request that stored it
+        assertThat(first.get(1).get(5, TimeUnit.SECONDS).getObjectStorage()).isEqualTo("storage-1");
+        assertThat(first.get(1).get().getTosKeys()).containsExactly(original.getTosKey());
+        
+        // Later spans with the same image reuse the cached reference
+        List<CompletableFuture<FileUploader.UploadResult>> second = fileUploader.uploadAsync(
+            Collections.singletonList(Collections.singletonList(image("same"))));
+        assertThat(second.get(0).get(5, TimeUnit.SECONDS).getObjectStorage()).isEqualTo("storage-1");
+        assertThat(second.get(0).get().getTosKeys()).containsExactly(original.getTosKey());
+        
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+        RecordedRequest request = mockWebServer.takeRequest();
+        String body = request.getBody().readUtf8();
+        assertThat(body.indexOf(encode("same"))).isEqualTo(body.lastIndexOf(encode("same")));
+    }
+
+    @Test
+    void testFilesStoredUnderAnotherObjectStorageStayInline() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody("{\"object_storage\":\"storage-a\"}"));
+        mockWebServer.enqueue(new MockResponse().setBody("{\"object_storage\":\"storage-b\"}"));
+        UploadFile shared = image("a");
+        fileUploader.uploadAsync(Collections.singletonList(Collections.singletonList(shared)))
+            .get(0).get(5, TimeUnit.SECONDS);
+        
+        FileUploader.UploadResult result = fileUploader.uploadAsync(Collections.singletonList(
+            Arrays.asList(image("a"), image("b")))).get(0).get(5, TimeUnit.SECONDS);
+        
+        // The span carries its own request's key, which does not cover the reused file
+        assertThat(result.getObjectStorage()).isEqualTo("storage-b");
+        assertThat(result.getTosKeys()).containsExactly(null, "cozeloop/test-workspace/b");
+        mockWebServer.takeRequest();
+        String body = mockWebServer.takeRequest().getBody().readUtf8();
+        assertThat(body).contains(encode("b")).doesNotContain(encode("a"));
+    }
+
+    @Test
+    void testFailedUploadIsNotCached() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(400).setBody("bad request"));
+        mockWebServer.enqueue(new MockResponse().setBody("{\"object_storage\":\"storage-2\"}"));
+        
+        List<CompletableFuture<FileUploader.UploadResult>> failed = fileUploader.uploadAsync(
+            Collections.singletonList(Collections.singletonList(image("retry"))));
+        assertThat(failed.get(0).get(5, TimeUnit.SECONDS).getObjectStorage()).isNull();
+        
+        List<CompletableFuture<FileUploader.UploadResult>> retried = fileUploader.uploadAsync(
+            Collections.singletonList(Collections.singletonList(image("retry"))));
+        assertThat(retried.get(0).get(5, TimeUnit.SECONDS).getObjectStorage()).isEqualTo("storage-2");
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testDuplicateFileReusesFirstTosKey() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody("{\"object_storage\":\"storage-1\"}"));
+        UploadFile original = image("same");
+        UploadFile duplicate = image("same");
+        duplicate.setTosKey("cozeloop/test-workspace/duplicate");
+        
+        List<CompletableFuture<FileUploader.UploadResult>> results = fileUploader.uploadAsync(Arrays.asList(
+            Collections.singletonList(original),
+            Collections.singletonList(duplicate)));
+        
+        assertThat(results.get(1).get(5, TimeUnit.SECONDS).getTosKeys())
+            .containsExactly(original.getTosKey());
+    }
+
+    @Test
+    void testExtractAndReplaceInlineImages() {
+        String png = encode("png-bytes");
+        String jpeg = encode("jpeg-bytes");
+        UploadSpan span = new UploadSpan();
+        span.setInput("{\"url\":\"data:image/png;base64," + png + "\",\"text\":\"hi\"}");
+        span.setOutput("see data:image/JPEG;base64," + jpeg + " and data:text/plain;base64,abc");
+        
+        List<UploadFile> files = fileUploader.extractFiles(span);
+        
+        assertThat(files).extracting(UploadFile::getTagKey).containsExactly("input", "output");
+        assertThat(files).extracting(UploadFile::getFileType).containsExactly("png", "JPEG");
+        assertThat(files.get(0).getData()).isEqualTo(png);
+        
+        fileUploader.replaceInlineImages(span, files, new FileUploader.UploadResult(
+            "storage-1", Arrays.asList("cozeloop/ws/png-key", null)));
+        
+        assertThat(span.getInput()).isEqualTo("{\"url\":\"cozeloop/ws/png-key\",\"text\":\"hi\"}");
+        // Failed uploads stay inline
+        assertThat(span.getOutput()).contains(jpeg);
+    }
+
+    @Test
+    void testExtractWithoutImagesReturnsEmptyList() {
+        UploadSpan span = new UploadSpan();
+        span.setInput("{\"messages\":[{\"content\":\"no images here, data: none\"}]}");
+        
+        assertThat(fileUploader.extractFiles(span)).isEmpty();
+    }
+
+    @Test
+    void testDivertedPayloadIsUploadedAsTextFile() {
+        SdkTracerProvider provider = SdkTracerProvider.builder().build();
+        Span otelSpan = provider.get("test").spanBuilder("span").startSpan();
+        CozeLoopSpan span = new CozeLoopSpan(otelSpan, otelSpan.makeCurrent(),
+            CozeLoopTracerProvider.TraceConfig.builder().maxAttributeBytes(200).divertOversizedPayloads(true).build());
+        String png = encode("png-bytes");
+        String input = "data:image/png;base64," + png + " " + String.join("", Collections.nCopies(100, "long "));
+        span.setInput(input);
+        span.setOutput("see data:image/png;base64," + encode("out"));
+        SpanData spanData = ((ReadableSpan) otelSpan).toSpanData();
+        span.close();
+        provider.shutdown();
+        UploadSpan uploadSpan = SpanConverter.convert(spanData, "test-workspace", "test-service");
+        
+        List<UploadFile> files = fileUploader.extractFiles(uploadSpan);
+        
+        // Images of the stored (truncated) values first, then the diverted full input
+        assertThat(files).extracting(UploadFile::getFileType).containsExactly("png", "png", "txt");
+        assertThat(new String(Base64.getDecoder().decode(files.get(2).getData()), StandardCharsets.UTF_8))
+            .isEqualTo(input);
+        
+        fileUploader.replaceInlineImages(uploadSpan, files, new FileUploader.UploadResult(
+            "storage-1", Arrays.asList("key-in", "key-out", "key-overflow")));
+        
+        assertThat(uploadSpan.getInput()).startsWith("key-in ");
+        assertThat(uploadSpan.getOutput()).isEqualTo("see key-out");
+        assertThat(uploadSpan.getTagsString()).containsEntry("input.overflow_tos_key", "key-overflow");
+        assertThat(uploadSpan.getTagsLong()).containsEntry("input.original_bytes", (long) input.length());
+    }
+
+    @Test
+    void testContentHashUsesDecodedBytes() {
+        assertThat(FileUploader.contentHash(image("x"))).isEqualTo(FileUploader.contentHash(image("x")));
+        assertThat(FileUploader.contentHash(image("x"))).isNotEqualTo(FileUploader.contentHash(image("y")));
+        // SHA-256 of "x"
+        assertThat(FileUploader.contentHash(image("x")))
+            .isEqualTo("2d711642b726b04401627ca9fbac32f5c8530fb1903cc4db02258717921a4881");
+    }
+
+    private static UploadFile image(String content) {
+        return UploadFile.builder()
+            .tosKey("cozeloop/test-workspace/" + content)
+            .data(encode(content))
+            .uploadType("base64")
+            .tagKey("input")
+            .fileType("png")
+            .name("image.png")
+            .spaceId("test-workspace")
+            .build();
+    }
+
+    private static String encode(String content) {
+        return Base64.getEncoder().encodeToString(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
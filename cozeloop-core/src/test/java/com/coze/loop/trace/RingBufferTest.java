@@ -0,0 +1,85 @@
+package com.coze.loop.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for RingBuffer.
+ */
+class RingBufferTest {
+
+    @Test
+    void testCapacityRoundsUpToPowerOfTwo() {
+        assertThat(new RingBuffer<String>(1000).capacity()).isEqualTo(1024);
+        assertThat(new RingBuffer<String>(1024).capacity()).isEqualTo(1024);
+    }
+
+    @Test
+    void testFifoAndFullEmptyReporting() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        assertThat(buffer.poll()).isNull();
+        
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+        assertThat(buffer.offer(4)).isFalse();
+        assertThat(buffer.size()).isEqualTo(4);
+        
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.poll()).isEqualTo(i);
+        }
+        assertThat(buffer.isEmpty()).isTrue();
+        // Wraps around
+        assertThat(buffer.offer(5)).isTrue();
+        assertThat(buffer.poll()).isEqualTo(5);
+    }
+
+    @Test
+    void testConcurrentProducersDeliverEveryElementOnce() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        RingBuffer<Integer> buffer = new RingBuffer<>(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+        
+        start.countDown();
+        BitSet seen = new BitSet(producers * perProducer);
+        int received = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (received < producers * perProducer && System.nanoTime() < deadline) {
+            Integer value = buffer.poll();
+            if (value != null) {
+                assertThat(seen.get(value)).isFalse();
+                seen.set(value);
+                received++;
+            }
+        }
+        executor.shutdown();
+        
+        assertThat(received).isEqualTo(producers * perProducer);
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+}
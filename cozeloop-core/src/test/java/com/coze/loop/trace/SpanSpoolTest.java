@@ -0,0 +1,160 @@
+package com.coze.loop.trace;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for SpanSpool.
+ */
+class SpanSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testAppendPeekAckInOrder() throws IOException {
+        try (SpanSpool spool = new SpanSpool(directory, 1024, 8192)) {
+            assertThat(spool.isEmpty()).isTrue();
+            assertThat(spool.peek()).isNull();
+
+            spool.append(bytes("first"));
+            spool.append(bytes("second"));
+
+            SpanSpool.Record record = spool.peek();
+            assertThat(text(record)).isEqualTo("first");
+            // Peek does not consume
+            assertThat(text(spool.peek())).isEqualTo("first");
+
+            spool.ack(record);
+            record = spool.peek();
+            assertThat(text(record)).isEqualTo("second");
+            spool.ack(record);
+
+            assertThat(spool.isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    void testRecoversPendingRecordsAfterReopen() throws IOException {
+        try (SpanSpool spool = new SpanSpool(directory, 1024, 8192)) {
+            spool.append(bytes("delivered"));
+            spool.append(bytes("pending-1"));
+            spool.append(bytes("pending-2"));
+            spool.ack(spool.peek());
+        }
+        
+        try (SpanSpool spool = new SpanSpool(directory, 1024, 8192)) {
+            SpanSpool.Record record = spool.peek();
+            assertThat(text(record)).isEqualTo("pending-1");
+            spool.ack(record);
+            assertThat(text(spool.peek())).isEqualTo("pending-2");
+
+            // Appends continue after the recovered records
+            spool.ack(spool.peek());
+            spool.append(bytes("after-restart"));
+            assertThat(text(spool.peek())).isEqualTo("after-restart");
+        }
+    }
+
+    @Test
+    void testRotatesSegmentsAndDeletesDeliveredOnes() throws IOException {
+        try (SpanSpool spool = new SpanSpool(directory, 64, 8192)) {
+            for (int i = 0; i < 10; i++) {
+                spool.append(bytes("payload-" + i + "-abcdefghijklmnop"));
+            }
+            assertThat(segmentCount()).isGreaterThan(1);
+
+            for (int i = 0; i < 10; i++) {
+                SpanSpool.Record record = spool.peek();
+                assertThat(text(record)).isEqualTo("payload-" + i + "-abcdefghijklmnop");
+                spool.ack(record);
+            }
+            assertThat(spool.isEmpty()).isTrue();
+            // Only the segment still open for appends remains
+            assertThat(segmentCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void testDropsOldestSegmentsWhenFull() throws IOException {
+        try (SpanSpool spool = new SpanSpool(directory, 64, 192)) {
+            for (int i = 0; i < 20; i++) {
+                assertThat(spool.append(bytes("payload-" + i + "-abcdefghijklmnop"))).isTrue();
+            }
+            assertThat(spool.sizeBytes()).isLessThanOrEqualTo(192);
+            // The newest record survives, the oldest are gone
+            assertThat(text(spool.peek())).isNotEqualTo("payload-0-abcdefghijklmnop");
+
+            String last = null;
+            SpanSpool.Record record;
+            while ((record = spool.peek()) != null) {
+                last = text(record);
+                spool.ack(record);
+            }
+            assertThat(last).isEqualTo("payload-19-abcdefghijklmnop");
+        }
+    }
+
+    @Test
+    void testRejectsPayloadLargerThanSpool() throws IOException {
+        try (SpanSpool spool = new SpanSpool(directory, 64, 128)) {
+            assertThat(spool.append(new byte[256])).isFalse();
+            assertThat(spool.isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    void testTornRecordIsDiscardedOnRecovery() throws IOException {
+        try (SpanSpool spool = new SpanSpool(directory, 1024, 8192)) {
+            spool.append(bytes("intact"));
+            spool.append(bytes("torn"));
+        }
+        
+        // Corrupt the payload of the second record (header 8 bytes + "intact" + header 8 bytes)
+        Path segment = firstSegment();
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(8 + 6 + 8);
+            file.write('X');
+        }
+        
+        try (SpanSpool spool = new SpanSpool(directory, 1024, 8192)) {
+            SpanSpool.Record record = spool.peek();
+            assertThat(text(record)).isEqualTo("intact");
+            spool.ack(record);
+            assertThat(spool.peek()).isNull();
+
+            // The torn tail is overwritten by new appends
+            spool.append(bytes("next"));
+            assertThat(text(spool.peek())).isEqualTo("next");
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private Path firstSegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().findFirst().orElseThrow(IllegalStateException::new);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(SpanSpool.Record record) {
+        return new String(record.getPayload(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,231 @@
+package com.coze.loop.trace;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for TailSamplingSpanExporter and SpanTypeRatioSampler.
+ */
+class TailSamplingSpanExporterTest {
+
+    private final CollectingExporter delegate = new CollectingExporter();
+    private final AtomicLong clock = new AtomicLong();
+    private SdkTracerProvider provider;
+
+    @AfterEach
+    void tearDown() {
+        if (provider != null) {
+            provider.shutdown().join(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testKeepsWholeTraceWithError() {
+        Tracer tracer = newTracer(TailSamplingSpanExporter.builder(delegate).build(clock::get));
+        
+        Span root = tracer.spanBuilder("root").startSpan();
+        Context parent = Context.current().with(root);
+        tracer.spanBuilder("ok-child").setParent(parent).startSpan().end();
+        assertThat(delegate.names()).isEmpty();
+        
+        Span failing = tracer.spanBuilder("failing-child").setParent(parent).startSpan();
+        failing.setStatus(StatusCode.ERROR);
+        failing.end();
+        root.end();
+        
+        assertThat(delegate.names()).containsExactly("ok-child", "failing-child", "root");
+    }
+
+    @Test
+    void testKeepsSlowTraceAndDropsFastTrace() {
+        Tracer tracer = newTracer(TailSamplingSpanExporter.builder(delegate)
+            .setLatencyThreshold(100, TimeUnit.MILLISECONDS)
+            .build(clock::get));
+        
+        Span fast = tracer.spanBuilder("fast").setStartTimestamp(1000, TimeUnit.MILLISECONDS).startSpan();
+        fast.end(1010, TimeUnit.MILLISECONDS);
+        Span slow = tracer.spanBuilder("slow").setStartTimestamp(1000, TimeUnit.MILLISECONDS).startSpan();
+        slow.end(1150, TimeUnit.MILLISECONDS);
+        
+        assertThat(delegate.names()).containsExactly("slow");
+    }
+
+    @Test
+    void testLateSpansFollowTheDecision() {
+        TailSamplingSpanExporter sampler = TailSamplingSpanExporter.builder(delegate).build(clock::get);
+        Tracer tracer = newTracer(sampler);
+        
+        Span root = tracer.spanBuilder("root").startSpan();
+        Span lateChild = tracer.spanBuilder("late-child").setParent(Context.current().with(root)).startSpan();
+        root.end();
+        lateChild.setStatus(StatusCode.ERROR);
+        lateChild.end();
+        
+        // The trace was dropped when its root ended without an error
+        assertThat(delegate.names()).isEmpty();
+        assertThat(sampler.getDroppedSpanCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testUndecidedTracesExpireAndBuffersAreBounded() {
+        TailSamplingSpanExporter sampler = TailSamplingSpanExporter.builder(delegate)
+            .setDecisionWait(1, TimeUnit.SECONDS)
+            .setMaxTraces(2)
+            .setMaxSpansPerTrace(2)
+            .build(clock::get);
+        Tracer tracer = newTracer(sampler);
+        
+        // Three traces whose roots never end; the first is evicted to respect maxTraces
+        List<Span> roots = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Span root = tracer.spanBuilder("root-" + i).startSpan();
+            roots.add(root);
+            for (int j = 0; j < 3; j++) {
+                tracer.spanBuilder("child").setParent(Context.current().with(root)).startSpan().end();
+            }
+        }
+        assertThat(sampler.getPendingTraceCount()).isEqualTo(2);
+        // 2 evicted spans, plus 1 over the per-trace limit in each of the 3 traces
+        assertThat(sampler.getDroppedSpanCount()).isEqualTo(5);
+        
+        clock.set(TimeUnit.SECONDS.toNanos(2));
+        sampler.expireTraces();
+        
+        assertThat(sampler.getPendingTraceCount()).isZero();
+        assertThat(sampler.getDroppedSpanCount()).isEqualTo(9);
+        assertThat(delegate.names()).isEmpty();
+        roots.forEach(Span::end);
+    }
+
+    @Test
+    void testDroppedSpansReleaseDeferredPayloads() {
+        CozeLoopTracerProvider.TraceConfig config = CozeLoopTracerProvider.TraceConfig.builder()
+            .deferSerialization(true)
+            .build();
+        DeferredPayloads deferred = new DeferredPayloads(config);
+        TailSamplingSpanExporter sampler = TailSamplingSpanExporter.builder(delegate)
+            .setDecisionWait(1, TimeUnit.SECONDS)
+            .setDeferredPayloads(deferred)
+            .build(clock::get);
+        Tracer tracer = newTracer(sampler);
+        
+        // Dropped when its root ends
+        Span root = tracer.spanBuilder("root").startSpan();
+        withDeferredInput(tracer.spanBuilder("child").setParent(Context.current().with(root)).startSpan(),
+            config, deferred).close();
+        withDeferredInput(root, config, deferred).close();
+        // Expires undecided
+        Span open = tracer.spanBuilder("open-root").startSpan();
+        withDeferredInput(tracer.spanBuilder("child").setParent(Context.current().with(open)).startSpan(),
+            config, deferred).close();
+        assertThat(deferred.size()).isEqualTo(1);
+        
+        clock.set(TimeUnit.SECONDS.toNanos(2));
+        sampler.expireTraces();
+        
+        assertThat(deferred.size()).isZero();
+        assertThat(sampler.getDroppedSpanCount()).isEqualTo(3);
+        open.end();
+    }
+
+    @Test
+    void testSpanTypeRatioSampler() {
+        SpanTypeRatioSampler sampler = new SpanTypeRatioSampler(0.0, Collections.singletonMap("llm", 1.0));
+        String traceId = "0af7651916cd43dd8448eb211c80319c";
+        
+        assertThat(decision(sampler, traceId, "llm")).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+        assertThat(decision(sampler, traceId, "tool")).isEqualTo(SamplingDecision.DROP);
+        assertThat(decision(sampler, traceId, null)).isEqualTo(SamplingDecision.DROP);
+    }
+
+    @Test
+    void testChildSpansFollowParentDecision() {
+        provider = SdkTracerProvider.builder()
+            .setSampler(Sampler.parentBased(new SpanTypeRatioSampler(0.0, Collections.singletonMap("llm", 1.0))))
+            .addSpanProcessor(SimpleSpanProcessor.create(delegate))
+            .build();
+        Tracer tracer = provider.get("test");
+        
+        Span llm = tracer.spanBuilder("llm-root").setAttribute("span.type", "llm").startSpan();
+        tracer.spanBuilder("tool-child").setAttribute("span.type", "tool")
+            .setParent(Context.current().with(llm)).startSpan().end();
+        llm.end();
+        Span tool = tracer.spanBuilder("tool-root").setAttribute("span.type", "tool").startSpan();
+        tracer.spanBuilder("llm-child").setAttribute("span.type", "llm")
+            .setParent(Context.current().with(tool)).startSpan().end();
+        tool.end();
+        
+        assertThat(delegate.names()).containsExactly("tool-child", "llm-root");
+    }
+
+    private static SamplingDecision decision(Sampler sampler, String traceId, String spanType) {
+        Attributes attributes = spanType != null
+            ? Attributes.of(AttributeKey.stringKey("span.type"), spanType) : Attributes.empty();
+        return sampler.shouldSample(Context.root(), traceId, "span", SpanKind.INTERNAL,
+            attributes, Collections.emptyList()).getDecision();
+    }
+
+    private static CozeLoopSpan withDeferredInput(Span span, CozeLoopTracerProvider.TraceConfig config,
+                                                  DeferredPayloads deferred) {
+        CozeLoopSpan cozeLoopSpan = new CozeLoopSpan(span, Scope.noop(), config, deferred);
+        cozeLoopSpan.setInput(Collections.singletonMap("large", "payload"));
+        return cozeLoopSpan;
+    }
+
+    private Tracer newTracer(TailSamplingSpanExporter sampler) {
+        provider = SdkTracerProvider.builder()
+            .addSpanProcessor(SimpleSpanProcessor.create(sampler))
+            .build();
+        return provider.get("test");
+    }
+
+    private static final class CollectingExporter implements SpanExporter {
+        private final List<SpanData> spans = new CopyOnWriteArrayList<>();
+        
+        List<String> names() {
+            return spans.stream().map(SpanData::getName).collect(Collectors.toList());
+        }
+        
+        @Override
+        public CompletableResultCode export(Collection<SpanData> batch) {
+            spans.addAll(batch);
+            return CompletableResultCode.ofSuccess();
+        }
+        
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+        
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
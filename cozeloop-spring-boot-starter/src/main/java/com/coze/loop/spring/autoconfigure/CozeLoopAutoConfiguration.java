@@ -4,6 +4,7 @@ import com.coze.loop.client.CozeLoopClient;
 import com.coze.loop.client.CozeLoopClientBuilder;
 import com.coze.loop.config.CozeLoopConfig;
 import com.coze.loop.http.HttpConfig;
+import com.coze.loop.prompt.GetPromptParam;
 import com.coze.loop.prompt.PromptCache;
 import com.coze.loop.spring.aop.CozeTraceAspect;
 import com.coze.loop.spring.config.CozeLoopProperties;
@@ -17,6 +18,9 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Auto-configuration for CozeLoop Spring Boot integration.
  * Supports both Spring Boot 2.x and 3.x.
@@ -48,6 +52,8 @@ public class CozeLoopAutoConfiguration {
             .httpConfig(buildHttpConfig(properties.getHttp()))
             .traceConfig(buildTraceConfig(properties.getTrace()))
             .promptCacheConfig(buildPromptCacheConfig(properties.getPrompt().getCache()))
+            .preloadPrompts(buildPreloadPrompts(properties.getPrompt().getPreload()))
+            .preloadAsync(properties.getPrompt().getPreload().isAsync())
             .build();
         
         // Build client
@@ -93,6 +99,10 @@ public class CozeLoopAutoConfiguration {
             .readTimeoutSeconds(http.getReadTimeoutSeconds())
             .writeTimeoutSeconds(http.getWriteTimeoutSeconds())
             .maxRetries(http.getMaxRetries())
+            .requestCompression(http.getRequestCompression())
+            .compressionMinSizeBytes(http.getCompressionMinSizeBytes())
+            .maxAsyncRequests(http.getMaxAsyncRequests())
+            .streamThreads(http.getStreamThreads())
             .build();
     }
     
@@ -100,11 +110,47 @@ public class CozeLoopAutoConfiguration {
      * Build TraceConfig from properties.
      */
     private CozeLoopTracerProvider.TraceConfig buildTraceConfig(CozeLoopProperties.Trace trace) {
-        return CozeLoopTracerProvider.TraceConfig.builder()
+        CozeLoopTracerProvider.TraceConfig config = CozeLoopTracerProvider.TraceConfig.builder()
             .maxQueueSize(trace.getMaxQueueSize())
             .batchSize(trace.getBatchSize())
             .scheduleDelayMillis(trace.getScheduleDelayMillis())
+            .exportConcurrency(trace.getExportConcurrency())
+            .spoolDirectory(trace.getSpoolDirectory())
+            .spoolMaxBytes(trace.getSpoolMaxBytes())
+            .spoolSegmentBytes(trace.getSpoolSegmentBytes())
+            .spanProcessorType(trace.getProcessorType())
+            .waitStrategy(trace.getWaitStrategy())
+            .overflowPolicy(trace.getOverflowPolicy())
+            .fileUploadConcurrency(trace.getFileUploadConcurrency())
+            .fileUploadCacheSize(trace.getFileUploadCacheSize())
+            .maxAttributeBytes(trace.getMaxAttributeBytes())
+            .maxSpanBytes(trace.getMaxSpanBytes())
+            .divertOversizedPayloads(trace.isDivertOversizedPayloads())
+            .deferSerialization(trace.isDeferSerialization())
+            .samplingRatio(trace.getSamplingRatio())
+            .tailSampling(trace.isTailSampling())
+            .tailSamplingLatencyThresholdMillis(trace.getTailSamplingLatencyThresholdMillis())
+            .tailSamplingDecisionWaitMillis(trace.getTailSamplingDecisionWaitMillis())
+            .tailSamplingMaxTraces(trace.getTailSamplingMaxTraces())
+            .tailSamplingMaxSpansPerTrace(trace.getTailSamplingMaxSpansPerTrace())
             .build();
+        config.setSpanTypeSamplingRatios(trace.getSpanTypeSamplingRatios());
+        return config;
+    }
+    
+    /**
+     * Build the prompts to preload from properties.
+     */
+    private List<GetPromptParam> buildPreloadPrompts(CozeLoopProperties.Prompt.Preload preload) {
+        List<GetPromptParam> prompts = new ArrayList<>();
+        for (CozeLoopProperties.Prompt.PromptRef ref : preload.getPrompts()) {
+            prompts.add(GetPromptParam.builder()
+                .promptKey(ref.getPromptKey())
+                .version(ref.getVersion())
+                .label(ref.getLabel())
+                .build());
+        }
+        return prompts;
     }
     
     /**
@@ -116,6 +162,13 @@ public class CozeLoopAutoConfiguration {
             .maxSize(cache.getMaxSize())
             .expireAfterWriteMinutes(cache.getExpireAfterWriteMinutes())
             .refreshAfterWriteMinutes(cache.getRefreshAfterWriteMinutes())
+            .fetchBatchWindowMillis(cache.getFetchBatchWindowMillis())
+            .fetchMaxBatchSize(cache.getFetchMaxBatchSize())
+            .fetchThreads(cache.getFetchThreads())
+            .snapshotPath(cache.getSnapshotPath())
+            .snapshotIntervalSeconds(cache.getSnapshotIntervalSeconds())
+            .refreshJitter(cache.getRefreshJitter())
+            .negativeCacheSeconds(cache.getNegativeCacheSeconds())
             .build();
     }
 }
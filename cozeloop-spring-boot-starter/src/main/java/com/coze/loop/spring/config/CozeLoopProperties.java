@@ -1,7 +1,14 @@
 package com.coze.loop.spring.config;
 
+import com.coze.loop.trace.CozeLoopSpanProcessor;
+import com.coze.loop.trace.CozeLoopTracerProvider;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Configuration properties for CozeLoop Spring Boot integration.
  */
@@ -162,6 +169,19 @@ public class CozeLoopProperties {
         private int readTimeoutSeconds = 60;
         private int writeTimeoutSeconds = 60;
         private int maxRetries = 3;
+        /**
+         * Content-Encoding for span and file upload compression (e.g. "gzip"); disabled when empty.
+         */
+        private String requestCompression;
+        private long compressionMinSizeBytes = 1024;
+        /**
+         * Maximum number of concurrent asynchronous requests.
+         */
+        private int maxAsyncRequests = 64;
+        /**
+         * Number of threads reading pushed response streams, shared by all streams.
+         */
+        private int streamThreads = 16;
         
         public int getConnectTimeoutSeconds() {
             return connectTimeoutSeconds;
@@ -194,6 +214,38 @@ public class CozeLoopProperties {
         public void setMaxRetries(int maxRetries) {
             this.maxRetries = maxRetries;
         }
+        
+        public String getRequestCompression() {
+            return requestCompression;
+        }
+        
+        public void setRequestCompression(String requestCompression) {
+            this.requestCompression = requestCompression;
+        }
+        
+        public long getCompressionMinSizeBytes() {
+            return compressionMinSizeBytes;
+        }
+        
+        public void setCompressionMinSizeBytes(long compressionMinSizeBytes) {
+            this.compressionMinSizeBytes = compressionMinSizeBytes;
+        }
+        
+        public int getMaxAsyncRequests() {
+            return maxAsyncRequests;
+        }
+        
+        public void setMaxAsyncRequests(int maxAsyncRequests) {
+            this.maxAsyncRequests = maxAsyncRequests;
+        }
+        
+        public int getStreamThreads() {
+            return streamThreads;
+        }
+        
+        public void setStreamThreads(int streamThreads) {
+            this.streamThreads = streamThreads;
+        }
     }
     
     /**
@@ -204,6 +256,27 @@ public class CozeLoopProperties {
         private int maxQueueSize = 2048;
         private int batchSize = 512;
         private long scheduleDelayMillis = 5000;
+        private int exportConcurrency = 1;
+        private String spoolDirectory;
+        private long spoolMaxBytes = 256L * 1024 * 1024;
+        private long spoolSegmentBytes = 16L * 1024 * 1024;
+        private CozeLoopTracerProvider.TraceConfig.SpanProcessorType processorType =
+            CozeLoopTracerProvider.TraceConfig.SpanProcessorType.BATCH;
+        private CozeLoopSpanProcessor.WaitStrategy waitStrategy = CozeLoopSpanProcessor.WaitStrategy.PARK;
+        private CozeLoopSpanProcessor.OverflowPolicy overflowPolicy = CozeLoopSpanProcessor.OverflowPolicy.DROP_NEWEST;
+        private int fileUploadConcurrency = 4;
+        private int fileUploadCacheSize = 1024;
+        private int maxAttributeBytes = 0;
+        private int maxSpanBytes = 0;
+        private boolean divertOversizedPayloads = false;
+        private boolean deferSerialization = false;
+        private double samplingRatio = 1.0;
+        private Map<String, Double> spanTypeSamplingRatios = new HashMap<>();
+        private boolean tailSampling = false;
+        private long tailSamplingLatencyThresholdMillis = 0;
+        private long tailSamplingDecisionWaitMillis = 30000;
+        private int tailSamplingMaxTraces = 10000;
+        private int tailSamplingMaxSpansPerTrace = 1000;
         
         public boolean isEnabled() {
             return enabled;
@@ -236,6 +309,166 @@ public class CozeLoopProperties {
         public void setScheduleDelayMillis(long scheduleDelayMillis) {
             this.scheduleDelayMillis = scheduleDelayMillis;
         }
+        
+        public int getExportConcurrency() {
+            return exportConcurrency;
+        }
+        
+        public void setExportConcurrency(int exportConcurrency) {
+            this.exportConcurrency = exportConcurrency;
+        }
+        
+        public String getSpoolDirectory() {
+            return spoolDirectory;
+        }
+        
+        public void setSpoolDirectory(String spoolDirectory) {
+            this.spoolDirectory = spoolDirectory;
+        }
+        
+        public long getSpoolMaxBytes() {
+            return spoolMaxBytes;
+        }
+        
+        public void setSpoolMaxBytes(long spoolMaxBytes) {
+            this.spoolMaxBytes = spoolMaxBytes;
+        }
+        
+        public long getSpoolSegmentBytes() {
+            return spoolSegmentBytes;
+        }
+        
+        public void setSpoolSegmentBytes(long spoolSegmentBytes) {
+            this.spoolSegmentBytes = spoolSegmentBytes;
+        }
+        
+        public CozeLoopTracerProvider.TraceConfig.SpanProcessorType getProcessorType() {
+            return processorType;
+        }
+        
+        public void setProcessorType(CozeLoopTracerProvider.TraceConfig.SpanProcessorType processorType) {
+            this.processorType = processorType;
+        }
+        
+        public CozeLoopSpanProcessor.WaitStrategy getWaitStrategy() {
+            return waitStrategy;
+        }
+        
+        public void setWaitStrategy(CozeLoopSpanProcessor.WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+        }
+        
+        public CozeLoopSpanProcessor.OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+        
+        public void setOverflowPolicy(CozeLoopSpanProcessor.OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+        
+        public int getFileUploadConcurrency() {
+            return fileUploadConcurrency;
+        }
+        
+        public void setFileUploadConcurrency(int fileUploadConcurrency) {
+            this.fileUploadConcurrency = fileUploadConcurrency;
+        }
+        
+        public int getFileUploadCacheSize() {
+            return fileUploadCacheSize;
+        }
+        
+        public void setFileUploadCacheSize(int fileUploadCacheSize) {
+            this.fileUploadCacheSize = fileUploadCacheSize;
+        }
+        
+        public int getMaxAttributeBytes() {
+            return maxAttributeBytes;
+        }
+        
+        public void setMaxAttributeBytes(int maxAttributeBytes) {
+            this.maxAttributeBytes = maxAttributeBytes;
+        }
+        
+        public int getMaxSpanBytes() {
+            return maxSpanBytes;
+        }
+        
+        public void setMaxSpanBytes(int maxSpanBytes) {
+            this.maxSpanBytes = maxSpanBytes;
+        }
+        
+        public boolean isDivertOversizedPayloads() {
+            return divertOversizedPayloads;
+        }
+        
+        public void setDivertOversizedPayloads(boolean divertOversizedPayloads) {
+            this.divertOversizedPayloads = divertOversizedPayloads;
+        }
+        
+        public boolean isDeferSerialization() {
+            return deferSerialization;
+        }
+        
+        public void setDeferSerialization(boolean deferSerialization) {
+            this.deferSerialization = deferSerialization;
+        }
+        
+        public double getSamplingRatio() {
+            return samplingRatio;
+        }
+        
+        public void setSamplingRatio(double samplingRatio) {
+            this.samplingRatio = samplingRatio;
+        }
+        
+        public Map<String, Double> getSpanTypeSamplingRatios() {
+            return spanTypeSamplingRatios;
+        }
+        
+        public void setSpanTypeSamplingRatios(Map<String, Double> spanTypeSamplingRatios) {
+            this.spanTypeSamplingRatios = spanTypeSamplingRatios;
+        }
+        
+        public boolean isTailSampling() {
+            return tailSampling;
+        }
+        
+        public void setTailSampling(boolean tailSampling) {
+            this.tailSampling = tailSampling;
+        }
+        
+        public long getTailSamplingLatencyThresholdMillis() {
+            return tailSamplingLatencyThresholdMillis;
+        }
+        
+        public void setTailSamplingLatencyThresholdMillis(long tailSamplingLatencyThresholdMillis) {
+            this.tailSamplingLatencyThresholdMillis = tailSamplingLatencyThresholdMillis;
+        }
+        
+        public long getTailSamplingDecisionWaitMillis() {
+            return tailSamplingDecisionWaitMillis;
+        }
+        
+        public void setTailSamplingDecisionWaitMillis(long tailSamplingDecisionWaitMillis) {
+            this.tailSamplingDecisionWaitMillis = tailSamplingDecisionWaitMillis;
+        }
+        
+        public int getTailSamplingMaxTraces() {
+            return tailSamplingMaxTraces;
+        }
+        
+        public void setTailSamplingMaxTraces(int tailSamplingMaxTraces) {
+            this.tailSamplingMaxTraces = tailSamplingMaxTraces;
+        }
+        
+        public int getTailSamplingMaxSpansPerTrace() {
+            return tailSamplingMaxSpansPerTrace;
+        }
+        
+        public void setTailSamplingMaxSpansPerTrace(int tailSamplingMaxSpansPerTrace) {
+            this.tailSamplingMaxSpansPerTrace = tailSamplingMaxSpansPerTrace;
+        }
     }
     
     /**
@@ -243,6 +476,7 @@ public class CozeLoopProperties {
      */
     public static class Prompt {
         private Cache cache = new Cache();
+        private Preload preload = new Preload();
         
         public Cache getCache() {
             return cache;
@@ -252,10 +486,89 @@ public class CozeLoopProperties {
             this.cache = cache;
         }
         
+        public Preload getPreload() {
+            return preload;
+        }
+        
+        public void setPreload(Preload preload) {
+            this.preload = preload;
+        }
+        
+        /**
+         * Prompts fetched into the cache at startup.
+         */
+        public static class Preload {
+            /**
+             * Whether startup continues without waiting for the preload.
+             */
+            private boolean async = false;
+            
+            /**
+             * Prompts to preload.
+             */
+            private List<PromptRef> prompts = new ArrayList<>();
+            
+            public boolean isAsync() {
+                return async;
+            }
+            
+            public void setAsync(boolean async) {
+                this.async = async;
+            }
+            
+            public List<PromptRef> getPrompts() {
+                return prompts;
+            }
+            
+            public void setPrompts(List<PromptRef> prompts) {
+                this.prompts = prompts;
+            }
+        }
+        
+        /**
+         * A prompt identified by key and optional version or label.
+         */
+        public static class PromptRef {
+            private String promptKey;
+            private String version;
+            private String label;
+            
+            public String getPromptKey() {
+                return promptKey;
+            }
+            
+            public void setPromptKey(String promptKey) {
+                this.promptKey = promptKey;
+            }
+            
+            public String getVersion() {
+                return version;
+            }
+            
+            public void setVersion(String version) {
+                this.version = version;
+            }
+            
+            public String getLabel() {
+                return label;
+            }
+            
+            public void setLabel(String label) {
+                this.label = label;
+            }
+        }
+        
         public static class Cache {
             private long maxSize = 1000;
             private long expireAfterWriteMinutes = 60;
             private long refreshAfterWriteMinutes = 30;
+            private long fetchBatchWindowMillis = 10;
+            private int fetchMaxBatchSize = 20;
+            private int fetchThreads = 2;
+            private String snapshotPath;
+            private long snapshotIntervalSeconds = 60;
+            private double refreshJitter = 0.1;
+            private long negativeCacheSeconds = 30;
             
             public long getMaxSize() {
                 return maxSize;
@@ -280,6 +593,62 @@ public class CozeLoopProperties {
             public void setRefreshAfterWriteMinutes(long refreshAfterWriteMinutes) {
                 this.refreshAfterWriteMinutes = refreshAfterWriteMinutes;
             }
+            
+            public long getFetchBatchWindowMillis() {
+                return fetchBatchWindowMillis;
+            }
+            
+            public void setFetchBatchWindowMillis(long fetchBatchWindowMillis) {
+                this.fetchBatchWindowMillis = fetchBatchWindowMillis;
+            }
+            
+            public int getFetchMaxBatchSize() {
+                return fetchMaxBatchSize;
+            }
+            
+            public void setFetchMaxBatchSize(int fetchMaxBatchSize) {
+                this.fetchMaxBatchSize = fetchMaxBatchSize;
+            }
+            
+            public int getFetchThreads() {
+                return fetchThreads;
+            }
+            
+            public void setFetchThreads(int fetchThreads) {
+                this.fetchThreads = fetchThreads;
+            }
+            
+            public String getSnapshotPath() {
+                return snapshotPath;
+            }
+            
+            public void setSnapshotPath(String snapshotPath) {
+                this.snapshotPath = snapshotPath;
+            }
+            
+            public long getSnapshotIntervalSeconds() {
+                return snapshotIntervalSeconds;
+            }
+            
+            public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+                this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+            }
+            
+            public double getRefreshJitter() {
+                return refreshJitter;
+            }
+            
+            public void setRefreshJitter(double refreshJitter) {
+                this.refreshJitter = refreshJitter;
+            }
+            
+            public long getNegativeCacheSeconds() {
+                return negativeCacheSeconds;
+            }
+            
+            public void setNegativeCacheSeconds(long negativeCacheSeconds) {
+                this.negativeCacheSeconds = negativeCacheSeconds;
+            }
         }
     }
 }
@@ -141,5 +141,20 @@ class CozeLoopPropertiesTest {
         assertThat(cache.getExpireAfterWriteMinutes()).isEqualTo(60);
         assertThat(cache.getRefreshAfterWriteMinutes()).isEqualTo(30);
     }
+
+    @Test
+    void testPromptPreloadProperties() {
+        CozeLoopProperties.Prompt.PromptRef ref = new CozeLoopProperties.Prompt.PromptRef();
+        ref.setPromptKey("greeting");
+        ref.setLabel("production");
+        properties.getPrompt().getPreload().setAsync(true);
+        properties.getPrompt().getPreload().getPrompts().add(ref);
+        
+        assertThat(properties.getPrompt().getPreload().isAsync()).isTrue();
+        assertThat(properties.getPrompt().getPreload().getPrompts())
+            .extracting(CozeLoopProperties.Prompt.PromptRef::getPromptKey)
+            .containsExactly("greeting");
+        assertThat(new CozeLoopProperties.Prompt.Preload().getPrompts()).isEmpty();
+    }
 }
 